@@ -0,0 +1,69 @@
+package ru.smsaero;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@code SendSms} when the first configured gate refuses connections and the second one is a {@link StubGate}.
+ *
+ * <p>With {@code order=fixed} every call tries the dead gate first, which is the cost of one failover. With
+ * {@code order=health} the default {@link GateSelector} and {@link CircuitBreaker} route around the dead gate,
+ * which is what a client sees in steady state.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FailoverBenchmark {
+    @Param({"fixed", "health"})
+    public String order;
+
+    private StubGate gate;
+    private SmsAero client;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        gate = StubGate.start();
+        SmsAero.Builder builder = SmsAero.builder("user@example.com", "api-key")
+            .gateUrls(List.of(SendSmsBenchmark.deadGateUrl(), gate.url()));
+        if (order.equals("fixed")) {
+            // Scores stay at zero (no prior, negligible smoothing, no error penalty) and nothing is ejected,
+            // so the configured order is kept on every call.
+            builder.gateSelector(GateSelector.builder()
+                    .alpha(Double.MIN_VALUE)
+                    .initialLatency(Duration.ZERO)
+                    .errorPenalty(0)
+                    .ejectAfterFailures(Integer.MAX_VALUE)
+                    .build());
+        }
+        client = builder.build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        gate.close();
+    }
+
+    @Benchmark
+    public Object sendSms() throws Exception {
+        return client.SendSms("79031234567", "Ваш код 1234", "SMS Aero");
+    }
+}
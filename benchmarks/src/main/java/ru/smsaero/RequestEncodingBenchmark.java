@@ -0,0 +1,71 @@
+package ru.smsaero;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.json.simple.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of building a {@code SendSms} request body, and of a whole {@code SendSms} call against an in-memory
+ * transport. Run with {@code -prof gc} to see bytes allocated per operation ({@code gc.alloc.rate.norm}).
+ *
+ * <p>{@link #jsonObject()} is the encoding used before {@link JsonWriter}: a {@link JSONObject} filled from the
+ * form, rendered to a {@link String} and then to UTF-8 bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestEncodingBenchmark {
+    private static final byte[] RESPONSE = ("{\"success\":true,\"data\":{\"id\":1,\"from\":\"SMS Aero\","
+        + "\"number\":\"79031234567\",\"text\":\"Ваш код 1234\",\"status\":8,\"extendStatus\":\"moderation\","
+        + "\"channel\":\"FREE SIGN\",\"cost\":5.49,\"dateCreate\":1719115820,\"dateSend\":1719115820},"
+        + "\"message\":null}").getBytes(StandardCharsets.UTF_8);
+
+    private Map<String, Object> form;
+    private SmsAero client;
+
+    @Setup
+    public void setUp() {
+        form = new HashMap<>();
+        form.put("number", "79031234567");
+        form.put("text", "Ваш код 1234");
+        form.put("sign", "SMS Aero");
+        Transport transport = request -> new Transport.Response(200, RESPONSE, Map.of());
+        client = new SmsAero("user@example.com", "api-key", transport);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public byte[] jsonObject() {
+        JSONObject json = new JSONObject();
+        for (Map.Entry<String, Object> entry : form.entrySet()) {
+            json.put(entry.getKey(), entry.getValue());
+        }
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] jsonWriter() {
+        return JsonWriter.write(form, Map.of());
+    }
+
+    @Benchmark
+    public Object sendSms() throws Exception {
+        return client.SendSms("79031234567", "Ваш код 1234", "SMS Aero");
+    }
+}
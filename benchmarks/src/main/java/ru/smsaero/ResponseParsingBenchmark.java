@@ -0,0 +1,71 @@
+package ru.smsaero;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of decoding a response body: the {@code JSONObject} path used by the untyped API against the typed
+ * decoders, for a single {@code sms/send} answer and a 20-item {@code sms/list} page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseParsingBenchmark {
+    private static final String SMS = "{\"id\":%d,\"from\":\"SMS Aero\",\"number\":\"79031234567\","
+        + "\"text\":\"Ваш код 1234\",\"status\":1,\"extendStatus\":\"delivery\",\"channel\":\"FREE SIGN\","
+        + "\"cost\":\"5.49\",\"dateCreate\":1719115820,\"dateSend\":1719115820,\"dateAnswer\":1719115825}";
+
+    private static final ResponseDecoder<SmsResult> SMS_DECODER = ResponseDecoder.data(SmsResult.DECODER);
+    private static final ResponseDecoder<PagedList<SmsResult>> LIST_DECODER =
+        ResponseDecoder.data(PagedList.decoder(SmsResult.DECODER));
+
+    private byte[] sms;
+    private byte[] list;
+
+    @Setup
+    public void setUp() {
+        sms = ("{\"success\":true,\"data\":" + String.format(SMS, 1) + ",\"message\":null}")
+            .getBytes(StandardCharsets.UTF_8);
+        StringBuilder page = new StringBuilder("{\"success\":true,\"data\":{");
+        for (int i = 0; i < 20; i++) {
+            page.append('"').append(i).append("\":").append(String.format(SMS, i + 1)).append(',');
+        }
+        page.append("\"links\":{\"self\":\"/v2/sms/list?page=1\",\"next\":\"/v2/sms/list?page=2\"},")
+            .append("\"totalCount\":\"138\"},\"message\":null}");
+        list = page.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Object smsJsonObject() throws Exception {
+        return ResponseDecoder.JSON.decode(sms);
+    }
+
+    @Benchmark
+    public Object smsTyped() throws Exception {
+        return SMS_DECODER.decode(sms);
+    }
+
+    @Benchmark
+    public Object listJsonObject() throws Exception {
+        return ResponseDecoder.JSON.decode(list);
+    }
+
+    @Benchmark
+    public Object listTyped() throws Exception {
+        return LIST_DECODER.decode(list);
+    }
+}
@@ -0,0 +1,96 @@
+package ru.smsaero;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end {@code SendSms} over HTTP against an in-process {@link StubGate}: latency of a single call with each
+ * transport, and throughput of the default client shared by 1, 8, 64 and 512 threads.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SendSmsBenchmark {
+    @Param({"httpclient", "urlconnection"})
+    public String transport;
+
+    private StubGate gate;
+    private SmsAero client;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        gate = StubGate.start();
+        Transport t = transport.equals("httpclient") ? HttpClientTransport.create() : new UrlConnectionTransport();
+        client = SmsAero.builder("user@example.com", "api-key").transport(t).gateUrls(List.of(gate.url())).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        gate.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object latency() throws Exception {
+        return client.SendSms("79031234567", "Ваш код 1234", "SMS Aero");
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(1)
+    public Object throughput1() throws Exception {
+        return client.SendSms("79031234567", "Ваш код 1234", "SMS Aero");
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(8)
+    public Object throughput8() throws Exception {
+        return client.SendSms("79031234567", "Ваш код 1234", "SMS Aero");
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(64)
+    public Object throughput64() throws Exception {
+        return client.SendSms("79031234567", "Ваш код 1234", "SMS Aero");
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(512)
+    public Object throughput512() throws Exception {
+        return client.SendSms("79031234567", "Ваш код 1234", "SMS Aero");
+    }
+
+    /** @return a local URL nothing listens on, so connecting to it is refused at once */
+    static String deadGateUrl() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            return "http://127.0.0.1:" + socket.getLocalPort() + "/v2/";
+        }
+    }
+}
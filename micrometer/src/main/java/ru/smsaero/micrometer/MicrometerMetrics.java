@@ -0,0 +1,170 @@
+package ru.smsaero.micrometer;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import ru.smsaero.ClientMetrics;
+
+/**
+ * Publishes client metrics to a Micrometer {@link MeterRegistry}:
+ * <ul>
+ *   <li>{@code smsaero.calls} timer with a percentile histogram, tagged {@code method}, {@code outcome}
+ *       ({@code SUCCESS} or {@code ERROR}) and {@code exception} (simple class name or {@code none});</li>
+ *   <li>{@code smsaero.calls.active} gauge of calls in flight, tagged {@code method};</li>
+ *   <li>{@code smsaero.exchanges} timer of HTTP exchanges, tagged {@code method}, {@code gate} (host name) and
+ *       {@code status} (HTTP status, or {@code NONE} without a response);</li>
+ *   <li>{@code smsaero.bytes.sent} and {@code smsaero.bytes.received} counters, tagged {@code method} and
+ *       {@code gate};</li>
+ *   <li>{@code smsaero.failovers}, {@code smsaero.http.fallbacks} and {@code smsaero.retries} counters, tagged
+ *       {@code method} and, except for retries, {@code gate}.</li>
+ * </ul>
+ *
+ * <p>Meters are registered on first use and cached, so recording does not go through the registry. Instances with
+ * the same tags on one registry share their meters: timers and counters add up, and {@code smsaero.calls.active}
+ * counts the calls of all of them.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * SmsAero client = SmsAero.builder(email, apiKey)
+ *     .metrics(MicrometerMetrics.create(registry, Tags.of("client", "otp")))
+ *     .build();
+ * }</pre>
+ */
+public final class MicrometerMetrics implements ClientMetrics {
+    /**
+     * Calls in flight by registry and gauge tags. A registry keeps the first gauge registered under an id and ignores
+     * the state object of later ones, so instances that would register the same gauge share one count instead.
+     */
+    private static final Map<MeterRegistry, Map<Tags, AtomicInteger>> ACTIVE =
+        Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final MeterRegistry registry;
+    private final Tags tags;
+    private final ConcurrentHashMap<String, Timer> calls = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicInteger> active = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Timer> exchanges = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> hosts = new ConcurrentHashMap<>();
+
+    private MicrometerMetrics(MeterRegistry registry, Tags tags) {
+        this.registry = registry;
+        this.tags = tags;
+    }
+
+    /**
+     * @param registry Registry to publish to
+     * @return new metrics
+     */
+    public static MicrometerMetrics create(MeterRegistry registry) {
+        return create(registry, Tags.empty());
+    }
+
+    /**
+     * @param registry Registry to publish to
+     * @param tags     Tags added to every meter, e.g. to tell several clients apart
+     * @return new metrics
+     */
+    public static MicrometerMetrics create(MeterRegistry registry, Tags tags) {
+        if (registry == null) {
+            throw new IllegalArgumentException("registry cannot be null");
+        }
+        if (tags == null) {
+            throw new IllegalArgumentException("tags cannot be null");
+        }
+        return new MicrometerMetrics(registry, tags);
+    }
+
+    @Override
+    public void onCallStart(String method) {
+        active(method).incrementAndGet();
+    }
+
+    @Override
+    public void onCallEnd(String method, long nanos, Throwable error) {
+        active(method).decrementAndGet();
+        String exception = error != null ? error.getClass().getSimpleName() : "none";
+        calls.computeIfAbsent(method + '\n' + exception, key -> Timer.builder("smsaero.calls")
+                .description("API calls, over all gates and retries")
+                .tags(tags)
+                .tag("method", method)
+                .tag("outcome", error != null ? "ERROR" : "SUCCESS")
+                .tag("exception", exception)
+                .publishPercentileHistogram()
+                .register(registry))
+            .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void onExchange(String method, String gate, int statusCode, long nanos, long bytesSent,
+            long bytesReceived) {
+        String host = host(gate);
+        String status = statusCode != 0 ? Integer.toString(statusCode) : "NONE";
+        exchanges.computeIfAbsent(method + '\n' + host + '\n' + status, key -> Timer.builder("smsaero.exchanges")
+                .description("HTTP exchanges with the gates")
+                .tags(tags)
+                .tag("method", method)
+                .tag("gate", host)
+                .tag("status", status)
+                .register(registry))
+            .record(nanos, TimeUnit.NANOSECONDS);
+        counter("smsaero.bytes.sent", method, host).increment(bytesSent);
+        counter("smsaero.bytes.received", method, host).increment(bytesReceived);
+    }
+
+    @Override
+    public void onFailover(String method, String gate) {
+        counter("smsaero.failovers", method, host(gate)).increment();
+    }
+
+    @Override
+    public void onPlainHttpFallback(String method, String gate) {
+        counter("smsaero.http.fallbacks", method, host(gate)).increment();
+    }
+
+    @Override
+    public void onRetry(String method, int attempt) {
+        counter("smsaero.retries", method, null).increment();
+    }
+
+    private AtomicInteger active(String method) {
+        AtomicInteger count = active.get(method);
+        if (count != null) {
+            return count;
+        }
+        return active.computeIfAbsent(method, key -> ACTIVE.computeIfAbsent(registry, r -> new ConcurrentHashMap<>())
+            .computeIfAbsent(tags.and("method", method), gaugeTags -> {
+                AtomicInteger created = new AtomicInteger();
+                Gauge.builder("smsaero.calls.active", created, AtomicInteger::get)
+                    .description("API calls in flight")
+                    .tags(gaugeTags)
+                    .register(registry);
+                return created;
+            }));
+    }
+
+    /** @param host Gate host name, or null for a counter without a gate tag */
+    private Counter counter(String name, String method, String host) {
+        return counters.computeIfAbsent(name + '\n' + method + '\n' + host, key -> {
+            Counter.Builder builder = Counter.builder(name).tags(tags).tag("method", method);
+            return (host != null ? builder.tag("gate", host) : builder).register(registry);
+        });
+    }
+
+    private String host(String gate) {
+        return hosts.computeIfAbsent(gate, url -> {
+            String host = URI.create(url).getHost();
+            return host != null ? host : url;
+        });
+    }
+}
@@ -0,0 +1,105 @@
+package ru.smsaero.micrometer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MicrometerMetricsTest {
+    private static final String GATE = "https://gate.smsaero.ru/v2/";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void publishesCallsWithTheirOutcome() {
+        MicrometerMetrics metrics = MicrometerMetrics.create(registry, Tags.of("client", "otp"));
+
+        metrics.onCallStart("sms/send");
+        assertEquals(1, active("sms/send", "client", "otp"));
+        metrics.onCallEnd("sms/send", TimeUnit.MILLISECONDS.toNanos(7), null);
+        metrics.onCallStart("sms/send");
+        metrics.onCallEnd("sms/send", TimeUnit.MILLISECONDS.toNanos(3), new IOException("refused"));
+
+        assertEquals(0, active("sms/send", "client", "otp"));
+        Timer success = registry.get("smsaero.calls")
+            .tags("client", "otp", "method", "sms/send", "outcome", "SUCCESS", "exception", "none")
+            .timer();
+        assertEquals(1, success.count());
+        assertEquals(7, success.totalTime(TimeUnit.MILLISECONDS), 0.001);
+        Timer failure = registry.get("smsaero.calls")
+            .tags("client", "otp", "method", "sms/send", "outcome", "ERROR", "exception", "IOException")
+            .timer();
+        assertEquals(1, failure.count());
+        assertEquals(3, failure.totalTime(TimeUnit.MILLISECONDS), 0.001);
+    }
+
+    @Test
+    void publishesExchangesAndCountersByGateHost() {
+        MicrometerMetrics metrics = MicrometerMetrics.create(registry);
+
+        metrics.onExchange("balance", GATE, 200, TimeUnit.MILLISECONDS.toNanos(5), 120, 80);
+        metrics.onExchange("balance", GATE, 200, TimeUnit.MILLISECONDS.toNanos(5), 120, 80);
+        metrics.onExchange("balance", GATE, 0, TimeUnit.MILLISECONDS.toNanos(1), 120, 0);
+        metrics.onFailover("balance", GATE);
+        metrics.onPlainHttpFallback("balance", GATE);
+        metrics.onRetry("balance", 1);
+        metrics.onRetry("balance", 2);
+
+        assertEquals(2, registry.get("smsaero.exchanges")
+            .tags("method", "balance", "gate", "gate.smsaero.ru", "status", "200").timer().count());
+        assertEquals(1, registry.get("smsaero.exchanges")
+            .tags("method", "balance", "gate", "gate.smsaero.ru", "status", "NONE").timer().count());
+        assertEquals(360, counter("smsaero.bytes.sent", "gate", "gate.smsaero.ru").count());
+        assertEquals(160, counter("smsaero.bytes.received", "gate", "gate.smsaero.ru").count());
+        assertEquals(1, counter("smsaero.failovers", "gate", "gate.smsaero.ru").count());
+        assertEquals(1, counter("smsaero.http.fallbacks", "gate", "gate.smsaero.ru").count());
+        Counter retries = registry.get("smsaero.retries").tags("method", "balance").counter();
+        assertEquals(2, retries.count());
+        assertNull(retries.getId().getTag("gate"));
+    }
+
+    @Test
+    void instancesOnOneRegistryShareTheActiveCallsGauge() {
+        MicrometerMetrics first = MicrometerMetrics.create(registry, Tags.of("client", "otp"));
+        MicrometerMetrics second = MicrometerMetrics.create(registry, Tags.of("client", "otp"));
+        MicrometerMetrics bulk = MicrometerMetrics.create(registry, Tags.of("client", "bulk"));
+
+        first.onCallStart("sms/send");
+        second.onCallStart("sms/send");
+        second.onCallStart("sms/send");
+        bulk.onCallStart("sms/send");
+
+        assertEquals(3, active("sms/send", "client", "otp"));
+        assertEquals(1, active("sms/send", "client", "bulk"));
+        assertEquals(2, registry.find("smsaero.calls.active").gauges().size());
+
+        first.onCallEnd("sms/send", 1, null);
+        second.onCallEnd("sms/send", 1, null);
+        assertEquals(1, active("sms/send", "client", "otp"));
+        assertEquals(2, registry.get("smsaero.calls")
+            .tags("client", "otp", "method", "sms/send", "outcome", "SUCCESS", "exception", "none")
+            .timer()
+            .count());
+    }
+
+    @Test
+    void rejectsMissingRegistryOrTags() {
+        assertThrows(IllegalArgumentException.class, () -> MicrometerMetrics.create(null));
+        assertThrows(IllegalArgumentException.class, () -> MicrometerMetrics.create(registry, null));
+    }
+
+    private double active(String method, String... tags) {
+        return registry.get("smsaero.calls.active").tags(Tags.of(tags).and("method", method)).gauge().value();
+    }
+
+    private Counter counter(String name, String... tags) {
+        return registry.get(name).tags(Tags.of(tags).and("method", "balance")).counter();
+    }
+}
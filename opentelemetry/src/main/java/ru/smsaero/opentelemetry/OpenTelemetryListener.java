@@ -0,0 +1,205 @@
+package ru.smsaero.opentelemetry;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+
+import ru.smsaero.RequestListener;
+import ru.smsaero.SmsAero;
+
+/**
+ * Turns client calls into OpenTelemetry spans. Each call is a {@code smsaero <method>} client span, a child of the
+ * span current on the thread that made the call, with a {@code POST} child span per HTTP exchange with a gate:
+ * <ul>
+ *   <li>call spans carry {@code smsaero.method} and {@code smsaero.call_id}, a {@code body_parsed} event and, when
+ *       the call failed, the exception and an error status;</li>
+ *   <li>exchange spans carry {@code http.request.method}, {@code url.full} (the gate URL), {@code server.address}
+ *       and {@code http.response.status_code}, {@code connected} and {@code first_byte} events when the transport
+ *       reports them, and the exception of a failed attempt.</li>
+ * </ul>
+ *
+ * <p>Spans are timed with the listener's {@link System#nanoTime()} timestamps. Calls are matched by correlation id,
+ * so ids given with {@code RequestOptions.correlationId} must not be reused by calls in flight at the same time.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * SmsAero client = SmsAero.builder(email, apiKey)
+ *     .listener(OpenTelemetryListener.create(GlobalOpenTelemetry.get()))
+ *     .build();
+ * }</pre>
+ */
+public final class OpenTelemetryListener implements RequestListener {
+    static final AttributeKey<String> METHOD = AttributeKey.stringKey("smsaero.method");
+    static final AttributeKey<String> CALL_ID = AttributeKey.stringKey("smsaero.call_id");
+    static final AttributeKey<String> HTTP_REQUEST_METHOD = AttributeKey.stringKey("http.request.method");
+    static final AttributeKey<String> URL_FULL = AttributeKey.stringKey("url.full");
+    static final AttributeKey<String> SERVER_ADDRESS = AttributeKey.stringKey("server.address");
+    static final AttributeKey<Long> HTTP_RESPONSE_STATUS_CODE = AttributeKey.longKey("http.response.status_code");
+
+    private static final int HTTP_SERVER_ERROR = 500;
+
+    private final Tracer tracer;
+    /** Wall-clock time of {@link #baseNanoTime}, to convert listener timestamps to span timestamps. */
+    private final long baseEpochNanos;
+    private final long baseNanoTime;
+    private final ConcurrentHashMap<String, CallSpans> calls = new ConcurrentHashMap<>();
+
+    private OpenTelemetryListener(Tracer tracer) {
+        this.tracer = tracer;
+        Instant now = Instant.now();
+        this.baseNanoTime = System.nanoTime();
+        this.baseEpochNanos = TimeUnit.SECONDS.toNanos(now.getEpochSecond()) + now.getNano();
+    }
+
+    /**
+     * @param openTelemetry OpenTelemetry instance to get the tracer from
+     * @return new listener
+     */
+    public static OpenTelemetryListener create(OpenTelemetry openTelemetry) {
+        if (openTelemetry == null) {
+            throw new IllegalArgumentException("openTelemetry cannot be null");
+        }
+        return new OpenTelemetryListener(openTelemetry.getTracer("ru.smsaero", SmsAero.VERSION));
+    }
+
+    @Override
+    public void onStart(String callId, String method, long nanoTime) {
+        Span span = tracer.spanBuilder("smsaero " + method)
+            .setSpanKind(SpanKind.CLIENT)
+            .setParent(Context.current())
+            .setStartTimestamp(epochNanos(nanoTime), TimeUnit.NANOSECONDS)
+            .setAttribute(METHOD, method)
+            .setAttribute(CALL_ID, callId)
+            .startSpan();
+        calls.put(callId, new CallSpans(span));
+    }
+
+    @Override
+    public void onGateChosen(String callId, String method, String gate, long nanoTime) {
+        CallSpans call = calls.get(callId);
+        if (call == null) {
+            return;
+        }
+        Span exchange = tracer.spanBuilder("POST")
+            .setSpanKind(SpanKind.CLIENT)
+            .setParent(Context.root().with(call.span))
+            .setStartTimestamp(epochNanos(nanoTime), TimeUnit.NANOSECONDS)
+            .setAttribute(HTTP_REQUEST_METHOD, "POST")
+            .setAttribute(URL_FULL, gate)
+            .setAttribute(SERVER_ADDRESS, host(gate))
+            .startSpan();
+        Span previous = call.exchanges.put(gate, exchange);
+        if (previous != null) {
+            // An attempt that failed on the last gate, retried by the retry policy.
+            previous.setStatus(StatusCode.ERROR);
+            previous.end(epochNanos(nanoTime), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void onConnected(String callId, String gate, long nanoTime) {
+        Span exchange = exchange(callId, gate);
+        if (exchange != null) {
+            exchange.addEvent("connected", epochNanos(nanoTime), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void onFirstByte(String callId, String gate, long nanoTime) {
+        Span exchange = exchange(callId, gate);
+        if (exchange != null) {
+            exchange.addEvent("first_byte", epochNanos(nanoTime), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void onResponse(String callId, String gate, int statusCode, long nanoTime) {
+        CallSpans call = calls.get(callId);
+        Span exchange = call != null ? call.exchanges.remove(gate) : null;
+        if (exchange == null) {
+            return;
+        }
+        exchange.setAttribute(HTTP_RESPONSE_STATUS_CODE, (long) statusCode);
+        if (statusCode >= HTTP_SERVER_ERROR) {
+            exchange.setStatus(StatusCode.ERROR);
+        }
+        exchange.end(epochNanos(nanoTime), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void onBodyParsed(String callId, String method, long nanoTime) {
+        CallSpans call = calls.get(callId);
+        if (call != null) {
+            call.span.addEvent("body_parsed", epochNanos(nanoTime), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void onFailover(String callId, String method, String gate, Throwable error, long nanoTime) {
+        CallSpans call = calls.get(callId);
+        Span exchange = call != null ? call.exchanges.remove(gate) : null;
+        if (exchange != null) {
+            fail(exchange, error, nanoTime);
+        }
+    }
+
+    @Override
+    public void onFinish(String callId, String method, Throwable error, long nanoTime) {
+        CallSpans call = calls.remove(callId);
+        if (call == null) {
+            return;
+        }
+        // Exchanges without a response, e.g. the last gate's network error or a hedged request that lost.
+        call.exchanges.forEach((gate, exchange) -> {
+            if (error != null) {
+                fail(exchange, error, nanoTime);
+            } else {
+                exchange.end(epochNanos(nanoTime), TimeUnit.NANOSECONDS);
+            }
+        });
+        if (error != null) {
+            fail(call.span, error, nanoTime);
+        } else {
+            call.span.end(epochNanos(nanoTime), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Span exchange(String callId, String gate) {
+        CallSpans call = calls.get(callId);
+        return call != null ? call.exchanges.get(gate) : null;
+    }
+
+    private void fail(Span span, Throwable error, long nanoTime) {
+        span.recordException(error);
+        span.setStatus(StatusCode.ERROR, String.valueOf(error.getMessage()));
+        span.end(epochNanos(nanoTime), TimeUnit.NANOSECONDS);
+    }
+
+    private long epochNanos(long nanoTime) {
+        return baseEpochNanos + (nanoTime - baseNanoTime);
+    }
+
+    private static String host(String gate) {
+        String host = URI.create(gate).getHost();
+        return host != null ? host : gate;
+    }
+
+    private static final class CallSpans {
+        final Span span;
+        /** Exchanges in flight by gate URL; a hedged call has two. */
+        final ConcurrentHashMap<String, Span> exchanges = new ConcurrentHashMap<>();
+
+        CallSpans(Span span) {
+            this.span = span;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package ru.smsaero.opentelemetry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+
+import ru.smsaero.RequestOptions;
+import ru.smsaero.SmsAero;
+import ru.smsaero.StubGate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenTelemetryListenerTest {
+    private final InMemorySpanExporter exporter = InMemorySpanExporter.create();
+    private final OpenTelemetrySdk sdk = OpenTelemetrySdk.builder()
+        .setTracerProvider(SdkTracerProvider.builder().addSpanProcessor(SimpleSpanProcessor.create(exporter)).build())
+        .build();
+
+    @AfterEach
+    void close() {
+        sdk.close();
+    }
+
+    @Test
+    void tracesACallWithItsExchange() throws Exception {
+        try (StubGate gate = StubGate.start()) {
+            client(List.of(gate.url())).with(RequestOptions.builder().correlationId("order-17").build()).Balance();
+
+            List<SpanData> spans = exporter.getFinishedSpanItems();
+            assertEquals(2, spans.size());
+            SpanData exchange = spans.get(0);
+            SpanData call = spans.get(1);
+            assertEquals("smsaero balance", call.getName());
+            assertEquals("order-17", call.getAttributes().get(OpenTelemetryListener.CALL_ID));
+            assertTrue(call.getEvents().stream().map(EventData::getName).anyMatch("body_parsed"::equals));
+            assertEquals("POST", exchange.getName());
+            assertEquals(call.getSpanId(), exchange.getParentSpanId());
+            assertEquals(gate.url(), exchange.getAttributes().get(OpenTelemetryListener.URL_FULL));
+            assertEquals(200L, exchange.getAttributes().get(OpenTelemetryListener.HTTP_RESPONSE_STATUS_CODE));
+            assertTrue(exchange.getEvents().stream().map(EventData::getName).anyMatch("first_byte"::equals));
+            assertTrue(exchange.getStartEpochNanos() >= call.getStartEpochNanos());
+            assertTrue(exchange.getEndEpochNanos() <= call.getEndEpochNanos());
+        }
+    }
+
+    @Test
+    void marksFailedExchangesAndCalls() throws Exception {
+        try (StubGate gate = StubGate.start()) {
+            String dead = "http://127.0.0.1:1/v2/";
+            client(List.of(dead, gate.url())).Balance();
+            gate.failWith(503);
+            assertThrows(Exception.class, client(List.of(gate.url()))::Balance);
+
+            List<SpanData> spans = exporter.getFinishedSpanItems();
+            assertEquals(5, spans.size());
+            assertEquals(dead, spans.get(0).getAttributes().get(OpenTelemetryListener.URL_FULL));
+            assertEquals(StatusCode.ERROR, spans.get(0).getStatus().getStatusCode());
+            assertEquals(StatusCode.UNSET, spans.get(2).getStatus().getStatusCode());
+            assertEquals(503L, spans.get(3).getAttributes().get(OpenTelemetryListener.HTTP_RESPONSE_STATUS_CODE));
+            assertEquals(StatusCode.ERROR, spans.get(3).getStatus().getStatusCode());
+            assertEquals(StatusCode.ERROR, spans.get(4).getStatus().getStatusCode());
+        }
+    }
+
+    private SmsAero client(List<String> gateUrls) {
+        return SmsAero.builder("e@e.com", "key")
+            .gateUrls(gateUrls)
+            .listener(OpenTelemetryListener.create(sdk))
+            .build();
+    }
+}
@@ -0,0 +1,42 @@
+package ru.smsaero;
+
+import org.json.simple.parser.ParseException;
+
+/**
+ * Account balance as returned by {@code balance}.
+ */
+public final class BalanceResult {
+    static final JsonReader.Decoder<BalanceResult> DECODER = BalanceResult::read;
+
+    private static final JsonReader.Names NAMES = JsonReader.Names.of("balance");
+
+    private final double balance;
+
+    private BalanceResult(double balance) {
+        this.balance = balance;
+    }
+
+    static BalanceResult read(JsonReader reader) throws ParseException {
+        double balance = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.selectName(NAMES) == 0) {
+                balance = reader.nextDouble();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new BalanceResult(balance);
+    }
+
+    /** @return account balance */
+    public double balance() {
+        return balance;
+    }
+
+    @Override
+    public String toString() {
+        return "BalanceResult{balance=" + balance + "}";
+    }
+}
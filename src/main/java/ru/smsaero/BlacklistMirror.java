@@ -0,0 +1,331 @@
+package ru.smsaero;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Local copy of the account blacklist, checked before sending so that messages to blacklisted numbers fail with
+ * {@link BlacklistedNumberException} without a round-trip and a gate rejection.
+ *
+ * <p>{@link #load()} fetches the whole blacklist through {@code blacklist/list}, page by page; afterwards
+ * {@code BlackListAdd} and {@code BlackListDelete} calls of the same client keep the copy up to date. Changes made
+ * elsewhere, e.g. in the web cabinet, are picked up by the next {@link #load()}.
+ *
+ * <p>Numbers are held as primitive {@code long}s in an open-addressing table behind a Bloom filter, so a check of
+ * a number that is not blacklisted, the common case, usually reads a few words of the filter and nothing else.
+ * Checks never lock: every change publishes a new table. That makes a change cost a copy of the table, which
+ * suits a blacklist that is read on every send and changed rarely. {@code sms/send}, {@code sms/testsend} and
+ * {@code viber/send} are checked, including the sends of a {@link BulkSender}.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * BlacklistMirror blacklist = BlacklistMirror.create();
+ * SmsAero client = SmsAero.builder(email, apiKey).blacklistMirror(blacklist).build();
+ * blacklist.load();
+ * }</pre>
+ */
+public final class BlacklistMirror {
+    private static final Set<String> SEND_METHODS = Set.of("sms/send", "sms/testsend", "viber/send");
+
+    private final AtomicReference<Table> table = new AtomicReference<>(Table.EMPTY);
+    private final LongAdder rejected = new LongAdder();
+    private final Object loadLock = new Object();
+    /** Changes made while a load is running; replayed on the loaded table. Guarded by {@code this}. */
+    private List<long[]> changesDuringLoad;
+    private volatile SmsAero client;
+
+    private BlacklistMirror() {
+    }
+
+    /**
+     * Creates an empty mirror; pass it to {@link SmsAero.Builder#blacklistMirror(BlacklistMirror)} and
+     * {@link #load()} it.
+     *
+     * @return new mirror
+     */
+    public static BlacklistMirror create() {
+        return new BlacklistMirror();
+    }
+
+    /**
+     * Replaces the mirror with the current blacklist, fetched page by page. Sends are checked against the previous
+     * contents until the load completes.
+     *
+     * @throws IOException           if a page cannot be fetched; the previous contents are kept
+     * @throws IllegalStateException if the mirror is not used by a client
+     */
+    public void load() throws IOException {
+        SmsAero client = this.client;
+        if (client == null) {
+            throw new IllegalStateException("blacklistMirror is not used by a client");
+        }
+        synchronized (loadLock) {
+            synchronized (this) {
+                changesDuringLoad = new ArrayList<>();
+            }
+            try {
+                Table loaded = fetch(client);
+                synchronized (this) {
+                    for (long[] change : changesDuringLoad) {
+                        loaded = change[0] > 0 ? loaded.with(change[0], change[1]) : loaded.withoutId(change[1]);
+                    }
+                    table.set(loaded);
+                }
+            } finally {
+                synchronized (this) {
+                    changesDuringLoad = null;
+                }
+            }
+        }
+    }
+
+    private static Table fetch(SmsAero client) throws IOException {
+        long[] numbers = new long[16];
+        long[] ids = new long[16];
+        int count = 0;
+        try {
+            for (JSONObject entry : client.typed().BlackListListAll()) {
+                long number = key(entry.get("number"));
+                if (number <= 0) {
+                    continue;
+                }
+                if (count == numbers.length) {
+                    numbers = Arrays.copyOf(numbers, count * 2);
+                    ids = Arrays.copyOf(ids, count * 2);
+                }
+                numbers[count] = number;
+                ids[count] = id(entry.get("id"));
+                count++;
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return Table.of(numbers, ids, count);
+    }
+
+    /**
+     * @param number Phone number (format 70000000000, an optional leading {@code +} is ignored)
+     * @return true if the number is blacklisted
+     */
+    public boolean contains(String number) {
+        long key = key(number);
+        return key > 0 && table.get().contains(key);
+    }
+
+    /**
+     * @param number Phone number as digits, e.g. 70000000000L
+     * @return true if the number is blacklisted
+     */
+    public boolean contains(long number) {
+        return number > 0 && table.get().contains(number);
+    }
+
+    /** @return number of blacklisted numbers in the mirror */
+    public int size() {
+        return table.get().size;
+    }
+
+    /** @return number of sends rejected because of the mirror */
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    /** Binds the mirror to the client it loads through; a blacklist belongs to one account. */
+    void attach(SmsAero client) {
+        synchronized (this) {
+            if (this.client != null) {
+                throw new IllegalArgumentException("blacklistMirror is already used by another client");
+            }
+            this.client = client;
+        }
+    }
+
+    /** Releases the binding of a client whose build failed. */
+    synchronized void detach() {
+        client = null;
+    }
+
+    /**
+     * @return the exception to fail a call with if it sends to a blacklisted number, or null to send it
+     */
+    BlacklistedNumberException check(String method, Map<String, ?> form) {
+        if (form == null || !SEND_METHODS.contains(method)) {
+            return null;
+        }
+        Object number = form.get("number");
+        if (!(number instanceof String) || !contains((String) number)) {
+            return null;
+        }
+        rejected.increment();
+        return new BlacklistedNumberException(method, (String) number);
+    }
+
+    static boolean tracks(String method) {
+        return "blacklist/add".equals(method) || "blacklist/delete".equals(method);
+    }
+
+    /** Applies a successful {@code blacklist/add} or {@code blacklist/delete} call to the mirror. */
+    void afterCall(String method, Map<String, ?> form, byte[] body) {
+        if ("blacklist/add".equals(method)) {
+            long number = key(form.get("number"));
+            if (number <= 0) {
+                return;
+            }
+            long id = 0;
+            try {
+                Object data = ResponseDecoder.JSON.decode(body).get("data");
+                if (data instanceof JSONObject) {
+                    id = id(((JSONObject) data).get("id"));
+                }
+            } catch (IOException | ParseException ignored) {
+                // Mirrored without an id: only a load can remove the entry then.
+            }
+            change(number, id);
+        } else {
+            long id = id(form.get("id"));
+            if (id > 0) {
+                change(0, id);
+            }
+        }
+    }
+
+    /** Adds a number with its entry id, or removes the entry with the id if number is 0. */
+    private synchronized void change(long number, long id) {
+        Table current = table.get();
+        table.set(number > 0 ? current.with(number, id) : current.withoutId(id));
+        if (changesDuringLoad != null) {
+            changesDuringLoad.add(new long[] {number, id});
+        }
+    }
+
+    /** @return the number as a long, or -1 if it is not a number */
+    private static long key(Object number) {
+        if (number instanceof Long) {
+            return (Long) number;
+        }
+        if (!(number instanceof String)) {
+            return -1;
+        }
+        String digits = (String) number;
+        return LookupCache.parseNumber(digits.startsWith("+") ? digits.substring(1) : digits);
+    }
+
+    private static long id(Object id) {
+        if (id instanceof Number) {
+            return ((Number) id).longValue();
+        }
+        try {
+            return id instanceof String ? Long.parseLong((String) id) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Immutable set of numbers with the ids of their blacklist entries: linear probing over {@code numbers}
+     * (0 marks an empty slot), behind a Bloom filter with {@value #BLOOM_BITS_PER_NUMBER} bits per number and
+     * {@value #BLOOM_HASHES} hashes, about 1% false positives.
+     */
+    private static final class Table {
+        static final int BLOOM_BITS_PER_NUMBER = 10;
+        static final int BLOOM_HASHES = 4;
+        static final Table EMPTY = of(new long[0], new long[0], 0);
+
+        final long[] numbers;
+        final long[] ids;
+        final long[] bloom;
+        final int mask;
+        final int bloomMask;
+        int size;
+
+        private Table(int count) {
+            int capacity = Integer.highestOneBit(Math.max(2, count * 2 - 1)) << 1;
+            int bloomBits = Math.max(64, Integer.highestOneBit(Math.max(1, count * BLOOM_BITS_PER_NUMBER - 1)) << 1);
+            this.numbers = new long[capacity];
+            this.ids = new long[capacity];
+            this.bloom = new long[bloomBits >>> 6];
+            this.mask = capacity - 1;
+            this.bloomMask = bloomBits - 1;
+        }
+
+        static Table of(long[] numbers, long[] ids, int count) {
+            Table table = new Table(count);
+            for (int i = 0; i < count; i++) {
+                table.put(numbers[i], ids[i]);
+            }
+            return table;
+        }
+
+        boolean contains(long number) {
+            long hash = LookupCache.mix(number);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                int bit = (h1 + i * h2) & bloomMask;
+                if ((bloom[bit >>> 6] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            for (int slot = h1 & mask; numbers[slot] != 0; slot = (slot + 1) & mask) {
+                if (numbers[slot] == number) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        Table with(long number, long id) {
+            Table copy = new Table(size + 1);
+            copy.putAll(this);
+            copy.put(number, id);
+            return copy;
+        }
+
+        Table withoutId(long id) {
+            Table copy = new Table(size);
+            for (int slot = 0; slot < numbers.length; slot++) {
+                if (numbers[slot] != 0 && ids[slot] != id) {
+                    copy.put(numbers[slot], ids[slot]);
+                }
+            }
+            return copy;
+        }
+
+        private void putAll(Table other) {
+            for (int slot = 0; slot < other.numbers.length; slot++) {
+                if (other.numbers[slot] != 0) {
+                    put(other.numbers[slot], other.ids[slot]);
+                }
+            }
+        }
+
+        private void put(long number, long id) {
+            long hash = LookupCache.mix(number);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            int slot = h1 & mask;
+            while (numbers[slot] != 0 && numbers[slot] != number) {
+                slot = (slot + 1) & mask;
+            }
+            if (numbers[slot] == 0) {
+                numbers[slot] = number;
+                size++;
+            }
+            ids[slot] = id;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                int bit = (h1 + i * h2) & bloomMask;
+                bloom[bit >>> 6] |= 1L << bit;
+            }
+        }
+    }
+}
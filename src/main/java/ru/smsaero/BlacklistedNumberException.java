@@ -0,0 +1,33 @@
+package ru.smsaero;
+
+import java.io.IOException;
+
+/**
+ * Thrown without any network I/O when a message is sent to a number found in the client's {@link BlacklistMirror}.
+ */
+public class BlacklistedNumberException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final String method;
+    private final String number;
+
+    /**
+     * @param method API method that was rejected
+     * @param number Blacklisted number
+     */
+    public BlacklistedNumberException(String method, String number) {
+        super("Number " + number + " is blacklisted");
+        this.method = method;
+        this.number = number;
+    }
+
+    /** @return API method that was rejected, e.g. "sms/send" */
+    public String getMethod() {
+        return method;
+    }
+
+    /** @return the blacklisted number */
+    public String getNumber() {
+        return number;
+    }
+}
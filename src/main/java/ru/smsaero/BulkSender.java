@@ -0,0 +1,247 @@
+package ru.smsaero;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.json.simple.JSONObject;
+
+/**
+ * Sends large batches of SMS through an {@link SmsAero} client with bounded concurrency.
+ *
+ * <p>Messages are pulled from the source one by one and sent through the client's asynchronous API. At most
+ * {@code maxInFlight} requests are outstanding at any time; when the window is full the calling thread blocks
+ * before pulling the next message, so a lazy source (a database cursor, a file reader) is never read ahead.
+ * Throughput grows with the window until it reaches the transport's per-gate limit
+ * (see {@link HttpClientTransport.Builder#maxRequestsPerGate(int)}) or the gate's own limits.
+ * With a {@link BlacklistMirror} on the client, messages to blacklisted numbers fail at once with
+ * {@link BlacklistedNumberException} and never take a request.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * BulkSender sender = BulkSender.builder(client).maxInFlight(128).build();
+ * BulkSender.Report report = sender.send(messages.iterator(), result -> {
+ *     if (!result.isSuccess()) {
+ *         log.warn("Failed to send to " + result.message().number(), result.error());
+ *     }
+ * });
+ * System.out.println(report);
+ * }</pre>
+ */
+public final class BulkSender {
+    /** Default number of concurrent requests. */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 32;
+
+    private final SmsAeroAsync api;
+    private final int maxInFlight;
+
+    private BulkSender(Builder builder) {
+        this.api = builder.client.async();
+        this.maxInFlight = builder.maxInFlight;
+    }
+
+    /**
+     * Creates a builder for a sender using the given client (or a client view with {@link RequestOptions}).
+     *
+     * @param client Client to send through
+     * @return new builder
+     * @throws IllegalArgumentException if client is null
+     */
+    public static Builder builder(SmsAero client) {
+        if (client == null) {
+            throw new IllegalArgumentException("client cannot be null");
+        }
+        return new Builder(client);
+    }
+
+    /**
+     * Sends all messages and waits until every request has completed.
+     *
+     * <p>{@code onResult} is called once per message, on the transport's threads, in completion order.
+     * It must be thread-safe and should not block; exceptions it throws are ignored.
+     *
+     * @param messages Messages to send
+     * @param onResult Callback for each message's outcome
+     * @return aggregate counters of the run
+     * @throws InterruptedException if the calling thread is interrupted; requests already in flight still
+     *                              complete and are reported to {@code onResult}
+     */
+    public Report send(Iterator<? extends SmsMessage> messages, Consumer<? super Result> onResult)
+            throws InterruptedException {
+        if (messages == null || onResult == null) {
+            throw new IllegalArgumentException("messages and onResult cannot be null");
+        }
+        Semaphore window = new Semaphore(maxInFlight);
+        LongAdder succeeded = new LongAdder();
+        LongAdder failed = new LongAdder();
+        long submitted = 0;
+        long start = System.nanoTime();
+        while (true) {
+            // Take the permit first, so no message is pulled from the iterator until it can be sent.
+            window.acquire();
+            if (!messages.hasNext()) {
+                window.release();
+                break;
+            }
+            SmsMessage message = messages.next();
+            submitted++;
+            submit(message).whenComplete((response, error) -> {
+                try {
+                    (error == null ? succeeded : failed).increment();
+                    onResult.accept(new Result(message, response, error == null ? null : Futures.unwrap(error)));
+                } catch (RuntimeException ignored) {
+                    // A failing callback must not stall the window.
+                } finally {
+                    window.release();
+                }
+            });
+        }
+        window.acquire(maxInFlight);
+        window.release(maxInFlight);
+        return new Report(submitted, succeeded.sum(), failed.sum(), Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * Sends all messages of a stream and waits until every request has completed.
+     * See {@link #send(Iterator, Consumer)}.
+     *
+     * @param messages Messages to send; consumed lazily and closed when done
+     * @param onResult Callback for each message's outcome
+     * @return aggregate counters of the run
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public Report send(Stream<? extends SmsMessage> messages, Consumer<? super Result> onResult)
+            throws InterruptedException {
+        try (Stream<? extends SmsMessage> stream = messages) {
+            return send(stream.iterator(), onResult);
+        }
+    }
+
+    private CompletableFuture<JSONObject> submit(SmsMessage message) {
+        try {
+            return api.SendSms(message.number(), message.text(), message.sign(),
+                message.dateToSend(), message.callbackUrl(), message.callbackFormat());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Outcome of a single message.
+     */
+    public static final class Result {
+        private final SmsMessage message;
+        private final JSONObject response;
+        private final Throwable error;
+
+        Result(SmsMessage message, JSONObject response, Throwable error) {
+            this.message = message;
+            this.response = response;
+            this.error = error;
+        }
+
+        /** @return the message this result belongs to */
+        public SmsMessage message() {
+            return message;
+        }
+
+        /** @return API response, or null if sending failed */
+        public JSONObject response() {
+            return response;
+        }
+
+        /** @return failure cause, or null if the message was sent */
+        public Throwable error() {
+            return error;
+        }
+
+        /** @return true if the gate accepted the message */
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    /**
+     * Aggregate counters of a {@link BulkSender#send} run.
+     */
+    public static final class Report {
+        private final long submitted;
+        private final long succeeded;
+        private final long failed;
+        private final Duration elapsed;
+
+        Report(long submitted, long succeeded, long failed, Duration elapsed) {
+            this.submitted = submitted;
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.elapsed = elapsed;
+        }
+
+        /** @return number of messages taken from the source */
+        public long submitted() {
+            return submitted;
+        }
+
+        /** @return number of messages accepted by the gate */
+        public long succeeded() {
+            return succeeded;
+        }
+
+        /** @return number of messages that failed */
+        public long failed() {
+            return failed;
+        }
+
+        /** @return wall-clock duration of the run */
+        public Duration elapsed() {
+            return elapsed;
+        }
+
+        /** @return completed messages per second */
+        public double throughput() {
+            long nanos = elapsed.toNanos();
+            return nanos == 0 ? 0 : (succeeded + failed) * 1_000_000_000.0 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Report{submitted=%d, succeeded=%d, failed=%d, elapsed=%dms, throughput=%.1f/s}",
+                submitted, succeeded, failed, elapsed.toMillis(), throughput());
+        }
+    }
+
+    /**
+     * Builder for {@link BulkSender}.
+     */
+    public static final class Builder {
+        private final SmsAero client;
+        private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+
+        private Builder(SmsAero client) {
+            this.client = client;
+        }
+
+        /**
+         * @param maxInFlight Maximum number of concurrent requests
+         * @return this builder
+         */
+        public Builder maxInFlight(int maxInFlight) {
+            if (maxInFlight < 1) {
+                throw new IllegalArgumentException("maxInFlight must be positive");
+            }
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * @return new sender
+         */
+        public BulkSender build() {
+            return new BulkSender(this);
+        }
+    }
+}
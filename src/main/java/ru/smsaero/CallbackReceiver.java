@@ -0,0 +1,456 @@
+package ru.smsaero;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Embedded HTTP endpoint for the delivery reports the gate sends to the {@code callbackUrl} of
+ * {@link SmsAero#SendSms(String, String, String, java.time.Instant, String, String)}, so delivery can be followed
+ * without polling {@code sms/status}.
+ *
+ * <p>Reports are accepted as a JSON object or array ({@code callbackFormat} "json") or as form or query
+ * parameters, with the field names of {@link SmsResult}. Each request is acknowledged with 200 before the
+ * listeners run, so slow listeners do not make the gate resend. A report repeating the id and status of one of the
+ * last {@code deduplicationWindow} reports is counted but not dispatched. Requests with a body over
+ * {@code maxBodySize} bytes are answered 413 and counted as rejected.
+ *
+ * <p>The endpoint has no authentication and listens on all interfaces unless a {@link Builder#host} is set: bind
+ * it to a trusted interface, or put it behind a reverse proxy that only lets the gate's requests through.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * DeliveryTracker tracker = DeliveryTracker.builder(client).backoff(Duration.ofMinutes(10), Duration.ofHours(1))
+ *     .build();
+ * CallbackReceiver receiver = CallbackReceiver.builder().port(8080).listener(tracker::report).build();
+ * tracker.track(client.typed().SendSms("70000000000", "Hello", "SMS Aero", null,
+ *     "https://example.com" + receiver.path(), "json"));
+ * }</pre>
+ */
+public final class CallbackReceiver implements AutoCloseable {
+    /** Default path of the endpoint. */
+    public static final String DEFAULT_PATH = "/smsaero/callback";
+    /** Default number of recent reports remembered for deduplication. */
+    public static final int DEFAULT_DEDUPLICATION_WINDOW = 100_000;
+    /** Default maximum size of a request body in bytes. */
+    public static final int DEFAULT_MAX_BODY_SIZE = 1 << 20;
+
+    private static final byte[] OK = "OK".getBytes(StandardCharsets.US_ASCII);
+    private static final int HTTP_PAYLOAD_TOO_LARGE = 413;
+
+    private final HttpServer server;
+    private final ExecutorService serverThreads;
+    private final Executor executor;
+    private final String path;
+    private final int maxBodySize;
+    private final List<Consumer<? super SmsResult>> listeners;
+    private final RecentReports recent;
+    private final LongAdder received = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final long startedAt = System.nanoTime();
+
+    private CallbackReceiver(Builder builder) throws IOException {
+        this.executor = builder.executor;
+        this.path = builder.path;
+        this.maxBodySize = builder.maxBodySize;
+        this.listeners = new CopyOnWriteArrayList<>(builder.listeners);
+        this.recent = new RecentReports(builder.deduplicationWindow);
+        AtomicInteger counter = new AtomicInteger();
+        this.serverThreads = Executors.newFixedThreadPool(builder.threads, r -> {
+            Thread t = new Thread(r, "smsaero-callback-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        InetSocketAddress address = builder.host == null
+            ? new InetSocketAddress(builder.port) : new InetSocketAddress(builder.host, builder.port);
+        try {
+            this.server = HttpServer.create(address, 0);
+        } catch (IOException e) {
+            serverThreads.shutdown();
+            throw e;
+        }
+        server.setExecutor(serverThreads);
+        server.createContext(path, this::handle);
+        server.start();
+    }
+
+    /**
+     * Creates a builder for a receiver.
+     *
+     * @return new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Registers a listener for deduplicated delivery reports.
+     *
+     * @param listener Called once per report on the receiver's executor; exceptions it throws are ignored
+     * @return this receiver
+     * @throws IllegalArgumentException if listener is null
+     */
+    public CallbackReceiver addListener(Consumer<? super SmsResult> listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener cannot be null");
+        }
+        listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * @param listener Listener registered earlier
+     * @return true if the listener was registered
+     */
+    public boolean removeListener(Consumer<? super SmsResult> listener) {
+        return listeners.remove(listener);
+    }
+
+    /** @return local address the receiver listens on */
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    /** @return path of the endpoint, to be appended to the public URL passed as {@code callbackUrl} */
+    public String path() {
+        return path;
+    }
+
+    /** @return counters since the receiver started */
+    public Stats stats() {
+        return new Stats(received.sum(), duplicates.sum(), rejected.sum(),
+            Duration.ofNanos(System.nanoTime() - startedAt));
+    }
+
+    /** Stops accepting reports. Reports already acknowledged are still dispatched. */
+    @Override
+    public void close() {
+        server.stop(0);
+        serverThreads.shutdown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!"POST".equals(method) && !"GET".equals(method)) {
+                respond(exchange, 405);
+                return;
+            }
+            byte[] body = exchange.getRequestBody().readNBytes(maxBodySize + 1);
+            if (body.length > maxBodySize) {
+                rejected.increment();
+                // The rest of the body is not read, so the connection cannot be reused.
+                exchange.getResponseHeaders().set("Connection", "close");
+                respond(exchange, HTTP_PAYLOAD_TOO_LARGE);
+                return;
+            }
+            List<SmsResult> reports;
+            try {
+                reports = parse(body, exchange.getRequestURI().getRawQuery());
+            } catch (ParseException | IllegalArgumentException e) {
+                rejected.increment();
+                respond(exchange, 400);
+                return;
+            }
+            List<SmsResult> fresh = new ArrayList<>(reports.size());
+            for (SmsResult sms : reports) {
+                received.increment();
+                if (recent.add(sms)) {
+                    fresh.add(sms);
+                } else {
+                    duplicates.increment();
+                }
+            }
+            respond(exchange, 200);
+            for (SmsResult sms : fresh) {
+                dispatch(sms);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status) throws IOException {
+        byte[] body = status == 200 ? OK : new byte[0];
+        exchange.sendResponseHeaders(status, body.length > 0 ? body.length : -1);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /** Parses a JSON object or array, form-encoded body, or query parameters into reports with an id. */
+    static List<SmsResult> parse(byte[] body, String query) throws ParseException {
+        int start = 0;
+        while (start < body.length && body[start] <= ' ') {
+            start++;
+        }
+        List<SmsResult> reports = new ArrayList<>(1);
+        if (start < body.length && (body[start] == '{' || body[start] == '[')) {
+            JsonReader reader = new JsonReader(body);
+            if (reader.peek() == JsonReader.Token.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    reports.add(SmsResult.read(reader));
+                }
+                reader.endArray();
+            } else {
+                reports.add(SmsResult.read(reader));
+            }
+        } else {
+            String form = start < body.length ? new String(body, StandardCharsets.UTF_8) : query;
+            reports.add(SmsResult.fromForm(decodeForm(form)));
+        }
+        for (SmsResult sms : reports) {
+            if (sms.id() <= 0) {
+                throw new IllegalArgumentException("report without id");
+            }
+        }
+        return reports;
+    }
+
+    private static Map<String, String> decodeForm(String form) {
+        Map<String, String> fields = new HashMap<>();
+        if (form == null) {
+            return fields;
+        }
+        for (String pair : form.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                fields.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return fields;
+    }
+
+    private void dispatch(SmsResult sms) {
+        try {
+            executor.execute(() -> {
+                for (Consumer<? super SmsResult> listener : listeners) {
+                    try {
+                        listener.accept(sms);
+                    } catch (RuntimeException ignored) {
+                        // A failing listener must not affect the others.
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+        }
+    }
+
+    /** Id and status of the most recent reports, evicted oldest first. */
+    private static final class RecentReports {
+        private final Map<Long, Boolean> keys;
+
+        RecentReports(int capacity) {
+            this.keys = new LinkedHashMap<>(Math.min(capacity, 1024) * 2, 0.75f) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        /** @return false if the report was seen recently */
+        synchronized boolean add(SmsResult sms) {
+            // Statuses fit in 4 bits; ids stay far below 2^59.
+            return keys.put((sms.id() << 4) | (sms.status() & 0xF), Boolean.TRUE) == null;
+        }
+    }
+
+    /**
+     * Counters of a {@link CallbackReceiver}.
+     */
+    public static final class Stats {
+        private final long received;
+        private final long duplicates;
+        private final long rejected;
+        private final Duration uptime;
+
+        Stats(long received, long duplicates, long rejected, Duration uptime) {
+            this.received = received;
+            this.duplicates = duplicates;
+            this.rejected = rejected;
+            this.uptime = uptime;
+        }
+
+        /** @return number of well-formed reports received, duplicates included */
+        public long received() {
+            return received;
+        }
+
+        /** @return number of reports dropped as repeats */
+        public long duplicates() {
+            return duplicates;
+        }
+
+        /** @return number of malformed or oversized requests, plus reports the executor refused */
+        public long rejected() {
+            return rejected;
+        }
+
+        /** @return time since the receiver started */
+        public Duration uptime() {
+            return uptime;
+        }
+
+        /** @return received reports per second since the receiver started */
+        public double throughput() {
+            long nanos = uptime.toNanos();
+            return nanos == 0 ? 0 : received * 1_000_000_000.0 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Stats{received=%d, duplicates=%d, rejected=%d, uptime=%dms, throughput=%.1f/s}",
+                received, duplicates, rejected, uptime.toMillis(), throughput());
+        }
+    }
+
+    /**
+     * Builder for {@link CallbackReceiver}.
+     */
+    public static final class Builder {
+        private String host;
+        private int port;
+        private String path = DEFAULT_PATH;
+        private int threads = 2;
+        private Executor executor = Runnable::run;
+        private int deduplicationWindow = DEFAULT_DEDUPLICATION_WINDOW;
+        private int maxBodySize = DEFAULT_MAX_BODY_SIZE;
+        private final List<Consumer<? super SmsResult>> listeners = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * @param host Host name or address to bind to (default: all interfaces)
+         * @return this builder
+         */
+        public Builder host(String host) {
+            SmsAero.requireNonBlank(host, "host");
+            this.host = host;
+            return this;
+        }
+
+        /**
+         * @param port Port to listen on, 0 (default) for any free port
+         * @return this builder
+         */
+        public Builder port(int port) {
+            if (port < 0 || port > 65535) {
+                throw new IllegalArgumentException("port must be between 0 and 65535");
+            }
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * @param path Path of the endpoint, starting with "/"
+         * @return this builder
+         */
+        public Builder path(String path) {
+            if (path == null || !path.startsWith("/")) {
+                throw new IllegalArgumentException("path must start with /");
+            }
+            this.path = path;
+            return this;
+        }
+
+        /**
+         * @param threads Number of threads accepting requests
+         * @return this builder
+         */
+        public Builder threads(int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("threads must be positive");
+            }
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * @param executor Executor running the listeners (default: the thread that accepted the request)
+         * @return this builder
+         */
+        public Builder executor(Executor executor) {
+            if (executor == null) {
+                throw new IllegalArgumentException("executor cannot be null");
+            }
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * @param reports Number of recent reports remembered to drop repeats, 0 to dispatch every report
+         * @return this builder
+         */
+        public Builder deduplicationWindow(int reports) {
+            if (reports < 0) {
+                throw new IllegalArgumentException("deduplicationWindow must not be negative");
+            }
+            this.deduplicationWindow = reports;
+            return this;
+        }
+
+        /**
+         * @param bytes Largest request body accepted; larger requests are answered 413
+         * @return this builder
+         */
+        public Builder maxBodySize(int bytes) {
+            if (bytes < 1 || bytes == Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("maxBodySize must be between 1 and " + (Integer.MAX_VALUE - 1));
+            }
+            this.maxBodySize = bytes;
+            return this;
+        }
+
+        /**
+         * @param listener Listener for deduplicated delivery reports, see {@link CallbackReceiver#addListener}
+         * @return this builder
+         */
+        public Builder listener(Consumer<? super SmsResult> listener) {
+            if (listener == null) {
+                throw new IllegalArgumentException("listener cannot be null");
+            }
+            listeners.add(listener);
+            return this;
+        }
+
+        /**
+         * Binds the port and starts accepting reports.
+         *
+         * @return new receiver
+         * @throws IOException if the port cannot be bound
+         */
+        public CallbackReceiver build() throws IOException {
+            return new CallbackReceiver(this);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package ru.smsaero;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Circuit breakers keyed by gate and API method.
+ *
+ * <p>Each breaker starts {@link State#CLOSED}. After {@link Builder#failureThreshold} consecutive failures
+ * (network errors, timeouts, HTTP 5xx) it opens: calls for that method skip the gate without any network I/O, and
+ * if every gate is open the call fails immediately with {@link CircuitOpenException}. After
+ * {@link Builder#openDuration} the breaker lets {@link Builder#halfOpenCalls} trial calls through
+ * ({@link State#HALF_OPEN}); a success closes it again, a failure re-opens it.
+ *
+ * <p>Breakers are lock-free. State changes are reported to the {@link Listener}, if one is set.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * CircuitBreaker breaker = CircuitBreaker.builder()
+ *     .failureThreshold(3)
+ *     .openDuration(Duration.ofSeconds(10))
+ *     .listener((gate, method, from, to) -> log.warn("{} {}: {} -> {}", gate, method, from, to))
+ *     .build();
+ * SmsAero client = SmsAero.builder(email, apiKey).circuitBreaker(breaker).build();
+ * }</pre>
+ */
+public final class CircuitBreaker {
+    /**
+     * Breaker state.
+     */
+    public enum State {
+        /** Calls go through; failures are counted. */
+        CLOSED,
+        /** Calls are rejected without network I/O. */
+        OPEN,
+        /** A limited number of trial calls go through to decide whether to close again. */
+        HALF_OPEN
+    }
+
+    /**
+     * Receives breaker state changes. Called on the thread that caused the change, so it should return quickly.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * @param gate   Gate URL, e.g. "https://gate.smsaero.ru/v2/"
+         * @param method API method, e.g. "sms/send"
+         * @param from   Previous state
+         * @param to     New state
+         */
+        void onStateChange(String gate, String method, State from, State to);
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final Listener listener;
+    private final ConcurrentMap<String, Breaker> breakers = new ConcurrentHashMap<>();
+
+    private CircuitBreaker(Builder builder) {
+        this.failureThreshold = builder.failureThreshold;
+        this.openNanos = builder.openDuration.toNanos();
+        this.halfOpenCalls = builder.halfOpenCalls;
+        this.listener = builder.listener;
+    }
+
+    /**
+     * Creates circuit breakers with default settings.
+     *
+     * @return new circuit breakers
+     */
+    public static CircuitBreaker create() {
+        return builder().build();
+    }
+
+    /**
+     * Creates a builder for circuit breakers with custom settings.
+     *
+     * @return new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the current state of the breaker for a gate and method.
+     *
+     * @param gate   Gate URL
+     * @param method API method
+     * @return breaker state; {@link State#CLOSED} if the pair has not been used yet
+     */
+    public State state(String gate, String method) {
+        Breaker breaker = breakers.get(gate + method);
+        return breaker != null ? breaker.state.get() : State.CLOSED;
+    }
+
+    /** Returns false if the call must not be sent to the gate. */
+    boolean tryAcquire(String gate, String method) {
+        return breaker(gate, method).tryAcquire(System.nanoTime());
+    }
+
+    void onSuccess(String gate, String method) {
+        breaker(gate, method).onSuccess();
+    }
+
+    void onFailure(String gate, String method) {
+        breaker(gate, method).onFailure(System.nanoTime());
+    }
+
+    /** Gives back the trial permit of a call that was cancelled before its outcome was known. */
+    void onCancel(String gate, String method) {
+        breaker(gate, method).onCancel();
+    }
+
+    private Breaker breaker(String gate, String method) {
+        // Gate URLs end with '/', so gate + method is the endpoint URL and is unique.
+        String key = gate + method;
+        Breaker breaker = breakers.get(key);
+        return breaker != null ? breaker : breakers.computeIfAbsent(key, k -> new Breaker(gate, method));
+    }
+
+    private final class Breaker {
+        private final String gate;
+        private final String method;
+        private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger trialPermits = new AtomicInteger();
+        private volatile long openedAt;
+
+        Breaker(String gate, String method) {
+            this.gate = gate;
+            this.method = method;
+        }
+
+        boolean tryAcquire(long now) {
+            State current = state.get();
+            if (current == State.CLOSED) {
+                return true;
+            }
+            if (current == State.OPEN) {
+                if (now - openedAt < openNanos) {
+                    return false;
+                }
+                // Only the thread that moves the breaker to half-open hands out the trial permits.
+                if (state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+                    trialPermits.set(halfOpenCalls);
+                    notifyListener(State.OPEN, State.HALF_OPEN);
+                }
+            }
+            while (true) {
+                int permits = trialPermits.get();
+                if (permits <= 0 || state.get() != State.HALF_OPEN) {
+                    return state.get() == State.CLOSED;
+                }
+                if (trialPermits.compareAndSet(permits, permits - 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void onSuccess() {
+            if (failures.get() != 0) {
+                failures.set(0);
+            }
+            transition(State.HALF_OPEN, State.CLOSED);
+        }
+
+        void onCancel() {
+            while (true) {
+                int permits = trialPermits.get();
+                if (state.get() != State.HALF_OPEN || permits >= halfOpenCalls
+                        || trialPermits.compareAndSet(permits, permits + 1)) {
+                    return;
+                }
+            }
+        }
+
+        void onFailure(long now) {
+            State current = state.get();
+            if (current == State.OPEN) {
+                // A late failure of a call sent before the breaker opened must not extend the open period.
+                return;
+            }
+            if (current == State.HALF_OPEN) {
+                openedAt = now;
+                trialPermits.set(0);
+                transition(State.HALF_OPEN, State.OPEN);
+            } else if (failures.incrementAndGet() >= failureThreshold) {
+                // openedAt is written before the state so that readers of OPEN never see a stale timestamp.
+                openedAt = now;
+                if (transition(State.CLOSED, State.OPEN)) {
+                    failures.set(0);
+                }
+            }
+        }
+
+        private boolean transition(State from, State to) {
+            if (!state.compareAndSet(from, to)) {
+                return false;
+            }
+            notifyListener(from, to);
+            return true;
+        }
+
+        private void notifyListener(State from, State to) {
+            if (listener != null) {
+                listener.onStateChange(gate, method, from, to);
+            }
+        }
+    }
+
+    /**
+     * Builder for {@link CircuitBreaker}.
+     */
+    public static final class Builder {
+        private int failureThreshold = 5;
+        private Duration openDuration = Duration.ofSeconds(30);
+        private int halfOpenCalls = 1;
+        private Listener listener;
+
+        private Builder() {
+        }
+
+        /**
+         * @param failureThreshold Number of consecutive failures that opens a breaker
+         * @return this builder
+         */
+        public Builder failureThreshold(int failureThreshold) {
+            if (failureThreshold < 1) {
+                throw new IllegalArgumentException("failureThreshold must be positive");
+            }
+            this.failureThreshold = failureThreshold;
+            return this;
+        }
+
+        /**
+         * @param openDuration Time an open breaker rejects calls before letting trial calls through
+         * @return this builder
+         */
+        public Builder openDuration(Duration openDuration) {
+            if (openDuration == null || openDuration.isNegative()) {
+                throw new IllegalArgumentException("openDuration cannot be null or negative");
+            }
+            this.openDuration = openDuration;
+            return this;
+        }
+
+        /**
+         * @param halfOpenCalls Number of trial calls let through by a half-open breaker
+         * @return this builder
+         */
+        public Builder halfOpenCalls(int halfOpenCalls) {
+            if (halfOpenCalls < 1) {
+                throw new IllegalArgumentException("halfOpenCalls must be positive");
+            }
+            this.halfOpenCalls = halfOpenCalls;
+            return this;
+        }
+
+        /**
+         * @param listener Receiver of state changes, or null for none
+         * @return this builder
+         */
+        public Builder listener(Listener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * @return new circuit breakers
+         */
+        public CircuitBreaker build() {
+            return new CircuitBreaker(this);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package ru.smsaero;
+
+import java.io.IOException;
+
+/**
+ * Thrown without any network I/O when the {@link CircuitBreaker} for the called method is open on every gate.
+ */
+public class CircuitOpenException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final String method;
+
+    /**
+     * @param method  API method that was rejected
+     * @param message Detail message
+     */
+    public CircuitOpenException(String method, String message) {
+        super(message);
+        this.method = method;
+    }
+
+    /** @return API method that was rejected, e.g. "sms/send" */
+    public String getMethod() {
+        return method;
+    }
+}
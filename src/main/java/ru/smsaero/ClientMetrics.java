@@ -0,0 +1,74 @@
+package ru.smsaero;
+
+/**
+ * Receives measurements of a client's API calls, e.g. to feed a metrics registry. {@link InMemoryMetrics} keeps
+ * them in memory; the {@code smsaero-micrometer} module publishes them to a Micrometer {@code MeterRegistry}.
+ *
+ * <p>Every method does nothing by default, so an implementation overrides only what it needs. Methods are called
+ * on the threads that make and complete requests, concurrently, so they must be thread-safe and return quickly.
+ * A client without metrics ({@link SmsAero.Builder#metrics}) records nothing and takes no timestamps for them.
+ *
+ * <p>Gates are reported as their base URL, e.g. "https://gate.smsaero.ru/v2/", and methods as their API path,
+ * e.g. "sms/send".
+ */
+public interface ClientMetrics {
+
+    /**
+     * A call has started; it is in flight until the matching {@link #onCallEnd}.
+     *
+     * @param method API method
+     */
+    default void onCallStart(String method) {
+    }
+
+    /**
+     * A call has completed, including calls answered from a cache.
+     *
+     * @param method API method
+     * @param nanos  Time from the start of the call, over all gates and retries
+     * @param error  Error the call failed with, or null on success
+     */
+    default void onCallEnd(String method, long nanos, Throwable error) {
+    }
+
+    /**
+     * One HTTP exchange with a gate has completed; a call makes one or more.
+     *
+     * @param method        API method
+     * @param gate          Gate the request was sent to
+     * @param statusCode    HTTP status of the response, or 0 if there was none (network error, cancellation)
+     * @param nanos         Time from sending the request to reading the whole response
+     * @param bytesSent     Size of the request body
+     * @param bytesReceived Size of the response body, or 0 if there was none
+     */
+    default void onExchange(String method, String gate, int statusCode, long nanos, long bytesSent,
+            long bytesReceived) {
+    }
+
+    /**
+     * A call has given up on a gate after a network error and moves on to the next one.
+     *
+     * @param method API method
+     * @param gate   Gate that failed
+     */
+    default void onFailover(String method, String gate) {
+    }
+
+    /**
+     * The TLS handshake with a gate has failed and the request is sent again over plain HTTP.
+     *
+     * @param method API method
+     * @param gate   Gate whose handshake failed
+     */
+    default void onPlainHttpFallback(String method, String gate) {
+    }
+
+    /**
+     * A failed call is retried by the {@link RetryPolicy}.
+     *
+     * @param method  API method
+     * @param attempt Number of the pass about to start, 2 for the first retry
+     */
+    default void onRetry(String method, int attempt) {
+    }
+}
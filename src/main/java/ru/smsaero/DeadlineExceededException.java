@@ -0,0 +1,27 @@
+package ru.smsaero;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a call does not complete within its total deadline, counted from the call over all gate attempts,
+ * TLS fallbacks and rate limiter waits. The request still in flight is cancelled.
+ */
+public class DeadlineExceededException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final String method;
+
+    /**
+     * @param method  API method that timed out
+     * @param message Detail message
+     */
+    public DeadlineExceededException(String method, String message) {
+        super(message);
+        this.method = method;
+    }
+
+    /** @return API method that timed out, e.g. "sms/send" */
+    public String getMethod() {
+        return method;
+    }
+}
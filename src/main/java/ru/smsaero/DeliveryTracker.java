@@ -0,0 +1,342 @@
+package ru.smsaero;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Polls the delivery status of sent SMS until it is final (delivered, not delivered or rejected).
+ *
+ * <p>Tracked ids wait in a single delay queue served by one dispatcher thread, so a million pending ids cost a
+ * million small entries and no timers or threads of their own. Each id is polled with {@code sms/status}
+ * ({@code sms/teststatus} in test mode) after an initial delay that doubles after every non-final answer or
+ * failure, up to a maximum, with a little jitter so ids sent together spread out. At most {@code maxInFlight}
+ * status requests are outstanding at any time. Tracking an id that is already pending joins the existing poll.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * DeliveryTracker tracker = DeliveryTracker.builder(client)
+ *     .onFinalStatus(sms -> log.info(sms.id() + " " + sms.extendStatus()))
+ *     .build();
+ * tracker.track(client.typed().SendSms("70000000000", "Hello", "SMS Aero"));
+ * }</pre>
+ */
+public final class DeliveryTracker implements AutoCloseable {
+    /** Default number of concurrent status requests. */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 16;
+    /** Default delay before the first poll of an id. */
+    public static final Duration DEFAULT_INITIAL_DELAY = Duration.ofSeconds(5);
+    /** Default upper bound of the delay between polls of an id. */
+    public static final Duration DEFAULT_MAX_DELAY = Duration.ofMinutes(5);
+    /** Default time after which an id without a final status is given up. */
+    public static final Duration DEFAULT_EXPIRE_AFTER = Duration.ofHours(24);
+
+    private final SmsAeroTypedAsync api;
+    private final long initialDelayNanos;
+    private final long maxDelayNanos;
+    private final Duration expireAfter;
+    private final Consumer<? super SmsResult> onFinalStatus;
+    private final Semaphore window;
+    private final DelayQueue<Entry> queue = new DelayQueue<>();
+    private final ConcurrentHashMap<Long, Entry> pending = new ConcurrentHashMap<>();
+    private final Thread dispatcher;
+    private volatile boolean closed;
+
+    private DeliveryTracker(Builder builder) {
+        this.api = builder.client.async().typed();
+        this.initialDelayNanos = builder.initialDelay.toNanos();
+        this.maxDelayNanos = builder.maxDelay.toNanos();
+        this.expireAfter = builder.expireAfter;
+        this.onFinalStatus = builder.onFinalStatus;
+        this.window = new Semaphore(builder.maxInFlight);
+        this.dispatcher = new Thread(this::dispatch, "smsaero-delivery-tracker");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Creates a builder for a tracker polling through the given client (or a client view with
+     * {@link RequestOptions}).
+     *
+     * @param client Client to poll through
+     * @return new builder
+     * @throws IllegalArgumentException if client is null
+     */
+    public static Builder builder(SmsAero client) {
+        if (client == null) {
+            throw new IllegalArgumentException("client cannot be null");
+        }
+        return new Builder(client);
+    }
+
+    /**
+     * Starts tracking an SMS.
+     *
+     * @param smsId SMS identifier, e.g. {@link SmsResult#id()}
+     * @return future completed with the final status, or failed with {@link DeadlineExceededException} if there is
+     *         none after {@code expireAfter}; cancelling it does not stop tracking
+     * @throws IllegalStateException if the tracker is closed
+     */
+    public CompletableFuture<SmsResult> track(long smsId) {
+        if (closed) {
+            throw new IllegalStateException("tracker is closed");
+        }
+        boolean[] created = new boolean[1];
+        Entry entry = pending.computeIfAbsent(smsId, id -> {
+            created[0] = true;
+            return new Entry(id, System.nanoTime(), initialDelayNanos);
+        });
+        if (created[0]) {
+            queue.put(entry);
+        }
+        return entry.future.copy();
+    }
+
+    /**
+     * Starts tracking a sent SMS. If its status is already final, no request is made.
+     *
+     * @param sms SMS as returned by {@link SmsAeroTyped#SendSms}
+     * @return future completed with the final status, see {@link #track(long)}
+     * @throws IllegalArgumentException if sms is null
+     * @throws IllegalStateException    if the tracker is closed
+     */
+    public CompletableFuture<SmsResult> track(SmsResult sms) {
+        if (sms == null) {
+            throw new IllegalArgumentException("sms cannot be null");
+        }
+        if (!sms.isFinal()) {
+            return track(sms.id());
+        }
+        if (closed) {
+            throw new IllegalStateException("tracker is closed");
+        }
+        notifyFinal(sms);
+        return CompletableFuture.completedFuture(sms);
+    }
+
+    /**
+     * Completes tracking of an SMS from a status obtained elsewhere, e.g. a {@link CallbackReceiver} report, so it
+     * is not polled again. Non-final statuses and untracked ids are ignored.
+     *
+     * @param sms SMS with its current status
+     * @return true if the SMS was pending and is now complete
+     */
+    public boolean report(SmsResult sms) {
+        if (sms == null || !sms.isFinal() || closed) {
+            return false;
+        }
+        Entry entry = pending.remove(sms.id());
+        if (entry == null) {
+            return false;
+        }
+        notifyFinal(sms);
+        entry.future.complete(sms);
+        return true;
+    }
+
+    /** @return number of ids waiting for a final status */
+    public int pending() {
+        return pending.size();
+    }
+
+    /**
+     * Stops polling. Futures of ids still pending fail with a {@link java.util.concurrent.CancellationException};
+     * status requests in flight complete unobserved.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+        queue.clear();
+        for (Entry entry : pending.values()) {
+            entry.future.cancel(false);
+        }
+        pending.clear();
+    }
+
+    private void dispatch() {
+        while (!closed) {
+            Entry entry;
+            try {
+                window.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                entry = queue.take();
+            } catch (InterruptedException e) {
+                window.release();
+                return;
+            }
+            if (pending.get(entry.id) != entry) {
+                // Completed by report() while waiting.
+                window.release();
+                continue;
+            }
+            poll(entry);
+        }
+    }
+
+    private void poll(Entry entry) {
+        CompletableFuture<SmsResult> status;
+        try {
+            status = api.SmsStatus(entry.id);
+        } catch (RuntimeException e) {
+            status = CompletableFuture.failedFuture(e);
+        }
+        status.whenComplete((sms, error) -> {
+            try {
+                answered(entry, sms);
+            } finally {
+                window.release();
+            }
+        });
+    }
+
+    private void answered(Entry entry, SmsResult sms) {
+        if (closed) {
+            return;
+        }
+        if (sms != null && sms.isFinal()) {
+            if (!pending.remove(entry.id, entry)) {
+                return;
+            }
+            notifyFinal(sms);
+            entry.future.complete(sms);
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - entry.startedAt >= expireAfter.toNanos()) {
+            if (!pending.remove(entry.id, entry)) {
+                return;
+            }
+            entry.future.completeExceptionally(new DeadlineExceededException("sms/status",
+                "No final status for SMS " + entry.id + " within " + expireAfter));
+            return;
+        }
+        // Failed polls back off like non-final answers: errors are usually transient or rate limits.
+        entry.delayNanos = Math.min(entry.delayNanos * 2, maxDelayNanos);
+        entry.dueAt = now + entry.delayNanos - ThreadLocalRandom.current().nextLong(entry.delayNanos / 10 + 1);
+        queue.put(entry);
+    }
+
+    private void notifyFinal(SmsResult sms) {
+        if (onFinalStatus == null) {
+            return;
+        }
+        try {
+            onFinalStatus.accept(sms);
+        } catch (RuntimeException ignored) {
+            // A failing callback must not stop tracking.
+        }
+    }
+
+    /** A tracked id; owned by the queue while waiting and by one poll while in flight. */
+    private static final class Entry implements Delayed {
+        final long id;
+        final long startedAt;
+        final CompletableFuture<SmsResult> future = new CompletableFuture<>();
+        long delayNanos;
+        long dueAt;
+
+        Entry(long id, long startedAt, long delayNanos) {
+            this.id = id;
+            this.startedAt = startedAt;
+            this.delayNanos = delayNanos;
+            this.dueAt = startedAt + delayNanos;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueAt, ((Entry) other).dueAt);
+        }
+    }
+
+    /**
+     * Builder for {@link DeliveryTracker}.
+     */
+    public static final class Builder {
+        private final SmsAero client;
+        private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+        private Duration initialDelay = DEFAULT_INITIAL_DELAY;
+        private Duration maxDelay = DEFAULT_MAX_DELAY;
+        private Duration expireAfter = DEFAULT_EXPIRE_AFTER;
+        private Consumer<? super SmsResult> onFinalStatus;
+
+        private Builder(SmsAero client) {
+            this.client = client;
+        }
+
+        /**
+         * @param maxInFlight Maximum number of concurrent status requests
+         * @return this builder
+         */
+        public Builder maxInFlight(int maxInFlight) {
+            if (maxInFlight < 1) {
+                throw new IllegalArgumentException("maxInFlight must be positive");
+            }
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * @param initialDelay Delay before the first poll of an id
+         * @param maxDelay     Upper bound of the doubling delay between polls
+         * @return this builder
+         */
+        public Builder backoff(Duration initialDelay, Duration maxDelay) {
+            requirePositive(initialDelay, "initialDelay");
+            requirePositive(maxDelay, "maxDelay");
+            if (maxDelay.compareTo(initialDelay) < 0) {
+                throw new IllegalArgumentException("maxDelay must not be less than initialDelay");
+            }
+            this.initialDelay = initialDelay;
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        /**
+         * @param expireAfter Time after which an id without a final status is given up
+         * @return this builder
+         */
+        public Builder expireAfter(Duration expireAfter) {
+            this.expireAfter = requirePositive(expireAfter, "expireAfter");
+            return this;
+        }
+
+        /**
+         * @param onFinalStatus Called once per id with its final status, on the transport's threads; it must be
+         *                      thread-safe and should not block. Exceptions it throws are ignored.
+         * @return this builder
+         */
+        public Builder onFinalStatus(Consumer<? super SmsResult> onFinalStatus) {
+            this.onFinalStatus = onFinalStatus;
+            return this;
+        }
+
+        /**
+         * @return new tracker; its dispatcher thread runs until {@link DeliveryTracker#close()}
+         */
+        public DeliveryTracker build() {
+            return new DeliveryTracker(this);
+        }
+
+        private static Duration requirePositive(Duration value, String paramName) {
+            if (value == null || value.isNegative() || value.isZero()) {
+                throw new IllegalArgumentException(paramName + " must be positive");
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package ru.smsaero;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.simple.parser.ParseException;
+
+/**
+ * Helpers for bridging the asynchronous request pipeline and the blocking API.
+ */
+final class Futures {
+
+    private Futures() {}
+
+    /** Daemon threads for transports that only implement the blocking {@link Transport#post}. */
+    static final Executor BLOCKING_EXECUTOR = newDaemonPool("smsaero-blocking-");
+
+    /**
+     * Timer for deadlines. Unlike {@link CompletableFuture#delayedExecutor}, cancelled tasks are removed at once, so
+     * calls that finish early do not pile up until their deadline.
+     */
+    static final ScheduledThreadPoolExecutor TIMER = newTimer();
+
+    private static ScheduledThreadPoolExecutor newTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "smsaero-timer");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    private static ExecutorService newDaemonPool(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Waits for a future and rethrows its failure with the checked exception types of the blocking API.
+     * Interrupting the waiting thread cancels the future.
+     */
+    static <T> T await(CompletableFuture<T> future) throws IOException, ParseException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for response");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof ParseException) {
+                throw (ParseException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /** Like {@link #await}, for futures that can only fail with I/O errors. */
+    static <T> T awaitIO(CompletableFuture<T> future) throws IOException {
+        try {
+            return await(future);
+        } catch (ParseException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /** Strips {@link CompletionException} and {@link ExecutionException} wrappers. */
+    static Throwable unwrap(Throwable error) {
+        Throwable current = error;
+        while ((current instanceof CompletionException || current instanceof ExecutionException)
+                && current.getCause() != null) {
+            current = current.getCause();
+        }
+        return current;
+    }
+
+    /** Wraps a checked failure so it can be thrown from a completion stage. */
+    static CompletionException wrap(Throwable error) {
+        return error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+    }
+}
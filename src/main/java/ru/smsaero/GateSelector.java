@@ -0,0 +1,377 @@
+package ru.smsaero;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Orders gates by health for each call instead of always trying them in the configured order.
+ *
+ * <p>For every gate the selector keeps an exponentially weighted moving average (EWMA) of response latency and
+ * of the error rate. Calls go to the gate with the lowest score (latency, penalised by errors) first; the rest
+ * follow as failover targets. Gates without measurements yet are scored with {@link Builder#initialLatency}, so
+ * until traffic has been observed the configured order is kept.
+ *
+ * <p>After {@link Builder#ejectAfterFailures} consecutive failures a gate is ejected: it moves to the end of the
+ * failover order and, after {@link Builder#ejectDuration}, is re-probed in the background with a cheap
+ * {@code auth} request. A successful probe re-admits it; a failed one doubles the ejection time (up to
+ * {@link Builder#maxEjectDuration}).
+ *
+ * <p>Selection and recording are lock-free. One selector may be shared by several clients using the same gates.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * GateSelector selector = GateSelector.builder()
+ *     .ejectAfterFailures(2)
+ *     .ejectDuration(Duration.ofSeconds(10))
+ *     .build();
+ * SmsAero client = SmsAero.builder(email, apiKey).gateSelector(selector).build();
+ * System.out.println(selector.health());
+ * }</pre>
+ */
+public final class GateSelector {
+    private final double alpha;
+    private final long initialLatencyNanos;
+    private final double errorPenalty;
+    private final int ejectAfterFailures;
+    private final long ejectNanos;
+    private final long maxEjectNanos;
+    private final ConcurrentMap<String, GateState> gates = new ConcurrentHashMap<>();
+
+    private GateSelector(Builder builder) {
+        this.alpha = builder.alpha;
+        this.initialLatencyNanos = builder.initialLatency.toNanos();
+        this.errorPenalty = builder.errorPenalty;
+        this.ejectAfterFailures = builder.ejectAfterFailures;
+        this.ejectNanos = builder.ejectDuration.toNanos();
+        this.maxEjectNanos = builder.maxEjectDuration.toNanos();
+    }
+
+    /**
+     * Creates a selector with default settings.
+     *
+     * @return new selector
+     */
+    public static GateSelector create() {
+        return builder().build();
+    }
+
+    /**
+     * Creates a builder for a selector with custom settings.
+     *
+     * @return new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the gates in the order they should be tried: healthy gates by ascending score, then ejected gates
+     * (as a last resort) by the time they are due back.
+     */
+    String[] order(List<String> gateUrls) {
+        int n = gateUrls.size();
+        String[] order = new String[n];
+        boolean[] ejected = new boolean[n];
+        long[] dueIn = new long[n];
+        double[] scores = new double[n];
+        long now = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            String gate = gateUrls.get(i);
+            GateState state = state(gate);
+            boolean out = state.ejected;
+            long due = out ? state.ejectedUntil - now : 0;
+            double score = state.score();
+            // Insertion sort keeps the configured order for equal keys.
+            int j = i;
+            while (j > 0 && after(ejected[j - 1], dueIn[j - 1], scores[j - 1], out, due, score)) {
+                order[j] = order[j - 1];
+                ejected[j] = ejected[j - 1];
+                dueIn[j] = dueIn[j - 1];
+                scores[j] = scores[j - 1];
+                j--;
+            }
+            order[j] = gate;
+            ejected[j] = out;
+            dueIn[j] = due;
+            scores[j] = score;
+        }
+        return order;
+    }
+
+    /** @return true if the first gate goes after the second: behind healthy gates, later back, or higher score */
+    private static boolean after(boolean ejected, long dueIn, double score,
+            boolean otherEjected, long otherDueIn, double otherScore) {
+        if (ejected != otherEjected) {
+            return ejected;
+        }
+        if (dueIn != otherDueIn) {
+            return dueIn > otherDueIn;
+        }
+        return score > otherScore;
+    }
+
+    /** Records a response from the gate (any HTTP status below 500). */
+    void onSuccess(String gate, long latencyNanos) {
+        state(gate).record(latencyNanos, false);
+    }
+
+    /**
+     * Records a failed exchange with the gate (network error, timeout, HTTP 5xx). If the gate gets ejected,
+     * {@code prober} is scheduled to check it again in the background.
+     */
+    void onFailure(String gate, long latencyNanos, Function<String, CompletableFuture<Boolean>> prober) {
+        GateState state = state(gate);
+        if (state.record(latencyNanos, true)) {
+            state.scheduleProbe(gate, prober);
+        }
+    }
+
+    /**
+     * Returns the current health of every gate seen so far.
+     *
+     * @return map of gate URL to its health snapshot
+     */
+    public Map<String, Health> health() {
+        long now = System.nanoTime();
+        Map<String, Health> result = new LinkedHashMap<>();
+        gates.forEach((gate, state) -> result.put(gate, state.snapshot(now)));
+        return result;
+    }
+
+    private GateState state(String gate) {
+        GateState state = gates.get(gate);
+        return state != null ? state : gates.computeIfAbsent(gate, g -> new GateState());
+    }
+
+    /**
+     * Per-gate statistics. Doubles are stored as raw long bits in atomics.
+     */
+    private final class GateState {
+        private final AtomicLong latencyBits = new AtomicLong(Double.doubleToRawLongBits(initialLatencyNanos));
+        private final AtomicLong errorRateBits = new AtomicLong(Double.doubleToRawLongBits(0));
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final AtomicInteger ejections = new AtomicInteger();
+        private final AtomicBoolean probing = new AtomicBoolean();
+        private volatile long ejectedUntil;
+        private volatile boolean ejected;
+
+        double score() {
+            double latency = Double.longBitsToDouble(latencyBits.get());
+            return latency * (1 + errorPenalty * Double.longBitsToDouble(errorRateBits.get()));
+        }
+
+        /** @return true if this failure ejected the gate */
+        boolean record(long latencyNanos, boolean failure) {
+            updateEwma(latencyBits, latencyNanos);
+            updateEwma(errorRateBits, failure ? 1 : 0);
+            if (!failure) {
+                consecutiveFailures.set(0);
+                return false;
+            }
+            if (consecutiveFailures.incrementAndGet() < ejectAfterFailures || ejected) {
+                return false;
+            }
+            eject();
+            return true;
+        }
+
+        private void eject() {
+            int count = Math.min(ejections.getAndIncrement(), 16);
+            long duration = Math.min(maxEjectNanos, ejectNanos << count);
+            ejectedUntil = System.nanoTime() + Math.max(duration, 0);
+            ejected = true;
+        }
+
+        private void readmit() {
+            ejected = false;
+            ejections.set(0);
+            consecutiveFailures.set(0);
+            errorRateBits.set(Double.doubleToRawLongBits(0));
+        }
+
+        void scheduleProbe(String gate, Function<String, CompletableFuture<Boolean>> prober) {
+            if (!probing.compareAndSet(false, true)) {
+                return;
+            }
+            long delay = Math.max(0, ejectedUntil - System.nanoTime());
+            CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(() -> {
+                CompletableFuture<Boolean> probe = prober != null
+                    ? prober.apply(gate)
+                    : CompletableFuture.completedFuture(true);
+                probe.whenComplete((alive, error) -> {
+                    probing.set(false);
+                    if (error == null && Boolean.TRUE.equals(alive)) {
+                        readmit();
+                    } else {
+                        eject();
+                        scheduleProbe(gate, prober);
+                    }
+                });
+            });
+        }
+
+        private void updateEwma(AtomicLong bits, double sample) {
+            while (true) {
+                long current = bits.get();
+                double value = Double.longBitsToDouble(current);
+                double next = value + alpha * (sample - value);
+                if (bits.compareAndSet(current, Double.doubleToRawLongBits(next))) {
+                    return;
+                }
+            }
+        }
+
+        Health snapshot(long now) {
+            return new Health(
+                Duration.ofNanos((long) Double.longBitsToDouble(latencyBits.get())),
+                Double.longBitsToDouble(errorRateBits.get()),
+                ejected && ejectedUntil - now > 0 ? Duration.ofNanos(ejectedUntil - now) : Duration.ZERO,
+                ejected);
+        }
+    }
+
+    /**
+     * Health snapshot of one gate.
+     */
+    public static final class Health {
+        private final Duration latency;
+        private final double errorRate;
+        private final Duration ejectedFor;
+        private final boolean ejected;
+
+        Health(Duration latency, double errorRate, Duration ejectedFor, boolean ejected) {
+            this.latency = latency;
+            this.errorRate = errorRate;
+            this.ejectedFor = ejectedFor;
+            this.ejected = ejected;
+        }
+
+        /** @return latency EWMA */
+        public Duration latency() {
+            return latency;
+        }
+
+        /** @return error rate EWMA, from 0 to 1 */
+        public double errorRate() {
+            return errorRate;
+        }
+
+        /** @return true if the gate is ejected and waiting for a successful probe */
+        public boolean isEjected() {
+            return ejected;
+        }
+
+        /** @return time left until the next probe of an ejected gate, or zero */
+        public Duration ejectedFor() {
+            return ejectedFor;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Health{latency=%dms, errorRate=%.2f, ejected=%s}",
+                latency.toMillis(), errorRate, ejected);
+        }
+    }
+
+    /**
+     * Builder for {@link GateSelector}.
+     */
+    public static final class Builder {
+        private double alpha = 0.2;
+        private Duration initialLatency = Duration.ofMillis(200);
+        private double errorPenalty = 4;
+        private int ejectAfterFailures = 3;
+        private Duration ejectDuration = Duration.ofSeconds(5);
+        private Duration maxEjectDuration = Duration.ofMinutes(2);
+
+        private Builder() {
+        }
+
+        /**
+         * @param alpha EWMA smoothing factor in (0, 1]; higher values react faster to changes
+         * @return this builder
+         */
+        public Builder alpha(double alpha) {
+            if (!(alpha > 0 && alpha <= 1)) {
+                throw new IllegalArgumentException("alpha must be in (0, 1]");
+            }
+            this.alpha = alpha;
+            return this;
+        }
+
+        /**
+         * @param initialLatency Latency assumed for a gate before it has been measured
+         * @return this builder
+         */
+        public Builder initialLatency(Duration initialLatency) {
+            this.initialLatency = requireNonNegative(initialLatency, "initialLatency");
+            return this;
+        }
+
+        /**
+         * @param errorPenalty Score multiplier per unit of error rate: score = latency * (1 + penalty * errorRate)
+         * @return this builder
+         */
+        public Builder errorPenalty(double errorPenalty) {
+            if (!(errorPenalty >= 0)) {
+                throw new IllegalArgumentException("errorPenalty cannot be negative");
+            }
+            this.errorPenalty = errorPenalty;
+            return this;
+        }
+
+        /**
+         * @param ejectAfterFailures Number of consecutive failures that ejects a gate
+         * @return this builder
+         */
+        public Builder ejectAfterFailures(int ejectAfterFailures) {
+            if (ejectAfterFailures < 1) {
+                throw new IllegalArgumentException("ejectAfterFailures must be positive");
+            }
+            this.ejectAfterFailures = ejectAfterFailures;
+            return this;
+        }
+
+        /**
+         * @param ejectDuration Time before the first re-probe of an ejected gate
+         * @return this builder
+         */
+        public Builder ejectDuration(Duration ejectDuration) {
+            this.ejectDuration = requireNonNegative(ejectDuration, "ejectDuration");
+            return this;
+        }
+
+        /**
+         * @param maxEjectDuration Upper bound for the ejection time, which doubles after each failed probe
+         * @return this builder
+         */
+        public Builder maxEjectDuration(Duration maxEjectDuration) {
+            this.maxEjectDuration = requireNonNegative(maxEjectDuration, "maxEjectDuration");
+            return this;
+        }
+
+        /**
+         * @return new selector
+         */
+        public GateSelector build() {
+            return new GateSelector(this);
+        }
+
+        private static Duration requireNonNegative(Duration value, String paramName) {
+            if (value == null || value.isNegative()) {
+                throw new IllegalArgumentException(paramName + " cannot be null or negative");
+            }
+            return value;
+        }
+    }
+}
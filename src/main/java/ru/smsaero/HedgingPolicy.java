@@ -0,0 +1,179 @@
+package ru.smsaero;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Opt-in hedging for latency-critical calls such as one-time codes.
+ *
+ * <p>If the first gate has not answered within the hedge delay, the same request is also sent to the next gate;
+ * the first successful response wins and the other request is cancelled. The delay is a percentile
+ * ({@link Builder#percentile}, p95 by default) of the latencies observed for the method, or
+ * {@link Builder#initialDelay} until {@link Builder#minSamples} responses have been seen.
+ *
+ * <p>Both requests carry the same {@code Idempotency-Key} header: the key from
+ * {@link RequestOptions#idempotencyKey()} if set, otherwise a random one generated for the call. The two requests
+ * go to different gates and cancelling the loser does not undo a send the gate has already accepted, so a hedged
+ * message can be delivered twice unless the gates deduplicate by that header. Hedge only messages for which a
+ * duplicate is acceptable, such as one-time codes.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * SmsAero client = SmsAero.builder(email, apiKey)
+ *     .hedging(HedgingPolicy.builder().percentile(0.9).build())
+ *     .build();
+ * }</pre>
+ */
+public final class HedgingPolicy {
+    private final Map<String, LatencyHistogram> histograms;
+    private final double percentile;
+    private final long initialDelayNanos;
+    private final long minDelayNanos;
+    private final int minSamples;
+
+    private HedgingPolicy(Builder builder) {
+        Map<String, LatencyHistogram> histograms = new HashMap<>();
+        for (String method : builder.methods) {
+            histograms.put(method, new LatencyHistogram());
+        }
+        this.histograms = Map.copyOf(histograms);
+        this.percentile = builder.percentile;
+        this.initialDelayNanos = builder.initialDelay.toNanos();
+        this.minDelayNanos = builder.minDelay.toNanos();
+        this.minSamples = builder.minSamples;
+    }
+
+    /**
+     * Creates a policy with default settings, hedging {@code sms/send}, {@code telegram/send} and
+     * {@code mobile-id/send}.
+     *
+     * @return new policy
+     */
+    public static HedgingPolicy create() {
+        return builder().build();
+    }
+
+    /**
+     * Creates a builder for a policy with custom settings.
+     *
+     * @return new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the current hedge delay for a method.
+     *
+     * @param method API method, e.g. "sms/send"
+     * @return delay after which a hedged request is sent, or null if the method is not hedged
+     */
+    public Duration delay(String method) {
+        return appliesTo(method) ? Duration.ofNanos(delayNanos(method)) : null;
+    }
+
+    boolean appliesTo(String method) {
+        return histograms.containsKey(method);
+    }
+
+    long delayNanos(String method) {
+        LatencyHistogram histogram = histograms.get(method);
+        if (histogram.count() < minSamples) {
+            return initialDelayNanos;
+        }
+        return Math.max(minDelayNanos, histogram.percentile(percentile));
+    }
+
+    void recordLatency(String method, long nanos) {
+        LatencyHistogram histogram = histograms.get(method);
+        if (histogram != null) {
+            histogram.record(nanos);
+        }
+    }
+
+    /**
+     * Builder for {@link HedgingPolicy}.
+     */
+    public static final class Builder {
+        private String[] methods = {"sms/send", "telegram/send", "mobile-id/send"};
+        private double percentile = 0.95;
+        private Duration initialDelay = Duration.ofMillis(500);
+        private Duration minDelay = Duration.ofMillis(20);
+        private int minSamples = 20;
+
+        private Builder() {
+        }
+
+        /**
+         * @param methods API methods to hedge, e.g. "sms/send"
+         * @return this builder
+         */
+        public Builder methods(String... methods) {
+            if (methods == null || methods.length == 0) {
+                throw new IllegalArgumentException("methods cannot be null or empty");
+            }
+            for (String method : methods) {
+                SmsAero.requireNonBlank(method, "method");
+            }
+            this.methods = methods.clone();
+            return this;
+        }
+
+        /**
+         * @param percentile Latency percentile used as the hedge delay, in (0, 1]
+         * @return this builder
+         */
+        public Builder percentile(double percentile) {
+            if (!(percentile > 0 && percentile <= 1)) {
+                throw new IllegalArgumentException("percentile must be in (0, 1]");
+            }
+            this.percentile = percentile;
+            return this;
+        }
+
+        /**
+         * @param initialDelay Hedge delay used until enough latencies have been observed
+         * @return this builder
+         */
+        public Builder initialDelay(Duration initialDelay) {
+            this.initialDelay = requireNonNegative(initialDelay, "initialDelay");
+            return this;
+        }
+
+        /**
+         * @param minDelay Lower bound for the percentile-based delay
+         * @return this builder
+         */
+        public Builder minDelay(Duration minDelay) {
+            this.minDelay = requireNonNegative(minDelay, "minDelay");
+            return this;
+        }
+
+        /**
+         * @param minSamples Number of observed responses before the percentile is used
+         * @return this builder
+         */
+        public Builder minSamples(int minSamples) {
+            if (minSamples < 1) {
+                throw new IllegalArgumentException("minSamples must be positive");
+            }
+            this.minSamples = minSamples;
+            return this;
+        }
+
+        /**
+         * @return new policy
+         */
+        public HedgingPolicy build() {
+            return new HedgingPolicy(this);
+        }
+
+        private static Duration requireNonNegative(Duration value, String paramName) {
+            if (value == null || value.isNegative()) {
+                throw new IllegalArgumentException(paramName + " cannot be null or negative");
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package ru.smsaero;
+
+import org.json.simple.parser.ParseException;
+
+/**
+ * HLR request as returned by {@code hlr/check} and {@code hlr/status}.
+ */
+public final class HlrResult {
+    /** HLR status: the number is available. */
+    public static final int STATUS_AVAILABLE = 1;
+    /** HLR status: the number is unavailable. */
+    public static final int STATUS_UNAVAILABLE = 2;
+    /** HLR status: the number does not exist. */
+    public static final int STATUS_NONEXISTENT = 3;
+    /** HLR status: the request is in progress. */
+    public static final int STATUS_IN_PROGRESS = 4;
+
+    static final JsonReader.Decoder<HlrResult> DECODER = HlrResult::read;
+
+    private static final JsonReader.Names NAMES = JsonReader.Names.of("id", "number", "hlrStatus", "extendHlrStatus");
+
+    private long id;
+    private String number;
+    private int hlrStatus;
+    private String extendHlrStatus;
+
+    private HlrResult() {
+    }
+
+    static HlrResult read(JsonReader reader) throws ParseException {
+        HlrResult hlr = new HlrResult();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.selectName(NAMES)) {
+                case 0:
+                    hlr.id = reader.nextLong();
+                    break;
+                case 1:
+                    hlr.number = reader.nextString();
+                    break;
+                case 2:
+                    hlr.hlrStatus = reader.nextInt();
+                    break;
+                case 3:
+                    hlr.extendHlrStatus = reader.nextString();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return hlr;
+    }
+
+    /** @return HLR request identifier, for {@link SmsAeroTyped#HlrStatus(long)} */
+    public long id() {
+        return id;
+    }
+
+    /** @return checked number */
+    public String number() {
+        return number;
+    }
+
+    /** @return HLR status code, one of the {@code STATUS_*} constants */
+    public int hlrStatus() {
+        return hlrStatus;
+    }
+
+    /** @return HLR status name, e.g. "available" */
+    public String extendHlrStatus() {
+        return extendHlrStatus;
+    }
+
+    @Override
+    public String toString() {
+        return "HlrResult{id=" + id + ", number=" + number + ", hlrStatus=" + hlrStatus + "}";
+    }
+}
@@ -0,0 +1,263 @@
+package ru.smsaero;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link Transport} built on {@link java.net.http.HttpClient}.
+ *
+ * <p>Connections are kept alive and reused between calls; with HTTP/2 all requests to a gate are multiplexed
+ * over a single connection. The number of concurrent requests per gate (scheme + host + port) is bounded,
+ * which also bounds the number of pooled connections when a gate only speaks HTTP/1.1.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * Transport transport = HttpClientTransport.builder()
+ *     .connectTimeout(Duration.ofSeconds(2))
+ *     .requestTimeout(Duration.ofSeconds(5))
+ *     .maxRequestsPerGate(32)
+ *     .build();
+ * SmsAero client = new SmsAero(email, apiKey, transport);
+ * }</pre>
+ */
+public final class HttpClientTransport implements Transport {
+    /** Default connection timeout. */
+    public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    /** Default response timeout. */
+    public static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    /** Default limit of concurrent requests per gate. */
+    public static final int DEFAULT_MAX_REQUESTS_PER_GATE = 64;
+
+    private final HttpClient client;
+    private final Duration requestTimeout;
+    private final int maxRequestsPerGate;
+    private final ConcurrentMap<String, GatePermits> gatePermits = new ConcurrentHashMap<>();
+
+    private HttpClientTransport(Builder builder) {
+        HttpClient.Builder clientBuilder = HttpClient.newBuilder()
+            .version(builder.version)
+            .connectTimeout(builder.connectTimeout)
+            .followRedirects(HttpClient.Redirect.NEVER);
+        if (builder.executor != null) {
+            clientBuilder.executor(builder.executor);
+        }
+        this.client = clientBuilder.build();
+        this.requestTimeout = builder.requestTimeout;
+        this.maxRequestsPerGate = builder.maxRequestsPerGate;
+    }
+
+    /**
+     * Creates a transport with default settings.
+     *
+     * @return new transport
+     */
+    public static HttpClientTransport create() {
+        return builder().build();
+    }
+
+    /**
+     * Creates a builder for a transport with custom pool and timeout settings.
+     *
+     * @return new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public Response post(Request request) throws IOException {
+        return Futures.awaitIO(postAsync(request));
+    }
+
+    @Override
+    public CompletableFuture<Response> postAsync(Request request) {
+        URI uri = URI.create(request.url());
+        HttpRequest httpRequest = toHttpRequest(uri, request);
+        GatePermits permits = gatePermits.computeIfAbsent(gateKey(uri), k -> new GatePermits(maxRequestsPerGate));
+        CompletableFuture<Void> permit = permits.acquire();
+        AtomicReference<CompletableFuture<HttpResponse<byte[]>>> exchange = new AtomicReference<>();
+        CompletableFuture<HttpResponse<byte[]>> sent = permit.thenCompose(ignored -> {
+            CompletableFuture<HttpResponse<byte[]>> send = client.sendAsync(httpRequest, bodyHandler(request));
+            exchange.set(send);
+            return send;
+        });
+        // Released on completion of the exchange itself, so that cancelling the result cannot leak the permit.
+        sent.whenComplete((response, error) -> {
+            if (!permit.isCompletedExceptionally()) {
+                permits.release();
+            }
+        });
+        CompletableFuture<Response> result = sent.handle((response, error) -> {
+            if (error != null) {
+                throw Futures.wrap(Futures.unwrap(error));
+            }
+            return new Response(response.statusCode(), response.body(), response.headers().map());
+        });
+        result.whenComplete((response, error) -> {
+            if (result.isCancelled()) {
+                permit.cancel(false);
+                CompletableFuture<HttpResponse<byte[]>> send = exchange.get();
+                if (send != null) {
+                    send.cancel(true);
+                }
+            }
+        });
+        return result;
+    }
+
+    /** {@link HttpClient} does not expose connection events, so only the first byte is reported. */
+    private static HttpResponse.BodyHandler<byte[]> bodyHandler(Request request) {
+        Progress progress = request.progress();
+        if (progress == Progress.NONE) {
+            return HttpResponse.BodyHandlers.ofByteArray();
+        }
+        return responseInfo -> {
+            progress.onFirstByte();
+            return HttpResponse.BodySubscribers.ofByteArray();
+        };
+    }
+
+    private HttpRequest toHttpRequest(URI uri, Request request) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+            .timeout(request.timeout() != null ? request.timeout() : requestTimeout)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(request.body()));
+        for (Map.Entry<String, String> header : request.headers().entrySet()) {
+            builder.header(header.getKey(), header.getValue());
+        }
+        return builder.build();
+    }
+
+    private static String gateKey(URI uri) {
+        return uri.getScheme() + "://" + uri.getHost() + ":" + uri.getPort();
+    }
+
+    /**
+     * Non-blocking counting semaphore: callers over the limit get a future that completes when a permit frees up.
+     */
+    private static final class GatePermits {
+        private static final CompletableFuture<Void> GRANTED = CompletableFuture.completedFuture(null);
+
+        private final int limit;
+        private final ArrayDeque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+        private int inUse;
+
+        GatePermits(int limit) {
+            this.limit = limit;
+        }
+
+        synchronized CompletableFuture<Void> acquire() {
+            if (inUse < limit) {
+                inUse++;
+                return GRANTED;
+            }
+            CompletableFuture<Void> waiter = new CompletableFuture<>();
+            waiters.add(waiter);
+            return waiter;
+        }
+
+        void release() {
+            while (true) {
+                CompletableFuture<Void> next;
+                synchronized (this) {
+                    next = waiters.poll();
+                    if (next == null) {
+                        inUse--;
+                        return;
+                    }
+                }
+                // Hand the permit over directly; skip waiters that were cancelled meanwhile.
+                if (next.complete(null)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Builder for {@link HttpClientTransport}.
+     */
+    public static final class Builder {
+        private Duration connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+        private Duration requestTimeout = DEFAULT_REQUEST_TIMEOUT;
+        private int maxRequestsPerGate = DEFAULT_MAX_REQUESTS_PER_GATE;
+        private HttpClient.Version version = HttpClient.Version.HTTP_2;
+        private Executor executor;
+
+        private Builder() {
+        }
+
+        /**
+         * @param connectTimeout Connection (TCP + TLS) timeout
+         * @return this builder
+         */
+        public Builder connectTimeout(Duration connectTimeout) {
+            this.connectTimeout = requirePositive(connectTimeout, "connectTimeout");
+            return this;
+        }
+
+        /**
+         * @param requestTimeout Default time to wait for a response
+         * @return this builder
+         */
+        public Builder requestTimeout(Duration requestTimeout) {
+            this.requestTimeout = requirePositive(requestTimeout, "requestTimeout");
+            return this;
+        }
+
+        /**
+         * @param maxRequestsPerGate Maximum number of concurrent requests (and pooled connections) per gate
+         * @return this builder
+         */
+        public Builder maxRequestsPerGate(int maxRequestsPerGate) {
+            if (maxRequestsPerGate < 1) {
+                throw new IllegalArgumentException("maxRequestsPerGate must be positive");
+            }
+            this.maxRequestsPerGate = maxRequestsPerGate;
+            return this;
+        }
+
+        /**
+         * @param version Preferred HTTP version; HTTP/2 falls back to HTTP/1.1 if the gate does not support it
+         * @return this builder
+         */
+        public Builder version(HttpClient.Version version) {
+            this.version = Objects.requireNonNull(version, "version");
+            return this;
+        }
+
+        /**
+         * @param executor Executor for the underlying client's asynchronous tasks (null = client default)
+         * @return this builder
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * @return new transport
+         */
+        public HttpClientTransport build() {
+            return new HttpClientTransport(this);
+        }
+
+        private static Duration requirePositive(Duration value, String paramName) {
+            if (value == null || value.isNegative() || value.isZero()) {
+                throw new IllegalArgumentException(paramName + " must be positive");
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package ru.smsaero;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Client-side duplicate suppression for sends ({@code sms/send}, {@code sms/testsend}, {@code viber/send},
+ * {@code telegram/send} and {@code mobile-id/send}).
+ *
+ * <p>Every send gets an idempotency key: the caller's {@link RequestOptions#idempotencyKey()}, or one derived from
+ * the method, all request parameters and the current time window ({@code window}, one minute by default). The key
+ * is sent as the {@code Idempotency-Key} header, the same on every gate the call fails over to; whether a send
+ * that timed out on one gate and was accepted anyway is delivered again by the next one depends on the gates
+ * honouring that header. Suppression itself happens only within the client: calls with a key seen less than
+ * {@code ttl} ago share the first call's outcome: concurrent duplicates make one request, and a duplicate made
+ * after success gets the same response without a request. Failed calls are not remembered, so a retry sends again
+ * (under the same key). Calls with the same content in different time windows are not duplicates.
+ *
+ * <p>The index holds at most {@code maxSize} keys; when full, the oldest key is dropped. A key is kept for
+ * {@code ttl} after its first call, ten minutes by default.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * SmsAero client = SmsAero.builder(email, apiKey)
+ *     .idempotencyIndex(IdempotencyIndex.builder().window(Duration.ofMinutes(5)).build())
+ *     .build();
+ * }</pre>
+ */
+public final class IdempotencyIndex {
+    /** Default time a key is remembered. */
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(10);
+    /** Default time window of derived keys. */
+    public static final Duration DEFAULT_WINDOW = Duration.ofMinutes(1);
+    /** Default maximum number of remembered keys. */
+    public static final int DEFAULT_MAX_SIZE = 100_000;
+
+    private static final Set<String> SEND_METHODS =
+        Set.of("sms/send", "sms/testsend", "viber/send", "telegram/send", "mobile-id/send");
+
+    private final long ttlNanos;
+    private final long windowMillis;
+    private final int maxSize;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    /** Entries in insertion order, hence in expiry order; may hold entries already replaced or removed. */
+    private final ConcurrentLinkedQueue<Entry> order = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean attached = new AtomicBoolean();
+    private final LongAdder suppressed = new LongAdder();
+
+    private IdempotencyIndex(Builder builder) {
+        this.ttlNanos = builder.ttl.toNanos();
+        this.windowMillis = builder.window.toMillis();
+        this.maxSize = builder.maxSize;
+    }
+
+    /**
+     * Creates an index with the default settings.
+     *
+     * @return new index
+     */
+    public static IdempotencyIndex create() {
+        return builder().build();
+    }
+
+    /**
+     * Creates a builder for an index with custom settings.
+     *
+     * @return new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** @return number of calls answered by an earlier call with the same key */
+    public long suppressed() {
+        return suppressed.sum();
+    }
+
+    /** @return number of remembered keys, including expired ones not yet dropped */
+    public int size() {
+        return entries.size();
+    }
+
+    /** Binds the index to its client: keys of different accounts must not collide. */
+    void attach() {
+        if (!attached.compareAndSet(false, true)) {
+            throw new IllegalArgumentException("idempotencyIndex is already used by another client");
+        }
+    }
+
+    /** Releases the binding of a client whose build failed. */
+    void detach() {
+        attached.set(false);
+    }
+
+    /** @return true if calls of the method are sends that get an idempotency key */
+    static boolean covers(String method) {
+        return SEND_METHODS.contains(method);
+    }
+
+    /**
+     * @return the caller's key, or a key derived from the call's content and the current time window
+     */
+    String key(String method, Map<String, ?> form, RequestOptions options) {
+        if (options.idempotencyKey() != null) {
+            return options.idempotencyKey();
+        }
+        StringBuilder content = new StringBuilder(method).append('\n')
+            .append(System.currentTimeMillis() / windowMillis);
+        if (form != null) {
+            new TreeMap<>(form).forEach((name, value) -> content.append('\n').append(name).append('=').append(value));
+        }
+        new TreeMap<>(options.params()).forEach((name, value) ->
+            content.append('\n').append(name).append('=').append(value));
+        return UUID.nameUUIDFromBytes(content.toString().getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * Returns the response body of the first live call with the key, or sends with the loader. The returned future
+     * is shared: callers must not cancel or complete it.
+     */
+    CompletableFuture<byte[]> get(String key, Supplier<CompletableFuture<byte[]>> loader) {
+        long now = System.nanoTime();
+        Entry created = new Entry(key, now + ttlNanos);
+        Entry entry = entries.compute(key, (k, old) -> old != null && old.isUsable(now) ? old : created);
+        if (entry != created) {
+            suppressed.increment();
+            return entry.future;
+        }
+        order.add(created);
+        queued.incrementAndGet();
+        evict(now);
+        CompletableFuture<byte[]> load;
+        try {
+            load = loader.get();
+        } catch (RuntimeException e) {
+            load = CompletableFuture.failedFuture(e);
+        }
+        load.whenComplete((body, error) -> {
+            if (error != null) {
+                entries.remove(key, created);
+                created.future.completeExceptionally(Futures.unwrap(error));
+            } else {
+                created.future.complete(body);
+            }
+        });
+        return created.future;
+    }
+
+    /** Drops expired entries, and the oldest ones while there are more than {@code maxSize}. */
+    private void evict(long now) {
+        Entry head;
+        while ((head = order.peek()) != null && (head.expiresAt - now <= 0 || queued.get() > maxSize)) {
+            if (order.remove(head)) {
+                queued.decrementAndGet();
+                entries.remove(head.key, head);
+            }
+        }
+    }
+
+    /** The call made first with a key. */
+    private static final class Entry {
+        final String key;
+        final long expiresAt;
+        final CompletableFuture<byte[]> future = new CompletableFuture<>();
+
+        Entry(String key, long expiresAt) {
+            this.key = key;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isUsable(long now) {
+            return expiresAt - now > 0 && !future.isCompletedExceptionally();
+        }
+    }
+
+    /**
+     * Builder for {@link IdempotencyIndex}.
+     */
+    public static final class Builder {
+        private Duration ttl = DEFAULT_TTL;
+        private Duration window = DEFAULT_WINDOW;
+        private int maxSize = DEFAULT_MAX_SIZE;
+
+        private Builder() {
+        }
+
+        /**
+         * @param ttl Time a key is remembered after its first call
+         * @return this builder
+         */
+        public Builder ttl(Duration ttl) {
+            this.ttl = requirePositive(ttl, "ttl");
+            return this;
+        }
+
+        /**
+         * @param window Time window of derived keys: identical sends within one window are duplicates
+         * @return this builder
+         */
+        public Builder window(Duration window) {
+            if (window == null || window.toMillis() < 1) {
+                throw new IllegalArgumentException("window must be at least 1 ms");
+            }
+            this.window = window;
+            return this;
+        }
+
+        /**
+         * @param maxSize Maximum number of remembered keys
+         * @return this builder
+         */
+        public Builder maxSize(int maxSize) {
+            if (maxSize < 1) {
+                throw new IllegalArgumentException("maxSize must be positive");
+            }
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * @return new index
+         */
+        public IdempotencyIndex build() {
+            return new IdempotencyIndex(this);
+        }
+
+        private static Duration requirePositive(Duration value, String paramName) {
+            if (value == null || value.isNegative() || value.isZero()) {
+                throw new IllegalArgumentException(paramName + " must be positive");
+            }
+            return value;
+        }
+    }
+}
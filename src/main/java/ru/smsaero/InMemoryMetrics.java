@@ -0,0 +1,180 @@
+package ru.smsaero;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link ClientMetrics} kept in memory: per method a latency histogram, success and error counts by exception
+ * type and the number of calls in flight; per gate the number of exchanges; and totals of bytes sent and received,
+ * failovers, plain HTTP fallbacks and retries.
+ *
+ * <p>Recording is lock-free. Latency percentiles come from a log-linear histogram and are at most 12.5% above
+ * the true value. One instance may be shared by several clients to add up their calls.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * InMemoryMetrics metrics = InMemoryMetrics.create();
+ * SmsAero client = SmsAero.builder(email, apiKey).metrics(metrics).build();
+ * ...
+ * System.out.println("sms/send p99: " + metrics.latency("sms/send", 0.99).toMillis() + " ms");
+ * }</pre>
+ */
+public final class InMemoryMetrics implements ClientMetrics {
+    private final ConcurrentHashMap<String, MethodStats> methods = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> gateExchanges = new ConcurrentHashMap<>();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder failovers = new LongAdder();
+    private final LongAdder plainHttpFallbacks = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+
+    private InMemoryMetrics() {
+    }
+
+    /**
+     * Creates empty metrics.
+     *
+     * @return new metrics
+     */
+    public static InMemoryMetrics create() {
+        return new InMemoryMetrics();
+    }
+
+    @Override
+    public void onCallStart(String method) {
+        stats(method).inFlight.incrementAndGet();
+    }
+
+    @Override
+    public void onCallEnd(String method, long nanos, Throwable error) {
+        MethodStats stats = stats(method);
+        stats.inFlight.decrementAndGet();
+        stats.latency.record(nanos);
+        if (error == null) {
+            stats.successes.increment();
+        } else {
+            stats.errors.computeIfAbsent(error.getClass().getSimpleName(), type -> new LongAdder()).increment();
+        }
+    }
+
+    @Override
+    public void onExchange(String method, String gate, int statusCode, long nanos, long bytesSent,
+            long bytesReceived) {
+        gateExchanges.computeIfAbsent(gate, g -> new LongAdder()).increment();
+        this.bytesSent.add(bytesSent);
+        this.bytesReceived.add(bytesReceived);
+    }
+
+    @Override
+    public void onFailover(String method, String gate) {
+        failovers.increment();
+    }
+
+    @Override
+    public void onPlainHttpFallback(String method, String gate) {
+        plainHttpFallbacks.increment();
+    }
+
+    @Override
+    public void onRetry(String method, int attempt) {
+        retries.increment();
+    }
+
+    /** @return methods called so far */
+    public Set<String> methods() {
+        return Set.copyOf(methods.keySet());
+    }
+
+    /**
+     * @param method API method, e.g. "sms/send"
+     * @return number of completed calls of the method that succeeded
+     */
+    public long successes(String method) {
+        MethodStats stats = methods.get(method);
+        return stats != null ? stats.successes.sum() : 0;
+    }
+
+    /**
+     * @param method API method
+     * @return number of failed calls of the method by simple exception class name, e.g. "ServerErrorException"
+     */
+    public Map<String, Long> errors(String method) {
+        MethodStats stats = methods.get(method);
+        return stats != null ? sums(stats.errors) : Map.of();
+    }
+
+    /**
+     * @param method API method
+     * @return number of calls of the method in flight
+     */
+    public int inFlight(String method) {
+        MethodStats stats = methods.get(method);
+        return stats != null ? stats.inFlight.get() : 0;
+    }
+
+    /**
+     * @param method     API method
+     * @param percentile Fraction in (0, 1], e.g. 0.99
+     * @return latency percentile of completed calls of the method, or zero if there were none
+     */
+    public Duration latency(String method, double percentile) {
+        if (!(percentile > 0 && percentile <= 1)) {
+            throw new IllegalArgumentException("percentile must be in (0, 1]");
+        }
+        MethodStats stats = methods.get(method);
+        return Duration.ofNanos(stats != null ? stats.latency.percentile(percentile) : 0);
+    }
+
+    /** @return number of exchanges by gate URL */
+    public Map<String, Long> gateExchanges() {
+        return sums(gateExchanges);
+    }
+
+    /** @return total size of request bodies */
+    public long bytesSent() {
+        return bytesSent.sum();
+    }
+
+    /** @return total size of response bodies */
+    public long bytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    /** @return number of times a call moved on to the next gate after a network error */
+    public long failovers() {
+        return failovers.sum();
+    }
+
+    /** @return number of requests sent again over plain HTTP after a failed TLS handshake */
+    public long plainHttpFallbacks() {
+        return plainHttpFallbacks.sum();
+    }
+
+    /** @return number of retries made by a {@link RetryPolicy} */
+    public long retries() {
+        return retries.sum();
+    }
+
+    private MethodStats stats(String method) {
+        MethodStats stats = methods.get(method);
+        return stats != null ? stats : methods.computeIfAbsent(method, m -> new MethodStats());
+    }
+
+    private static Map<String, Long> sums(Map<String, LongAdder> counters) {
+        Map<String, Long> sums = new TreeMap<>();
+        counters.forEach((name, counter) -> sums.put(name, counter.sum()));
+        return sums;
+    }
+
+    private static final class MethodStats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder successes = new LongAdder();
+        final ConcurrentHashMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+        final AtomicInteger inFlight = new AtomicInteger();
+    }
+}
@@ -0,0 +1,623 @@
+package ru.smsaero;
+
+import java.nio.charset.StandardCharsets;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Pull parser reading JSON straight from UTF-8 response bytes.
+ *
+ * <p>Unlike {@link org.json.simple.parser.JSONParser} it builds no tree: callers walk the document, decode the
+ * values they need into primitives and skip the rest without allocating. Field names can be matched against
+ * pre-encoded {@link Names} without creating strings. Numeric getters accept numbers sent as strings
+ * ({@code "cost": "1.00"}) and read {@code null} or an empty string as zero.
+ */
+final class JsonReader {
+    /**
+     * Reads one JSON value into a typed object.
+     */
+    @FunctionalInterface
+    interface Decoder<T> {
+        T read(JsonReader reader) throws ParseException;
+    }
+
+    enum Token { BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT }
+
+    /**
+     * Field names encoded once, for allocation-free matching with {@link #selectName(Names)}.
+     */
+    static final class Names {
+        private final String[] strings;
+        private final byte[][] bytes;
+
+        private Names(String[] strings) {
+            this.strings = strings;
+            this.bytes = new byte[strings.length][];
+            for (int i = 0; i < strings.length; i++) {
+                bytes[i] = strings[i].getBytes(StandardCharsets.UTF_8);
+            }
+        }
+
+        static Names of(String... names) {
+            return new Names(names.clone());
+        }
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15,
+        1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22,
+    };
+    /** Mantissas below 2^53 convert to double exactly, so mantissa / 10^k is correctly rounded. */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private final byte[] buf;
+    private final int end;
+    private int pos;
+
+    JsonReader(byte[] buf) {
+        this(buf, 0, buf.length);
+    }
+
+    JsonReader(byte[] buf, int offset, int length) {
+        this.buf = buf;
+        this.pos = offset;
+        this.end = offset + length;
+    }
+
+    Token peek() throws ParseException {
+        skipWhitespace();
+        if (pos >= end) {
+            return Token.END_DOCUMENT;
+        }
+        switch (buf[pos]) {
+            case '{':
+                return Token.BEGIN_OBJECT;
+            case '}':
+                return Token.END_OBJECT;
+            case '[':
+                return Token.BEGIN_ARRAY;
+            case ']':
+                return Token.END_ARRAY;
+            case '"':
+                return Token.STRING;
+            case 't':
+            case 'f':
+                return Token.BOOLEAN;
+            case 'n':
+                return Token.NULL;
+            default:
+                if (buf[pos] == '-' || isDigit(buf[pos])) {
+                    return Token.NUMBER;
+                }
+                throw unexpected();
+        }
+    }
+
+    void beginObject() throws ParseException {
+        expect('{');
+    }
+
+    void endObject() throws ParseException {
+        expect('}');
+    }
+
+    void beginArray() throws ParseException {
+        expect('[');
+    }
+
+    void endArray() throws ParseException {
+        expect(']');
+    }
+
+    /** Returns true if the current object or array has another element; consumes the separating comma. */
+    boolean hasNext() throws ParseException {
+        skipWhitespace();
+        if (pos < end && buf[pos] == ',') {
+            pos++;
+            skipWhitespace();
+        }
+        if (pos >= end) {
+            throw unexpected();
+        }
+        return buf[pos] != '}' && buf[pos] != ']';
+    }
+
+    String nextName() throws ParseException {
+        String name = nextQuoted();
+        expect(':');
+        return name;
+    }
+
+    /**
+     * Reads a field name and returns its index in {@code names}, or -1 if it is not one of them.
+     */
+    int selectName(Names names) throws ParseException {
+        expect('"');
+        int start = pos;
+        int close = findClosingQuote(start);
+        int index = -1;
+        if (close < 0) {
+            // Escaped name: rare, decode it and compare as a string.
+            pos = start - 1;
+            String name = nextQuoted();
+            for (int i = 0; i < names.strings.length && index < 0; i++) {
+                if (names.strings[i].equals(name)) {
+                    index = i;
+                }
+            }
+        } else {
+            int length = close - start;
+            for (int i = 0; i < names.bytes.length && index < 0; i++) {
+                if (regionMatches(names.bytes[i], start, length)) {
+                    index = i;
+                }
+            }
+            pos = close + 1;
+        }
+        expect(':');
+        return index;
+    }
+
+    /** Reads a string; numbers and booleans are returned as their literal text, null as null. */
+    String nextString() throws ParseException {
+        switch (peek()) {
+            case STRING:
+                return nextQuoted();
+            case NUMBER:
+            case BOOLEAN:
+                int start = pos;
+                skipLiteral();
+                return new String(buf, start, pos - start, StandardCharsets.UTF_8);
+            case NULL:
+                nextNull();
+                return null;
+            default:
+                throw unexpected();
+        }
+    }
+
+    long nextLong() throws ParseException {
+        Token token = peek();
+        if (token == Token.NULL) {
+            nextNull();
+            return 0;
+        }
+        boolean quoted = token == Token.STRING;
+        if (quoted) {
+            pos++;
+        }
+        int start = pos;
+        long value = 0;
+        boolean negative = pos < end && buf[pos] == '-';
+        if (negative) {
+            pos++;
+        }
+        int digits = 0;
+        while (pos < end && isDigit(buf[pos]) && digits < 18) {
+            value = value * 10 + (buf[pos++] - '0');
+            digits++;
+        }
+        if (pos < end && (isDigit(buf[pos]) || buf[pos] == '.' || buf[pos] == 'e' || buf[pos] == 'E')) {
+            pos = start;
+            String text = readNumberText(quoted);
+            try {
+                return Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                return (long) parseDouble(text, start);
+            }
+        }
+        if (quoted) {
+            expectQuoteAfterNumber(start, digits);
+        } else if (digits == 0) {
+            throw unexpected();
+        }
+        return negative ? -value : value;
+    }
+
+    int nextInt() throws ParseException {
+        long value = nextLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new ParseException(pos, ParseException.ERROR_UNEXPECTED_TOKEN, value);
+        }
+        return (int) value;
+    }
+
+    double nextDouble() throws ParseException {
+        Token token = peek();
+        if (token == Token.NULL) {
+            nextNull();
+            return 0;
+        }
+        boolean quoted = token == Token.STRING;
+        if (quoted) {
+            pos++;
+        }
+        int start = pos;
+        boolean negative = pos < end && buf[pos] == '-';
+        if (negative) {
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        while (pos < end && isDigit(buf[pos])) {
+            mantissa = mantissa * 10 + (buf[pos++] - '0');
+            digits++;
+            if (mantissa >= MAX_EXACT_MANTISSA) {
+                pos = start;
+                return readDoubleSlow(quoted);
+            }
+        }
+        if (pos < end && buf[pos] == '.') {
+            pos++;
+            while (pos < end && isDigit(buf[pos])) {
+                mantissa = mantissa * 10 + (buf[pos++] - '0');
+                digits++;
+                fractionDigits++;
+                if (mantissa >= MAX_EXACT_MANTISSA || fractionDigits >= POWERS_OF_TEN.length) {
+                    pos = start;
+                    return readDoubleSlow(quoted);
+                }
+            }
+        }
+        if (pos < end && (buf[pos] == 'e' || buf[pos] == 'E')) {
+            pos = start;
+            return readDoubleSlow(quoted);
+        }
+        if (quoted) {
+            expectQuoteAfterNumber(start, digits);
+        } else if (digits == 0) {
+            throw unexpected();
+        }
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    boolean nextBoolean() throws ParseException {
+        Token token = peek();
+        if (token == Token.STRING) {
+            return Boolean.parseBoolean(nextQuoted());
+        }
+        if (token != Token.BOOLEAN) {
+            throw unexpected();
+        }
+        if (matchLiteral("true")) {
+            return true;
+        }
+        if (matchLiteral("false")) {
+            return false;
+        }
+        throw unexpected();
+    }
+
+    void nextNull() throws ParseException {
+        skipWhitespace();
+        if (!matchLiteral("null")) {
+            throw unexpected();
+        }
+    }
+
+    /** Consumes the next value and returns true if it is null; otherwise leaves it in place and returns false. */
+    boolean skipNull() throws ParseException {
+        if (peek() != Token.NULL) {
+            return false;
+        }
+        nextNull();
+        return true;
+    }
+
+    /** Returns the next value as its JSON source text, whatever its type. */
+    String nextRaw() throws ParseException {
+        skipWhitespace();
+        int start = pos;
+        skipValue();
+        return new String(buf, start, pos - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the next value into the json-simple types {@link org.json.simple.parser.JSONParser} would produce:
+     * {@link JSONObject}, {@link JSONArray}, {@link String}, {@link Long}, {@link Double}, {@link Boolean} or null.
+     */
+    @SuppressWarnings("unchecked")
+    Object nextTree() throws ParseException {
+        switch (peek()) {
+            case BEGIN_OBJECT:
+                JSONObject object = new JSONObject();
+                beginObject();
+                while (hasNext()) {
+                    String name = nextName();
+                    object.put(name, nextTree());
+                }
+                endObject();
+                return object;
+            case BEGIN_ARRAY:
+                JSONArray array = new JSONArray();
+                beginArray();
+                while (hasNext()) {
+                    array.add(nextTree());
+                }
+                endArray();
+                return array;
+            case NUMBER:
+                String number = nextString();
+                if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+                    try {
+                        return Long.valueOf(number);
+                    } catch (NumberFormatException e) {
+                        // Out of long range, like json-simple read it as a double.
+                    }
+                }
+                return Double.valueOf(number);
+            case BOOLEAN:
+                return nextBoolean();
+            case NULL:
+                nextNull();
+                return null;
+            case STRING:
+                return nextString();
+            default:
+                throw unexpected();
+        }
+    }
+
+    /** Skips the next value, including nested objects and arrays, without allocating. */
+    void skipValue() throws ParseException {
+        int depth = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT:
+                case BEGIN_ARRAY:
+                    pos++;
+                    depth++;
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    if (depth == 0) {
+                        throw unexpected();
+                    }
+                    pos++;
+                    depth--;
+                    break;
+                case STRING:
+                    pos++;
+                    skipQuotedRemainder();
+                    break;
+                case END_DOCUMENT:
+                    throw unexpected();
+                default:
+                    skipLiteral();
+                    break;
+            }
+            if (depth > 0) {
+                // Inside a container: step over separators and names.
+                skipWhitespace();
+                if (pos < end && (buf[pos] == ',' || buf[pos] == ':')) {
+                    pos++;
+                }
+            }
+        } while (depth > 0);
+    }
+
+    private String nextQuoted() throws ParseException {
+        expect('"');
+        int start = pos;
+        int close = findClosingQuote(start);
+        if (close >= 0) {
+            pos = close + 1;
+            return new String(buf, start, close - start, StandardCharsets.UTF_8);
+        }
+        StringBuilder sb = new StringBuilder();
+        int run = start;
+        while (true) {
+            if (pos >= end) {
+                throw unexpected();
+            }
+            byte b = buf[pos];
+            if (b == '"') {
+                sb.append(new String(buf, run, pos - run, StandardCharsets.UTF_8));
+                pos++;
+                return sb.toString();
+            }
+            if (b != '\\') {
+                pos++;
+                continue;
+            }
+            sb.append(new String(buf, run, pos - run, StandardCharsets.UTF_8));
+            if (pos + 1 >= end) {
+                throw unexpected();
+            }
+            byte escaped = buf[pos + 1];
+            pos += 2;
+            switch (escaped) {
+                case '"':
+                case '\\':
+                case '/':
+                    sb.append((char) escaped);
+                    break;
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'u':
+                    sb.append(readHexChar());
+                    break;
+                default:
+                    pos -= 1;
+                    throw unexpected();
+            }
+            run = pos;
+        }
+    }
+
+    private char readHexChar() throws ParseException {
+        if (pos + 4 > end) {
+            throw unexpected();
+        }
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(buf[pos], 16);
+            if (digit < 0) {
+                throw unexpected();
+            }
+            value = value * 16 + digit;
+            pos++;
+        }
+        return (char) value;
+    }
+
+    /** Returns the index of the closing quote of a string without escapes, or -1 if the string has escapes. */
+    private int findClosingQuote(int start) throws ParseException {
+        for (int i = start; i < end; i++) {
+            if (buf[i] == '"') {
+                return i;
+            }
+            if (buf[i] == '\\') {
+                return -1;
+            }
+        }
+        pos = end;
+        throw unexpected();
+    }
+
+    private void skipQuotedRemainder() throws ParseException {
+        while (pos < end) {
+            byte b = buf[pos++];
+            if (b == '"') {
+                return;
+            }
+            if (b == '\\') {
+                pos++;
+            }
+        }
+        throw unexpected();
+    }
+
+    private void skipLiteral() {
+        while (pos < end) {
+            byte b = buf[pos];
+            if (b == ',' || b == '}' || b == ']' || b == ':' || isWhitespace(b)) {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private double readDoubleSlow(boolean quoted) throws ParseException {
+        int start = pos;
+        return parseDouble(readNumberText(quoted), start);
+    }
+
+    private String readNumberText(boolean quoted) throws ParseException {
+        int start = pos;
+        skipLiteralOrQuoted(quoted);
+        String text = new String(buf, start, pos - start, StandardCharsets.UTF_8);
+        if (quoted) {
+            pos++;
+        }
+        return text;
+    }
+
+    private static double parseDouble(String text, int position) throws ParseException {
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw new ParseException(position, ParseException.ERROR_UNEXPECTED_TOKEN, text);
+        }
+    }
+
+    private void skipLiteralOrQuoted(boolean quoted) throws ParseException {
+        if (!quoted) {
+            skipLiteral();
+            return;
+        }
+        while (pos < end && buf[pos] != '"') {
+            pos++;
+        }
+        if (pos >= end) {
+            throw unexpected();
+        }
+    }
+
+    private void expectQuoteAfterNumber(int start, int digits) throws ParseException {
+        if (pos < end && buf[pos] == '"') {
+            pos++;
+            if (digits == 0 && pos - start > 1) {
+                throw new ParseException(start, ParseException.ERROR_UNEXPECTED_TOKEN,
+                    new String(buf, start, pos - start - 1, StandardCharsets.UTF_8));
+            }
+            return;
+        }
+        pos = start;
+        skipLiteralOrQuoted(true);
+        throw new ParseException(start, ParseException.ERROR_UNEXPECTED_TOKEN,
+            new String(buf, start, pos - start, StandardCharsets.UTF_8));
+    }
+
+    private boolean matchLiteral(String literal) {
+        int length = literal.length();
+        if (pos + length > end) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buf[pos + i] != literal.charAt(i)) {
+                return false;
+            }
+        }
+        pos += length;
+        return true;
+    }
+
+    private boolean regionMatches(byte[] name, int start, int length) {
+        if (name.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buf[start + i] != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void expect(char c) throws ParseException {
+        skipWhitespace();
+        if (pos >= end || buf[pos] != c) {
+            throw unexpected();
+        }
+        pos++;
+    }
+
+    private void skipWhitespace() {
+        while (pos < end && isWhitespace(buf[pos])) {
+            pos++;
+        }
+    }
+
+    private ParseException unexpected() {
+        if (pos >= end) {
+            return new ParseException(pos, ParseException.ERROR_UNEXPECTED_TOKEN, null);
+        }
+        return new ParseException(pos, ParseException.ERROR_UNEXPECTED_CHAR, (char) (buf[pos] & 0xFF));
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
@@ -0,0 +1,260 @@
+package ru.smsaero;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.json.simple.JSONValue;
+
+/**
+ * Encodes a request body as UTF-8 JSON directly into a byte array of the exact size.
+ *
+ * <p>The body is measured in a first pass and written in a second, so the only allocation is the result array:
+ * there is no intermediate {@link org.json.simple.JSONObject}, {@link String} or growing buffer. The array is
+ * handed to the transport as is and may be sent more than once (failover, hedging), so it is never pooled.
+ *
+ * <p>Strings, numbers, booleans and null are written natively; any other value falls back to
+ * {@link JSONValue#toJSONString(Object)}.
+ */
+final class JsonWriter {
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final byte[] out;
+    private int pos;
+
+    private JsonWriter(int size) {
+        this.out = new byte[size];
+    }
+
+    /**
+     * Writes {@code form} merged with {@code params} as one JSON object; a key present in both takes the value
+     * from {@code params}.
+     */
+    static byte[] write(Map<String, ?> form, Map<String, String> params) {
+        int size = 2;
+        int fields = 0;
+        if (form != null) {
+            for (Map.Entry<String, ?> entry : form.entrySet()) {
+                if (!params.containsKey(entry.getKey())) {
+                    size += fieldSize(entry.getKey(), entry.getValue());
+                    fields++;
+                }
+            }
+        }
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            size += fieldSize(entry.getKey(), entry.getValue());
+            fields++;
+        }
+        size += Math.max(0, fields - 1);
+
+        JsonWriter writer = new JsonWriter(size);
+        writer.out[writer.pos++] = '{';
+        if (form != null) {
+            for (Map.Entry<String, ?> entry : form.entrySet()) {
+                if (!params.containsKey(entry.getKey())) {
+                    writer.field(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            writer.field(entry.getKey(), entry.getValue());
+        }
+        writer.out[writer.pos++] = '}';
+        return writer.out;
+    }
+
+    private static int fieldSize(String key, Object value) {
+        return stringSize(key) + 1 + valueSize(value);
+    }
+
+    private static int valueSize(Object value) {
+        if (value == null) {
+            return 4;
+        }
+        if (value instanceof String) {
+            return stringSize((String) value);
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return longSize(((Number) value).longValue());
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? 4 : 5;
+        }
+        return rawSize(fallback(value));
+    }
+
+    private void field(String key, Object value) {
+        if (out[pos - 1] != '{') {
+            out[pos++] = ',';
+        }
+        string(key);
+        out[pos++] = ':';
+        if (value == null) {
+            ascii("null");
+        } else if (value instanceof String) {
+            string((String) value);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                || value instanceof Byte) {
+            number(((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            ascii((Boolean) value ? "true" : "false");
+        } else {
+            raw(fallback(value));
+        }
+    }
+
+    private static String fallback(Object value) {
+        return JSONValue.toJSONString(value);
+    }
+
+    /** Size of a quoted, escaped string in UTF-8. */
+    private static int stringSize(String s) {
+        int size = 2;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\' || c == '\n' || c == '\r' || c == '\t' || c == '\b' || c == '\f') {
+                size += 2;
+            } else if (c < 0x20) {
+                size += 6;
+            } else if (c < 0x80) {
+                size += 1;
+            } else if (c < 0x800) {
+                size += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                size += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate: written as '?', like String.getBytes(UTF_8) does.
+                size += 1;
+            } else {
+                size += 3;
+            }
+        }
+        return size;
+    }
+
+    private void string(String s) {
+        out[pos++] = '"';
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                out[pos++] = (byte) c;
+            } else if (c < 0x80) {
+                escape(c);
+            } else if (c < 0x800) {
+                out[pos++] = (byte) (0xC0 | (c >> 6));
+                out[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                out[pos++] = (byte) (0xF0 | (cp >> 18));
+                out[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                out[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                out[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                out[pos++] = '?';
+            } else {
+                out[pos++] = (byte) (0xE0 | (c >> 12));
+                out[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                out[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        out[pos++] = '"';
+    }
+
+    private void escape(char c) {
+        out[pos++] = '\\';
+        switch (c) {
+            case '"':
+                out[pos++] = '"';
+                break;
+            case '\\':
+                out[pos++] = '\\';
+                break;
+            case '\n':
+                out[pos++] = 'n';
+                break;
+            case '\r':
+                out[pos++] = 'r';
+                break;
+            case '\t':
+                out[pos++] = 't';
+                break;
+            case '\b':
+                out[pos++] = 'b';
+                break;
+            case '\f':
+                out[pos++] = 'f';
+                break;
+            default:
+                out[pos++] = 'u';
+                out[pos++] = '0';
+                out[pos++] = '0';
+                out[pos++] = HEX[c >> 4];
+                out[pos++] = HEX[c & 0xF];
+                break;
+        }
+    }
+
+    private static int longSize(long value) {
+        if (value == Long.MIN_VALUE) {
+            return 20;
+        }
+        int size = value < 0 ? 2 : 1;
+        long v = Math.abs(value);
+        while (v >= 10) {
+            v /= 10;
+            size++;
+        }
+        return size;
+    }
+
+    private void number(long value) {
+        if (value == Long.MIN_VALUE) {
+            ascii("-9223372036854775808");
+            return;
+        }
+        if (value < 0) {
+            out[pos++] = '-';
+            value = -value;
+        }
+        int end = pos + longSize(value);
+        int p = end;
+        do {
+            out[--p] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        pos = end;
+    }
+
+    private void ascii(String s) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            out[pos++] = (byte) s.charAt(i);
+        }
+    }
+
+    /** Size of already encoded JSON text: like a string without quotes or escaping. */
+    private static int rawSize(String json) {
+        int size = 0;
+        for (int i = 0, n = json.length(); i < n; i++) {
+            char c = json.charAt(i);
+            if (c < 0x80) {
+                size += 1;
+            } else if (c < 0x800) {
+                size += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(json.charAt(i + 1))) {
+                size += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                size += 1;
+            } else {
+                size += 3;
+            }
+        }
+        return size;
+    }
+
+    private void raw(String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(bytes, 0, out, pos, bytes.length);
+        pos += bytes.length;
+    }
+}
@@ -0,0 +1,590 @@
+package ru.smsaero;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of per-number lookups: {@code number/operator} and {@code hlr/check}. A repeated
+ * {@code HlrCheck} of a cached number returns the earlier HLR request instead of paying for a new one; its result
+ * is then read with the free {@code HlrStatus}.
+ *
+ * <p>Entries are keyed by the number as a primitive {@code long}, held in 16 independently locked stripes of
+ * open-addressing tables with LRU order kept in {@code int} arrays, so an entry costs its response bytes plus a
+ * few dozen bytes of arrays and no boxed keys or list nodes. An entry is evicted when its TTL passes or when its
+ * stripe is full and it is the least recently used. Concurrent misses for the same number share one request.
+ * Numbers that are not all digits bypass the cache.
+ *
+ * <p>With {@link Builder#persistTo(Path)} the cache is loaded from the file when built and written back by
+ * {@link #save()} and {@link #close()}, so it survives restarts. A missing or unreadable file starts an empty
+ * cache.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * LookupCache lookups = LookupCache.builder().maxSize(500_000).persistTo(Path.of("lookups.bin")).build();
+ * SmsAero client = SmsAero.builder(email, apiKey).lookupCache(lookups).build();
+ * }</pre>
+ */
+public final class LookupCache implements AutoCloseable {
+    /** Default maximum number of entries. */
+    public static final int DEFAULT_MAX_SIZE = 100_000;
+    /** Default TTLs: {@code number/operator} 7 days, {@code hlr/check} 1 day. */
+    public static final Map<String, Duration> DEFAULT_TTLS = Map.of(
+        "number/operator", Duration.ofDays(7),
+        "hlr/check", Duration.ofDays(1));
+
+    private static final int STRIPES = 16;
+    private static final int FILE_MAGIC = 0x534d4c43;
+    private static final int FILE_VERSION = 1;
+    /** Numbers have at most 15 digits (under 2^50); the method goes in the top bits of the key. */
+    private static final int MAX_DIGITS = 15;
+    private static final Map<String, Long> METHOD_TAGS = Map.of("number/operator", 1L << 56, "hlr/check", 2L << 56);
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final Map<String, Long> ttlMillis;
+    private final Path file;
+    private final ConcurrentHashMap<Long, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicBoolean attached = new AtomicBoolean();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private LookupCache(Builder builder) {
+        int perStripe = Math.max(1, (builder.maxSize + STRIPES - 1) / STRIPES);
+        clear(perStripe);
+        Map<String, Long> ttlMillis = new HashMap<>();
+        builder.ttls.forEach((method, ttl) -> {
+            if (!ttl.isZero()) {
+                ttlMillis.put(method, ttl.toMillis());
+            }
+        });
+        this.ttlMillis = Map.copyOf(ttlMillis);
+        this.file = builder.file;
+        if (file != null) {
+            try {
+                load();
+            } catch (IOException | RuntimeException e) {
+                // A cache file that cannot be read starts an empty cache and is rewritten by the next save.
+                clear(perStripe);
+            }
+        }
+    }
+
+    private void clear(int perStripe) {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(perStripe, evictions);
+        }
+        evictions.reset();
+    }
+
+    /**
+     * Creates a builder for a cache with custom settings.
+     *
+     * @return new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** @return number of lookups answered from the cache, including lookups that joined a request in flight */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /** @return number of lookups that had to fetch */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /** @return number of entries evicted to make room */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /** @return number of entries, including expired ones not yet evicted */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    /**
+     * Drops the cached lookups of a number.
+     *
+     * @param number Phone number (format 70000000000)
+     */
+    public void invalidate(String number) {
+        long digits = parseNumber(number);
+        if (digits < 0) {
+            return;
+        }
+        for (long tag : METHOD_TAGS.values()) {
+            long key = tag | digits;
+            stripe(key).remove(key);
+        }
+    }
+
+    /** Drops all entries. */
+    public void invalidateAll() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    /**
+     * Writes the live entries to the file given to {@link Builder#persistTo(Path)}, replacing it atomically.
+     * Does nothing without a file.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public void save() throws IOException {
+        if (file == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<Stripe.Snapshot> snapshots = new ArrayList<>(STRIPES);
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            Stripe.Snapshot snapshot = stripe.snapshot(now);
+            snapshots.add(snapshot);
+            count += snapshot.keys.length;
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeInt(count);
+            for (Stripe.Snapshot snapshot : snapshots) {
+                for (int i = 0; i < snapshot.keys.length; i++) {
+                    out.writeLong(snapshot.keys[i]);
+                    out.writeLong(snapshot.expiresAt[i]);
+                    out.writeInt(snapshot.values[i].length);
+                    out.write(snapshot.values[i]);
+                }
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Saves the cache if it is persistent.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        save();
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                throw new IOException("Not a lookup cache file: " + file);
+            }
+            long now = System.currentTimeMillis();
+            long size = Files.size(file);
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Bad entry count in lookup cache file: " + file);
+            }
+            for (int i = 0; i < count; i++) {
+                long key = in.readLong();
+                long expiresAt = in.readLong();
+                int length = in.readInt();
+                if (length < 0 || length > size) {
+                    throw new IOException("Bad entry length in lookup cache file: " + file);
+                }
+                byte[] value = new byte[length];
+                in.readFully(value);
+                // Entries were written least recently used first, so the LRU order is restored.
+                if (expiresAt > now) {
+                    stripe(key).put(key, value, expiresAt);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // First run.
+        }
+    }
+
+    /** Binds the cache to its client: HLR request ids belong to one account. */
+    void attach() {
+        if (!attached.compareAndSet(false, true)) {
+            throw new IllegalArgumentException("lookupCache is already used by another client");
+        }
+    }
+
+    /** Releases the binding of a client whose build failed. */
+    void detach() {
+        attached.set(false);
+    }
+
+    /**
+     * @return the cache key of a lookup, or -1 if the call is not cacheable
+     */
+    long key(String method, Map<String, ?> form) {
+        Long tag = METHOD_TAGS.get(method);
+        if (tag == null || !ttlMillis.containsKey(method) || form == null || form.size() != 1) {
+            return -1;
+        }
+        Object number = form.get("number");
+        long digits = number instanceof String ? parseNumber((String) number) : -1;
+        return digits < 0 ? -1 : tag | digits;
+    }
+
+    /**
+     * Returns the cached response body for a key from {@link #key}, fetching it with the loader on a miss. The
+     * returned future is shared: callers must not cancel or complete it.
+     */
+    CompletableFuture<byte[]> get(String method, long key, Supplier<CompletableFuture<byte[]>> loader) {
+        Stripe stripe = stripe(key);
+        byte[] cached = stripe.get(key, System.currentTimeMillis());
+        if (cached != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<byte[]> created = new CompletableFuture<>();
+        CompletableFuture<byte[]> pending = inFlight.putIfAbsent(key, created);
+        if (pending != null) {
+            hits.increment();
+            return pending;
+        }
+        misses.increment();
+        long ttl = ttlMillis.get(method);
+        CompletableFuture<byte[]> load;
+        try {
+            load = loader.get();
+        } catch (RuntimeException e) {
+            load = CompletableFuture.failedFuture(e);
+        }
+        load.whenComplete((body, error) -> {
+            if (error == null) {
+                stripe.put(key, body, System.currentTimeMillis() + ttl);
+            }
+            inFlight.remove(key, created);
+            if (error == null) {
+                created.complete(body);
+            } else {
+                created.completeExceptionally(Futures.unwrap(error));
+            }
+        });
+        return created;
+    }
+
+    private Stripe stripe(long key) {
+        return stripes[(int) (mix(key) >>> 60)];
+    }
+
+    /** @return the digits of a number as a long, or -1 if it is empty, too long or not all digits */
+    static long parseNumber(String number) {
+        if (number == null || number.isEmpty() || number.length() > MAX_DIGITS) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /** Murmur3 finalizer: spreads keys that differ in low digits over all bits. */
+    static long mix(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * One lock's share of the cache. Entries live in slots {@code 0..capacity-1} of parallel arrays; {@code index}
+     * maps keys to slots by linear probing and {@code prev}/{@code next} link the slots in LRU order.
+     */
+    private static final class Stripe {
+        private final int capacity;
+        private final LongAdder evictions;
+        private final long[] keys;
+        private final long[] expiresAt;
+        private final byte[][] values;
+        private final int[] prev;
+        private final int[] next;
+        /** Slot + 1 per bucket, 0 for empty. */
+        private final int[] index;
+        private final int mask;
+        private int head = -1;
+        private int tail = -1;
+        private int freeHead = -1;
+        private int allocated;
+        private int size;
+
+        Stripe(int capacity, LongAdder evictions) {
+            this.capacity = capacity;
+            this.evictions = evictions;
+            this.keys = new long[capacity];
+            this.expiresAt = new long[capacity];
+            this.values = new byte[capacity][];
+            this.prev = new int[capacity];
+            this.next = new int[capacity];
+            int buckets = Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+            this.index = new int[buckets];
+            this.mask = buckets - 1;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized byte[] get(long key, long now) {
+            int slot = find(key);
+            if (slot < 0) {
+                return null;
+            }
+            if (expiresAt[slot] <= now) {
+                removeSlot(slot);
+                return null;
+            }
+            if (slot != head) {
+                unlink(slot);
+                pushFront(slot);
+            }
+            return values[slot];
+        }
+
+        synchronized void put(long key, byte[] value, long expiry) {
+            int slot = find(key);
+            if (slot >= 0) {
+                unlink(slot);
+            } else {
+                if (size == capacity) {
+                    evictions.increment();
+                    removeSlot(tail);
+                }
+                if (freeHead >= 0) {
+                    slot = freeHead;
+                    freeHead = next[slot];
+                } else {
+                    slot = allocated++;
+                }
+                keys[slot] = key;
+                insertIndex(key, slot);
+                size++;
+            }
+            values[slot] = value;
+            expiresAt[slot] = expiry;
+            pushFront(slot);
+        }
+
+        synchronized void remove(long key) {
+            int slot = find(key);
+            if (slot >= 0) {
+                removeSlot(slot);
+            }
+        }
+
+        synchronized void clear() {
+            Arrays.fill(index, 0);
+            Arrays.fill(values, null);
+            head = -1;
+            tail = -1;
+            freeHead = -1;
+            allocated = 0;
+            size = 0;
+        }
+
+        /** @return live entries, least recently used first */
+        synchronized Snapshot snapshot(long now) {
+            int live = 0;
+            for (int slot = tail; slot >= 0; slot = prev[slot]) {
+                if (expiresAt[slot] > now) {
+                    live++;
+                }
+            }
+            Snapshot snapshot = new Snapshot(live);
+            int i = 0;
+            for (int slot = tail; slot >= 0; slot = prev[slot]) {
+                if (expiresAt[slot] > now) {
+                    snapshot.keys[i] = keys[slot];
+                    snapshot.expiresAt[i] = expiresAt[slot];
+                    snapshot.values[i] = values[slot];
+                    i++;
+                }
+            }
+            return snapshot;
+        }
+
+        private int find(long key) {
+            for (int bucket = bucket(key); ; bucket = (bucket + 1) & mask) {
+                int entry = index[bucket];
+                if (entry == 0) {
+                    return -1;
+                }
+                if (keys[entry - 1] == key) {
+                    return entry - 1;
+                }
+            }
+        }
+
+        private void insertIndex(long key, int slot) {
+            int bucket = bucket(key);
+            while (index[bucket] != 0) {
+                bucket = (bucket + 1) & mask;
+            }
+            index[bucket] = slot + 1;
+        }
+
+        /** Deletes a key from the index, shifting back later entries of its probe run. */
+        private void removeIndex(long key) {
+            int hole = bucket(key);
+            while (keys[index[hole] - 1] != key) {
+                hole = (hole + 1) & mask;
+            }
+            index[hole] = 0;
+            for (int bucket = (hole + 1) & mask; index[bucket] != 0; bucket = (bucket + 1) & mask) {
+                int home = bucket(keys[index[bucket] - 1]);
+                // Move the entry into the hole unless its home lies cyclically in (hole, bucket].
+                boolean stays = hole <= bucket ? hole < home && home <= bucket : hole < home || home <= bucket;
+                if (!stays) {
+                    index[hole] = index[bucket];
+                    index[bucket] = 0;
+                    hole = bucket;
+                }
+            }
+        }
+
+        private void removeSlot(int slot) {
+            removeIndex(keys[slot]);
+            unlink(slot);
+            values[slot] = null;
+            next[slot] = freeHead;
+            freeHead = slot;
+            size--;
+        }
+
+        private void unlink(int slot) {
+            int p = prev[slot];
+            int n = next[slot];
+            if (p >= 0) {
+                next[p] = n;
+            } else {
+                head = n;
+            }
+            if (n >= 0) {
+                prev[n] = p;
+            } else {
+                tail = p;
+            }
+        }
+
+        private void pushFront(int slot) {
+            prev[slot] = -1;
+            next[slot] = head;
+            if (head >= 0) {
+                prev[head] = slot;
+            }
+            head = slot;
+            if (tail < 0) {
+                tail = slot;
+            }
+        }
+
+        private int bucket(long key) {
+            return (int) mix(key) & mask;
+        }
+
+        /** Copy of a stripe's live entries for {@link LookupCache#save()}. */
+        static final class Snapshot {
+            final long[] keys;
+            final long[] expiresAt;
+            final byte[][] values;
+
+            Snapshot(int size) {
+                keys = new long[size];
+                expiresAt = new long[size];
+                values = new byte[size][];
+            }
+        }
+    }
+
+    /**
+     * Builder for {@link LookupCache}.
+     */
+    public static final class Builder {
+        private final Map<String, Duration> ttls = new HashMap<>(DEFAULT_TTLS);
+        private int maxSize = DEFAULT_MAX_SIZE;
+        private Path file;
+
+        private Builder() {
+        }
+
+        /**
+         * @param maxSize Maximum number of entries; least recently used entries are evicted beyond it
+         * @return this builder
+         */
+        public Builder maxSize(int maxSize) {
+            if (maxSize < 1) {
+                throw new IllegalArgumentException("maxSize must be positive");
+            }
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * @param method {@code "number/operator"} or {@code "hlr/check"}
+         * @param ttl    Time a lookup is served from the cache, or {@link Duration#ZERO} not to cache the method
+         * @return this builder
+         */
+        public Builder ttl(String method, Duration ttl) {
+            if (!METHOD_TAGS.containsKey(method)) {
+                throw new IllegalArgumentException("method must be number/operator or hlr/check");
+            }
+            if (ttl == null || ttl.isNegative()) {
+                throw new IllegalArgumentException("ttl must not be null or negative");
+            }
+            ttls.put(method, ttl);
+            return this;
+        }
+
+        /**
+         * @param file File the cache is loaded from when built and saved to by {@link LookupCache#save()}
+         * @return this builder
+         */
+        public Builder persistTo(Path file) {
+            if (file == null) {
+                throw new IllegalArgumentException("file cannot be null");
+            }
+            this.file = file;
+            return this;
+        }
+
+        /**
+         * @return new cache, loaded from the file if one is set
+         */
+        public LookupCache build() {
+            return new LookupCache(this);
+        }
+    }
+}
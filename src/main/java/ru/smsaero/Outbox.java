@@ -0,0 +1,707 @@
+package ru.smsaero;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Durable queue of outgoing SMS: messages are written to a log on local disk before they are sent, so a message
+ * accepted by {@link #append} is sent even if the JVM dies before or while sending it.
+ *
+ * <p>The log is a directory of memory-mapped segment files written append-only. {@link #append} copies the
+ * message into the mapping and returns a future that completes once the record is forced to disk. Appends made
+ * while the disk is busy are forced together by the next fsync (group commit), so the cost of an fsync is shared
+ * by a whole batch. Durable messages are sent by a dispatcher thread with at most {@code maxInFlight} requests
+ * outstanding; the SMS id, or the error of a message that could not be sent, is appended as a checkpoint and
+ * forced to disk by the next fsync. A segment is deleted once all its messages are checkpointed.
+ *
+ * <p>When the outbox is built its log is replayed and messages without a checkpoint are sent again, so delivery is
+ * at least once: a message whose send reached the gate but whose checkpoint did not reach the log is sent twice,
+ * unless the gate deduplicates requests. Every message is sent with an {@code Idempotency-Key} made of the log id
+ * and the message's sequence number, the same on every resend, for a gate that does. Failed sends are retried
+ * with exponential backoff up to {@code maxAttempts} times; a {@link BlacklistedNumberException} is final at once.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * try (Outbox outbox = Outbox.builder(client, Path.of("outbox"))
+ *         .onResult(result -> log.info(result.sequence() + " -> " + result.sms()))
+ *         .build()) {
+ *     for (SmsMessage message : wave) {
+ *         outbox.append(message);
+ *     }
+ *     outbox.append(last).join();           // all appended messages are on disk now
+ * }
+ * }</pre>
+ */
+public final class Outbox implements AutoCloseable {
+    /** Default size of a segment file. */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    /** Default number of concurrent send requests. */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 32;
+    /** Default number of send attempts of a message before it is given up. */
+    public static final int DEFAULT_MAX_ATTEMPTS = 10;
+    /** Default delay before the second attempt of a message. */
+    public static final Duration DEFAULT_INITIAL_BACKOFF = Duration.ofSeconds(1);
+    /** Default upper bound of the delay between attempts. */
+    public static final Duration DEFAULT_MAX_BACKOFF = Duration.ofMinutes(1);
+
+    private static final int MAGIC = 0x534d534f;
+    private static final int VERSION = 1;
+    /** Magic, version, log id and the sequence number the segment starts at. */
+    private static final int SEGMENT_HEADER = 24;
+    /** Payload length, CRC-32C of the rest, type and sequence number. */
+    private static final int RECORD_HEADER = 17;
+    private static final int MIN_SEGMENT_SIZE = 64 << 10;
+    private static final byte MESSAGE = 1;
+    private static final byte SENT = 2;
+    private static final byte FAILED = 3;
+
+    private final SmsAero client;
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean fsync;
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final Consumer<? super Result> onResult;
+    private final Semaphore window;
+    private final long logId;
+    private final ConcurrentHashMap<Long, Pending> pending = new ConcurrentHashMap<>();
+    private final LinkedBlockingQueue<Pending> ready = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+    private final Thread flusher;
+
+    // Log state, guarded by this.
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final Set<Segment> dirty = new LinkedHashSet<>();
+    private List<Durable> unforced = new ArrayList<>();
+    /** True if checkpoints were written since the last fsync. */
+    private boolean checkpointsUnforced;
+    private Segment current;
+    private long nextSequence;
+    private volatile boolean closed;
+
+    private Outbox(Builder builder) throws IOException {
+        this.client = builder.client;
+        this.directory = builder.directory;
+        this.segmentSize = builder.segmentSize;
+        this.fsync = builder.fsync;
+        this.maxAttempts = builder.maxAttempts;
+        this.initialBackoffNanos = builder.initialBackoff.toNanos();
+        this.maxBackoffNanos = builder.maxBackoff.toNanos();
+        this.onResult = builder.onResult;
+        this.window = new Semaphore(builder.maxInFlight);
+        Files.createDirectories(directory);
+        this.logId = recover();
+        this.dispatcher = new Thread(this::dispatch, "smsaero-outbox-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.flusher = new Thread(this::flush, "smsaero-outbox-flusher");
+        this.flusher.setDaemon(true);
+        this.dispatcher.start();
+        this.flusher.start();
+    }
+
+    /**
+     * Creates a builder for an outbox sending through the given client (or a client view with
+     * {@link RequestOptions}) and keeping its log in the given directory.
+     *
+     * @param client    Client to send through
+     * @param directory Directory of the log, created if missing; used by one outbox at a time
+     * @return new builder
+     * @throws IllegalArgumentException if client or directory is null
+     */
+    public static Builder builder(SmsAero client, Path directory) {
+        if (client == null || directory == null) {
+            throw new IllegalArgumentException("client and directory cannot be null");
+        }
+        return new Builder(client, directory);
+    }
+
+    /**
+     * Appends a message to the log; it is sent once the record is on disk.
+     *
+     * @param message Message to send
+     * @return future completed with the message's sequence number once it is durable, or failed with an
+     *         {@link IOException} if it could not be written
+     * @throws IllegalArgumentException if message is null or larger than a segment
+     * @throws IllegalStateException    if the outbox is closed
+     */
+    public CompletableFuture<Long> append(SmsMessage message) {
+        if (message == null) {
+            throw new IllegalArgumentException("message cannot be null");
+        }
+        byte[] record = encode(message);
+        if (record.length > segmentSize - SEGMENT_HEADER) {
+            throw new IllegalArgumentException("message is larger than a segment");
+        }
+        CompletableFuture<Long> durable = new CompletableFuture<>();
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("outbox is closed");
+            }
+            long sequence = nextSequence++;
+            Segment segment;
+            try {
+                segment = write(MESSAGE, sequence, record);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            segment.open++;
+            Pending entry = new Pending(sequence, segment.number, message);
+            pending.put(sequence, entry);
+            if (!fsync) {
+                ready.add(entry);
+                return CompletableFuture.completedFuture(sequence);
+            }
+            unforced.add(new Durable(entry, durable));
+            notifyAll();
+        }
+        return durable;
+    }
+
+    /** @return number of appended messages not sent or given up yet */
+    public int pending() {
+        return pending.size();
+    }
+
+    /**
+     * Stops sending and forces the log to disk. Messages not checkpointed yet, including sends in flight, are sent
+     * again by the next outbox built on the same directory.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        dispatcher.interrupt();
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            for (Segment segment : segments.values()) {
+                segment.buffer.force();
+            }
+        }
+    }
+
+    /**
+     * Reads the existing segments, rebuilding the pending messages and positioning the log after the last intact
+     * record; starts a new log if there is none. A torn record is cut off only at the end of the last segment.
+     *
+     * @return log id
+     */
+    private synchronized long recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(path -> path.getFileName().toString().matches("\\d{16}\\.log"))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+        if (files.isEmpty()) {
+            long id = ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE;
+            current = createSegment(0, id, 0);
+            return id;
+        }
+        long id = -1;
+        long firstSequence = 0;
+        Map<Long, Pending> recovered = new TreeMap<>();
+        for (Path file : files) {
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            }
+            if (buffer.limit() < SEGMENT_HEADER || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || id >= 0 && buffer.getLong(8) != id) {
+                throw new IOException("Not a segment of this outbox: " + file);
+            }
+            id = buffer.getLong(8);
+            firstSequence = buffer.getLong(16);
+            String name = file.getFileName().toString();
+            Segment segment = new Segment(Long.parseLong(name.substring(0, name.indexOf('.'))), file, buffer);
+            int end = replay(segment, recovered);
+            // Only the last segment can end in a torn record; a bad record in an older one would lose the rest.
+            if (!file.equals(files.get(files.size() - 1)) && end + Integer.BYTES <= buffer.limit()
+                    && buffer.getInt(end) != 0) {
+                throw new IOException("Corrupt record in " + file + " at offset " + end);
+            }
+            buffer.position(end);
+            segments.put(segment.number, segment);
+        }
+        current = segments.lastEntry().getValue();
+        MappedByteBuffer tail = current.buffer;
+        if (tail.remaining() >= Integer.BYTES && tail.getInt(tail.position()) != 0) {
+            // A torn record: clear it so that records written after it now are not followed by its remains.
+            ByteBuffer rest = tail.duplicate();
+            byte[] zeros = new byte[4096];
+            while (rest.hasRemaining()) {
+                rest.put(zeros, 0, Math.min(zeros.length, rest.remaining()));
+            }
+        }
+        nextSequence = Math.max(nextSequence, firstSequence);
+        for (Pending entry : recovered.values()) {
+            segments.get(entry.segment).open++;
+            pending.put(entry.sequence, entry);
+            ready.add(entry);
+        }
+        deleteCompletedSegments();
+        return id;
+    }
+
+    /** @return position after the last intact record of the segment */
+    private int replay(Segment segment, Map<Long, Pending> recovered) {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        int position = SEGMENT_HEADER;
+        CRC32C crc = new CRC32C();
+        while (position + RECORD_HEADER <= buffer.limit()) {
+            int length = buffer.getInt(position);
+            int end = position + RECORD_HEADER + length;
+            if (length <= 0 || end > buffer.limit() || end < 0) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.limit(end).position(position + 8));
+            buffer.limit(buffer.capacity());
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                break;
+            }
+            byte type = buffer.get(position + 8);
+            long sequence = buffer.getLong(position + 9);
+            nextSequence = Math.max(nextSequence, sequence + 1);
+            if (type == MESSAGE) {
+                buffer.position(position + RECORD_HEADER);
+                recovered.put(sequence, new Pending(sequence, segment.number, decode(buffer)));
+            } else {
+                recovered.remove(sequence);
+            }
+            position = end;
+        }
+        return position;
+    }
+
+    private Segment createSegment(long number, long id, long firstSequence) throws IOException {
+        Path file = directory.resolve(String.format("%016d.log", number));
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(id).putLong(firstSequence);
+        Segment segment = new Segment(number, file, buffer);
+        segments.put(number, segment);
+        dirty.add(segment);
+        return segment;
+    }
+
+    /** Writes a record whose payload follows {@link #RECORD_HEADER} free bytes. Called with the lock held. */
+    private Segment write(byte type, long sequence, byte[] record) throws IOException {
+        ByteBuffer header = ByteBuffer.wrap(record);
+        header.putInt(0, record.length - RECORD_HEADER).put(8, type).putLong(9, sequence);
+        CRC32C crc = new CRC32C();
+        crc.update(record, 8, record.length - 8);
+        header.putInt(4, (int) crc.getValue());
+        if (current.buffer.remaining() < record.length) {
+            current = createSegment(current.number + 1, logId, sequence);
+        }
+        current.buffer.put(record);
+        dirty.add(current);
+        return current;
+    }
+
+    /**
+     * Forces appended records and checkpoints to disk in batches and hands the durable messages to the dispatcher.
+     */
+    private void flush() {
+        while (true) {
+            List<Durable> batch;
+            List<Segment> forced;
+            synchronized (this) {
+                while (unforced.isEmpty() && !checkpointsUnforced && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (unforced.isEmpty() && !checkpointsUnforced) {
+                    return;
+                }
+                checkpointsUnforced = false;
+                batch = unforced;
+                unforced = new ArrayList<>();
+                forced = new ArrayList<>(dirty);
+                dirty.clear();
+            }
+            for (Segment segment : forced) {
+                segment.buffer.force();
+            }
+            for (Durable durable : batch) {
+                ready.add(durable.entry);
+                durable.future.complete(durable.entry.sequence);
+            }
+        }
+    }
+
+    private void dispatch() {
+        while (!closed) {
+            Pending entry;
+            try {
+                window.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                entry = ready.take();
+            } catch (InterruptedException e) {
+                window.release();
+                return;
+            }
+            send(entry);
+        }
+    }
+
+    private void send(Pending entry) {
+        CompletableFuture<SmsResult> call;
+        try {
+            RequestOptions options = RequestOptions.builder().idempotencyKey(logId + "-" + entry.sequence).build();
+            call = client.with(options).async().typed().SendSms(entry.message);
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        call.whenComplete((sms, error) -> {
+            window.release();
+            if (error == null) {
+                complete(entry, sms, null);
+                return;
+            }
+            Throwable cause = Futures.unwrap(error);
+            entry.attempts++;
+            if (entry.attempts >= maxAttempts || cause instanceof BlacklistedNumberException) {
+                complete(entry, null, cause);
+                return;
+            }
+            long delay = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(entry.attempts - 1, 30));
+            CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(() -> {
+                if (!closed) {
+                    ready.add(entry);
+                }
+            });
+        });
+    }
+
+    /** Checkpoints the outcome of a message and reports it. */
+    private void complete(Pending entry, SmsResult sms, Throwable error) {
+        synchronized (this) {
+            if (closed) {
+                // The next outbox sends it again, under the same idempotency key.
+                return;
+            }
+            byte[] record;
+            if (error == null) {
+                record = new byte[RECORD_HEADER + Long.BYTES];
+                ByteBuffer.wrap(record).putLong(RECORD_HEADER, sms.id());
+            } else {
+                byte[] reason = String.valueOf(error.getMessage()).getBytes(StandardCharsets.UTF_8);
+                record = new byte[RECORD_HEADER + Integer.BYTES + reason.length];
+                ByteBuffer.wrap(record).position(RECORD_HEADER).putInt(reason.length).put(reason);
+            }
+            try {
+                write(error == null ? SENT : FAILED, entry.sequence, record);
+                if (fsync) {
+                    // Forced with the next batch, so that a sent message is not sent again after a power loss.
+                    checkpointsUnforced = true;
+                    notifyAll();
+                }
+            } catch (IOException ignored) {
+                // Without a checkpoint the message is sent again after a restart.
+            }
+            pending.remove(entry.sequence);
+            segments.get(entry.segment).open--;
+            deleteCompletedSegments();
+        }
+        if (onResult != null) {
+            try {
+                onResult.accept(new Result(entry.sequence, entry.message, sms, error));
+            } catch (RuntimeException ignored) {
+                // A failing callback must not stop the outbox.
+            }
+        }
+    }
+
+    /** Deletes the oldest segments while all their messages are checkpointed. Called with the lock held. */
+    private void deleteCompletedSegments() {
+        while (segments.size() > 1 && segments.firstEntry().getValue().open == 0) {
+            Segment segment = segments.pollFirstEntry().getValue();
+            dirty.remove(segment);
+            try {
+                Files.deleteIfExists(segment.file);
+            } catch (IOException ignored) {
+                // Replayed harmlessly next time: its messages are all checkpointed.
+            }
+        }
+    }
+
+    /** @return record with {@link #RECORD_HEADER} free bytes followed by the message */
+    private static byte[] encode(SmsMessage message) {
+        byte[][] strings = {
+            utf8(message.number()), utf8(message.text()), utf8(message.sign()),
+            utf8(message.callbackUrl()), utf8(message.callbackFormat())
+        };
+        int length = RECORD_HEADER + Long.BYTES;
+        for (byte[] string : strings) {
+            length += Integer.BYTES + (string != null ? string.length : 0);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length).position(RECORD_HEADER);
+        for (byte[] string : strings) {
+            if (string == null) {
+                buffer.putInt(-1);
+            } else {
+                buffer.putInt(string.length).put(string);
+            }
+        }
+        buffer.putLong(message.dateToSend() != null ? message.dateToSend().getEpochSecond() : Long.MIN_VALUE);
+        return buffer.array();
+    }
+
+    private static SmsMessage decode(ByteBuffer buffer) {
+        String number = readString(buffer);
+        String text = readString(buffer);
+        String sign = readString(buffer);
+        String callbackUrl = readString(buffer);
+        String callbackFormat = readString(buffer);
+        long dateToSend = buffer.getLong();
+        return new SmsMessage(number, text, sign,
+            dateToSend != Long.MIN_VALUE ? Instant.ofEpochSecond(dateToSend) : null, callbackUrl, callbackFormat);
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** A mapped segment file and the number of its messages not checkpointed yet. */
+    private static final class Segment {
+        final long number;
+        final Path file;
+        final MappedByteBuffer buffer;
+        int open;
+
+        Segment(long number, Path file, MappedByteBuffer buffer) {
+            this.number = number;
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+
+    /** A message not checkpointed yet. */
+    private static final class Pending {
+        final long sequence;
+        final long segment;
+        final SmsMessage message;
+        int attempts;
+
+        Pending(long sequence, long segment, SmsMessage message) {
+            this.sequence = sequence;
+            this.segment = segment;
+            this.message = message;
+        }
+    }
+
+    /** An appended message waiting for the next fsync. */
+    private static final class Durable {
+        final Pending entry;
+        final CompletableFuture<Long> future;
+
+        Durable(Pending entry, CompletableFuture<Long> future) {
+            this.entry = entry;
+            this.future = future;
+        }
+    }
+
+    /**
+     * Outcome of a message: its SMS as accepted by the gate, or the error it was given up with.
+     */
+    public static final class Result {
+        private final long sequence;
+        private final SmsMessage message;
+        private final SmsResult sms;
+        private final Throwable error;
+
+        Result(long sequence, SmsMessage message, SmsResult sms, Throwable error) {
+            this.sequence = sequence;
+            this.message = message;
+            this.sms = sms;
+            this.error = error;
+        }
+
+        /** @return sequence number returned by {@link Outbox#append} */
+        public long sequence() {
+            return sequence;
+        }
+
+        /** @return the message this result belongs to */
+        public SmsMessage message() {
+            return message;
+        }
+
+        /** @return SMS accepted by the gate, or null if sending failed */
+        public SmsResult sms() {
+            return sms;
+        }
+
+        /** @return error of the last attempt, or null if the message was sent */
+        public Throwable error() {
+            return error;
+        }
+
+        /** @return true if the gate accepted the message */
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    /**
+     * Builder for {@link Outbox}.
+     */
+    public static final class Builder {
+        private final SmsAero client;
+        private final Path directory;
+        private int segmentSize = DEFAULT_SEGMENT_SIZE;
+        private boolean fsync = true;
+        private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+        private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+        private Duration initialBackoff = DEFAULT_INITIAL_BACKOFF;
+        private Duration maxBackoff = DEFAULT_MAX_BACKOFF;
+        private Consumer<? super Result> onResult;
+
+        private Builder(SmsAero client, Path directory) {
+            this.client = client;
+            this.directory = directory;
+        }
+
+        /**
+         * @param segmentSize Size of a segment file in bytes, at least 64 KiB; applies to new segments
+         * @return this builder
+         */
+        public Builder segmentSize(int segmentSize) {
+            if (segmentSize < MIN_SEGMENT_SIZE) {
+                throw new IllegalArgumentException("segmentSize must be at least " + MIN_SEGMENT_SIZE);
+            }
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * @param fsync false to send messages as soon as they are written to the mapping, without waiting for
+         *              the disk: they then survive a JVM crash but not a crash of the operating system
+         * @return this builder
+         */
+        public Builder fsync(boolean fsync) {
+            this.fsync = fsync;
+            return this;
+        }
+
+        /**
+         * @param maxInFlight Maximum number of concurrent send requests
+         * @return this builder
+         */
+        public Builder maxInFlight(int maxInFlight) {
+            if (maxInFlight < 1) {
+                throw new IllegalArgumentException("maxInFlight must be positive");
+            }
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * @param maxAttempts Number of send attempts of a message before it is given up
+         * @return this builder
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("maxAttempts must be positive");
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * @param initial Delay before the second attempt of a message; doubled after every failure
+         * @param max     Upper bound of the delay
+         * @return this builder
+         */
+        public Builder backoff(Duration initial, Duration max) {
+            requirePositive(initial, "initial");
+            requirePositive(max, "max");
+            if (max.compareTo(initial) < 0) {
+                throw new IllegalArgumentException("max must not be less than initial");
+            }
+            this.initialBackoff = initial;
+            this.maxBackoff = max;
+            return this;
+        }
+
+        /**
+         * @param onResult Called once per message when it is sent or given up, on the transport's threads;
+         *                 messages replayed after a restart are reported too
+         * @return this builder
+         */
+        public Builder onResult(Consumer<? super Result> onResult) {
+            this.onResult = onResult;
+            return this;
+        }
+
+        /**
+         * Opens the log and starts sending, beginning with the messages left over by an earlier outbox.
+         *
+         * @return new outbox
+         * @throws IOException if the directory or a segment cannot be read or created
+         */
+        public Outbox build() throws IOException {
+            return new Outbox(this);
+        }
+
+        private static void requirePositive(Duration value, String paramName) {
+            if (value == null || value.isNegative() || value.isZero()) {
+                throw new IllegalArgumentException(paramName + " must be positive");
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package ru.smsaero;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.json.simple.parser.ParseException;
+
+/**
+ * One page of a list endpoint such as {@code sms/list}. The API returns items keyed by position
+ * ({@code "0"}, {@code "1"}, ...) next to {@code links} and {@code totalCount}.
+ *
+ * @param <T> item type
+ */
+public final class PagedList<T> implements Iterable<T> {
+    private static final JsonReader.Names NAMES = JsonReader.Names.of("links", "totalCount");
+    private static final JsonReader.Names LINK_NAMES = JsonReader.Names.of("next");
+
+    private final List<T> items;
+    private final long totalCount;
+    private final boolean hasNextPage;
+
+    private PagedList(List<T> items, long totalCount, boolean hasNextPage) {
+        this.items = Collections.unmodifiableList(items);
+        this.totalCount = totalCount;
+        this.hasNextPage = hasNextPage;
+    }
+
+    static <T> JsonReader.Decoder<PagedList<T>> decoder(JsonReader.Decoder<T> itemDecoder) {
+        return reader -> read(reader, itemDecoder);
+    }
+
+    private static <T> PagedList<T> read(JsonReader reader, JsonReader.Decoder<T> itemDecoder)
+            throws ParseException {
+        List<T> items = new ArrayList<>();
+        if (reader.peek() == JsonReader.Token.BEGIN_ARRAY) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                items.add(itemDecoder.read(reader));
+            }
+            reader.endArray();
+            return new PagedList<>(items, items.size(), false);
+        }
+        long totalCount = -1;
+        boolean hasNextPage = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.selectName(NAMES)) {
+                case 0:
+                    hasNextPage = readHasNext(reader);
+                    break;
+                case 1:
+                    totalCount = reader.nextLong();
+                    break;
+                default:
+                    if (reader.peek() == JsonReader.Token.BEGIN_OBJECT) {
+                        items.add(itemDecoder.read(reader));
+                    } else {
+                        reader.skipValue();
+                    }
+                    break;
+            }
+        }
+        reader.endObject();
+        return new PagedList<>(items, totalCount >= 0 ? totalCount : items.size(), hasNextPage);
+    }
+
+    private static boolean readHasNext(JsonReader reader) throws ParseException {
+        if (reader.skipNull()) {
+            return false;
+        }
+        boolean hasNext = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.selectName(LINK_NAMES) == 0) {
+                String next = reader.nextString();
+                hasNext = next != null && !next.isEmpty();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return hasNext;
+    }
+
+    /** @return items of this page */
+    public List<T> items() {
+        return items;
+    }
+
+    /** @return total number of items across all pages */
+    public long totalCount() {
+        return totalCount;
+    }
+
+    /** @return true if there is a next page */
+    public boolean hasNextPage() {
+        return hasNextPage;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return items.iterator();
+    }
+
+    @Override
+    public String toString() {
+        return "PagedList{items=" + items.size() + ", totalCount=" + totalCount + ", hasNextPage=" + hasNextPage
+            + "}";
+    }
+}
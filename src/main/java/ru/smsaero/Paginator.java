@@ -0,0 +1,306 @@
+package ru.smsaero;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.json.simple.parser.ParseException;
+
+/**
+ * All items of a list endpoint such as {@code sms/list}, fetched lazily page by page as they are consumed.
+ * Only the page being consumed and the pages fetched ahead are held in memory, however long the list is.
+ *
+ * <p>Every {@link #iterator()}, {@link #stream()} and {@link #publisher()} subscription starts a new traversal
+ * from the first page. While a page is consumed, the next {@link #prefetch(int)} pages (one by default) are
+ * fetched in the background. Iterators and streams block while waiting for a page and throw
+ * {@link UncheckedIOException} if it fails; the publisher does not block and signals the failure with
+ * {@code onError}.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * try (Stream<SmsResult> sent = client.typed().SmsListAll().prefetch(2).stream()) {
+ *     long delivered = sent.filter(sms -> sms.status() == SmsResult.STATUS_DELIVERED).count();
+ * }
+ * }</pre>
+ *
+ * @param <T> item type
+ */
+public final class Paginator<T> implements Iterable<T> {
+    /** Maximum number of pages fetched ahead. */
+    public static final int MAX_PREFETCH = 16;
+
+    private final IntFunction<CompletableFuture<PagedList<T>>> fetcher;
+    private final int prefetch;
+
+    Paginator(IntFunction<CompletableFuture<PagedList<T>>> fetcher) {
+        this(fetcher, 1);
+    }
+
+    private Paginator(IntFunction<CompletableFuture<PagedList<T>>> fetcher, int prefetch) {
+        this.fetcher = fetcher;
+        this.prefetch = prefetch;
+    }
+
+    /**
+     * Returns a paginator fetching the given number of pages ahead of the one being consumed.
+     *
+     * @param pages Pages to fetch ahead, 0 to fetch each page only when it is needed
+     * @return new paginator
+     * @throws IllegalArgumentException if pages is negative or greater than {@link #MAX_PREFETCH}
+     */
+    public Paginator<T> prefetch(int pages) {
+        if (pages < 0 || pages > MAX_PREFETCH) {
+            throw new IllegalArgumentException("prefetch must be between 0 and " + MAX_PREFETCH);
+        }
+        return new Paginator<>(fetcher, pages);
+    }
+
+    /**
+     * Returns a blocking iterator over all items.
+     *
+     * @return new iterator starting from the first page
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new PageIterator();
+    }
+
+    /**
+     * Returns a sequential stream of all items. Closing the stream cancels the pages fetched ahead.
+     *
+     * @return new stream starting from the first page
+     */
+    public Stream<T> stream() {
+        PageIterator iterator = new PageIterator();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+            .onClose(iterator::close);
+    }
+
+    /**
+     * Returns a publisher of all items. Pages are fetched as subscribers request items, without blocking;
+     * each subscriber gets its own traversal.
+     *
+     * @return new publisher
+     */
+    public Flow.Publisher<T> publisher() {
+        return subscriber -> {
+            if (subscriber == null) {
+                throw new NullPointerException("subscriber");
+            }
+            subscriber.onSubscribe(new PageSubscription(subscriber));
+        };
+    }
+
+    /**
+     * Page numbers and futures of one traversal. Not thread-safe: each traversal uses it from one thread at a
+     * time.
+     */
+    private final class Pages {
+        private final Deque<CompletableFuture<PagedList<T>>> ahead = new ArrayDeque<>();
+        private int nextPage = 1;
+        private int lastPage = -1;
+        private int currentPage;
+        private boolean done;
+
+        /** @return future of the next page, or null after the last one */
+        CompletableFuture<PagedList<T>> take() {
+            fill(1);
+            CompletableFuture<PagedList<T>> page = ahead.poll();
+            if (page != null) {
+                currentPage++;
+            }
+            return page;
+        }
+
+        /** Learns where the list ends from a page that has arrived and fetches the pages ahead. */
+        void arrived(PagedList<T> page) {
+            if (!page.hasNextPage()) {
+                close();
+                return;
+            }
+            if (lastPage < 0 && !page.items().isEmpty()) {
+                long size = page.items().size();
+                lastPage = (int) Math.min(Integer.MAX_VALUE, (page.totalCount() + size - 1) / size);
+            }
+            // The estimate from totalCount may be short if items were added meanwhile.
+            lastPage = Math.max(lastPage, currentPage + 1);
+            fill(prefetch);
+        }
+
+        private void fill(int target) {
+            while (!done && ahead.size() < target && (lastPage < 0 ? nextPage == 1 : nextPage <= lastPage)) {
+                ahead.add(fetcher.apply(nextPage++));
+            }
+        }
+
+        void close() {
+            done = true;
+            for (CompletableFuture<PagedList<T>> page : ahead) {
+                page.cancel(true);
+            }
+            ahead.clear();
+        }
+    }
+
+    private final class PageIterator implements Iterator<T> {
+        private final Pages pages = new Pages();
+        private Iterator<T> current = Collections.emptyIterator();
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                CompletableFuture<PagedList<T>> next = pages.take();
+                if (next == null) {
+                    return false;
+                }
+                PagedList<T> page;
+                try {
+                    page = Futures.await(next);
+                } catch (IOException e) {
+                    pages.close();
+                    throw new UncheckedIOException(e);
+                } catch (ParseException e) {
+                    pages.close();
+                    throw new UncheckedIOException(new IOException(e));
+                }
+                pages.arrived(page);
+                current = page.items().iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        void close() {
+            pages.close();
+        }
+    }
+
+    /**
+     * Reactive Streams subscription. All state is touched only inside {@link #drain()}, which runs on one thread
+     * at a time; requests, cancellation and arriving pages just schedule another pass.
+     */
+    private final class PageSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final Pages pages = new Pages();
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+        private Iterator<T> current = Collections.emptyIterator();
+        private CompletableFuture<PagedList<T>> pending;
+        private boolean listening;
+        private boolean finished;
+
+        PageSubscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("request must be positive, was " + n);
+            } else {
+                requested.getAndUpdate(r -> r + n < 0 ? Long.MAX_VALUE : r + n);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (!finished) {
+                    step();
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void step() {
+            while (true) {
+                if (cancelled) {
+                    finish();
+                    return;
+                }
+                if (invalidRequest != null) {
+                    finish();
+                    subscriber.onError(invalidRequest);
+                    return;
+                }
+                if (current.hasNext()) {
+                    if (requested.get() == 0) {
+                        return;
+                    }
+                    T item = current.next();
+                    requested.getAndUpdate(r -> r == Long.MAX_VALUE ? r : r - 1);
+                    subscriber.onNext(item);
+                    continue;
+                }
+                if (pending == null) {
+                    pending = pages.take();
+                    if (pending == null) {
+                        finish();
+                        subscriber.onComplete();
+                        return;
+                    }
+                }
+                if (!pending.isDone()) {
+                    if (!listening) {
+                        listening = true;
+                        pending.whenComplete((page, error) -> drain());
+                    }
+                    return;
+                }
+                CompletableFuture<PagedList<T>> page = pending;
+                pending = null;
+                listening = false;
+                if (page.isCompletedExceptionally()) {
+                    finish();
+                    subscriber.onError(Futures.unwrap(page.handle((value, error) -> error).join()));
+                    return;
+                }
+                PagedList<T> list = page.join();
+                pages.arrived(list);
+                current = list.items().iterator();
+            }
+        }
+
+        private void finish() {
+            finished = true;
+            current = Collections.emptyIterator();
+            if (pending != null) {
+                pending.cancel(true);
+                pending = null;
+            }
+            pages.close();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package ru.smsaero;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Thrown when a call is rejected because of the request rate: either the client-side {@link RateLimiter} has no
+ * permit available within its maximum wait, or the gate answered with HTTP 429.
+ */
+public class RateLimitExceededException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final String method;
+    private final Duration retryAfter;
+
+    /**
+     * @param method  API method that was rejected
+     * @param message Detail message
+     */
+    public RateLimitExceededException(String method, String message) {
+        this(method, message, null);
+    }
+
+    /**
+     * @param method     API method that was rejected
+     * @param message    Detail message
+     * @param retryAfter Delay asked for by the gate's {@code Retry-After} header, or null
+     */
+    public RateLimitExceededException(String method, String message, Duration retryAfter) {
+        super(message);
+        this.method = method;
+        this.retryAfter = retryAfter;
+    }
+
+    /** @return API method that was rejected, e.g. "sms/send" */
+    public String getMethod() {
+        return method;
+    }
+
+    /** @return delay asked for by the gate's {@code Retry-After} header, or null if there was none */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,177 @@
+package ru.smsaero;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client-side token-bucket rate limiter for API calls.
+ *
+ * <p>Limits are set per API method (e.g. {@code sms/send}, {@code hlr/check}); methods without their own limit
+ * share the default bucket, if one is configured, and are unlimited otherwise. Buckets are lock-free. One
+ * limiter can be passed to several {@link SmsAero} clients working with the same account so that together
+ * they stay within the account's allowed rate.
+ *
+ * <p>A call that finds its bucket empty waits for a permit for up to {@link Builder#maxWait(Duration)}; waiting
+ * never blocks a thread, the request is simply scheduled later. If the wait would be longer (or maxWait is zero),
+ * the call fails fast with {@link RateLimitExceededException} without any network I/O.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * RateLimiter limiter = RateLimiter.builder()
+ *     .defaultLimit(10, 10)
+ *     .limit("sms/send", 50, 100)
+ *     .limit("hlr/check", 5, 5)
+ *     .maxWait(Duration.ofSeconds(2))
+ *     .build();
+ * SmsAero client = SmsAero.builder(email, apiKey).rateLimiter(limiter).build();
+ * }</pre>
+ */
+public final class RateLimiter {
+    private final Map<String, Bucket> buckets;
+    private final Bucket defaultBucket;
+    private final long maxWaitNanos;
+
+    private RateLimiter(Builder builder) {
+        this.buckets = Map.copyOf(builder.buckets);
+        this.defaultBucket = builder.defaultBucket;
+        this.maxWaitNanos = builder.maxWait.toNanos();
+    }
+
+    /**
+     * Creates a builder for a rate limiter.
+     *
+     * @return new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Takes a permit for the method if one is available right now.
+     *
+     * @param method API method, e.g. "sms/send"
+     * @return true if the permit was taken
+     */
+    public boolean tryAcquire(String method) {
+        Bucket bucket = bucketFor(method);
+        return bucket == null || bucket.reserve(System.nanoTime(), 0) == 0;
+    }
+
+    /**
+     * Reserves a permit for the method.
+     *
+     * @return nanoseconds to wait before using the permit, or -1 if the wait would exceed maxWait
+     *         (no permit is taken in that case)
+     */
+    long reserve(String method) {
+        Bucket bucket = bucketFor(method);
+        return bucket == null ? 0 : bucket.reserve(System.nanoTime(), maxWaitNanos);
+    }
+
+    private Bucket bucketFor(String method) {
+        Bucket bucket = buckets.get(method);
+        return bucket != null ? bucket : defaultBucket;
+    }
+
+    /**
+     * Generic cell rate algorithm: an equivalent of a token bucket that keeps a single timestamp, the theoretical
+     * arrival time of the next request, and updates it with one CAS.
+     */
+    private static final class Bucket {
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final AtomicLong nextFreeNanos;
+
+        Bucket(double permitsPerSecond, int burst) {
+            this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+            this.toleranceNanos = intervalNanos * (burst - 1);
+            this.nextFreeNanos = new AtomicLong(System.nanoTime());
+        }
+
+        long reserve(long now, long maxWaitNanos) {
+            while (true) {
+                long tat = nextFreeNanos.get();
+                long start = tat - now > 0 ? tat : now;
+                long wait = start - toleranceNanos - now;
+                if (wait > maxWaitNanos) {
+                    return -1;
+                }
+                if (nextFreeNanos.compareAndSet(tat, start + intervalNanos)) {
+                    return Math.max(0, wait);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builder for {@link RateLimiter}.
+     */
+    public static final class Builder {
+        private final Map<String, Bucket> buckets = new HashMap<>();
+        private Bucket defaultBucket;
+        private Duration maxWait = Duration.ZERO;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the limit shared by all methods that have no limit of their own.
+         *
+         * @param permitsPerSecond Sustained rate
+         * @param burst            Number of calls allowed at once after an idle period
+         * @return this builder
+         */
+        public Builder defaultLimit(double permitsPerSecond, int burst) {
+            this.defaultBucket = newBucket(permitsPerSecond, burst);
+            return this;
+        }
+
+        /**
+         * Sets the limit for one API method.
+         *
+         * @param method           API method, e.g. "sms/send"
+         * @param permitsPerSecond Sustained rate
+         * @param burst            Number of calls allowed at once after an idle period
+         * @return this builder
+         */
+        public Builder limit(String method, double permitsPerSecond, int burst) {
+            SmsAero.requireNonBlank(method, "method");
+            buckets.put(method, newBucket(permitsPerSecond, burst));
+            return this;
+        }
+
+        /**
+         * Sets how long a call may wait for a permit. Zero (the default) means fail fast.
+         *
+         * @param maxWait Maximum wait for a permit
+         * @return this builder
+         */
+        public Builder maxWait(Duration maxWait) {
+            if (maxWait == null || maxWait.isNegative()) {
+                throw new IllegalArgumentException("maxWait cannot be null or negative");
+            }
+            this.maxWait = maxWait;
+            return this;
+        }
+
+        /**
+         * @return new rate limiter
+         */
+        public RateLimiter build() {
+            return new RateLimiter(this);
+        }
+
+        private static Bucket newBucket(double permitsPerSecond, int burst) {
+            if (!(permitsPerSecond > 0) || Double.isInfinite(permitsPerSecond)) {
+                throw new IllegalArgumentException("permitsPerSecond must be positive");
+            }
+            if (burst < 1) {
+                throw new IllegalArgumentException("burst must be positive");
+            }
+            return new Bucket(permitsPerSecond, burst);
+        }
+    }
+}
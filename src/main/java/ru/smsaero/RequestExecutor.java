@@ -0,0 +1,730 @@
+package ru.smsaero;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.ConnectException;
+import java.net.HttpRetryException;
+import java.net.NoRouteToHostException;
+import java.net.PortUnreachableException;
+import java.net.ProtocolException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.net.UnknownServiceException;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import javax.net.ssl.SSLException;
+
+import org.json.simple.parser.ParseException;
+
+/**
+ * Sends API requests through the configured gates. Shared by a client and all of its views.
+ */
+final class RequestExecutor {
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int HTTP_SERVER_ERROR = 500;
+    private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(5);
+    private static final byte[] PROBE_BODY = "{}".getBytes(StandardCharsets.UTF_8);
+    private static final long DEADLINE_SLACK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final Map<String, String> headers;
+    private final Transport transport;
+    private final List<String> gateUrls;
+    private final RateLimiter rateLimiter;
+    private final GateSelector gateSelector;
+    private final CircuitBreaker circuitBreaker;
+    private final HedgingPolicy hedgingPolicy;
+    private final ResponseCache responseCache;
+    private final LookupCache lookupCache;
+    private final BlacklistMirror blacklistMirror;
+    private final IdempotencyIndex idempotencyIndex;
+    private final RetryPolicy retryPolicy;
+    private final ClientMetrics metrics;
+    private final RequestListener listener;
+    /** Generated correlation ids are this prefix, unique per client, and a sequence number. */
+    private final String callIdPrefix = String.format("%08x-", ThreadLocalRandom.current().nextInt());
+    private final AtomicLong callIds = new AtomicLong();
+    private final Duration timeout;
+    private final Duration deadline;
+    private final Function<String, CompletableFuture<Boolean>> prober = this::probe;
+
+    /**
+     * @param timeout  Default response timeout of each attempt, or null for the transport default
+     * @param deadline Default total deadline of a call, or null for none
+     */
+    RequestExecutor(Map<String, String> headers, Transport transport, List<String> gateUrls, Duration timeout,
+            Duration deadline, RateLimiter rateLimiter, GateSelector gateSelector, CircuitBreaker circuitBreaker,
+            HedgingPolicy hedgingPolicy, ResponseCache responseCache, LookupCache lookupCache,
+            BlacklistMirror blacklistMirror, IdempotencyIndex idempotencyIndex, RetryPolicy retryPolicy,
+            ClientMetrics metrics, RequestListener listener) {
+        this.headers = headers;
+        this.transport = transport;
+        this.gateUrls = gateUrls;
+        this.timeout = timeout;
+        this.deadline = deadline;
+        this.rateLimiter = rateLimiter;
+        this.gateSelector = gateSelector;
+        this.circuitBreaker = circuitBreaker;
+        this.hedgingPolicy = hedgingPolicy;
+        this.responseCache = responseCache;
+        this.lookupCache = lookupCache;
+        this.blacklistMirror = blacklistMirror;
+        this.idempotencyIndex = idempotencyIndex;
+        this.retryPolicy = retryPolicy;
+        this.metrics = metrics;
+        this.listener = listener;
+    }
+
+    private static String getUrl(String baseDomain, String method, int page) {
+        String apiUrl = baseDomain + method;
+        if (page > 0) {
+            apiUrl = apiUrl + "?page=" + page;
+        }
+        return apiUrl;
+    }
+
+    private static boolean isTransientNetworkError(IOException e) {
+        return e instanceof BindException
+                || e instanceof ConnectException
+                || e instanceof HttpRetryException
+                || e instanceof NoRouteToHostException
+                || e instanceof PortUnreachableException
+                || e instanceof ProtocolException
+                || e instanceof SocketTimeoutException
+                || e instanceof UnknownHostException
+                || e instanceof UnknownServiceException
+                || e instanceof HttpTimeoutException;
+    }
+
+    /** @return true if every gate failed with a transient network error, the last one being {@code e} */
+    private static boolean isNetworkFailure(IOException e) {
+        return isTransientNetworkError(e)
+            || e.getCause() instanceof IOException && isTransientNetworkError((IOException) e.getCause());
+    }
+
+    private static boolean isSslError(Throwable e) {
+        return e instanceof SSLException || e.getCause() instanceof SSLException;
+    }
+
+    private Map<String, String> headers(RequestOptions options) {
+        if (options.idempotencyKey() == null) {
+            return headers;
+        }
+        Map<String, String> withKey = new HashMap<>(headers);
+        withKey.put("Idempotency-Key", options.idempotencyKey());
+        return withKey;
+    }
+
+    /**
+     * Sends a request without blocking: gates are tried in the order given by the {@link GateSelector}, each
+     * over HTTPS first and over plain HTTP if the TLS handshake fails; transient network errors move on to the
+     * next gate. Gates whose circuit breaker for the method is open are skipped without I/O.
+     * With a rate limiter the request is first scheduled according to its permit, or rejected without I/O.
+     * Methods covered by the {@link HedgingPolicy} are hedged. A call that outlives its deadline fails with
+     * {@link DeadlineExceededException} and its request in flight is cancelled. Methods covered by the
+     * {@link ResponseCache} are answered from it when possible, and number lookups from the {@link LookupCache}.
+     * Sends to numbers in the {@link BlacklistMirror} fail with {@link BlacklistedNumberException} without I/O.
+     * Sends carry an {@code Idempotency-Key}, the same on every gate, when the caller gives one or an
+     * {@link IdempotencyIndex}, hedging or retries need one; with an index duplicate sends share one call. With a
+     * {@link RetryPolicy} failed calls are retried after a pause. Calls are measured by the {@link ClientMetrics}
+     * and their phases reported to the {@link RequestListener}, if set.
+     */
+    <T> CompletableFuture<T> execute(String method, Map<String, ?> form, RequestOptions options,
+            ResponseDecoder<T> decoder) {
+        if (metrics == null && listener == null) {
+            return route(method, form, options, decoder);
+        }
+        String callId = null;
+        RequestOptions traced = options;
+        if (listener != null) {
+            callId = options.correlationId();
+            if (callId == null) {
+                callId = callIdPrefix + callIds.incrementAndGet();
+                traced = options.toBuilder().correlationId(callId).build();
+            }
+        }
+        long start = System.nanoTime();
+        if (metrics != null) {
+            metrics.onCallStart(method);
+        }
+        if (listener != null) {
+            listener.onStart(callId, method, start);
+        }
+        CompletableFuture<T> result;
+        try {
+            result = route(method, form, traced, decoder);
+        } catch (RuntimeException e) {
+            observeEnd(callId, method, start, e);
+            throw e;
+        }
+        // Completed after the end is reported, so that a caller who sees the result also sees its metrics.
+        CompletableFuture<T> observed = new CompletableFuture<>();
+        CompletableFuture<T> source = result;
+        String id = callId;
+        source.whenComplete((value, error) -> {
+            Throwable e = error != null ? Futures.unwrap(error) : null;
+            observeEnd(id, method, start, e);
+            if (e == null) {
+                observed.complete(value);
+            } else {
+                observed.completeExceptionally(e);
+            }
+        });
+        observed.whenComplete((value, error) -> {
+            if (observed.isCancelled()) {
+                source.cancel(true);
+            }
+        });
+        return observed;
+    }
+
+    private void observeEnd(String callId, String method, long start, Throwable error) {
+        long end = System.nanoTime();
+        if (metrics != null) {
+            metrics.onCallEnd(method, end - start, error);
+        }
+        if (listener != null) {
+            listener.onFinish(callId, method, error, end);
+        }
+    }
+
+    private <T> CompletableFuture<T> route(String method, Map<String, ?> form, RequestOptions options,
+            ResponseDecoder<T> decoder) {
+        if (responseCache == null || !ResponseCache.mutates(method)) {
+            return routeCall(method, form, options, decoder);
+        }
+        CompletableFuture<T> result = routeCall(method, form, options, decoder);
+        // Invalidates whatever the outcome and whichever path served the call: a failed send may still have spent.
+        result.whenComplete((value, error) -> responseCache.afterCall(method));
+        return result;
+    }
+
+    private <T> CompletableFuture<T> routeCall(String method, Map<String, ?> form, RequestOptions options,
+            ResponseDecoder<T> decoder) {
+        if (blacklistMirror != null) {
+            BlacklistedNumberException blacklisted = blacklistMirror.check(method, form);
+            if (blacklisted != null) {
+                return CompletableFuture.failedFuture(blacklisted);
+            }
+            if (BlacklistMirror.tracks(method)) {
+                return decode(send(method, form, options, ResponseDecoder.RAW).thenApply(body -> {
+                    blacklistMirror.afterCall(method, form, body);
+                    return body;
+                }), decoder);
+            }
+        }
+        if (IdempotencyIndex.covers(method)) {
+            if (idempotencyIndex != null) {
+                String key = idempotencyIndex.key(method, form, options);
+                RequestOptions keyed = options.toBuilder().idempotencyKey(key).build();
+                return decode(idempotencyIndex.get(key, () -> send(method, form, keyed, ResponseDecoder.RAW)),
+                    decoder);
+            }
+            if (options.idempotencyKey() == null && retryPolicy != null) {
+                // One key for every retry of the call: a gate that timed out may still have accepted the message.
+                return send(method, form, options.toBuilder().idempotencyKey(UUID.randomUUID().toString()).build(),
+                    decoder);
+            }
+        }
+        long lookupKey = lookupCache != null && options.params().isEmpty() ? lookupCache.key(method, form) : -1;
+        if (lookupKey >= 0) {
+            return decode(lookupCache.get(method, lookupKey, () -> send(method, form, options, ResponseDecoder.RAW)),
+                decoder);
+        }
+        if (responseCache == null) {
+            return send(method, form, options, decoder);
+        }
+        if (form == null && options.params().isEmpty() && responseCache.covers(method)) {
+            return decode(responseCache.get(method, options.page(),
+                () -> send(method, null, options, ResponseDecoder.RAW)), decoder);
+        }
+        return send(method, form, options, decoder);
+    }
+
+    /** Decodes a cached body in a dependent stage per caller: cancelling it leaves the shared future alone. */
+    private static <T> CompletableFuture<T> decode(CompletableFuture<byte[]> body, ResponseDecoder<T> decoder) {
+        return body.thenApply(bytes -> {
+            try {
+                return decoder.decode(bytes);
+            } catch (IOException | ParseException e) {
+                throw Futures.wrap(e);
+            }
+        });
+    }
+
+    private <T> CompletableFuture<T> send(String method, Map<String, ?> form, RequestOptions options,
+            ResponseDecoder<T> decoder) {
+        if (gateUrls.isEmpty()) {
+            return CompletableFuture.failedFuture(new IOException("No gate URLs configured"));
+        }
+        byte[] input = JsonWriter.write(form, options.params());
+        boolean hedged = hedgingPolicy != null && hedgingPolicy.appliesTo(method) && gateUrls.size() > 1;
+        Map<String, String> requestHeaders = hedged && options.idempotencyKey() == null
+            ? headers(options.toBuilder().idempotencyKey(UUID.randomUUID().toString()).build())
+            : headers(options);
+        Duration callDeadline = options.deadline() != null ? options.deadline() : deadline;
+        long start = System.nanoTime();
+        long deadlineAt = callDeadline != null ? start + callDeadline.toNanos() : 0;
+        Call<T> call = new Call<>(method, options, requestHeaders, input, decoder,
+            options.timeout() != null ? options.timeout() : timeout, deadlineAt);
+        long waitNanos = rateLimiter != null ? rateLimiter.reserve(method) : 0;
+        if (waitNanos < 0) {
+            return CompletableFuture.failedFuture(
+                new RateLimitExceededException(method, "Client rate limit exceeded for " + method));
+        }
+        CompletableFuture<T> result;
+        if (waitNanos > 0) {
+            Executor delayed = CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS);
+            result = CompletableFuture.supplyAsync(() -> null, delayed)
+                .thenCompose(ignored -> call.cancelled
+                    ? CompletableFuture.failedFuture(new CancellationException())
+                    : attempt(call, hedged, start));
+        } else {
+            result = attempt(call, hedged, start);
+        }
+        return callDeadline != null ? withDeadline(result, call, callDeadline) : result;
+    }
+
+    /** Fails the call with {@link DeadlineExceededException} if it is not done in time, and cancels it. */
+    private static <T> CompletableFuture<T> withDeadline(CompletableFuture<T> future, Call<T> call,
+            Duration deadline) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ScheduledFuture<?> timer = Futures.TIMER.schedule(() -> CompletableFuture.runAsync(() -> {
+            if (result.completeExceptionally(deadlineExceeded(call, deadline, null))) {
+                call.cancel();
+                future.cancel(true);
+            }
+        }), deadline.toNanos(), TimeUnit.NANOSECONDS);
+        future.whenComplete((value, error) -> {
+            timer.cancel(false);
+            if (error == null) {
+                result.complete(value);
+            } else if (System.nanoTime() - call.deadlineAt > -DEADLINE_SLACK_NANOS) {
+                // The last attempt's timeout is the time left, so it may fire just before the timer does.
+                result.completeExceptionally(deadlineExceeded(call, deadline, Futures.unwrap(error)));
+            } else {
+                result.completeExceptionally(Futures.unwrap(error));
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                call.cancel();
+                future.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private static DeadlineExceededException deadlineExceeded(Call<?> call, Duration deadline, Throwable cause) {
+        DeadlineExceededException e = new DeadlineExceededException(call.method,
+            "Deadline of " + deadline.toMillis() + " ms exceeded for " + call.method);
+        if (cause != null) {
+            e.initCause(cause);
+        }
+        return e;
+    }
+
+    private <T> CompletableFuture<T> attempt(Call<T> call, boolean hedged, long start) {
+        return retryPolicy != null ? attempt(call, hedged, start, 1, 0) : dispatch(call, hedged);
+    }
+
+    /**
+     * Makes a pass over the gates and, if it fails with a retryable error, schedules the next pass after a pause.
+     * Each retry takes a permit from the rate limiter; without one the call fails with the last error.
+     */
+    private <T> CompletableFuture<T> attempt(Call<T> call, boolean hedged, long start, int attempt,
+            long previousDelayNanos) {
+        return dispatch(call, hedged)
+            .handle((value, error) -> {
+                if (error == null) {
+                    return CompletableFuture.completedFuture(value);
+                }
+                Throwable e = Futures.unwrap(error);
+                long delayNanos = retryDelay(call, start, attempt, previousDelayNanos, e);
+                long waitNanos = delayNanos >= 0 && rateLimiter != null ? rateLimiter.reserve(call.method) : 0;
+                if (delayNanos < 0 || waitNanos < 0) {
+                    return CompletableFuture.<T>failedFuture(e);
+                }
+                if (metrics != null) {
+                    metrics.onRetry(call.method, attempt + 1);
+                }
+                Executor delayed = CompletableFuture.delayedExecutor(
+                    Math.max(delayNanos, waitNanos), TimeUnit.NANOSECONDS);
+                return CompletableFuture.supplyAsync(() -> null, delayed)
+                    .thenCompose(ignored -> call.cancelled
+                        ? CompletableFuture.<T>failedFuture(new CancellationException())
+                        : attempt(call, hedged, start, attempt + 1, delayNanos));
+            })
+            .thenCompose(Function.identity());
+    }
+
+    /** @return pause before the next pass of a failed call, or -1 if it must not be retried */
+    private long retryDelay(Call<?> call, long start, int attempt, long previousDelayNanos, Throwable e) {
+        if (attempt >= retryPolicy.maxAttempts() || call.cancelled) {
+            return -1;
+        }
+        Duration retryAfter = null;
+        if (e instanceof RateLimitExceededException) {
+            if (!retryPolicy.retriesStatus(HTTP_TOO_MANY_REQUESTS)) {
+                return -1;
+            }
+            retryAfter = ((RateLimitExceededException) e).getRetryAfter();
+        } else if (e instanceof ServerErrorException) {
+            if (!retryPolicy.retriesStatus(((ServerErrorException) e).getStatusCode())) {
+                return -1;
+            }
+            retryAfter = ((ServerErrorException) e).getRetryAfter();
+        } else if (!(e instanceof IOException && retryPolicy.retriesNetworkErrors()
+                && isNetworkFailure((IOException) e))) {
+            return -1;
+        }
+        long delayNanos = retryPolicy.nextDelayNanos(previousDelayNanos, retryAfter);
+        long retryAt = System.nanoTime() + delayNanos;
+        if (!retryPolicy.withinBudget(retryAt - start) || call.deadlineAt != 0 && retryAt - call.deadlineAt >= 0) {
+            return -1;
+        }
+        return delayNanos;
+    }
+
+    private <T> CompletableFuture<T> dispatch(Call<T> call, boolean hedged) {
+        return hedged ? hedge(call) : tryGate(call, gateSelector.order(gateUrls), 0, true, null);
+    }
+
+    /**
+     * Sends the call to the best gate and, if it has not answered within the hedge delay, to the next gates as
+     * well. The first success wins and the other request is cancelled; the call fails only when both fail.
+     */
+    private <T> CompletableFuture<T> hedge(Call<T> primary) {
+        String[] gates = gateSelector.order(gateUrls);
+        Call<T> secondary = primary.copy();
+        primary.hedge = secondary;
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger running = new AtomicInteger(1);
+        AtomicReference<Throwable> firstError = new AtomicReference<>();
+
+        tryGate(primary, gates, 0, true, null)
+            .whenComplete((value, error) -> settle(result, value, error, secondary, running, firstError));
+        Executor delayed = CompletableFuture.delayedExecutor(
+            hedgingPolicy.delayNanos(primary.method), TimeUnit.NANOSECONDS);
+        delayed.execute(() -> {
+            if (result.isDone() || !startLeg(running)) {
+                return;
+            }
+            tryGate(secondary, Arrays.copyOfRange(gates, 1, gates.length), 0, true, null)
+                .whenComplete((value, error) -> settle(result, value, error, primary, running, firstError));
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                primary.cancel();
+            }
+        });
+        return result;
+    }
+
+    private static boolean startLeg(AtomicInteger running) {
+        while (true) {
+            int legs = running.get();
+            if (legs == 0) {
+                return false;
+            }
+            if (running.compareAndSet(legs, legs + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private static <T> void settle(CompletableFuture<T> result, T value, Throwable error, Call<?> other,
+            AtomicInteger running, AtomicReference<Throwable> firstError) {
+        if (error == null) {
+            if (!result.isDone()) {
+                other.cancel();
+                result.complete(value);
+            }
+            return;
+        }
+        firstError.compareAndSet(null, Futures.unwrap(error));
+        if (running.decrementAndGet() == 0) {
+            result.completeExceptionally(firstError.get());
+        }
+    }
+
+    private <T> CompletableFuture<T> tryGate(Call<T> call, String[] gates, int gateIndex, boolean useHttps,
+            IOException lastError) {
+        if (call.cancelled) {
+            return CompletableFuture.failedFuture(new CancellationException("Hedged request lost"));
+        }
+        if (gateIndex >= gates.length) {
+            return CompletableFuture.failedFuture(
+                lastError != null ? lastError : new IOException("All gate URLs failed"));
+        }
+        String method = call.method;
+        String baseDomain = gates[gateIndex];
+        if (useHttps && circuitBreaker != null && !circuitBreaker.tryAcquire(baseDomain, method)) {
+            return tryGate(call, gates, gateIndex + 1, true,
+                lastError != null ? lastError
+                    : new CircuitOpenException(method, "Circuit breaker is open for " + method));
+        }
+        String url = useHttps ? baseDomain : baseDomain.replace("https://", "http://");
+        Transport.Progress progress = Transport.Progress.NONE;
+        if (listener != null) {
+            listener.onGateChosen(call.options.correlationId(), method, url, System.nanoTime());
+            progress = new ListenerProgress(listener, call.options.correlationId(), url);
+        }
+        Transport.Request request = new Transport.Request(
+            getUrl(url, method, call.options.page()), call.headers, call.input, call.attemptTimeout(), progress);
+        return doSendRequestAsync(call, baseDomain, url, request)
+            .handle((value, error) -> {
+                if (error == null) {
+                    return CompletableFuture.completedFuture(value);
+                }
+                Throwable e = Futures.unwrap(error);
+                if (useHttps && isSslError(e)) {
+                    if (metrics != null) {
+                        metrics.onPlainHttpFallback(method, baseDomain);
+                    }
+                    if (listener != null) {
+                        listener.onFailover(call.options.correlationId(), method, url, e, System.nanoTime());
+                    }
+                    return tryGate(call, gates, gateIndex, false, lastError);
+                }
+                boolean failover = (!useHttps && e instanceof IOException
+                    || e instanceof IOException && isTransientNetworkError((IOException) e))
+                    && gateIndex + 1 < gates.length;
+                if (failover && metrics != null) {
+                    metrics.onFailover(method, baseDomain);
+                }
+                if (failover && listener != null) {
+                    listener.onFailover(call.options.correlationId(), method, url, e, System.nanoTime());
+                }
+                if (!useHttps && e instanceof IOException) {
+                    return tryGate(call, gates, gateIndex + 1, true, (IOException) e);
+                }
+                if (e instanceof IOException && isTransientNetworkError((IOException) e)) {
+                    return tryGate(call, gates, gateIndex + 1, true, new IOException(e.getMessage(), e));
+                }
+                return CompletableFuture.<T>failedFuture(e);
+            })
+            .thenCompose(Function.identity());
+    }
+
+    /**
+     * @param gate Gate as configured, for the health and failure statistics
+     * @param url  Gate URL with the scheme actually used, for the listener
+     */
+    private <T> CompletableFuture<T> doSendRequestAsync(Call<T> call, String gate, String url,
+            Transport.Request request) {
+        String method = call.method;
+        long start = System.nanoTime();
+        CompletableFuture<Transport.Response> exchange = transport.postAsync(request);
+        call.inFlight = exchange;
+        if (call.cancelled) {
+            exchange.cancel(true);
+        }
+        return exchange
+            .whenComplete((response, error) -> {
+                record(gate, method, start, response, error);
+                if (metrics != null) {
+                    metrics.onExchange(method, gate, response != null ? response.statusCode() : 0,
+                        System.nanoTime() - start, request.body().length,
+                        response != null ? response.body().length : 0);
+                }
+            })
+            .thenApply(response -> {
+                try {
+                    if (listener != null) {
+                        listener.onResponse(call.options.correlationId(), url, response.statusCode(),
+                            System.nanoTime());
+                    }
+                    if (response.statusCode() == HTTP_TOO_MANY_REQUESTS) {
+                        throw new RateLimitExceededException(method, "Gate rate limit exceeded for " + method,
+                            retryAfter(response));
+                    }
+                    if (response.statusCode() >= HTTP_SERVER_ERROR) {
+                        throw serverError(method, response);
+                    }
+                    T result = call.decoder.decode(response.body());
+                    if (listener != null) {
+                        listener.onBodyParsed(call.options.correlationId(), method, System.nanoTime());
+                    }
+                    return result;
+                } catch (IOException | ParseException e) {
+                    throw Futures.wrap(e);
+                }
+            });
+    }
+
+    /** Keeps the API message of a 5xx response if its body has one. */
+    private static ServerErrorException serverError(String method, Transport.Response response) {
+        String message = "HTTP " + response.statusCode() + " from gate for " + method;
+        try {
+            ResponseDecoder.RAW.decode(response.body());
+        } catch (IOException e) {
+            message = e.getMessage();
+        } catch (ParseException | RuntimeException e) {
+            // Not a JSON envelope, e.g. an error page of a proxy.
+        }
+        return new ServerErrorException(method, response.statusCode(), message, retryAfter(response));
+    }
+
+    /** @return delay asked for by the {@code Retry-After} header, in seconds or as an HTTP date, or null */
+    static Duration retryAfter(Transport.Response response) {
+        String value = response.header("Retry-After");
+        if (value == null) {
+            return null;
+        }
+        try {
+            long seconds = Long.parseLong(value.trim());
+            return seconds >= 0 ? Duration.ofSeconds(seconds) : null;
+        } catch (NumberFormatException e) {
+            try {
+                Duration left = Duration.between(Instant.now(),
+                    ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME));
+                return left.isNegative() ? Duration.ZERO : left;
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Feeds the outcome of one exchange to the gate selector, the circuit breaker and the hedging policy.
+     * TLS failures are not counted, the same gate is retried over plain HTTP right away; neither are cancelled
+     * exchanges (a hedged request won, the deadline passed or the caller cancelled), which only give back their
+     * circuit breaker trial permit.
+     */
+    private void record(String gate, String method, long start, Transport.Response response, Throwable error) {
+        long latency = System.nanoTime() - start;
+        if (error == null && response.statusCode() < HTTP_SERVER_ERROR) {
+            gateSelector.onSuccess(gate, latency);
+            if (circuitBreaker != null) {
+                circuitBreaker.onSuccess(gate, method);
+            }
+            if (hedgingPolicy != null) {
+                hedgingPolicy.recordLatency(method, latency);
+            }
+            return;
+        }
+        Throwable e = error != null ? Futures.unwrap(error) : null;
+        if (e instanceof CancellationException) {
+            // A half-open breaker lent this exchange its trial permit; without it the breaker would never close.
+            if (circuitBreaker != null) {
+                circuitBreaker.onCancel(gate, method);
+            }
+            return;
+        }
+        if (e != null && isSslError(e)) {
+            return;
+        }
+        gateSelector.onFailure(gate, latency, prober);
+        if (circuitBreaker != null) {
+            circuitBreaker.onFailure(gate, method);
+        }
+    }
+
+    /** Checks an ejected gate with an {@code auth} call; any answer other than 5xx means it is back. */
+    private CompletableFuture<Boolean> probe(String gate) {
+        Transport.Request request = new Transport.Request(gate + "auth", headers, PROBE_BODY, PROBE_TIMEOUT);
+        return transport.postAsync(request)
+            .handle((response, error) -> error == null && response.statusCode() < HTTP_SERVER_ERROR);
+    }
+
+    /** Forwards the progress of one exchange to the listener. */
+    private static final class ListenerProgress implements Transport.Progress {
+        private final RequestListener listener;
+        private final String callId;
+        private final String gate;
+
+        ListenerProgress(RequestListener listener, String callId, String gate) {
+            this.listener = listener;
+            this.callId = callId;
+            this.gate = gate;
+        }
+
+        @Override
+        public void onConnected() {
+            listener.onConnected(callId, gate, System.nanoTime());
+        }
+
+        @Override
+        public void onFirstByte() {
+            listener.onFirstByte(callId, gate, System.nanoTime());
+        }
+    }
+
+    /**
+     * State of one request as it moves between gates. A hedged request has two calls that can cancel each other.
+     */
+    private static final class Call<T> {
+        final String method;
+        final RequestOptions options;
+        final Map<String, String> headers;
+        final byte[] input;
+        final ResponseDecoder<T> decoder;
+        final Duration timeout;
+        final long deadlineAt;
+        volatile CompletableFuture<Transport.Response> inFlight;
+        volatile Call<T> hedge;
+        volatile boolean cancelled;
+
+        /**
+         * @param timeout    Response timeout of each attempt, or null for the transport default
+         * @param deadlineAt {@link System#nanoTime()} by which the call must be done, or 0 for no deadline
+         */
+        Call(String method, RequestOptions options, Map<String, String> headers, byte[] input,
+                ResponseDecoder<T> decoder, Duration timeout, long deadlineAt) {
+            this.method = method;
+            this.options = options;
+            this.headers = headers;
+            this.input = input;
+            this.decoder = decoder;
+            this.timeout = timeout;
+            this.deadlineAt = deadlineAt;
+        }
+
+        Call<T> copy() {
+            return new Call<>(method, options, headers, input, decoder, timeout, deadlineAt);
+        }
+
+        /** @return response timeout of the next attempt, capped by the time left until the deadline */
+        Duration attemptTimeout() {
+            if (deadlineAt == 0) {
+                return timeout;
+            }
+            long left = Math.max(TimeUnit.MILLISECONDS.toNanos(1), deadlineAt - System.nanoTime());
+            return timeout == null || timeout.toNanos() > left ? Duration.ofNanos(left) : timeout;
+        }
+
+        /** Stops the call and the hedged copy started from it, if any. */
+        void cancel() {
+            cancelled = true;
+            CompletableFuture<Transport.Response> exchange = inFlight;
+            if (exchange != null) {
+                exchange.cancel(true);
+            }
+            Call<T> copy = hedge;
+            if (copy != null) {
+                copy.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package ru.smsaero;
+
+/**
+ * Receives the phases of every call of a client, e.g. to find out where the time of a slow send went or to turn
+ * calls into trace spans. The {@code smsaero-opentelemetry} module turns them into OpenTelemetry spans.
+ *
+ * <p>A call starts, then for each attempt chooses a gate, connects, receives the first byte and then the whole
+ * response, and parses its body; a failed attempt is followed by a failover to another gate, or to the same gate
+ * over plain HTTP after a TLS failure. Hedged requests and retries make more attempts under the same call id.
+ * Calls answered from a cache or rejected without I/O have no attempts.
+ *
+ * <p>Events carry the call's correlation id ({@link RequestOptions#correlationId()}, or one generated per call)
+ * and a {@link System#nanoTime()} timestamp. Gates are reported as the base URL actually used, e.g.
+ * "https://gate.smsaero.ru/v2/", or "http://gate.smsaero.ru/v2/" after a TLS failure. Connections are reported only
+ * by transports that can observe them, such as {@link UrlConnectionTransport}; {@link HttpClientTransport} reports
+ * the first byte but not the connection.
+ *
+ * <p>Every method does nothing by default. Methods are called on the threads that make and complete requests,
+ * concurrently, so they must be thread-safe and return quickly. A client without a listener
+ * ({@link SmsAero.Builder#listener}) generates no ids and takes no timestamps for it.
+ */
+public interface RequestListener {
+
+    /**
+     * @param callId   Correlation id of the call
+     * @param method   API method, e.g. "sms/send"
+     * @param nanoTime Time of the event
+     */
+    default void onStart(String callId, String method, long nanoTime) {
+    }
+
+    /**
+     * An attempt of the call is about to be sent to a gate.
+     *
+     * @param callId   Correlation id of the call
+     * @param method   API method
+     * @param gate     Gate URL
+     * @param nanoTime Time of the event
+     */
+    default void onGateChosen(String callId, String method, String gate, long nanoTime) {
+    }
+
+    /**
+     * The connection to the gate is established or a pooled one is reused.
+     *
+     * @param callId   Correlation id of the call
+     * @param gate     Gate URL
+     * @param nanoTime Time of the event
+     */
+    default void onConnected(String callId, String gate, long nanoTime) {
+    }
+
+    /**
+     * The status line and headers of the response have arrived.
+     *
+     * @param callId   Correlation id of the call
+     * @param gate     Gate URL
+     * @param nanoTime Time of the event
+     */
+    default void onFirstByte(String callId, String gate, long nanoTime) {
+    }
+
+    /**
+     * The whole response has been read; its body is parsed next.
+     *
+     * @param callId     Correlation id of the call
+     * @param gate       Gate URL
+     * @param statusCode HTTP status of the response
+     * @param nanoTime   Time of the event
+     */
+    default void onResponse(String callId, String gate, int statusCode, long nanoTime) {
+    }
+
+    /**
+     * The response body has been parsed into the result of the call.
+     *
+     * @param callId   Correlation id of the call
+     * @param method   API method
+     * @param nanoTime Time of the event
+     */
+    default void onBodyParsed(String callId, String method, long nanoTime) {
+    }
+
+    /**
+     * An attempt has failed and the call moves on to the next gate, or to the same gate over plain HTTP.
+     *
+     * @param callId   Correlation id of the call
+     * @param method   API method
+     * @param gate     Gate URL of the failed attempt
+     * @param error    Error of the failed attempt
+     * @param nanoTime Time of the event
+     */
+    default void onFailover(String callId, String method, String gate, Throwable error, long nanoTime) {
+    }
+
+    /**
+     * @param callId   Correlation id of the call
+     * @param method   API method
+     * @param error    Error the call failed with, or null on success
+     * @param nanoTime Time of the event
+     */
+    default void onFinish(String callId, String method, Throwable error, long nanoTime) {
+    }
+}
@@ -0,0 +1,212 @@
+package ru.smsaero;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable per-request settings: page number, extra body parameters, response timeout, total deadline,
+ * idempotency key and correlation id.
+ *
+ * <p>Options are bound to a client view with {@link SmsAero#with(RequestOptions)} and travel with the call itself,
+ * so they work the same from any thread, executor or asynchronous continuation.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * RequestOptions options = RequestOptions.builder()
+ *     .param("fname", "First name")
+ *     .param("lname", "Last name")
+ *     .build();
+ * client.with(options).ContactAdd("79038800350");
+ *
+ * client.with(RequestOptions.page(2)).SmsList();
+ * }</pre>
+ */
+public final class RequestOptions {
+    /** Options with nothing set. */
+    public static final RequestOptions NONE = new RequestOptions(new Builder());
+
+    private final int page;
+    private final Map<String, String> params;
+    private final Duration timeout;
+    private final Duration deadline;
+    private final String idempotencyKey;
+    private final String correlationId;
+
+    private RequestOptions(Builder builder) {
+        this.page = builder.page;
+        this.params = builder.params.isEmpty()
+            ? Collections.emptyMap()
+            : Collections.unmodifiableMap(new LinkedHashMap<>(builder.params));
+        this.timeout = builder.timeout;
+        this.deadline = builder.deadline;
+        this.idempotencyKey = builder.idempotencyKey;
+        this.correlationId = builder.correlationId;
+    }
+
+    /**
+     * Creates a builder for request options.
+     *
+     * @return new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Shortcut for options that only select a page of a list endpoint.
+     *
+     * @param page Page number, starting from 1
+     * @return new options
+     */
+    public static RequestOptions page(int page) {
+        return builder().page(page).build();
+    }
+
+    /**
+     * Creates a builder pre-filled with these options.
+     *
+     * @return new builder
+     */
+    public Builder toBuilder() {
+        Builder builder = new Builder();
+        builder.page = page;
+        builder.params.putAll(params);
+        builder.timeout = timeout;
+        builder.deadline = deadline;
+        builder.idempotencyKey = idempotencyKey;
+        builder.correlationId = correlationId;
+        return builder;
+    }
+
+    /** @return page number, or 0 if not set */
+    public int page() {
+        return page;
+    }
+
+    /** @return extra body parameters (unmodifiable) */
+    public Map<String, String> params() {
+        return params;
+    }
+
+    /** @return response timeout of each attempt, or null to use the client default */
+    public Duration timeout() {
+        return timeout;
+    }
+
+    /** @return total deadline of the call, or null to use the client default */
+    public Duration deadline() {
+        return deadline;
+    }
+
+    /** @return idempotency key, or null if not set */
+    public String idempotencyKey() {
+        return idempotencyKey;
+    }
+
+    /** @return correlation id reported to the {@link RequestListener}, or null to generate one per call */
+    public String correlationId() {
+        return correlationId;
+    }
+
+    /**
+     * Builder for {@link RequestOptions}.
+     */
+    public static final class Builder {
+        private int page;
+        private final Map<String, String> params = new LinkedHashMap<>();
+        private Duration timeout;
+        private Duration deadline;
+        private String idempotencyKey;
+        private String correlationId;
+
+        private Builder() {
+        }
+
+        /**
+         * @param page Page number for list endpoints, starting from 1
+         * @return this builder
+         */
+        public Builder page(int page) {
+            if (page < 1) {
+                throw new IllegalArgumentException("page must be positive");
+            }
+            this.page = page;
+            return this;
+        }
+
+        /**
+         * Adds an extra body parameter, e.g. fname/lname for ContactAdd.
+         *
+         * @param key   Parameter name
+         * @param value Parameter value
+         * @return this builder
+         */
+        public Builder param(String key, String value) {
+            SmsAero.requireNonBlank(key, "key");
+            if (value == null) {
+                throw new IllegalArgumentException("value cannot be null");
+            }
+            params.put(key, value);
+            return this;
+        }
+
+        /**
+         * @param timeout Response timeout of each attempt (gate), overriding the client default
+         * @return this builder
+         */
+        public Builder timeout(Duration timeout) {
+            if (timeout != null && (timeout.isNegative() || timeout.isZero())) {
+                throw new IllegalArgumentException("timeout must be positive");
+            }
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * @param deadline Total time for the call over all gates, overriding the client default; when it passes the
+         *                 call fails with {@link DeadlineExceededException}
+         * @return this builder
+         */
+        public Builder deadline(Duration deadline) {
+            if (deadline != null && (deadline.isNegative() || deadline.isZero())) {
+                throw new IllegalArgumentException("deadline must be positive");
+            }
+            this.deadline = deadline;
+            return this;
+        }
+
+        /**
+         * @param idempotencyKey Key identifying the logical request, sent as the {@code Idempotency-Key} header
+         * @return this builder
+         */
+        public Builder idempotencyKey(String idempotencyKey) {
+            if (idempotencyKey != null && idempotencyKey.isBlank()) {
+                throw new IllegalArgumentException("idempotencyKey cannot be blank");
+            }
+            this.idempotencyKey = idempotencyKey;
+            return this;
+        }
+
+        /**
+         * @param correlationId Id of the call in {@link RequestListener} events, e.g. the id of the request that
+         *                      made it, instead of a generated one
+         * @return this builder
+         */
+        public Builder correlationId(String correlationId) {
+            if (correlationId != null && correlationId.isBlank()) {
+                throw new IllegalArgumentException("correlationId cannot be blank");
+            }
+            this.correlationId = correlationId;
+            return this;
+        }
+
+        /**
+         * @return new options
+         */
+        public RequestOptions build() {
+            return new RequestOptions(this);
+        }
+    }
+}
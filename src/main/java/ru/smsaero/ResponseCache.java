@@ -0,0 +1,284 @@
+package ru.smsaero;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Opt-in cache for slowly changing reference endpoints such as {@code tariffs} and {@code sign/list}.
+ *
+ * <p>Successful responses are kept for a per-method TTL, per page. Concurrent misses for the same method and page
+ * share one request. A hit on an entry older than the refresh-ahead fraction of its TTL (80% by default) returns
+ * the cached response and refreshes it in the background, so a steadily used entry never expires on the request
+ * path. Mutating calls of the same client invalidate what they change: {@code group/add}, {@code group/delete}
+ * and {@code group/delete-all} invalidate {@code group/list}; {@code balance/add}, sends and {@code hlr/check}
+ * invalidate {@code balance}. Calls of other clients or processes on the same account are not seen, so a cached
+ * balance can still be up to its TTL behind them.
+ * Calls with extra parameters ({@link RequestOptions#params()}) bypass the cache.
+ *
+ * <p>Every call decodes its own copy of the cached response, so results can be modified freely. A cache holds the
+ * responses of one account and can be used by one client only (views created with
+ * {@link SmsAero#with(RequestOptions)} share it).
+ *
+ * <p>Example:
+ * <pre>{@code
+ * SmsAero client = SmsAero.builder(email, apiKey)
+ *     .responseCache(ResponseCache.builder().ttl("balance", Duration.ofSeconds(10)).build())
+ *     .build();
+ * }</pre>
+ */
+public final class ResponseCache {
+    /** Default TTLs: {@code tariffs} 1 h, sign lists and {@code cards} 10 min, {@code group/list} 1 min,
+     *  {@code balance} 30 s. */
+    public static final Map<String, Duration> DEFAULT_TTLS = Map.of(
+        "tariffs", Duration.ofHours(1),
+        "sign/list", Duration.ofMinutes(10),
+        "viber/sign/list", Duration.ofMinutes(10),
+        "cards", Duration.ofMinutes(10),
+        "group/list", Duration.ofMinutes(1),
+        "balance", Duration.ofSeconds(30));
+
+    private static final Map<String, List<String>> INVALIDATES = Map.of(
+        "group/add", List.of("group/list"),
+        "group/delete", List.of("group/list"),
+        "group/delete-all", List.of("group/list"),
+        "balance/add", List.of("balance"),
+        "sms/send", List.of("balance"),
+        "viber/send", List.of("balance"),
+        "telegram/send", List.of("balance"),
+        "mobile-id/send", List.of("balance"),
+        "hlr/check", List.of("balance"));
+
+    private final Map<String, Long> ttlNanos;
+    private final double refreshAhead;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean attached = new AtomicBoolean();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    private ResponseCache(Builder builder) {
+        Map<String, Long> ttlNanos = new HashMap<>();
+        builder.ttls.forEach((method, ttl) -> {
+            if (!ttl.isZero()) {
+                ttlNanos.put(method, ttl.toNanos());
+            }
+        });
+        this.ttlNanos = Map.copyOf(ttlNanos);
+        this.refreshAhead = builder.refreshAhead;
+    }
+
+    /**
+     * Creates a cache with the {@link #DEFAULT_TTLS}.
+     *
+     * @return new cache
+     */
+    public static ResponseCache create() {
+        return builder().build();
+    }
+
+    /**
+     * Creates a builder starting from the {@link #DEFAULT_TTLS}.
+     *
+     * @return new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Drops the cached responses of a method, all pages.
+     *
+     * @param method API method, e.g. "sign/list"
+     */
+    public void invalidate(String method) {
+        String prefix = method + '#';
+        entries.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /** Drops all cached responses. */
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    /** @return number of calls answered from the cache, including calls that joined a request in flight */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /** @return number of calls that had to fetch */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /** @return number of background refreshes started */
+    public long refreshes() {
+        return refreshes.sum();
+    }
+
+    /** @return number of cached method and page entries */
+    public int size() {
+        return entries.size();
+    }
+
+    /** Binds the cache to its client; a cache must not mix the responses of several accounts. */
+    void attach() {
+        if (!attached.compareAndSet(false, true)) {
+            throw new IllegalArgumentException("responseCache is already used by another client");
+        }
+    }
+
+    /** Releases the binding of a client whose build failed. */
+    void detach() {
+        attached.set(false);
+    }
+
+    boolean covers(String method) {
+        return ttlNanos.containsKey(method);
+    }
+
+    /**
+     * Returns the cached response body, fetching it with the loader on a miss. The returned future is shared:
+     * callers must not cancel or complete it.
+     */
+    CompletableFuture<byte[]> get(String method, int page, Supplier<CompletableFuture<byte[]>> loader) {
+        String key = method + '#' + page;
+        long ttl = ttlNanos.get(method);
+        long now = System.nanoTime();
+        Entry[] created = new Entry[1];
+        Entry entry = entries.compute(key, (k, old) -> {
+            if (old != null && old.isUsable(now, ttl)) {
+                return old;
+            }
+            return created[0] = new Entry();
+        });
+        if (created[0] == null) {
+            hits.increment();
+            if (entry.future.isDone() && now - entry.loadedAt >= (long) (ttl * refreshAhead)
+                    && entry.refreshing.compareAndSet(false, true)) {
+                refresh(key, entry, loader);
+            }
+            return entry.future;
+        }
+        misses.increment();
+        load(loader).whenComplete((body, error) -> {
+            if (error != null) {
+                entries.remove(key, entry);
+                entry.future.completeExceptionally(Futures.unwrap(error));
+            } else {
+                entry.loadedAt = System.nanoTime();
+                entry.future.complete(body);
+            }
+        });
+        return entry.future;
+    }
+
+    private void refresh(String key, Entry stale, Supplier<CompletableFuture<byte[]>> loader) {
+        refreshes.increment();
+        load(loader).whenComplete((body, error) -> {
+            if (error != null) {
+                // Keep serving the stale entry until it expires; the next hit tries again.
+                stale.refreshing.set(false);
+                return;
+            }
+            Entry fresh = new Entry();
+            fresh.loadedAt = System.nanoTime();
+            fresh.future.complete(body);
+            // Fails if the entry was invalidated meanwhile, so a refresh never resurrects it.
+            entries.replace(key, stale, fresh);
+        });
+    }
+
+    private static CompletableFuture<byte[]> load(Supplier<CompletableFuture<byte[]>> loader) {
+        try {
+            return loader.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /** Invalidates what a completed call of the given method may have changed. */
+    void afterCall(String method) {
+        List<String> invalidated = INVALIDATES.get(method);
+        if (invalidated != null) {
+            for (String cached : invalidated) {
+                invalidate(cached);
+            }
+        }
+    }
+
+    static boolean mutates(String method) {
+        return INVALIDATES.containsKey(method);
+    }
+
+    /** A response being fetched, or fetched at {@link #loadedAt}. */
+    private static final class Entry {
+        final CompletableFuture<byte[]> future = new CompletableFuture<>();
+        final AtomicBoolean refreshing = new AtomicBoolean();
+        volatile long loadedAt;
+
+        boolean isUsable(long now, long ttl) {
+            if (!future.isDone()) {
+                return true;
+            }
+            return !future.isCompletedExceptionally() && now - loadedAt < ttl;
+        }
+    }
+
+    /**
+     * Builder for {@link ResponseCache}.
+     */
+    public static final class Builder {
+        private final Map<String, Duration> ttls = new HashMap<>(DEFAULT_TTLS);
+        private double refreshAhead = 0.8;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the TTL of a method's responses. Any read-only method may be cached, e.g. {@code "sms/list"} for
+         * dashboards that tolerate stale data.
+         *
+         * @param method API method, e.g. "tariffs"
+         * @param ttl    Time a response is served from the cache, or {@link Duration#ZERO} not to cache the method
+         * @return this builder
+         */
+        public Builder ttl(String method, Duration ttl) {
+            SmsAero.requireNonBlank(method, "method");
+            if (ttl == null || ttl.isNegative()) {
+                throw new IllegalArgumentException("ttl must not be null or negative");
+            }
+            if (mutates(method)) {
+                throw new IllegalArgumentException("method " + method + " changes data and cannot be cached");
+            }
+            ttls.put(method, ttl);
+            return this;
+        }
+
+        /**
+         * @param fraction Fraction of the TTL after which a hit refreshes the entry in the background; 1 disables
+         *                 refresh-ahead
+         * @return this builder
+         */
+        public Builder refreshAhead(double fraction) {
+            if (!(fraction > 0 && fraction <= 1)) {
+                throw new IllegalArgumentException("refreshAhead must be in (0, 1]");
+            }
+            this.refreshAhead = fraction;
+            return this;
+        }
+
+        /**
+         * @return new cache
+         */
+        public ResponseCache build() {
+            return new ResponseCache(this);
+        }
+    }
+}
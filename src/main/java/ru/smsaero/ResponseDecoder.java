@@ -0,0 +1,99 @@
+package ru.smsaero;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Turns the body of a gate response into the result of a call. Both decoders reject responses with
+ * {@code "success": false} with an {@link IOException} carrying the API message.
+ */
+@FunctionalInterface
+interface ResponseDecoder<T> {
+    /** Parses the whole response into a {@link JSONObject}, as returned by the untyped API. */
+    ResponseDecoder<JSONObject> JSON = ResponseDecoder::parseJson;
+
+    /** Checks the envelope and returns the body as is, to be decoded later, e.g. from a {@link ResponseCache}. */
+    ResponseDecoder<byte[]> RAW = body -> {
+        data(reader -> {
+            reader.skipValue();
+            return null;
+        }).decode(body);
+        return body;
+    };
+
+    T decode(byte[] body) throws IOException, ParseException;
+
+    /**
+     * Reads the response envelope with a {@link JsonReader} and decodes only its {@code data} value; the rest is
+     * skipped. A null {@code data} decodes to null.
+     */
+    static <T> ResponseDecoder<T> data(JsonReader.Decoder<T> dataDecoder) {
+        return body -> {
+            JsonReader reader = new JsonReader(body);
+            boolean success = true;
+            String message = null;
+            String reason = null;
+            T data = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.selectName(Envelope.NAMES)) {
+                    case Envelope.SUCCESS:
+                        success = reader.skipNull() || reader.nextBoolean();
+                        break;
+                    case Envelope.DATA:
+                        data = reader.skipNull() ? null : dataDecoder.read(reader);
+                        break;
+                    case Envelope.MESSAGE:
+                        message = reader.nextString();
+                        break;
+                    case Envelope.REASON:
+                        reason = reader.peek() == JsonReader.Token.STRING ? reader.nextString() : reader.nextRaw();
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+            if (!success) {
+                throw new IOException(message != null ? message : (reason != null ? reason : "Unknown error"));
+            }
+            return data;
+        };
+    }
+
+    private static JSONObject parseJson(byte[] body) throws IOException, ParseException {
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8)) {
+            // JSONParser keeps lexer state between calls, so each response gets its own instance.
+            Object obj = new JSONParser().parse(reader);
+            JSONObject jsonObj = (JSONObject) obj;
+            if (Boolean.FALSE.equals(jsonObj.get("success"))) {
+                Object msg = jsonObj.get("message");
+                Object reason = jsonObj.get("reason");
+                String errText = msg != null ? String.valueOf(msg)
+                        : (reason != null ? String.valueOf(reason) : "Unknown error");
+                throw new IOException(errText);
+            }
+            return jsonObj;
+        }
+    }
+
+    /** Field names of the response envelope. */
+    final class Envelope {
+        static final JsonReader.Names NAMES = JsonReader.Names.of("success", "data", "message", "reason");
+        static final int SUCCESS = 0;
+        static final int DATA = 1;
+        static final int MESSAGE = 2;
+        static final int REASON = 3;
+
+        private Envelope() {
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package ru.smsaero;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retries failed calls after a pause: once a pass over the gates has failed, the call waits and makes another pass,
+ * up to {@code maxAttempts} passes in all.
+ *
+ * <p>A call is retried when every gate failed with a transient network error (timeouts, refused connections and
+ * the like), or when a gate answered with a retryable HTTP status: 429, 500, 502, 503 and 504 by default. Other
+ * failures, such as API errors, an open {@link CircuitBreaker} or a {@link BlacklistedNumberException}, are final.
+ *
+ * <p>Pauses use decorrelated jitter: each is drawn at random between the base delay and three times the previous
+ * pause, capped at the maximum delay, so clients that failed together do not retry in lockstep. A
+ * {@code Retry-After} header of a 429 or 5xx response raises the pause to the time asked for, but not beyond the
+ * maximum delay. Pauses are scheduled on a timer and never block a thread.
+ *
+ * <p>No retry starts once the call's {@code budget} is spent, or when its pause would end after the call's
+ * deadline ({@link SmsAero.Builder#deadline(Duration)}, {@link RequestOptions#deadline()}). A retried send keeps
+ * its {@code Idempotency-Key}, but a gate that timed out or answered 5xx may have accepted the message already,
+ * so a retry can deliver it twice unless the gate deduplicates by that header (see {@link IdempotencyIndex}).
+ * A policy holds no state and may be shared by several clients.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * SmsAero client = SmsAero.builder(email, apiKey)
+ *     .retryPolicy(RetryPolicy.builder().maxAttempts(4).budget(Duration.ofSeconds(10)).build())
+ *     .build();
+ * }</pre>
+ */
+public final class RetryPolicy {
+    /** Default number of passes over the gates, the first one included. */
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    /** Default lower bound of a pause. */
+    public static final Duration DEFAULT_BASE_DELAY = Duration.ofMillis(100);
+    /** Default upper bound of a pause. */
+    public static final Duration DEFAULT_MAX_DELAY = Duration.ofSeconds(5);
+    /** HTTP statuses retried by default. */
+    public static final Set<Integer> DEFAULT_RETRYABLE_STATUSES = Set.of(429, 500, 502, 503, 504);
+
+    private final int maxAttempts;
+    private final long baseDelayNanos;
+    private final long maxDelayNanos;
+    private final long budgetNanos;
+    private final Set<Integer> retryableStatuses;
+    private final boolean retryNetworkErrors;
+
+    private RetryPolicy(Builder builder) {
+        this.maxAttempts = builder.maxAttempts;
+        this.baseDelayNanos = builder.baseDelay.toNanos();
+        this.maxDelayNanos = builder.maxDelay.toNanos();
+        this.budgetNanos = builder.budget != null ? builder.budget.toNanos() : 0;
+        this.retryableStatuses = builder.retryableStatuses;
+        this.retryNetworkErrors = builder.retryNetworkErrors;
+    }
+
+    /**
+     * Creates a policy with the default settings.
+     *
+     * @return new policy
+     */
+    public static RetryPolicy create() {
+        return builder().build();
+    }
+
+    /**
+     * Creates a builder for a policy with custom settings.
+     *
+     * @return new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    int maxAttempts() {
+        return maxAttempts;
+    }
+
+    boolean retriesStatus(int statusCode) {
+        return retryableStatuses.contains(statusCode);
+    }
+
+    boolean retriesNetworkErrors() {
+        return retryNetworkErrors;
+    }
+
+    /** @return true if a retry starting {@code elapsedNanos} after the call began is within the budget */
+    boolean withinBudget(long elapsedNanos) {
+        return budgetNanos == 0 || elapsedNanos < budgetNanos;
+    }
+
+    /**
+     * @param previousNanos Previous pause of the call, or 0 before the first retry
+     * @param retryAfter    Delay asked for by the gate, or null
+     * @return the next pause
+     */
+    long nextDelayNanos(long previousNanos, Duration retryAfter) {
+        long upper = Math.min(maxDelayNanos, Math.max(baseDelayNanos, previousNanos) * 3);
+        long delay = upper > baseDelayNanos ? ThreadLocalRandom.current().nextLong(baseDelayNanos, upper + 1)
+            : baseDelayNanos;
+        if (retryAfter == null) {
+            return delay;
+        }
+        // A gate cannot hold the call longer than the policy allows.
+        long asked = retryAfter.compareTo(Duration.ofNanos(maxDelayNanos)) < 0 ? retryAfter.toNanos() : maxDelayNanos;
+        return Math.max(delay, asked);
+    }
+
+    /**
+     * Builder for {@link RetryPolicy}.
+     */
+    public static final class Builder {
+        private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+        private Duration baseDelay = DEFAULT_BASE_DELAY;
+        private Duration maxDelay = DEFAULT_MAX_DELAY;
+        private Duration budget;
+        private Set<Integer> retryableStatuses = DEFAULT_RETRYABLE_STATUSES;
+        private boolean retryNetworkErrors = true;
+
+        private Builder() {
+        }
+
+        /**
+         * @param maxAttempts Number of passes over the gates, the first one included; 1 disables retries
+         * @return this builder
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("maxAttempts must be positive");
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * @param baseDelay Lower bound of a pause
+         * @param maxDelay  Upper bound of a pause, also of one asked for by the gate with {@code Retry-After}
+         * @return this builder
+         */
+        public Builder backoff(Duration baseDelay, Duration maxDelay) {
+            requirePositive(baseDelay, "baseDelay");
+            requirePositive(maxDelay, "maxDelay");
+            if (maxDelay.compareTo(baseDelay) < 0) {
+                throw new IllegalArgumentException("maxDelay must not be less than baseDelay");
+            }
+            this.baseDelay = baseDelay;
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        /**
+         * @param budget Time after the start of a call in which retries may start, or null for no limit (the
+         *               default); unlike a deadline it does not cut short an attempt in progress
+         * @return this builder
+         */
+        public Builder budget(Duration budget) {
+            if (budget != null) {
+                requirePositive(budget, "budget");
+            }
+            this.budget = budget;
+            return this;
+        }
+
+        /**
+         * @param statusCodes HTTP statuses whose responses are retried; repeated codes are ignored
+         * @return this builder
+         */
+        public Builder retryableStatuses(int... statusCodes) {
+            if (statusCodes == null) {
+                throw new IllegalArgumentException("statusCodes cannot be null");
+            }
+            Set<Integer> statuses = new HashSet<>();
+            for (int statusCode : statusCodes) {
+                statuses.add(statusCode);
+            }
+            this.retryableStatuses = Set.copyOf(statuses);
+            return this;
+        }
+
+        /**
+         * @param retryNetworkErrors false not to retry calls whose gates all failed with network errors
+         * @return this builder
+         */
+        public Builder retryNetworkErrors(boolean retryNetworkErrors) {
+            this.retryNetworkErrors = retryNetworkErrors;
+            return this;
+        }
+
+        /**
+         * @return new policy
+         */
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+
+        private static void requirePositive(Duration value, String paramName) {
+            if (value == null || value.isNegative() || value.isZero()) {
+                throw new IllegalArgumentException(paramName + " must be positive");
+            }
+        }
+    }
+}
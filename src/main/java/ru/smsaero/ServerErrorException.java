@@ -0,0 +1,43 @@
+package ru.smsaero;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Thrown when a gate answers with an HTTP 5xx status. Such a call may be retried by a {@link RetryPolicy}.
+ */
+public class ServerErrorException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final String method;
+    private final int statusCode;
+    private final Duration retryAfter;
+
+    /**
+     * @param method     API method that failed
+     * @param statusCode HTTP status code of the response
+     * @param message    Detail message
+     * @param retryAfter Delay asked for by the gate's {@code Retry-After} header, or null
+     */
+    public ServerErrorException(String method, int statusCode, String message, Duration retryAfter) {
+        super(message);
+        this.method = method;
+        this.statusCode = statusCode;
+        this.retryAfter = retryAfter;
+    }
+
+    /** @return API method that failed, e.g. "sms/send" */
+    public String getMethod() {
+        return method;
+    }
+
+    /** @return HTTP status code, e.g. 503 */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /** @return delay asked for by the gate's {@code Retry-After} header, or null if there was none */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
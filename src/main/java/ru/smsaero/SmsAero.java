@@ -1,15 +1,18 @@
 package ru.smsaero;
 
 import java.io.*;
-import java.net.*;
 import java.nio.charset.StandardCharsets;
-import javax.net.ssl.SSLException;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.json.simple.*;
 import org.json.simple.parser.*;
 
+import static ru.smsaero.Futures.await;
+
 /**
  * Java client for the SMS Aero API.
  * Provides methods for sending SMS, managing contacts, groups, HLR requests, and more.
@@ -17,25 +20,31 @@ import org.json.simple.parser.*;
  * @see <a href="https://smsaero.ru/integration/documentation/api/">SmsAero API Documentation</a>
  */
 public class SmsAero {
+    /** Library version, sent in the default {@code User-Agent}. */
+    public static final String VERSION = "3.3.0";
+
+    /** Gates used unless the builder is given others, tried in this order while they are equally healthy. */
+    public static final List<String> DEFAULT_GATE_URLS = List.of(
+        "https://gate.smsaero.ru/v2/",
+        "https://gate.smsaero.org/v2/",
+        "https://gate.smsaero.net/v2/"
+    );
+
     /** Connection timeout (ms). */
     private static final int CONNECT_TIMEOUT_MS = 10_000;
     /** Read timeout (ms). */
     private static final int READ_TIMEOUT_MS = 30_000;
 
-    private static final String USER_AGENT = "SAJavaClient/3.2.0";
+    private static final String USER_AGENT = "SAJavaClient/" + VERSION;
 
-    private static final JSONParser JSON_PARSER = new JSONParser();
+    private final RequestExecutor executor;
 
-    private final String authHeader;
+    private final RequestOptions options;
 
-    private static final List<String> GATE_URLS = Arrays.asList(
-        "https://gate.smsaero.ru/v2/",
-        "https://gate.smsaero.org/v2/",
-        "https://gate.smsaero.net/v2/"
-    );
-    private final ThreadLocal<String> page = ThreadLocal.withInitial(() -> null);
-    private final ThreadLocal<Map<String, String>> postParam = ThreadLocal.withInitial(() -> null);
-    private volatile boolean testMode = false;
+    private final SmsAeroAsync async;
+
+    private final PendingParams pending;
+    private final AtomicBoolean testMode;
 
     /**
      * Creates an SmsAero API client.
@@ -45,19 +54,75 @@ public class SmsAero {
      * @throws IllegalArgumentException if email or apiKey is null or blank
      */
     public SmsAero(String emailAddr, String apiKey) {
-        requireNonBlankAll("email", emailAddr, "apiKey", apiKey);
-        this.authHeader = "Basic " + Base64.getEncoder().encodeToString(
-            (emailAddr + ":" + apiKey).getBytes(StandardCharsets.UTF_8));
+        this(new Builder(emailAddr, apiKey));
+    }
+
+    /**
+     * Creates an SmsAero API client that sends requests through the given transport.
+     *
+     * @param emailAddr Email for SmsAero account authentication
+     * @param apiKey    API key from the SmsAero cabinet
+     * @param transport HTTP transport, e.g. a tuned {@link HttpClientTransport}
+     * @throws IllegalArgumentException if email or apiKey is null or blank, or transport is null
+     */
+    public SmsAero(String emailAddr, String apiKey, Transport transport) {
+        this(new Builder(emailAddr, apiKey).transport(transport));
+    }
+
+    private SmsAero(Builder builder) {
+        requireNonBlankAll("email", builder.emailAddr, "apiKey", builder.apiKey);
+        String authHeader = "Basic " + Base64.getEncoder().encodeToString(
+            (builder.emailAddr + ":" + builder.apiKey).getBytes(StandardCharsets.UTF_8));
+        Map<String, String> headers = Map.of(
+            "Authorization", authHeader,
+            "Content-Type", "application/json",
+            "User-Agent", builder.userAgent);
+        this.executor = new RequestExecutor(headers, transport(builder), builder.gateUrls,
+            builder.readTimeout, builder.deadline, builder.rateLimiter,
+            builder.gateSelector != null ? builder.gateSelector : GateSelector.create(),
+            builder.circuitBreaker, builder.hedgingPolicy, builder.responseCache, builder.lookupCache,
+            builder.blacklistMirror, builder.idempotencyIndex, builder.retryPolicy, builder.metrics,
+            builder.listener);
+        this.options = RequestOptions.NONE;
+        this.pending = new PendingParams();
+        this.testMode = new AtomicBoolean();
+        this.async = new SmsAeroAsync(this);
     }
 
-    private static void requireNonBlank(String value, String paramName) {
+    private SmsAero(SmsAero parent, RequestOptions options) {
+        this.executor = parent.executor;
+        this.options = options;
+        this.pending = parent.pending;
+        this.testMode = parent.testMode;
+        this.async = new SmsAeroAsync(this);
+    }
+
+    /**
+     * Creates a builder for a client with custom settings.
+     *
+     * <p>Example:
+     * <pre>{@code
+     * SmsAero client = SmsAero.builder(email, apiKey)
+     *     .transport(HttpClientTransport.builder().maxRequestsPerGate(16).build())
+     *     .build();
+     * }</pre>
+     *
+     * @param emailAddr Email for SmsAero account authentication
+     * @param apiKey    API key from the SmsAero cabinet
+     * @return new builder
+     */
+    public static Builder builder(String emailAddr, String apiKey) {
+        return new Builder(emailAddr, apiKey);
+    }
+
+    static void requireNonBlank(String value, String paramName) {
         if (value == null || value.isBlank()) {
             throw new IllegalArgumentException(paramName + " cannot be null or blank");
         }
     }
 
     /** Validates multiple parameters as (paramName, value) pairs. Accepts null - throws IAE. */
-    private static void requireNonBlankAll(String... paramNameValuePairs) {
+    static void requireNonBlankAll(String... paramNameValuePairs) {
         if (paramNameValuePairs.length % 2 != 0) {
             throw new IllegalStateException("paramNameValuePairs must have even length");
         }
@@ -67,37 +132,44 @@ public class SmsAero {
     }
 
     /**
-     * Sets the page number for paginated results.
+     * Sets the page number for the next paginated request made by the current thread.
      * Pass null to clear pagination.
      *
      * @param page Page number (e.g. "2") or null to clear
-     * @throws IllegalArgumentException if page is not null but blank
+     * @throws IllegalArgumentException if page is not null and not a positive integer
+     * @deprecated the page is kept per thread and is lost when the call moves to another thread;
+     * use {@code client.with(RequestOptions.page(2))} instead
      */
+    @Deprecated
     public void SetPage(String page) {
-        if (page != null && page.isBlank()) {
-            throw new IllegalArgumentException("page cannot be blank");
+        if (page != null) {
+            try {
+                if (Integer.parseInt(page.trim()) < 1) {
+                    throw new IllegalArgumentException("page must be a positive integer");
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("page must be a positive integer");
+            }
         }
-        this.page.set(page);
+        pending.setPage(page);
     }
 
     /**
-     * Adds an extra parameter to the next request.
+     * Adds an extra parameter to the next request made by the current thread.
      * For ContactAdd you can pass fname, lname, etc.
      *
      * @param key   Parameter name
      * @param value Parameter value
+     * @deprecated parameters are kept per thread and are lost when the call moves to another thread;
+     * use {@code client.with(RequestOptions.builder().param(key, value).build())} instead
      */
+    @Deprecated
     public void AddPostParam(String key, String value) {
         requireNonBlank(key, "key");
         if (value == null) {
             throw new IllegalArgumentException("value cannot be null");
         }
-        Map<String, String> params = postParam.get();
-        if (params == null) {
-            params = new HashMap<>();
-            postParam.set(params);
-        }
-        params.put(key, value);
+        pending.addParam(key, value);
     }
 
     /**
@@ -105,12 +177,12 @@ public class SmsAero {
      * (sms/testsend, sms/teststatus, sms/testlist), so no real SMS are sent and no charges apply.
      */
     public void EnableTestMode() {
-        testMode = true;
+        testMode.set(true);
     }
 
     /** Disables test mode. */
     public void DisableTestMode() {
-        testMode = false;
+        testMode.set(false);
     }
 
     /**
@@ -119,125 +191,69 @@ public class SmsAero {
      * @return true if test mode is enabled
      */
     public boolean IsTestModeActive() {
-        return testMode;
+        return testMode.get();
     }
 
-    private String getUrl(String baseDomain, String method) {
-        String apiUrl = baseDomain + method;
-        String pageVal = page.get();
-        if (pageVal != null) {
-            apiUrl = apiUrl + "?page=" + pageVal;
-        }
-        return apiUrl;
-    }
-
-    private static boolean isTransientNetworkError(IOException e) {
-        return e instanceof BindException
-                || e instanceof ConnectException
-                || e instanceof HttpRetryException
-                || e instanceof NoRouteToHostException
-                || e instanceof PortUnreachableException
-                || e instanceof ProtocolException
-                || e instanceof SocketTimeoutException
-                || e instanceof UnknownHostException
-                || e instanceof UnknownServiceException;
-    }
-
-    @SuppressWarnings("unchecked")
-    private String getData(Map<String, ?> form) {
-        JSONObject json = new JSONObject();
-        if (form != null) {
-            for (Map.Entry<String, ?> entry : form.entrySet()) {
-                json.put(entry.getKey(), entry.getValue());
-            }
-        }
-        Map<String, String> params = postParam.get();
-        if (params != null) {
-            for (Map.Entry<String, String> entry : params.entrySet()) {
-                json.put(entry.getKey(), entry.getValue());
-            }
+    /**
+     * Returns a view of this client whose calls use the given options. The view shares credentials, transport
+     * and test mode with this client; options of this client (if any) are replaced, not merged.
+     *
+     * <p>Example:
+     * <pre>{@code
+     * client.with(RequestOptions.page(2)).SmsList();
+     * client.with(RequestOptions.builder().timeout(Duration.ofSeconds(3)).build()).SendSms(number, text, sign);
+     * }</pre>
+     *
+     * @param options Options for every call made through the view
+     * @return client view bound to the options
+     * @throws IllegalArgumentException if options is null
+     */
+    public SmsAero with(RequestOptions options) {
+        if (options == null) {
+            throw new IllegalArgumentException("options cannot be null");
         }
-        return json.toString();
+        return new SmsAero(this, options);
     }
 
-    private JSONObject doRequest(String method, Map<String, ?> form) throws IOException, ParseException {
-        try {
-            if (GATE_URLS.isEmpty()) {
-                throw new IOException("No gate URLs configured");
-            }
-            IOException lastError = null;
-            for (String baseDomain : GATE_URLS) {
-                try {
-                    return trySend(baseDomain, true, method, form);
-                } catch (SSLException e) {
-                    try {
-                        return trySend(baseDomain, false, method, form);
-                    } catch (IOException e2) {
-                        lastError = e2;
-                    }
-                } catch (IOException e) {
-                    if (isTransientNetworkError(e)) {
-                        lastError = new IOException(e.getMessage(), e);
-                    } else {
-                        throw e;
-                    }
-                }
-            }
-            throw lastError != null ? lastError : new IOException("All gate URLs failed");
-        } finally {
-            page.remove();
-            postParam.remove();
-        }
+    /**
+     * Sends a request with this view's options. Page and extra parameters set on the calling thread
+     * with the legacy {@link #SetPage(String)} / {@link #AddPostParam(String, String)} are applied and cleared.
+     */
+    CompletableFuture<JSONObject> doRequestAsync(String method, Map<String, ?> form) {
+        return doRequestAsync(method, form, ResponseDecoder.JSON);
     }
 
-    private JSONObject trySend(String baseDomain, boolean useHttps, String method, Map<String, ?> form)
-            throws IOException, ParseException {
-        String url = useHttps ? baseDomain : baseDomain.replace("https://", "http://");
-        return doSendRequest(method, form, url);
-    }
-
-    private JSONObject doSendRequest(String method, Map<String, ?> form, String baseDomain) throws IOException, ParseException {
-        URL urlObj = new URL(getUrl(baseDomain, method));
-        HttpURLConnection con = (HttpURLConnection) urlObj.openConnection();
-        try {
-            con.setConnectTimeout(CONNECT_TIMEOUT_MS);
-            con.setReadTimeout(READ_TIMEOUT_MS);
-            con.setRequestProperty("Authorization", authHeader);
-            con.setRequestProperty("Content-Type", "application/json");
-            con.setRequestProperty("User-Agent", USER_AGENT);
-            con.setRequestMethod("POST");
-            con.setDoOutput(true);
-
-            byte[] input = getData(form).getBytes(StandardCharsets.UTF_8);
-            try (OutputStream os = con.getOutputStream()) {
-                os.write(input, 0, input.length);
-                os.flush();
-            }
+    /** Like {@link #doRequestAsync(String, Map)}, decoding the response with the given decoder. */
+    <T> CompletableFuture<T> doRequestAsync(String method, Map<String, ?> form, ResponseDecoder<T> decoder) {
+        return executor.execute(method, form, pending.apply(options), decoder);
+    }
 
-            int responseCode = con.getResponseCode();
-            InputStream in = responseCode == HttpURLConnection.HTTP_OK
-                ? con.getInputStream()
-                : con.getErrorStream();
-            if (in == null) {
-                in = new ByteArrayInputStream(new byte[0]);
-            }
-            try (InputStream stream = in;
-                 BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
-
-                Object obj = JSON_PARSER.parse(reader);
-                JSONObject jsonObj = (JSONObject) obj;
-                if (Boolean.FALSE.equals(jsonObj.get("success"))) {
-                    Object msg = jsonObj.get("message");
-                    Object reason = jsonObj.get("reason");
-                    String errText = msg != null ? String.valueOf(msg)
-                            : (reason != null ? String.valueOf(reason) : "Unknown error");
-                    throw new IOException(errText);
-                }
-                return jsonObj;
-            }
-        } finally {
-            con.disconnect();
-        }
+    /**
+     * Requests one page of a list endpoint with this view's options. Unlike {@link #doRequestAsync}, the page
+     * always wins over a legacy {@link #SetPage(String)} of the calling thread, which is left untouched.
+     */
+    <T> CompletableFuture<T> doPageRequestAsync(String method, int page, ResponseDecoder<T> decoder) {
+        return executor.execute(method, null, options.toBuilder().page(page).build(), decoder);
+    }
+
+    /**
+     * Returns the non-blocking view of this client. It shares credentials, transport, options and test mode with
+     * this client; every method returns a {@link CompletableFuture} instead of blocking the calling thread.
+     *
+     * @return asynchronous API of this client
+     */
+    public SmsAeroAsync async() {
+        return async;
+    }
+
+    /**
+     * Returns the typed view of this client: the most used endpoints with results decoded straight from the
+     * response bytes ({@link SmsResult}, {@link BalanceResult}, {@link HlrResult}, {@link PagedList}).
+     *
+     * @return typed API of this client
+     */
+    public SmsAeroTyped typed() {
+        return new SmsAeroTyped(async.typed());
     }
 
     /**
@@ -248,7 +264,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject IsAuthorized() throws IOException, ParseException {
-        return doRequest("auth", null);
+        return await(async.IsAuthorized());
     }
 
     /**
@@ -259,7 +275,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject Tariffs() throws IOException, ParseException {
-        return doRequest("tariffs", null);
+        return await(async.Tariffs());
     }
 
     /**
@@ -270,7 +286,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject SignList() throws IOException, ParseException {
-        return doRequest("sign/list", null);
+        return await(async.SignList());
     }
 
     /**
@@ -281,7 +297,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject Balance() throws IOException, ParseException {
-        return doRequest("balance", null);
+        return await(async.Balance());
     }
 
     /**
@@ -297,7 +313,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject SendSms(String number, String text, String sign) throws IOException, ParseException {
-        return SendSms(number, text, sign, null, null, null);
+        return await(async.SendSms(number, text, sign));
     }
 
     /**
@@ -316,22 +332,7 @@ public class SmsAero {
      */
     public JSONObject SendSms(String number, String text, String sign,
             Instant dateToSend, String callbackUrl, String callbackFormat) throws IOException, ParseException {
-        requireNonBlankAll("number", number, "text", text, "sign", sign);
-        Map<String, Object> data = new HashMap<>();
-        data.put("number", number);
-        data.put("text", text);
-        data.put("sign", sign);
-        if (dateToSend != null) {
-            data.put("dateSend", dateToSend.getEpochSecond());
-        }
-        if (callbackUrl != null) {
-            data.put("callbackUrl", callbackUrl);
-        }
-        if (callbackFormat != null) {
-            data.put("callbackFormat", callbackFormat);
-        }
-        String smsMethod = testMode ? "sms/testsend" : "sms/send";
-        return doRequest(smsMethod, data);
+        return await(async.SendSms(number, text, sign, dateToSend, callbackUrl, callbackFormat));
     }
 
     /**
@@ -345,7 +346,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject SendSms(String number, String text) throws IOException, ParseException {
-        return SendSms(number, text, "SMS Aero");
+        return await(async.SendSms(number, text));
     }
 
     /**
@@ -359,28 +360,26 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject SmsStatus(int smsId) throws IOException, ParseException {
-        String statusMethod = testMode ? "sms/teststatus" : "sms/status";
-        return doRequest(statusMethod, Map.of("id", Integer.toString(smsId)));
+        return await(async.SmsStatus(smsId));
     }
 
     /**
      * Retrieves the list of sent SMS.
      * In test mode ({@link #EnableTestMode()}) uses sms/testlist.
-     * Use {@link #SetPage(String)} before calling for paginated results.
+     * Use {@link #with(RequestOptions)} with {@link RequestOptions#page(int)} for paginated results.
+     *
+     * <p>Example:
+     * <pre>{@code
+     * SmsAero client = new SmsAero(email, apiKey);
+     * System.out.println(client.with(RequestOptions.page(2)).SmsList());
+     * }</pre>
      *
      * @return API response with SMS list
      * @throws IOException    on network error or API response with success=false
      * @throws ParseException on JSON parse error
      */
     public JSONObject SmsList() throws IOException, ParseException {
-        /*
-            // Example
-            SmsAero client = new SmsAero(email, apiKey);
-            client.SetPage("2");
-            System.out.println(client.SmsList());
-        */
-        String listMethod = testMode ? "sms/testlist" : "sms/list";
-        return doRequest(listMethod, null);
+        return await(async.SmsList());
     }
 
     /**
@@ -392,8 +391,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject NumberOperator(String number) throws IOException, ParseException {
-        requireNonBlank(number, "number");
-        return doRequest("number/operator", Map.of("number", number));
+        return await(async.NumberOperator(number));
     }
 
     /**
@@ -405,8 +403,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject GroupAdd(String name) throws IOException, ParseException {
-        requireNonBlank(name, "name");
-        return doRequest("group/add", Map.of("name", name));
+        return await(async.GroupAdd(name));
     }
 
     /**
@@ -417,7 +414,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject GroupList() throws IOException, ParseException {
-        return doRequest("group/list", null);
+        return await(async.GroupList());
     }
 
     /**
@@ -429,7 +426,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject GroupDelete(int groupId) throws IOException, ParseException {
-        return doRequest("group/delete", Map.of("id", Integer.toString(groupId)));
+        return await(async.GroupDelete(groupId));
     }
 
     /**
@@ -440,7 +437,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject GroupDeleteAll() throws IOException, ParseException {
-        return doRequest("group/delete-all", null);
+        return await(async.GroupDeleteAll());
     }
 
     /**
@@ -451,7 +448,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject Cards() throws IOException, ParseException {
-        return doRequest("cards", null);
+        return await(async.Cards());
     }
 
     /**
@@ -464,8 +461,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject AddBalance(int sum, int cardId) throws IOException, ParseException {
-        return doRequest("balance/add",
-            Map.of("sum", Integer.toString(sum), "card_id", Integer.toString(cardId)));
+        return await(async.AddBalance(sum, cardId));
     }
 
     /**
@@ -477,8 +473,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject BlackListAdd(String number) throws IOException, ParseException {
-        requireNonBlank(number, "number");
-        return doRequest("blacklist/add", Map.of("number", number));
+        return await(async.BlackListAdd(number));
     }
 
     /**
@@ -489,7 +484,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject BlackListList() throws IOException, ParseException {
-        return doRequest("blacklist/list", null);
+        return await(async.BlackListList());
     }
 
     /**
@@ -501,7 +496,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject BlackListDelete(int blacklistId) throws IOException, ParseException {
-        return doRequest("blacklist/delete", Map.of("id", Integer.toString(blacklistId)));
+        return await(async.BlackListDelete(blacklistId));
     }
 
     /**
@@ -513,8 +508,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject HlrCheck(String number) throws IOException, ParseException {
-        requireNonBlank(number, "number");
-        return doRequest("hlr/check", Map.of("number", number));
+        return await(async.HlrCheck(number));
     }
 
     /**
@@ -526,18 +520,20 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject HlrStatus(int hlrId) throws IOException, ParseException {
-        return doRequest("hlr/status", Map.of("id", Integer.toString(hlrId)));
+        return await(async.HlrStatus(hlrId));
     }
 
     /**
-     * Adds a contact. Extra fields (fname, lname, etc.) can be set via {@link #AddPostParam(String, String)}.
+     * Adds a contact. Extra fields (fname, lname, etc.) can be passed as {@link RequestOptions} parameters.
      *
      * <p>Example:
      * <pre>{@code
      * SmsAero client = new SmsAero(email, apiKey);
-     * client.AddPostParam("fname", "First name");
-     * client.AddPostParam("lname", "Last name");
-     * System.out.println(client.ContactAdd("79038800350"));
+     * RequestOptions options = RequestOptions.builder()
+     *     .param("fname", "First name")
+     *     .param("lname", "Last name")
+     *     .build();
+     * System.out.println(client.with(options).ContactAdd("79038800350"));
      * }</pre>
      *
      * @param number Phone number (format 70000000000)
@@ -546,8 +542,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject ContactAdd(String number) throws IOException, ParseException {
-        requireNonBlank(number, "number");
-        return doRequest("contact/add", Map.of("number", number));
+        return await(async.ContactAdd(number));
     }
 
     /**
@@ -559,7 +554,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject ContactDelete(int contactId) throws IOException, ParseException {
-        return doRequest("contact/delete", Map.of("id", Integer.toString(contactId)));
+        return await(async.ContactDelete(contactId));
     }
 
     /**
@@ -570,7 +565,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject ContactDeleteAll() throws IOException, ParseException {
-        return doRequest("contact/delete-all", null);
+        return await(async.ContactDeleteAll());
     }
 
     /**
@@ -581,7 +576,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject ContactList() throws IOException, ParseException {
-        return doRequest("contact/list", null);
+        return await(async.ContactList());
     }
 
     /**
@@ -596,8 +591,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject ViberSend(String sign, String channel, String text, String number) throws IOException, ParseException {
-        requireNonBlankAll("sign", sign, "channel", channel, "text", text, "number", number);
-        return doRequest("viber/send", Map.of("number", number, "sign", sign, "channel", channel, "text", text));
+        return await(async.ViberSend(sign, channel, text, number));
     }
 
     /**
@@ -608,7 +602,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject ViberSignList() throws IOException, ParseException {
-        return doRequest("viber/sign/list", null);
+        return await(async.ViberSignList());
     }
 
     /**
@@ -619,12 +613,12 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject ViberList() throws IOException, ParseException {
-        return doRequest("viber/list", null);
+        return await(async.ViberList());
     }
 
     /**
      * Retrieves Viber delivery statistics by phone numbers.
-     * Use {@link #SetPage(String)} before calling for paginated results.
+     * Use {@link #with(RequestOptions)} with {@link RequestOptions#page(int)} for paginated results.
      *
      * @param sendingId Viber sending identifier (from {@link #ViberSend} response)
      * @return API response with statistics. Example: {@code {"data": {"0": {"number": "79031234567",
@@ -633,7 +627,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject ViberStatistics(int sendingId) throws IOException, ParseException {
-        return doRequest("viber/statistic", Map.of("sendingId", Integer.toString(sendingId)));
+        return await(async.ViberStatistics(sendingId));
     }
 
     /**
@@ -647,8 +641,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject SendTelegram(String number, int code) throws IOException, ParseException {
-        requireNonBlank(number, "number");
-        return doRequest("telegram/send", Map.of("number", number, "code", Integer.toString(code)));
+        return await(async.SendTelegram(number, code));
     }
 
     /**
@@ -665,9 +658,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject SendTelegram(String number, int code, String sign, String text) throws IOException, ParseException {
-        requireNonBlankAll("number", number, "sign", sign, "text", text);
-        return doRequest("telegram/send",
-            Map.of("number", number, "code", Integer.toString(code), "sign", sign, "text", text));
+        return await(async.SendTelegram(number, code, sign, text));
     }
 
     /**
@@ -681,7 +672,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject TelegramStatus(int telegramId) throws IOException, ParseException {
-        return doRequest("telegram/status", Map.of("id", Integer.toString(telegramId)));
+        return await(async.TelegramStatus(telegramId));
     }
 
     /**
@@ -696,9 +687,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject SendMobileId(String number, String sign, String callbackUrl) throws IOException, ParseException {
-        requireNonBlankAll("number", number, "sign", sign, "callbackUrl", callbackUrl);
-        return doRequest("mobile-id/send",
-            Map.of("number", number, "sign", sign, "callbackUrl", callbackUrl));
+        return await(async.SendMobileId(number, sign, callbackUrl));
     }
 
     /**
@@ -711,7 +700,7 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject MobileIdStatus(int reqId) throws IOException, ParseException {
-        return doRequest("mobile-id/status", Map.of("id", Integer.toString(reqId)));
+        return await(async.MobileIdStatus(reqId));
     }
 
     /**
@@ -726,8 +715,378 @@ public class SmsAero {
      * @throws ParseException on JSON parse error
      */
     public JSONObject VerifyMobileId(int reqId, String code, String sign) throws IOException, ParseException {
-        requireNonBlankAll("code", code, "sign", sign);
-        return doRequest("mobile-id/verify",
-            Map.of("id", Integer.toString(reqId), "code", code, "sign", sign));
+        return await(async.VerifyMobileId(reqId, code, sign));
+    }
+
+    /**
+     * Page and extra parameters set with the legacy per-thread setters. Until a setter is used for the first time,
+     * calls do not touch the thread-locals at all.
+     */
+    private static final class PendingParams {
+        private final ThreadLocal<String> page = new ThreadLocal<>();
+        private final ThreadLocal<Map<String, String>> postParam = new ThreadLocal<>();
+        private volatile boolean used;
+
+        void setPage(String value) {
+            used = true;
+            page.set(value);
+        }
+
+        void addParam(String key, String value) {
+            used = true;
+            Map<String, String> params = postParam.get();
+            if (params == null) {
+                params = new HashMap<>();
+                postParam.set(params);
+            }
+            params.put(key, value);
+        }
+
+        /** Merges the current thread's pending values into the options and clears them. */
+        RequestOptions apply(RequestOptions options) {
+            if (!used) {
+                return options;
+            }
+            String pageVal = page.get();
+            Map<String, String> params = postParam.get();
+            page.remove();
+            postParam.remove();
+            if (pageVal == null && params == null) {
+                return options;
+            }
+            RequestOptions.Builder builder = options.toBuilder();
+            if (pageVal != null) {
+                builder.page(Integer.parseInt(pageVal.trim()));
+            }
+            if (params != null) {
+                params.forEach(builder::param);
+            }
+            return builder.build();
+        }
+    }
+
+    /** Lazily created transport shared by clients that do not specify their own. */
+    private static Transport transport(Builder builder) {
+        if (builder.transport != null) {
+            return builder.transport;
+        }
+        if (builder.connectTimeout != null) {
+            return new UrlConnectionTransport(UrlConnectionTransport.timeoutMillis(builder.connectTimeout),
+                READ_TIMEOUT_MS);
+        }
+        return DefaultTransport.INSTANCE;
+    }
+
+    private static final class DefaultTransport {
+        static final Transport INSTANCE = new UrlConnectionTransport(CONNECT_TIMEOUT_MS, READ_TIMEOUT_MS);
+    }
+
+    /**
+     * Builder for {@link SmsAero}.
+     */
+    public static final class Builder {
+        private final String emailAddr;
+        private final String apiKey;
+        private Transport transport;
+        private List<String> gateUrls = DEFAULT_GATE_URLS;
+        private Duration connectTimeout;
+        private Duration readTimeout;
+        private Duration deadline;
+        private String userAgent = USER_AGENT;
+        private RateLimiter rateLimiter;
+        private GateSelector gateSelector;
+        private CircuitBreaker circuitBreaker;
+        private HedgingPolicy hedgingPolicy;
+        private ResponseCache responseCache;
+        private LookupCache lookupCache;
+        private BlacklistMirror blacklistMirror;
+        private IdempotencyIndex idempotencyIndex;
+        private RetryPolicy retryPolicy;
+        private ClientMetrics metrics;
+        private RequestListener listener;
+
+        private Builder(String emailAddr, String apiKey) {
+            this.emailAddr = emailAddr;
+            this.apiKey = apiKey;
+        }
+
+        /**
+         * Sets the HTTP transport. By default a shared {@link UrlConnectionTransport} is used; pass an
+         * {@link HttpClientTransport} for non-blocking async calls, HTTP/2 or a cap on requests per gate.
+         *
+         * @param transport HTTP transport
+         * @return this builder
+         * @throws IllegalArgumentException if transport is null
+         */
+        public Builder transport(Transport transport) {
+            if (transport == null) {
+                throw new IllegalArgumentException("transport cannot be null");
+            }
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * Sets a client-side rate limiter. The same limiter may be shared by several clients of one account.
+         *
+         * @param rateLimiter Rate limiter, or null for none (the default)
+         * @return this builder
+         */
+        public Builder rateLimiter(RateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+
+        /**
+         * Sets the gate selector that orders gates by health. By default each client has its own selector with
+         * default settings; a selector may be shared by several clients to pool their observations.
+         *
+         * @param gateSelector Gate selector
+         * @return this builder
+         * @throws IllegalArgumentException if gateSelector is null
+         */
+        public Builder gateSelector(GateSelector gateSelector) {
+            if (gateSelector == null) {
+                throw new IllegalArgumentException("gateSelector cannot be null");
+            }
+            this.gateSelector = gateSelector;
+            return this;
+        }
+
+        /**
+         * Enables circuit breakers keyed by gate and API method, so calls to a failing gate fail fast.
+         *
+         * @param circuitBreaker Circuit breakers, or null for none (the default)
+         * @return this builder
+         */
+        public Builder circuitBreaker(CircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+            return this;
+        }
+
+        /**
+         * Enables hedged requests for latency-critical methods such as {@code sms/send}.
+         *
+         * @param hedgingPolicy Hedging policy, or null for none (the default)
+         * @return this builder
+         */
+        public Builder hedging(HedgingPolicy hedgingPolicy) {
+            this.hedgingPolicy = hedgingPolicy;
+            return this;
+        }
+
+        /**
+         * Enables caching of slowly changing reference endpoints such as {@code tariffs} and {@code sign/list}.
+         *
+         * @param responseCache Response cache used by this client only, or null for none (the default)
+         * @return this builder
+         */
+        public Builder responseCache(ResponseCache responseCache) {
+            this.responseCache = responseCache;
+            return this;
+        }
+
+        /**
+         * Enables caching of {@code number/operator} and {@code hlr/check} lookups by number, so that repeated
+         * paid HLR lookups of a number are answered from the cache.
+         *
+         * @param lookupCache Lookup cache used by this client only, or null for none (the default)
+         * @return this builder
+         */
+        public Builder lookupCache(LookupCache lookupCache) {
+            this.lookupCache = lookupCache;
+            return this;
+        }
+
+        /**
+         * Checks sends against a local copy of the blacklist, see {@link BlacklistMirror}. The mirror loads
+         * through this client; call {@link BlacklistMirror#load()} once the client is built.
+         *
+         * @param blacklistMirror Blacklist mirror used by this client only, or null for none (the default)
+         * @return this builder
+         */
+        public Builder blacklistMirror(BlacklistMirror blacklistMirror) {
+            this.blacklistMirror = blacklistMirror;
+            return this;
+        }
+
+        /**
+         * Collapses duplicate sends, see {@link IdempotencyIndex}. Without an index a send carries an
+         * {@code Idempotency-Key} only when the caller gives one, or a random one when it is hedged or retried.
+         *
+         * @param idempotencyIndex Idempotency index used by this client only, or null for none (the default)
+         * @return this builder
+         */
+        public Builder idempotencyIndex(IdempotencyIndex idempotencyIndex) {
+            this.idempotencyIndex = idempotencyIndex;
+            return this;
+        }
+
+        /**
+         * Retries calls that failed with a transient error or a retryable HTTP status, see {@link RetryPolicy}.
+         * The same policy may be shared by several clients.
+         *
+         * @param retryPolicy Retry policy, or null for none (the default)
+         * @return this builder
+         */
+        public Builder retryPolicy(RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * Reports every call, gate exchange, failover and retry to the given metrics, e.g. {@link InMemoryMetrics}.
+         * The same metrics may be shared by several clients.
+         *
+         * @param metrics Metrics, or null for none (the default)
+         * @return this builder
+         */
+        public Builder metrics(ClientMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Reports the phases of every call (gate chosen, connect, first byte, body parsed, failover, finish) to the
+         * given listener. The same listener may be shared by several clients.
+         *
+         * @param listener Request listener, or null for none (the default)
+         * @return this builder
+         */
+        public Builder listener(RequestListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * Replaces the gate list, e.g. to pin the client to the nearest gate, or to go through a proxy or a local
+         * stub gate. A missing trailing slash is added.
+         *
+         * @param gateUrls Base URLs of the gates, e.g. {@code "https://gate.smsaero.ru/v2/"}
+         * @return this builder
+         * @throws IllegalArgumentException if the list is empty or a URL is not an absolute HTTP(S) URL
+         */
+        public Builder gateUrls(List<String> gateUrls) {
+            if (gateUrls == null || gateUrls.isEmpty()) {
+                throw new IllegalArgumentException("gateUrls cannot be null or empty");
+            }
+            List<String> urls = new ArrayList<>(gateUrls.size());
+            for (String url : gateUrls) {
+                requireNonBlank(url, "gate URL");
+                if (!url.startsWith("https://") && !url.startsWith("http://")) {
+                    throw new IllegalArgumentException("gate URL must start with https:// or http://: " + url);
+                }
+                urls.add(url.endsWith("/") ? url : url + "/");
+            }
+            this.gateUrls = List.copyOf(urls);
+            return this;
+        }
+
+        /**
+         * Sets the connection timeout of the default transport (10 s by default). With a custom
+         * {@link #transport(Transport)} set it on the transport instead.
+         *
+         * @param connectTimeout Connection timeout
+         * @return this builder
+         * @throws IllegalArgumentException if connectTimeout is null or not positive
+         */
+        public Builder connectTimeout(Duration connectTimeout) {
+            this.connectTimeout = requirePositive(connectTimeout, "connectTimeout");
+            return this;
+        }
+
+        /**
+         * Sets the response timeout of each attempt (30 s by default), for any transport. A call may make several
+         * attempts when gates fail; see {@link #deadline(Duration)} for a limit on the whole call. Can be
+         * overridden per call with {@link RequestOptions.Builder#timeout(Duration)}.
+         *
+         * @param readTimeout Response timeout of each attempt
+         * @return this builder
+         * @throws IllegalArgumentException if readTimeout is null or not positive
+         */
+        public Builder readTimeout(Duration readTimeout) {
+            this.readTimeout = requirePositive(readTimeout, "readTimeout");
+            return this;
+        }
+
+        /**
+         * Sets the total deadline of a call over all gates, fallbacks and rate limiter waits (none by default).
+         * A call that outlives it fails with {@link DeadlineExceededException}. Can be overridden per call with
+         * {@link RequestOptions.Builder#deadline(Duration)}.
+         *
+         * <p>Example, a client for one-time codes:
+         * <pre>{@code
+         * SmsAero otp = SmsAero.builder(email, apiKey)
+         *     .readTimeout(Duration.ofSeconds(2))
+         *     .deadline(Duration.ofSeconds(5))
+         *     .build();
+         * }</pre>
+         *
+         * @param deadline Total deadline of a call
+         * @return this builder
+         * @throws IllegalArgumentException if deadline is null or not positive
+         */
+        public Builder deadline(Duration deadline) {
+            this.deadline = requirePositive(deadline, "deadline");
+            return this;
+        }
+
+        /**
+         * Replaces the {@code User-Agent} header, {@code SAJavaClient/<version>} by default.
+         *
+         * @param userAgent User agent
+         * @return this builder
+         * @throws IllegalArgumentException if userAgent is null or blank
+         */
+        public Builder userAgent(String userAgent) {
+            requireNonBlank(userAgent, "userAgent");
+            this.userAgent = userAgent;
+            return this;
+        }
+
+        /**
+         * @return new client
+         * @throws IllegalArgumentException if email or apiKey is null or blank, a connect timeout is set
+         *                                  together with a custom transport, or the response cache, lookup
+         *                                  cache, blacklist mirror or idempotency index is already used by
+         *                                  another client
+         */
+        public SmsAero build() {
+            if (connectTimeout != null && transport != null) {
+                throw new IllegalArgumentException("connectTimeout applies to the default transport only; "
+                    + "set it on the custom transport");
+            }
+            // A component already used by another client fails the build without binding any of the others.
+            List<Runnable> detach = new ArrayList<>();
+            try {
+                if (responseCache != null) {
+                    responseCache.attach();
+                    detach.add(responseCache::detach);
+                }
+                if (lookupCache != null) {
+                    lookupCache.attach();
+                    detach.add(lookupCache::detach);
+                }
+                if (idempotencyIndex != null) {
+                    idempotencyIndex.attach();
+                    detach.add(idempotencyIndex::detach);
+                }
+                SmsAero client = new SmsAero(this);
+                if (blacklistMirror != null) {
+                    blacklistMirror.attach(client);
+                }
+                return client;
+            } catch (RuntimeException e) {
+                detach.forEach(Runnable::run);
+                throw e;
+            }
+        }
+
+        private static Duration requirePositive(Duration value, String name) {
+            if (value == null || value.isNegative() || value.isZero()) {
+                throw new IllegalArgumentException(name + " must be positive");
+            }
+            return value;
+        }
     }
 }
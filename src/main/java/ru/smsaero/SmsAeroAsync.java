@@ -0,0 +1,512 @@
+package ru.smsaero;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.json.simple.JSONObject;
+
+/**
+ * Non-blocking API of {@link SmsAero}. Obtain it with {@link SmsAero#async()}.
+ *
+ * <p>Every method validates its arguments immediately (throwing {@link IllegalArgumentException}) and returns a
+ * {@link CompletableFuture} that completes on the transport's threads. Failover across gates is performed without
+ * blocking, so a handful of threads can keep thousands of requests in flight. A future fails with
+ * {@link java.io.IOException} on network error or API response with success=false, and with
+ * {@link org.json.simple.parser.ParseException} on JSON parse error.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * SmsAero client = new SmsAero(email, apiKey);
+ * client.async().SendSms("70000000000", "Hello", "SMS Aero")
+ *     .thenAccept(result -> System.out.println(result))
+ *     .exceptionally(e -> { e.printStackTrace(); return null; });
+ * }</pre>
+ */
+public final class SmsAeroAsync {
+    private final SmsAero client;
+    private final SmsAeroTypedAsync typed;
+
+    SmsAeroAsync(SmsAero client) {
+        this.client = client;
+        this.typed = new SmsAeroTypedAsync(this);
+    }
+
+    /**
+     * Returns a view of this API whose calls use the given options. See {@link SmsAero#with(RequestOptions)}.
+     *
+     * @param options Options for every call made through the view
+     * @return asynchronous API bound to the options
+     * @throws IllegalArgumentException if options is null
+     */
+    public SmsAeroAsync with(RequestOptions options) {
+        return client.with(options).async();
+    }
+
+    /**
+     * Returns the typed variant of this API, whose results are decoded straight from the response bytes.
+     *
+     * @return typed asynchronous API with the same options
+     */
+    public SmsAeroTypedAsync typed() {
+        return typed;
+    }
+
+    /**
+     * Checks authorization by email and API key.
+     *
+     * @return future with the API response with authorization info
+     */
+    public CompletableFuture<JSONObject> IsAuthorized() {
+        return client.doRequestAsync("auth", null);
+    }
+
+    /**
+     * Retrieves the list of tariffs.
+     *
+     * @return future with the API response with tariffs
+     */
+    public CompletableFuture<JSONObject> Tariffs() {
+        return client.doRequestAsync("tariffs", null);
+    }
+
+    /**
+     * Retrieves the list of sender signatures.
+     *
+     * @return future with the API response with signatures list
+     */
+    public CompletableFuture<JSONObject> SignList() {
+        return client.doRequestAsync("sign/list", null);
+    }
+
+    /**
+     * Retrieves the account balance.
+     *
+     * @return future with the API response with balance. Example: {@code {"data": {"balance": 337.03}}}
+     */
+    public CompletableFuture<JSONObject> Balance() {
+        return balance(ResponseDecoder.JSON);
+    }
+
+    <T> CompletableFuture<T> balance(ResponseDecoder<T> decoder) {
+        return client.doRequestAsync("balance", null, decoder);
+    }
+
+    /**
+     * Sends SMS with the specified sender signature.
+     * In test mode ({@link SmsAero#EnableTestMode()}) uses sms/testsend endpoint - no real SMS are sent.
+     *
+     * @param number Recipient number (format 70000000000)
+     * @param text   Message text
+     * @param sign   Sender signature
+     * @return future with the API response with sent SMS data. Example: {@code {"data": {"id": 12345,
+     * "from": "SMS Aero", "number": "79031234567", "text": "Hello", "status": 0, "extendStatus": "queue",
+     * "cost": 5.49}}}
+     */
+    public CompletableFuture<JSONObject> SendSms(String number, String text, String sign) {
+        return SendSms(number, text, sign, null, null, null);
+    }
+
+    /**
+     * Sends SMS with optional scheduled send and callback parameters.
+     * Aligns with Python API: date_to_send, callback_url, callback_format.
+     *
+     * @param number         Recipient number (format 70000000000)
+     * @param text           Message text
+     * @param sign           Sender signature
+     * @param dateToSend     Scheduled send time (null = send immediately)
+     * @param callbackUrl    URL for delivery status webhook (null = disabled)
+     * @param callbackFormat Callback format, e.g. "json" (null = default)
+     * @return future with the API response with sent SMS data
+     */
+    public CompletableFuture<JSONObject> SendSms(String number, String text, String sign,
+            Instant dateToSend, String callbackUrl, String callbackFormat) {
+        return sendSms(number, text, sign, dateToSend, callbackUrl, callbackFormat, ResponseDecoder.JSON);
+    }
+
+    <T> CompletableFuture<T> sendSms(String number, String text, String sign,
+            Instant dateToSend, String callbackUrl, String callbackFormat, ResponseDecoder<T> decoder) {
+        SmsAero.requireNonBlankAll("number", number, "text", text, "sign", sign);
+        String smsMethod = client.IsTestModeActive() ? "sms/testsend" : "sms/send";
+        if (dateToSend == null && callbackUrl == null && callbackFormat == null) {
+            return client.doRequestAsync(smsMethod, Map.of("number", number, "text", text, "sign", sign), decoder);
+        }
+        Map<String, Object> data = new HashMap<>();
+        data.put("number", number);
+        data.put("text", text);
+        data.put("sign", sign);
+        if (dateToSend != null) {
+            data.put("dateSend", dateToSend.getEpochSecond());
+        }
+        if (callbackUrl != null) {
+            data.put("callbackUrl", callbackUrl);
+        }
+        if (callbackFormat != null) {
+            data.put("callbackFormat", callbackFormat);
+        }
+        return client.doRequestAsync(smsMethod, data, decoder);
+    }
+
+    /**
+     * Sends SMS with the default signature "SMS Aero".
+     *
+     * @param number Recipient number (format 70000000000)
+     * @param text   Message text
+     * @return future with the API response with sent SMS data. Example: {@code {"data": {"id": 12345,
+     * "from": "SMS Aero", "number": "79031234567", "text": "Hello", "status": 0, "extendStatus": "queue",
+     * "cost": 5.49}}}
+     */
+    public CompletableFuture<JSONObject> SendSms(String number, String text) {
+        return SendSms(number, text, "SMS Aero");
+    }
+
+    /**
+     * Retrieves SMS status by ID.
+     * In test mode ({@link SmsAero#EnableTestMode()}) uses sms/teststatus.
+     *
+     * @param smsId SMS identifier
+     * @return future with the API response with status. Example: {@code {"data": {"id": 12345,
+     * "number": "79031234567", "status": 1, "extendStatus": "delivery", "dateCreate": 1719115820,
+     * "dateAnswer": 1719115825}}}
+     */
+    public CompletableFuture<JSONObject> SmsStatus(int smsId) {
+        return smsStatus(smsId, ResponseDecoder.JSON);
+    }
+
+    <T> CompletableFuture<T> smsStatus(long smsId, ResponseDecoder<T> decoder) {
+        String statusMethod = client.IsTestModeActive() ? "sms/teststatus" : "sms/status";
+        return client.doRequestAsync(statusMethod, Map.of("id", Long.toString(smsId)), decoder);
+    }
+
+    /**
+     * Retrieves the list of sent SMS.
+     * In test mode ({@link SmsAero#EnableTestMode()}) uses sms/testlist.
+     * Use {@link #with(RequestOptions)} with {@link RequestOptions#page(int)} for paginated results.
+     *
+     * @return future with the API response with SMS list
+     */
+    public CompletableFuture<JSONObject> SmsList() {
+        return smsList(ResponseDecoder.JSON);
+    }
+
+    <T> CompletableFuture<T> smsList(ResponseDecoder<T> decoder) {
+        return client.doRequestAsync(smsListMethod(), null, decoder);
+    }
+
+    private String smsListMethod() {
+        return client.IsTestModeActive() ? "sms/testlist" : "sms/list";
+    }
+
+    /** Lazily pages through a list endpoint; sms/list follows test mode as {@link #SmsList()} does. */
+    <T> Paginator<T> paginate(String method, ResponseDecoder<PagedList<T>> decoder) {
+        return new Paginator<>(page -> client.doPageRequestAsync(
+            "sms/list".equals(method) ? smsListMethod() : method, page, decoder));
+    }
+
+    /**
+     * Determines the operator by phone number.
+     *
+     * @param number Phone number (format 70000000000)
+     * @return future with the API response with operator info
+     */
+    public CompletableFuture<JSONObject> NumberOperator(String number) {
+        SmsAero.requireNonBlank(number, "number");
+        return client.doRequestAsync("number/operator", Map.of("number", number));
+    }
+
+    /**
+     * Creates a new contact group.
+     *
+     * @param name Group name
+     * @return future with the API response with created group data
+     */
+    public CompletableFuture<JSONObject> GroupAdd(String name) {
+        SmsAero.requireNonBlank(name, "name");
+        return client.doRequestAsync("group/add", Map.of("name", name));
+    }
+
+    /**
+     * Retrieves the list of contact groups.
+     *
+     * @return future with the API response with groups list
+     */
+    public CompletableFuture<JSONObject> GroupList() {
+        return client.doRequestAsync("group/list", null);
+    }
+
+    /**
+     * Deletes a contact group.
+     *
+     * @param groupId Group identifier
+     * @return future with the API response
+     */
+    public CompletableFuture<JSONObject> GroupDelete(int groupId) {
+        return client.doRequestAsync("group/delete", Map.of("id", Integer.toString(groupId)));
+    }
+
+    /**
+     * Deletes all contact groups.
+     *
+     * @return future with the API response
+     */
+    public CompletableFuture<JSONObject> GroupDeleteAll() {
+        return client.doRequestAsync("group/delete-all", null);
+    }
+
+    /**
+     * Retrieves the list of linked bank cards.
+     *
+     * @return future with the API response with cards list
+     */
+    public CompletableFuture<JSONObject> Cards() {
+        return client.doRequestAsync("cards", null);
+    }
+
+    /**
+     * Adds balance from a linked card.
+     *
+     * @param sum    Amount to add (in rubles)
+     * @param cardId Card identifier from {@link #Cards()}
+     * @return future with the API response
+     */
+    public CompletableFuture<JSONObject> AddBalance(int sum, int cardId) {
+        return client.doRequestAsync("balance/add",
+            Map.of("sum", Integer.toString(sum), "card_id", Integer.toString(cardId)));
+    }
+
+    /**
+     * Adds a number to the blacklist.
+     *
+     * @param number Phone number (format 70000000000)
+     * @return future with the API response
+     */
+    public CompletableFuture<JSONObject> BlackListAdd(String number) {
+        SmsAero.requireNonBlank(number, "number");
+        return client.doRequestAsync("blacklist/add", Map.of("number", number));
+    }
+
+    /**
+     * Retrieves the list of numbers in the blacklist.
+     *
+     * @return future with the API response with blacklist entries
+     */
+    public CompletableFuture<JSONObject> BlackListList() {
+        return client.doRequestAsync("blacklist/list", null);
+    }
+
+    /**
+     * Removes a number from the blacklist.
+     *
+     * @param blacklistId Blacklist entry identifier
+     * @return future with the API response
+     */
+    public CompletableFuture<JSONObject> BlackListDelete(int blacklistId) {
+        return client.doRequestAsync("blacklist/delete", Map.of("id", Integer.toString(blacklistId)));
+    }
+
+    /**
+     * HLR request: checks the number status in the network.
+     *
+     * @param number Phone number (format 70000000000)
+     * @return future with the API response with HLR request identifier
+     */
+    public CompletableFuture<JSONObject> HlrCheck(String number) {
+        return hlrCheck(number, ResponseDecoder.JSON);
+    }
+
+    <T> CompletableFuture<T> hlrCheck(String number, ResponseDecoder<T> decoder) {
+        SmsAero.requireNonBlank(number, "number");
+        return client.doRequestAsync("hlr/check", Map.of("number", number), decoder);
+    }
+
+    /**
+     * Retrieves the status of an HLR request.
+     *
+     * @param hlrId HLR request identifier from {@link #HlrCheck(String)}
+     * @return future with the API response with status
+     */
+    public CompletableFuture<JSONObject> HlrStatus(int hlrId) {
+        return hlrStatus(hlrId, ResponseDecoder.JSON);
+    }
+
+    <T> CompletableFuture<T> hlrStatus(long hlrId, ResponseDecoder<T> decoder) {
+        return client.doRequestAsync("hlr/status", Map.of("id", Long.toString(hlrId)), decoder);
+    }
+
+    /**
+     * Adds a contact. Extra fields (fname, lname, etc.) can be passed as {@link RequestOptions} parameters.
+     *
+     * <p>Example:
+     * <pre>{@code
+     * RequestOptions options = RequestOptions.builder()
+     *     .param("fname", "First name")
+     *     .param("lname", "Last name")
+     *     .build();
+     * client.async().with(options).ContactAdd("79038800350").thenAccept(System.out::println);
+     * }</pre>
+     *
+     * @param number Phone number (format 70000000000)
+     * @return future with the API response with contact data
+     */
+    public CompletableFuture<JSONObject> ContactAdd(String number) {
+        SmsAero.requireNonBlank(number, "number");
+        return client.doRequestAsync("contact/add", Map.of("number", number));
+    }
+
+    /**
+     * Deletes a contact.
+     *
+     * @param contactId Contact identifier
+     * @return future with the API response
+     */
+    public CompletableFuture<JSONObject> ContactDelete(int contactId) {
+        return client.doRequestAsync("contact/delete", Map.of("id", Integer.toString(contactId)));
+    }
+
+    /**
+     * Deletes all contacts.
+     *
+     * @return future with the API response
+     */
+    public CompletableFuture<JSONObject> ContactDeleteAll() {
+        return client.doRequestAsync("contact/delete-all", null);
+    }
+
+    /**
+     * Retrieves the list of contacts.
+     *
+     * @return future with the API response with contacts list
+     */
+    public CompletableFuture<JSONObject> ContactList() {
+        return client.doRequestAsync("contact/list", null);
+    }
+
+    /**
+     * Sends a Viber message.
+     *
+     * @param sign    Sender signature (from {@link #ViberSignList()})
+     * @param channel Channel ID
+     * @param text    Message text
+     * @param number  Recipient number (format 70000000000)
+     * @return future with the API response
+     */
+    public CompletableFuture<JSONObject> ViberSend(String sign, String channel, String text, String number) {
+        SmsAero.requireNonBlankAll("sign", sign, "channel", channel, "text", text, "number", number);
+        return client.doRequestAsync("viber/send",
+            Map.of("number", number, "sign", sign, "channel", channel, "text", text));
+    }
+
+    /**
+     * Retrieves the list of Viber signatures.
+     *
+     * @return future with the API response with signatures list
+     */
+    public CompletableFuture<JSONObject> ViberSignList() {
+        return client.doRequestAsync("viber/sign/list", null);
+    }
+
+    /**
+     * Retrieves the list of sent Viber messages.
+     *
+     * @return future with the API response with messages list
+     */
+    public CompletableFuture<JSONObject> ViberList() {
+        return client.doRequestAsync("viber/list", null);
+    }
+
+    /**
+     * Retrieves Viber delivery statistics by phone numbers.
+     * Use {@link #with(RequestOptions)} with {@link RequestOptions#page(int)} for paginated results.
+     *
+     * @param sendingId Viber sending identifier (from {@link #ViberSend} response)
+     * @return future with the API response with statistics. Example: {@code {"data": {"0": {"number": "79031234567",
+     * "status": 0, "extendStatus": "send", "dateSend": 1511153341}, ...}}}
+     */
+    public CompletableFuture<JSONObject> ViberStatistics(int sendingId) {
+        return client.doRequestAsync("viber/statistic", Map.of("sendingId", Integer.toString(sendingId)));
+    }
+
+    /**
+     * Sends a confirmation code via Telegram.
+     *
+     * @param number Phone number (format 70000000000)
+     * @param code   Confirmation code (4-8 digits)
+     * @return future with the API response. Example: {@code {"data": {"id": 1, "number": "79990000000",
+     * "telegramCode": "1234", "status": 0, "extendStatus": "queue", "cost": "1.00"}}}
+     */
+    public CompletableFuture<JSONObject> SendTelegram(String number, int code) {
+        SmsAero.requireNonBlank(number, "number");
+        return client.doRequestAsync("telegram/send", Map.of("number", number, "code", Integer.toString(code)));
+    }
+
+    /**
+     * Sends a Telegram message with the specified signature and text.
+     * If the code cannot be delivered via Telegram, falls back to SMS with the given sign and text.
+     *
+     * @param number Phone number (format 70000000000)
+     * @param code   Confirmation code
+     * @param sign   Sender signature
+     * @param text   Message text
+     * @return future with the API response. Example: {@code {"data": {"id": 1, "number": "79990000000",
+     * "telegramCode": "1234", "status": 0, "extendStatus": "queue", "cost": "1.00"}}}
+     */
+    public CompletableFuture<JSONObject> SendTelegram(String number, int code, String sign, String text) {
+        SmsAero.requireNonBlankAll("number", number, "sign", sign, "text", text);
+        return client.doRequestAsync("telegram/send",
+            Map.of("number", number, "code", Integer.toString(code), "sign", sign, "text", text));
+    }
+
+    /**
+     * Retrieves the status of a Telegram message.
+     *
+     * @param telegramId Telegram message identifier (from {@link #SendTelegram(String, int)} or
+     *                   {@link #SendTelegram(String, int, String, String)})
+     * @return future with the API response with status. Example: {@code {"data": {"id": 1, "number": "79990000000",
+     * "status": 1, "extendStatus": "delivery", "cost": "1.00"}}}
+     */
+    public CompletableFuture<JSONObject> TelegramStatus(int telegramId) {
+        return client.doRequestAsync("telegram/status", Map.of("id", Integer.toString(telegramId)));
+    }
+
+    /**
+     * Sends a Mobile ID authorization request.
+     *
+     * @param number      Phone number (format 70000000000)
+     * @param sign        Sender signature for Mobile ID
+     * @param callbackUrl URL for receiving authorization status callbacks
+     * @return future with the API response. Example: {@code {"data": {"id": 273, "number": "79031234567",
+     * "authType": "SIM-PUSH", "status": 0, "cost": 0}}}
+     */
+    public CompletableFuture<JSONObject> SendMobileId(String number, String sign, String callbackUrl) {
+        SmsAero.requireNonBlankAll("number", number, "sign", sign, "callbackUrl", callbackUrl);
+        return client.doRequestAsync("mobile-id/send",
+            Map.of("number", number, "sign", sign, "callbackUrl", callbackUrl));
+    }
+
+    /**
+     * Retrieves the status of a Mobile ID request.
+     *
+     * @param reqId Mobile ID request identifier (from {@link #SendMobileId(String, String, String)})
+     * @return future with the API response. Example: {@code {"data": {"id": 273, "number": "79031234567",
+     * "authType": "SMS", "status": 3, "cost": 0}}}
+     */
+    public CompletableFuture<JSONObject> MobileIdStatus(int reqId) {
+        return client.doRequestAsync("mobile-id/status", Map.of("id", Integer.toString(reqId)));
+    }
+
+    /**
+     * Verifies a Mobile ID request with the provided code.
+     *
+     * @param reqId Mobile ID request identifier (from {@link #SendMobileId(String, String, String)})
+     * @param code  Verification code received by the user
+     * @param sign  Sender signature used in the original {@link #SendMobileId} request
+     * @return future with the API response. Example: {@code {"data": {"id": 273, "number": "79031234567",
+     * "codeSms": "1234", "status": 3}}}
+     */
+    public CompletableFuture<JSONObject> VerifyMobileId(int reqId, String code, String sign) {
+        SmsAero.requireNonBlankAll("code", code, "sign", sign);
+        return client.doRequestAsync("mobile-id/verify",
+            Map.of("id", Integer.toString(reqId), "code", code, "sign", sign));
+    }
+}
@@ -0,0 +1,207 @@
+package ru.smsaero;
+
+import java.io.IOException;
+import java.time.Instant;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+
+import static ru.smsaero.Futures.await;
+
+/**
+ * Typed blocking API: the endpoints most used on hot paths, returning result objects decoded straight from the
+ * response bytes instead of a {@link org.json.simple.JSONObject} tree. Obtain it with {@link SmsAero#typed()}.
+ *
+ * <p>Validation, test mode, options and error handling are the same as in {@link SmsAero}.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * SmsResult sms = client.typed().SendSms("70000000000", "Hello", "SMS Aero");
+ * System.out.println(sms.id() + " " + sms.extendStatus());
+ * }</pre>
+ */
+public final class SmsAeroTyped {
+    private final SmsAeroTypedAsync async;
+
+    SmsAeroTyped(SmsAeroTypedAsync async) {
+        this.async = async;
+    }
+
+    /**
+     * Returns a view of this API whose calls use the given options. See {@link SmsAero#with(RequestOptions)}.
+     *
+     * @param options Options for every call made through the view
+     * @return typed API bound to the options
+     * @throws IllegalArgumentException if options is null
+     */
+    public SmsAeroTyped with(RequestOptions options) {
+        return new SmsAeroTyped(async.with(options));
+    }
+
+    /**
+     * Returns the non-blocking variant of this API.
+     *
+     * @return typed asynchronous API with the same options
+     */
+    public SmsAeroTypedAsync async() {
+        return async;
+    }
+
+    /**
+     * Retrieves the account balance.
+     *
+     * @return balance
+     * @throws IOException    on network error or API response with success=false
+     * @throws ParseException on JSON parse error
+     */
+    public BalanceResult Balance() throws IOException, ParseException {
+        return await(async.Balance());
+    }
+
+    /**
+     * Sends SMS with the specified sender signature. See {@link SmsAero#SendSms(String, String, String)}.
+     *
+     * @param number Recipient number (format 70000000000)
+     * @param text   Message text
+     * @param sign   Sender signature
+     * @return sent SMS
+     * @throws IOException    on network error or API response with success=false
+     * @throws ParseException on JSON parse error
+     */
+    public SmsResult SendSms(String number, String text, String sign) throws IOException, ParseException {
+        return await(async.SendSms(number, text, sign));
+    }
+
+    /**
+     * Sends SMS with optional scheduled send and callback parameters.
+     *
+     * @param number         Recipient number (format 70000000000)
+     * @param text           Message text
+     * @param sign           Sender signature
+     * @param dateToSend     Scheduled send time (null = send immediately)
+     * @param callbackUrl    URL for delivery status webhook (null = disabled)
+     * @param callbackFormat Callback format, e.g. "json" (null = default)
+     * @return sent SMS
+     * @throws IOException    on network error or API response with success=false
+     * @throws ParseException on JSON parse error
+     */
+    public SmsResult SendSms(String number, String text, String sign,
+            Instant dateToSend, String callbackUrl, String callbackFormat) throws IOException, ParseException {
+        return await(async.SendSms(number, text, sign, dateToSend, callbackUrl, callbackFormat));
+    }
+
+    /**
+     * Sends a prepared message.
+     *
+     * @param message Message to send
+     * @return sent SMS
+     * @throws IOException    on network error or API response with success=false
+     * @throws ParseException on JSON parse error
+     */
+    public SmsResult SendSms(SmsMessage message) throws IOException, ParseException {
+        return await(async.SendSms(message));
+    }
+
+    /**
+     * Retrieves SMS status by ID.
+     *
+     * @param smsId SMS identifier, e.g. {@link SmsResult#id()}
+     * @return SMS with its current status
+     * @throws IOException    on network error or API response with success=false
+     * @throws ParseException on JSON parse error
+     */
+    public SmsResult SmsStatus(long smsId) throws IOException, ParseException {
+        return await(async.SmsStatus(smsId));
+    }
+
+    /**
+     * Retrieves one page of sent SMS. Use {@link #with(RequestOptions)} with {@link RequestOptions#page(int)} for
+     * pages other than the first.
+     *
+     * @return page of SMS
+     * @throws IOException    on network error or API response with success=false
+     * @throws ParseException on JSON parse error
+     */
+    public PagedList<SmsResult> SmsList() throws IOException, ParseException {
+        return await(async.SmsList());
+    }
+
+    /**
+     * Returns all sent SMS, fetched page by page as they are consumed. In test mode uses
+     * sms/testlist. Iterating blocks while a page is fetched.
+     *
+     * @return paginator over all sent SMS
+     */
+    public Paginator<SmsResult> SmsListAll() {
+        return async.SmsListAll();
+    }
+
+    /**
+     * Returns all contacts, fetched page by page as they are consumed.
+     *
+     * @return paginator over the items of contact/list
+     */
+    public Paginator<JSONObject> ContactListAll() {
+        return async.ContactListAll();
+    }
+
+    /**
+     * Returns all contact groups, fetched page by page as they are consumed.
+     *
+     * @return paginator over the items of group/list
+     */
+    public Paginator<JSONObject> GroupListAll() {
+        return async.GroupListAll();
+    }
+
+    /**
+     * Returns all blacklisted numbers, fetched page by page as they are consumed.
+     *
+     * @return paginator over the items of blacklist/list
+     */
+    public Paginator<JSONObject> BlackListListAll() {
+        return async.BlackListListAll();
+    }
+
+    /**
+     * Returns all Viber sendings, fetched page by page as they are consumed.
+     *
+     * @return paginator over the items of viber/list
+     */
+    public Paginator<JSONObject> ViberListAll() {
+        return async.ViberListAll();
+    }
+
+    /**
+     * Returns all sender signatures, fetched page by page as they are consumed.
+     *
+     * @return paginator over the items of sign/list
+     */
+    public Paginator<JSONObject> SignListAll() {
+        return async.SignListAll();
+    }
+
+    /**
+     * HLR request: checks the number status in the network.
+     *
+     * @param number Phone number (format 70000000000)
+     * @return HLR request
+     * @throws IOException    on network error or API response with success=false
+     * @throws ParseException on JSON parse error
+     */
+    public HlrResult HlrCheck(String number) throws IOException, ParseException {
+        return await(async.HlrCheck(number));
+    }
+
+    /**
+     * Retrieves the status of an HLR request.
+     *
+     * @param hlrId HLR request identifier, e.g. {@link HlrResult#id()}
+     * @return HLR request with its status
+     * @throws IOException    on network error or API response with success=false
+     * @throws ParseException on JSON parse error
+     */
+    public HlrResult HlrStatus(long hlrId) throws IOException, ParseException {
+        return await(async.HlrStatus(hlrId));
+    }
+}
@@ -0,0 +1,192 @@
+package ru.smsaero;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+import org.json.simple.JSONObject;
+
+/**
+ * Typed non-blocking API: the endpoints most used on hot paths, returning result objects decoded straight from
+ * the response bytes instead of a {@link org.json.simple.JSONObject} tree. Only the fields of the result are
+ * decoded; everything else in the response is skipped. Obtain it with {@link SmsAeroAsync#typed()}.
+ *
+ * <p>Validation, test mode, options and error handling are the same as in {@link SmsAeroAsync}.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * client.async().typed().SendSms("70000000000", "Hello", "SMS Aero")
+ *     .thenAccept(sms -> System.out.println(sms.id() + " " + sms.extendStatus()));
+ * }</pre>
+ */
+public final class SmsAeroTypedAsync {
+    private static final ResponseDecoder<BalanceResult> BALANCE = ResponseDecoder.data(BalanceResult.DECODER);
+    private static final ResponseDecoder<SmsResult> SMS = ResponseDecoder.data(SmsResult.DECODER);
+    private static final ResponseDecoder<PagedList<SmsResult>> SMS_LIST =
+        ResponseDecoder.data(PagedList.decoder(SmsResult.DECODER));
+    private static final ResponseDecoder<HlrResult> HLR = ResponseDecoder.data(HlrResult.DECODER);
+    private static final ResponseDecoder<PagedList<JSONObject>> JSON_LIST =
+        ResponseDecoder.data(PagedList.decoder(reader -> (JSONObject) reader.nextTree()));
+
+    private final SmsAeroAsync async;
+
+    SmsAeroTypedAsync(SmsAeroAsync async) {
+        this.async = async;
+    }
+
+    /**
+     * Returns a view of this API whose calls use the given options. See {@link SmsAero#with(RequestOptions)}.
+     *
+     * @param options Options for every call made through the view
+     * @return typed asynchronous API bound to the options
+     * @throws IllegalArgumentException if options is null
+     */
+    public SmsAeroTypedAsync with(RequestOptions options) {
+        return async.with(options).typed();
+    }
+
+    /**
+     * Retrieves the account balance.
+     *
+     * @return future with the balance
+     */
+    public CompletableFuture<BalanceResult> Balance() {
+        return async.balance(BALANCE);
+    }
+
+    /**
+     * Sends SMS with the specified sender signature. See {@link SmsAeroAsync#SendSms(String, String, String)}.
+     *
+     * @param number Recipient number (format 70000000000)
+     * @param text   Message text
+     * @param sign   Sender signature
+     * @return future with the sent SMS
+     */
+    public CompletableFuture<SmsResult> SendSms(String number, String text, String sign) {
+        return async.sendSms(number, text, sign, null, null, null, SMS);
+    }
+
+    /**
+     * Sends SMS with optional scheduled send and callback parameters.
+     *
+     * @param number         Recipient number (format 70000000000)
+     * @param text           Message text
+     * @param sign           Sender signature
+     * @param dateToSend     Scheduled send time (null = send immediately)
+     * @param callbackUrl    URL for delivery status webhook (null = disabled)
+     * @param callbackFormat Callback format, e.g. "json" (null = default)
+     * @return future with the sent SMS
+     */
+    public CompletableFuture<SmsResult> SendSms(String number, String text, String sign,
+            Instant dateToSend, String callbackUrl, String callbackFormat) {
+        return async.sendSms(number, text, sign, dateToSend, callbackUrl, callbackFormat, SMS);
+    }
+
+    /**
+     * Sends a prepared message.
+     *
+     * @param message Message to send
+     * @return future with the sent SMS
+     * @throws IllegalArgumentException if message is null
+     */
+    public CompletableFuture<SmsResult> SendSms(SmsMessage message) {
+        if (message == null) {
+            throw new IllegalArgumentException("message cannot be null");
+        }
+        return async.sendSms(message.number(), message.text(), message.sign(), message.dateToSend(),
+            message.callbackUrl(), message.callbackFormat(), SMS);
+    }
+
+    /**
+     * Retrieves SMS status by ID.
+     *
+     * @param smsId SMS identifier, e.g. {@link SmsResult#id()}
+     * @return future with the SMS and its current status
+     */
+    public CompletableFuture<SmsResult> SmsStatus(long smsId) {
+        return async.smsStatus(smsId, SMS);
+    }
+
+    /**
+     * Retrieves one page of sent SMS. Use {@link #with(RequestOptions)} with {@link RequestOptions#page(int)} for
+     * pages other than the first.
+     *
+     * @return future with the page
+     */
+    public CompletableFuture<PagedList<SmsResult>> SmsList() {
+        return async.smsList(SMS_LIST);
+    }
+
+    /**
+     * Returns all sent SMS, fetched page by page as they are consumed. In test mode uses sms/testlist.
+     *
+     * @return paginator over all sent SMS
+     */
+    public Paginator<SmsResult> SmsListAll() {
+        return async.paginate("sms/list", SMS_LIST);
+    }
+
+    /**
+     * Returns all contacts, fetched page by page as they are consumed.
+     *
+     * @return paginator over the items of contact/list
+     */
+    public Paginator<JSONObject> ContactListAll() {
+        return async.paginate("contact/list", JSON_LIST);
+    }
+
+    /**
+     * Returns all contact groups, fetched page by page as they are consumed.
+     *
+     * @return paginator over the items of group/list
+     */
+    public Paginator<JSONObject> GroupListAll() {
+        return async.paginate("group/list", JSON_LIST);
+    }
+
+    /**
+     * Returns all blacklisted numbers, fetched page by page as they are consumed.
+     *
+     * @return paginator over the items of blacklist/list
+     */
+    public Paginator<JSONObject> BlackListListAll() {
+        return async.paginate("blacklist/list", JSON_LIST);
+    }
+
+    /**
+     * Returns all Viber sendings, fetched page by page as they are consumed.
+     *
+     * @return paginator over the items of viber/list
+     */
+    public Paginator<JSONObject> ViberListAll() {
+        return async.paginate("viber/list", JSON_LIST);
+    }
+
+    /**
+     * Returns all sender signatures, fetched page by page as they are consumed.
+     *
+     * @return paginator over the items of sign/list
+     */
+    public Paginator<JSONObject> SignListAll() {
+        return async.paginate("sign/list", JSON_LIST);
+    }
+
+    /**
+     * HLR request: checks the number status in the network.
+     *
+     * @param number Phone number (format 70000000000)
+     * @return future with the HLR request
+     */
+    public CompletableFuture<HlrResult> HlrCheck(String number) {
+        return async.hlrCheck(number, HLR);
+    }
+
+    /**
+     * Retrieves the status of an HLR request.
+     *
+     * @param hlrId HLR request identifier, e.g. {@link HlrResult#id()}
+     * @return future with the HLR request and its status
+     */
+    public CompletableFuture<HlrResult> HlrStatus(long hlrId) {
+        return async.hlrStatus(hlrId, HLR);
+    }
+}
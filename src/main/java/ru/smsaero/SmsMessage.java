@@ -0,0 +1,84 @@
+package ru.smsaero;
+
+import java.time.Instant;
+
+/**
+ * A single SMS to send: the arguments of {@link SmsAero#SendSms(String, String, String, Instant, String, String)}
+ * as a value object.
+ */
+public final class SmsMessage {
+    private final String number;
+    private final String text;
+    private final String sign;
+    private final Instant dateToSend;
+    private final String callbackUrl;
+    private final String callbackFormat;
+
+    /**
+     * @param number         Recipient number (format 70000000000)
+     * @param text           Message text
+     * @param sign           Sender signature
+     * @param dateToSend     Scheduled send time (null = send immediately)
+     * @param callbackUrl    URL for delivery status webhook (null = disabled)
+     * @param callbackFormat Callback format, e.g. "json" (null = default)
+     * @throws IllegalArgumentException if number, text or sign is null or blank
+     */
+    public SmsMessage(String number, String text, String sign,
+            Instant dateToSend, String callbackUrl, String callbackFormat) {
+        SmsAero.requireNonBlankAll("number", number, "text", text, "sign", sign);
+        this.number = number;
+        this.text = text;
+        this.sign = sign;
+        this.dateToSend = dateToSend;
+        this.callbackUrl = callbackUrl;
+        this.callbackFormat = callbackFormat;
+    }
+
+    /**
+     * Creates a message to be sent immediately without a delivery callback.
+     *
+     * @param number Recipient number (format 70000000000)
+     * @param text   Message text
+     * @param sign   Sender signature
+     * @return new message
+     * @throws IllegalArgumentException if any argument is null or blank
+     */
+    public static SmsMessage of(String number, String text, String sign) {
+        return new SmsMessage(number, text, sign, null, null, null);
+    }
+
+    /** @return recipient number */
+    public String number() {
+        return number;
+    }
+
+    /** @return message text */
+    public String text() {
+        return text;
+    }
+
+    /** @return sender signature */
+    public String sign() {
+        return sign;
+    }
+
+    /** @return scheduled send time, or null to send immediately */
+    public Instant dateToSend() {
+        return dateToSend;
+    }
+
+    /** @return delivery status webhook URL, or null */
+    public String callbackUrl() {
+        return callbackUrl;
+    }
+
+    /** @return callback format, or null */
+    public String callbackFormat() {
+        return callbackFormat;
+    }
+
+    @Override
+    public String toString() {
+        return "SmsMessage{number=" + number + ", sign=" + sign + "}";
+    }
+}
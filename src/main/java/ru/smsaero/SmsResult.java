@@ -0,0 +1,191 @@
+package ru.smsaero;
+
+import java.time.Instant;
+import java.util.Map;
+
+import org.json.simple.parser.ParseException;
+
+/**
+ * SMS as returned by {@code sms/send}, {@code sms/status} and {@code sms/list}, decoded directly from the response
+ * bytes. Fields missing from a response are 0 or null.
+ */
+public final class SmsResult {
+    /** Status: in queue. */
+    public static final int STATUS_QUEUE = 0;
+    /** Status: delivered. */
+    public static final int STATUS_DELIVERED = 1;
+    /** Status: not delivered. */
+    public static final int STATUS_NOT_DELIVERED = 2;
+    /** Status: passed to the operator. */
+    public static final int STATUS_SENT = 3;
+    /** Status: waiting for the operator's status. */
+    public static final int STATUS_WAITING = 4;
+    /** Status: rejected. */
+    public static final int STATUS_REJECTED = 6;
+    /** Status: on moderation. */
+    public static final int STATUS_MODERATION = 8;
+
+    static final JsonReader.Decoder<SmsResult> DECODER = SmsResult::read;
+
+    private static final JsonReader.Names NAMES = JsonReader.Names.of(
+        "id", "from", "number", "text", "status", "extendStatus", "channel", "cost",
+        "dateCreate", "dateSend", "dateAnswer");
+
+    private long id;
+    private String from;
+    private String number;
+    private String text;
+    private int status;
+    private String extendStatus;
+    private String channel;
+    private double cost;
+    private long dateCreate;
+    private long dateSend;
+    private long dateAnswer;
+
+    private SmsResult() {
+    }
+
+    static SmsResult read(JsonReader reader) throws ParseException {
+        SmsResult sms = new SmsResult();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.selectName(NAMES)) {
+                case 0:
+                    sms.id = reader.nextLong();
+                    break;
+                case 1:
+                    sms.from = reader.nextString();
+                    break;
+                case 2:
+                    sms.number = reader.nextString();
+                    break;
+                case 3:
+                    sms.text = reader.nextString();
+                    break;
+                case 4:
+                    sms.status = reader.nextInt();
+                    break;
+                case 5:
+                    sms.extendStatus = reader.nextString();
+                    break;
+                case 6:
+                    sms.channel = reader.nextString();
+                    break;
+                case 7:
+                    sms.cost = reader.nextDouble();
+                    break;
+                case 8:
+                    sms.dateCreate = reader.nextLong();
+                    break;
+                case 9:
+                    sms.dateSend = reader.nextLong();
+                    break;
+                case 10:
+                    sms.dateAnswer = reader.nextLong();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return sms;
+    }
+
+    /**
+     * Decodes a form-encoded delivery report. Unknown fields are ignored.
+     *
+     * @throws NumberFormatException if a numeric field is malformed
+     */
+    static SmsResult fromForm(Map<String, String> fields) {
+        SmsResult sms = new SmsResult();
+        sms.id = parseLong(fields.get("id"));
+        sms.from = fields.get("from");
+        sms.number = fields.get("number");
+        sms.text = fields.get("text");
+        sms.status = (int) parseLong(fields.get("status"));
+        sms.extendStatus = fields.get("extendStatus");
+        sms.channel = fields.get("channel");
+        String cost = fields.get("cost");
+        sms.cost = cost == null || cost.isEmpty() ? 0 : Double.parseDouble(cost);
+        sms.dateCreate = parseLong(fields.get("dateCreate"));
+        sms.dateSend = parseLong(fields.get("dateSend"));
+        sms.dateAnswer = parseLong(fields.get("dateAnswer"));
+        return sms;
+    }
+
+    private static long parseLong(String value) {
+        return value == null || value.isEmpty() ? 0 : Long.parseLong(value);
+    }
+
+    /** @return SMS identifier */
+    public long id() {
+        return id;
+    }
+
+    /** @return sender signature */
+    public String from() {
+        return from;
+    }
+
+    /** @return recipient number */
+    public String number() {
+        return number;
+    }
+
+    /** @return message text */
+    public String text() {
+        return text;
+    }
+
+    /** @return status code, one of the {@code STATUS_*} constants */
+    public int status() {
+        return status;
+    }
+
+    /** @return true if the status will not change any more: delivered, not delivered or rejected */
+    public boolean isFinal() {
+        return status == STATUS_DELIVERED || status == STATUS_NOT_DELIVERED || status == STATUS_REJECTED;
+    }
+
+    /** @return status name, e.g. "queue" or "delivery" */
+    public String extendStatus() {
+        return extendStatus;
+    }
+
+    /** @return delivery channel, e.g. "DIRECT" */
+    public String channel() {
+        return channel;
+    }
+
+    /** @return cost of the message */
+    public double cost() {
+        return cost;
+    }
+
+    /** @return time the message was created, or null */
+    public Instant dateCreate() {
+        return toInstant(dateCreate);
+    }
+
+    /** @return time the message was (or will be) sent, or null */
+    public Instant dateSend() {
+        return toInstant(dateSend);
+    }
+
+    /** @return time the operator reported the final status, or null */
+    public Instant dateAnswer() {
+        return toInstant(dateAnswer);
+    }
+
+    private static Instant toInstant(long epochSecond) {
+        return epochSecond != 0 ? Instant.ofEpochSecond(epochSecond) : null;
+    }
+
+    @Override
+    public String toString() {
+        return "SmsResult{id=" + id + ", number=" + number + ", status=" + status + ", extendStatus="
+            + extendStatus + "}";
+    }
+}
@@ -0,0 +1,182 @@
+package ru.smsaero;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * HTTP transport used by {@link SmsAero} to deliver requests to the API gates.
+ *
+ * <p>A single transport instance is shared by every call of a client (and may be shared by several clients),
+ * so implementations must be thread-safe. Implementations provide the blocking {@link #post(Request)} and may
+ * override {@link #postAsync(Request)} with a non-blocking variant.
+ * The default implementation is {@link UrlConnectionTransport}, which blocks a pooled thread per async call;
+ * {@link HttpClientTransport} is non-blocking and can cap concurrent requests per gate.
+ */
+public interface Transport {
+
+    /**
+     * Sends a POST request and reads the whole response.
+     * Non-2xx responses are returned as-is; only I/O failures are reported as exceptions.
+     *
+     * @param request Request to send
+     * @return Response with status code, headers and body
+     * @throws IOException on network error (connect, TLS, timeout, etc.)
+     */
+    Response post(Request request) throws IOException;
+
+    /**
+     * Sends a POST request without blocking the calling thread.
+     * The default implementation runs {@link #post(Request)} on a shared pool of daemon threads;
+     * non-blocking transports should override it.
+     *
+     * @param request Request to send
+     * @return future completed with the response, or exceptionally with an {@link IOException}
+     */
+    default CompletableFuture<Response> postAsync(Request request) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        Futures.BLOCKING_EXECUTOR.execute(() -> {
+            try {
+                future.complete(post(request));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Receives the progress of one exchange from transports that can observe it, e.g. for a
+     * {@link RequestListener}. Called on the transport's threads, so it must return quickly.
+     */
+    interface Progress {
+        /** Reports nothing. */
+        Progress NONE = new Progress() {
+        };
+
+        /** The connection to the gate is established (TCP and, for HTTPS, TLS), or a pooled one is reused. */
+        default void onConnected() {
+        }
+
+        /** The status line and headers of the response have arrived; the body is read next. */
+        default void onFirstByte() {
+        }
+    }
+
+    /**
+     * A single POST request to a gate.
+     */
+    final class Request {
+        private final String url;
+        private final Map<String, String> headers;
+        private final byte[] body;
+        private final Duration timeout;
+        private final Progress progress;
+
+        /**
+         * @param url     Absolute request URL
+         * @param headers Request headers
+         * @param body    Request body (UTF-8 JSON)
+         * @param timeout Response timeout, or null to use the transport default
+         */
+        public Request(String url, Map<String, String> headers, byte[] body, Duration timeout) {
+            this(url, headers, body, timeout, Progress.NONE);
+        }
+
+        /**
+         * @param url      Absolute request URL
+         * @param headers  Request headers
+         * @param body     Request body (UTF-8 JSON)
+         * @param timeout  Response timeout, or null to use the transport default
+         * @param progress Receiver of the exchange's progress
+         */
+        public Request(String url, Map<String, String> headers, byte[] body, Duration timeout, Progress progress) {
+            this.url = Objects.requireNonNull(url, "url");
+            this.headers = Objects.requireNonNull(headers, "headers");
+            this.body = Objects.requireNonNull(body, "body");
+            this.timeout = timeout;
+            this.progress = Objects.requireNonNull(progress, "progress");
+        }
+
+        /** @return absolute request URL */
+        public String url() {
+            return url;
+        }
+
+        /** @return request headers */
+        public Map<String, String> headers() {
+            return headers;
+        }
+
+        /** @return request body */
+        public byte[] body() {
+            return body;
+        }
+
+        /** @return response timeout, or null to use the transport default */
+        public Duration timeout() {
+            return timeout;
+        }
+
+        /** @return receiver of the exchange's progress, {@link Progress#NONE} if nobody listens */
+        public Progress progress() {
+            return progress;
+        }
+    }
+
+    /**
+     * A fully read gate response.
+     */
+    final class Response {
+        private final int statusCode;
+        private final byte[] body;
+        private final Map<String, List<String>> headers;
+
+        /**
+         * @param statusCode HTTP status code
+         * @param body       Response body (empty array if there was none)
+         * @param headers    Response headers (names are matched case-insensitively)
+         */
+        public Response(int statusCode, byte[] body, Map<String, List<String>> headers) {
+            this.statusCode = statusCode;
+            this.body = body != null ? body : new byte[0];
+            if (headers == null || headers.isEmpty()) {
+                this.headers = Collections.emptyMap();
+            } else {
+                Map<String, List<String>> copy = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+                for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+                    if (entry.getKey() != null) {
+                        copy.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                this.headers = Collections.unmodifiableMap(copy);
+            }
+        }
+
+        /** @return HTTP status code */
+        public int statusCode() {
+            return statusCode;
+        }
+
+        /** @return response body */
+        public byte[] body() {
+            return body;
+        }
+
+        /**
+         * Returns the first value of a response header.
+         *
+         * @param name Header name (case-insensitive)
+         * @return header value or null if absent
+         */
+        public String header(String name) {
+            List<String> values = headers.get(name);
+            return values == null || values.isEmpty() ? null : values.get(0);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package ru.smsaero;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * {@link Transport} built on {@link HttpURLConnection}.
+ *
+ * <p>Response streams are always read to the end and closed, so the JDK keep-alive cache can reuse the socket
+ * for the next call to the same gate.
+ */
+public final class UrlConnectionTransport implements Transport {
+    private final int connectTimeoutMs;
+    private final int readTimeoutMs;
+
+    /** Creates a transport with 10 s connect and 30 s read timeouts. */
+    public UrlConnectionTransport() {
+        this((int) HttpClientTransport.DEFAULT_CONNECT_TIMEOUT.toMillis(),
+            (int) HttpClientTransport.DEFAULT_REQUEST_TIMEOUT.toMillis());
+    }
+
+    /**
+     * @param connectTimeoutMs Connection timeout (ms)
+     * @param readTimeoutMs    Default read timeout (ms)
+     */
+    public UrlConnectionTransport(int connectTimeoutMs, int readTimeoutMs) {
+        if (connectTimeoutMs <= 0 || readTimeoutMs <= 0) {
+            throw new IllegalArgumentException("timeouts must be positive");
+        }
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.readTimeoutMs = readTimeoutMs;
+    }
+
+    @Override
+    public Response post(Request request) throws IOException {
+        HttpURLConnection con = (HttpURLConnection) new URL(request.url()).openConnection();
+        con.setConnectTimeout(connectTimeoutMs);
+        con.setReadTimeout(request.timeout() != null ? timeoutMillis(request.timeout()) : readTimeoutMs);
+        for (Map.Entry<String, String> header : request.headers().entrySet()) {
+            con.setRequestProperty(header.getKey(), header.getValue());
+        }
+        con.setRequestMethod("POST");
+        con.setDoOutput(true);
+        con.connect();
+        request.progress().onConnected();
+
+        byte[] input = request.body();
+        try (OutputStream os = con.getOutputStream()) {
+            os.write(input, 0, input.length);
+            os.flush();
+        }
+
+        int responseCode = con.getResponseCode();
+        request.progress().onFirstByte();
+        InputStream in = responseCode < HttpURLConnection.HTTP_BAD_REQUEST
+            ? con.getInputStream()
+            : con.getErrorStream();
+        byte[] body = new byte[0];
+        if (in != null) {
+            try (InputStream stream = in) {
+                body = readFully(stream);
+            }
+        }
+        return new Response(responseCode, body, con.getHeaderFields());
+    }
+
+    /**
+     * @param timeout Connect or response timeout
+     * @return the timeout in whole milliseconds, rounded up: {@link HttpURLConnection} takes 0 as no timeout at all
+     */
+    static int timeoutMillis(Duration timeout) {
+        if (timeout.compareTo(Duration.ofMillis(Integer.MAX_VALUE)) >= 0) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) Math.max(1, (timeout.toNanos() + 999_999) / 1_000_000);
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
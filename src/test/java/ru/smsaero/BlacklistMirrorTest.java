@@ -0,0 +1,94 @@
+package ru.smsaero;
+
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlacklistMirrorTest {
+
+    @Test
+    void rejectsSendsToLoadedNumbersWithoutIo() throws Exception {
+        try (StubGate gate = StubGate.start()) {
+            SmsAero setup = gate.client();
+            for (int i = 0; i < 120; i++) {
+                setup.BlackListAdd(Long.toString(79000000000L + i));
+            }
+            BlacklistMirror blacklist = BlacklistMirror.create();
+            SmsAero client = gate.client(builder -> builder.blacklistMirror(blacklist));
+            blacklist.load();
+
+            BlacklistedNumberException e = assertThrows(BlacklistedNumberException.class,
+                () -> client.SendSms("79000000042", "text", "SMS Aero"));
+            client.SendSms("79000000500", "text", "SMS Aero");
+
+            assertEquals("79000000042", e.getNumber());
+            assertEquals(120, blacklist.size());
+            assertTrue(blacklist.contains("+79000000119"));
+            assertTrue(blacklist.contains(79000000000L));
+            assertFalse(blacklist.contains("79000000120"));
+            assertEquals(1, gate.requestCount("sms/send"));
+            assertEquals(1, blacklist.rejected());
+        }
+    }
+
+    @Test
+    void followsAddAndDeleteOfTheSameClient() throws Exception {
+        try (StubGate gate = StubGate.start()) {
+            BlacklistMirror blacklist = BlacklistMirror.create();
+            SmsAero client = gate.client(builder -> builder.blacklistMirror(blacklist));
+            blacklist.load();
+
+            JSONObject added = (JSONObject) client.BlackListAdd("79000000001").get("data");
+            client.BlackListAdd("79000000002");
+            assertTrue(blacklist.contains("79000000001"));
+            client.BlackListDelete(((Number) added.get("id")).intValue());
+
+            assertFalse(blacklist.contains("79000000001"));
+            assertTrue(blacklist.contains("79000000002"));
+            assertEquals(1, blacklist.size());
+            blacklist.load();
+            assertEquals(1, blacklist.size());
+        }
+    }
+
+    @Test
+    void bulkSendsFailFastForBlacklistedRecipients() throws Exception {
+        try (StubGate gate = StubGate.start()) {
+            BlacklistMirror blacklist = BlacklistMirror.create();
+            SmsAero client = gate.client(builder -> builder.blacklistMirror(blacklist));
+            client.BlackListAdd("79000000003");
+
+            BulkSender.Report report = BulkSender.builder(client).build().send(List.of(
+                SmsMessage.of("79000000001", "a", "S"),
+                SmsMessage.of("79000000003", "b", "S")).iterator(), result -> { });
+
+            assertEquals(1, report.succeeded());
+            assertEquals(1, report.failed());
+            assertEquals(1, gate.requestCount("sms/send"));
+            CompletionException e = assertThrows(CompletionException.class,
+                () -> client.async().SendSms("79000000003", "c", "S").join());
+            assertInstanceOf(BlacklistedNumberException.class, e.getCause());
+        }
+    }
+
+    @Test
+    void keepsContentsWhenLoadFailsAndRejectsSharing() throws Exception {
+        try (StubGate gate = StubGate.start()) {
+            BlacklistMirror blacklist = BlacklistMirror.create();
+            assertThrows(IllegalStateException.class, blacklist::load);
+            SmsAero client = gate.client(builder -> builder.blacklistMirror(blacklist));
+            client.BlackListAdd("79000000001");
+            gate.failWith(500);
+
+            assertThrows(IOException.class, blacklist::load);
+            assertTrue(blacklist.contains("79000000001"));
+            assertThrows(IllegalArgumentException.class,
+                () -> gate.client(builder -> builder.blacklistMirror(blacklist)));
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package ru.smsaero;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkSenderTest {
+
+    @Test
+    void sendsEveryMessageAndReportsResults() throws Exception {
+        try (StubGate gate = StubGate.start()) {
+            SmsAero client = SmsAero.builder("e@e.com", "key").gateUrls(List.of(gate.url())).build();
+            client.EnableTestMode();
+            BulkSender sender = BulkSender.builder(client).maxInFlight(16).build();
+            Set<String> delivered = ConcurrentHashMap.newKeySet();
+
+            Stream<SmsMessage> messages = IntStream.range(0, 300)
+                .mapToObj(i -> SmsMessage.of("7902" + String.format("%07d", i), "text " + i, "Sign"));
+            BulkSender.Report report = sender.send(messages, result -> {
+                assertTrue(result.isSuccess());
+                delivered.add(result.message().number());
+            });
+
+            assertEquals(300, report.submitted());
+            assertEquals(300, report.succeeded());
+            assertEquals(0, report.failed());
+            assertEquals(300, delivered.size());
+            assertEquals(300, gate.requestCount());
+        }
+    }
+
+    @Test
+    void windowBoundsConcurrentRequests() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxSeen = new AtomicInteger();
+        Transport slow = request -> {
+            int now = inFlight.incrementAndGet();
+            maxSeen.accumulateAndGet(now, Math::max);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            return new Transport.Response(200, "{\"success\":true}".getBytes(StandardCharsets.UTF_8), Map.of());
+        };
+        SmsAero client = new SmsAero("e@e.com", "key", slow);
+        BulkSender sender = BulkSender.builder(client).maxInFlight(8).build();
+
+        BulkSender.Report report = sender.send(
+            IntStream.range(0, 200).mapToObj(i -> SmsMessage.of("70000000000", "text", "Sign")), result -> { });
+
+        assertEquals(200, report.succeeded());
+        assertTrue(maxSeen.get() <= 8, "max in flight " + maxSeen.get());
+        assertTrue(maxSeen.get() > 1, "requests were not sent concurrently");
+    }
+
+    @Test
+    void failuresAreCountedAndReported() throws Exception {
+        Transport failing = request -> new Transport.Response(400,
+            "{\"success\":false,\"message\":\"Invalid number\"}".getBytes(StandardCharsets.UTF_8), Map.of());
+        SmsAero client = new SmsAero("e@e.com", "key", failing);
+        AtomicInteger errors = new AtomicInteger();
+
+        BulkSender.Report report = BulkSender.builder(client).build().send(
+            Stream.of(SmsMessage.of("70000000000", "a", "Sign"), SmsMessage.of("70000000001", "b", "Sign")),
+            result -> {
+                assertEquals("Invalid number", result.error().getMessage());
+                errors.incrementAndGet();
+            });
+
+        assertEquals(2, report.failed());
+        assertEquals(0, report.succeeded());
+        assertEquals(2, errors.get());
+    }
+
+    @Test
+    void interruptWhileTheWindowIsFullLosesNoMessage() throws Exception {
+        List<CompletableFuture<Transport.Response>> pending = new CopyOnWriteArrayList<>();
+        Transport held = new Transport() {
+            @Override
+            public Response post(Request request) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public CompletableFuture<Response> postAsync(Request request) {
+                CompletableFuture<Response> response = new CompletableFuture<>();
+                pending.add(response);
+                return response;
+            }
+        };
+        SmsAero client = new SmsAero("e@e.com", "key", held);
+        BulkSender sender = BulkSender.builder(client).maxInFlight(2).build();
+        AtomicInteger pulled = new AtomicInteger();
+        Iterator<SmsMessage> messages = IntStream.range(0, 10)
+            .mapToObj(i -> SmsMessage.of("70000000000", "text " + i, "Sign"))
+            .peek(message -> pulled.incrementAndGet())
+            .iterator();
+        List<BulkSender.Result> results = new CopyOnWriteArrayList<>();
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+
+        Thread sending = new Thread(() -> {
+            try {
+                sender.send(messages, results::add);
+            } catch (Throwable e) {
+                thrown.set(e);
+            }
+        });
+        sending.start();
+        while (pending.size() < 2) {
+            Thread.sleep(1);
+        }
+        sending.interrupt();
+        sending.join(5000);
+
+        assertInstanceOf(InterruptedException.class, thrown.get());
+        assertEquals(2, pulled.get());
+        byte[] ok = "{\"success\":true}".getBytes(StandardCharsets.UTF_8);
+        pending.forEach(response -> response.complete(new Transport.Response(200, ok, Map.of())));
+        assertEquals(2, results.size());
+    }
+}
@@ -0,0 +1,124 @@
+package ru.smsaero;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallbackReceiverTest {
+    private static final HttpClient HTTP = HttpClient.newHttpClient();
+
+    @Test
+    void acceptsJsonFormAndQueryReports() throws Exception {
+        List<SmsResult> reports = new CopyOnWriteArrayList<>();
+        try (CallbackReceiver receiver = CallbackReceiver.builder().host("127.0.0.1").listener(reports::add).build()) {
+            String url = url(receiver);
+
+            assertEquals(200, post(url, "{\"id\": 1, \"status\": 1, \"extendStatus\": \"delivery\", \"cost\": 5.49}"));
+            assertEquals(200, post(url, "[{\"id\": 2, \"status\": 2}, {\"id\": 3, \"status\": \"6\"}]"));
+            assertEquals(200, post(url, "id=4&status=1&number=79000000004&extendStatus=delivery"));
+            assertEquals(200, HTTP.send(HttpRequest.newBuilder(URI.create(url + "?id=5&status=2")).build(),
+                HttpResponse.BodyHandlers.discarding()).statusCode());
+
+            awaitSize(reports, 5);
+            reports.sort(Comparator.comparingLong(SmsResult::id));
+            assertEquals("delivery", reports.get(0).extendStatus());
+            assertEquals(5.49, reports.get(0).cost());
+            assertEquals(SmsResult.STATUS_REJECTED, reports.get(2).status());
+            assertEquals("79000000004", reports.get(3).number());
+            assertEquals(5, reports.get(4).id());
+        }
+    }
+
+    @Test
+    void dropsRepeatedReportsAndRejectsMalformedOnes() throws Exception {
+        List<SmsResult> reports = new CopyOnWriteArrayList<>();
+        try (CallbackReceiver receiver = CallbackReceiver.builder().host("127.0.0.1").build()) {
+            receiver.addListener(reports::add);
+            String url = url(receiver);
+
+            post(url, "{\"id\": 7, \"status\": 4}");
+            post(url, "{\"id\": 7, \"status\": 4}");
+            post(url, "{\"id\": 7, \"status\": 1}");
+            assertEquals(400, post(url, "{\"id\": 8, "));
+            assertEquals(400, post(url, "status=1"));
+
+            awaitSize(reports, 2);
+            CallbackReceiver.Stats stats = receiver.stats();
+            assertEquals(3, stats.received());
+            assertEquals(1, stats.duplicates());
+            assertEquals(2, stats.rejected());
+            assertTrue(stats.throughput() > 0);
+        }
+    }
+
+    @Test
+    void rejectsOversizedBodies() throws Exception {
+        List<SmsResult> reports = new CopyOnWriteArrayList<>();
+        try (CallbackReceiver receiver = CallbackReceiver.builder()
+                .host("127.0.0.1")
+                .maxBodySize(64)
+                .listener(reports::add)
+                .build()) {
+            String url = url(receiver);
+
+            assertEquals(413, post(url, "{\"id\": 9, \"status\": 1, \"text\": \"" + "x".repeat(100) + "\"}"));
+            assertEquals(200, post(url, "{\"id\": 9, \"status\": 1}"));
+
+            awaitSize(reports, 1);
+            assertEquals(1, receiver.stats().rejected());
+        }
+        assertThrows(IllegalArgumentException.class, () -> CallbackReceiver.builder().maxBodySize(0));
+    }
+
+    @Test
+    void completesTrackedMessagesWithoutPolling() throws Exception {
+        try (StubGate gate = StubGate.start().delivery(Duration.ofMillis(100), SmsResult.STATUS_DELIVERED);
+             DeliveryTracker tracker = DeliveryTracker.builder(gate.client())
+                 .backoff(Duration.ofMinutes(10), Duration.ofMinutes(10))
+                 .build();
+             CallbackReceiver receiver = CallbackReceiver.builder().host("127.0.0.1").listener(tracker::report)
+                 .build()) {
+            SmsAeroTyped typed = gate.client().typed();
+
+            CompletableFuture<SmsResult> json = tracker.track(
+                typed.SendSms("79000000001", "a", "S", null, url(receiver), "json"));
+            CompletableFuture<SmsResult> form = tracker.track(
+                typed.SendSms("79000000002", "b", "S", null, url(receiver), null));
+
+            assertEquals(SmsResult.STATUS_DELIVERED, json.get(5, TimeUnit.SECONDS).status());
+            assertEquals("79000000002", form.get(5, TimeUnit.SECONDS).number());
+            assertEquals(0, gate.requestCount("sms/status"));
+            assertEquals(0, tracker.pending());
+        }
+    }
+
+    /** Listeners run after the response, possibly on different threads, so they may lag behind it. */
+    private static void awaitSize(List<SmsResult> reports, int size) throws InterruptedException {
+        for (int i = 0; i < 100 && reports.size() < size; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(size, reports.size());
+    }
+
+    private static String url(CallbackReceiver receiver) {
+        return "http://127.0.0.1:" + receiver.address().getPort() + receiver.path();
+    }
+
+    private static int post(String url, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build();
+        return HTTP.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
@@ -0,0 +1,266 @@
+package ru.smsaero;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+    private static final String GATE_A = "https://a.example/v2/";
+    private static final String GATE_B = "https://b.example/v2/";
+
+    @Test
+    void opensAfterThresholdAndFailsWithoutNetworkIo() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        List<String> transitions = new CopyOnWriteArrayList<>();
+        CircuitBreaker breaker = CircuitBreaker.builder()
+            .failureThreshold(2)
+            .listener((gate, method, from, to) -> transitions.add(method + ":" + from + "->" + to))
+            .build();
+        SmsAero client = client(breaker, flaky(calls, new AtomicBoolean(true)), GATE_A);
+
+        assertThrows(IOException.class, client::Balance);
+        assertThrows(IOException.class, client::Balance);
+        CircuitOpenException e = assertThrows(CircuitOpenException.class, client::Balance);
+
+        assertEquals("balance", e.getMethod());
+        assertEquals(2, calls.get());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state(GATE_A, "balance"));
+        assertEquals(List.of("balance:CLOSED->OPEN"), transitions);
+    }
+
+    @Test
+    void halfOpenLetsThroughAtMostTheConfiguredTrialCalls() throws Exception {
+        CircuitBreaker breaker = CircuitBreaker.builder()
+            .failureThreshold(1)
+            .openDuration(Duration.ofMillis(1))
+            .halfOpenCalls(2)
+            .build();
+        for (int round = 0; round < 200; round++) {
+            breaker.onFailure(GATE_A, "balance");
+            breaker.onFailure(GATE_A, "balance");
+            Thread.sleep(2);
+            AtomicInteger admitted = new AtomicInteger();
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (breaker.tryAcquire(GATE_A, "balance")) {
+                        admitted.incrementAndGet();
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertTrue(admitted.get() <= 2, "trial calls: " + admitted.get());
+        }
+    }
+
+    @Test
+    void lateFailuresDoNotExtendTheOpenPeriod() throws Exception {
+        CircuitBreaker breaker = CircuitBreaker.builder()
+            .failureThreshold(1)
+            .openDuration(Duration.ofMillis(100))
+            .build();
+        breaker.onFailure(GATE_A, "balance");
+        Thread.sleep(60);
+        // Calls sent before the breaker opened fail while it is open.
+        breaker.onFailure(GATE_A, "balance");
+        breaker.onFailure(GATE_A, "balance");
+        Thread.sleep(60);
+
+        assertTrue(breaker.tryAcquire(GATE_A, "balance"));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state(GATE_A, "balance"));
+    }
+
+    @Test
+    void breakersAreKeyedByMethod() throws Exception {
+        AtomicBoolean down = new AtomicBoolean(true);
+        CircuitBreaker breaker = CircuitBreaker.builder().failureThreshold(1).build();
+        SmsAero client = client(breaker, flaky(new AtomicInteger(), down), GATE_A);
+
+        assertThrows(IOException.class, client::Balance);
+        down.set(false);
+        assertThrows(CircuitOpenException.class, client::Balance);
+        assertNotNull(client.Tariffs());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state(GATE_A, "tariffs"));
+    }
+
+    @Test
+    void halfOpenTrialClosesOrReopens() throws Exception {
+        AtomicBoolean down = new AtomicBoolean(true);
+        List<CircuitBreaker.State> states = new CopyOnWriteArrayList<>();
+        CircuitBreaker breaker = CircuitBreaker.builder()
+            .failureThreshold(1)
+            .openDuration(Duration.ofMillis(50))
+            .listener((gate, method, from, to) -> states.add(to))
+            .build();
+        SmsAero client = client(breaker, flaky(new AtomicInteger(), down), GATE_A);
+
+        assertThrows(IOException.class, client::Balance);
+        Thread.sleep(80);
+        assertThrows(IOException.class, client::Balance);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state(GATE_A, "balance"));
+
+        down.set(false);
+        Thread.sleep(80);
+        assertNotNull(client.Balance());
+
+        assertEquals(List.of(
+            CircuitBreaker.State.OPEN, CircuitBreaker.State.HALF_OPEN, CircuitBreaker.State.OPEN,
+            CircuitBreaker.State.HALF_OPEN, CircuitBreaker.State.CLOSED), states);
+    }
+
+    @Test
+    void cancelledTrialGivesBackItsPermit() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        AtomicInteger mode = new AtomicInteger();
+        Transport transport = new Transport() {
+            @Override
+            public Response post(Request request) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public CompletableFuture<Response> postAsync(Request request) {
+                calls.incrementAndGet();
+                switch (mode.get()) {
+                    case 0:
+                        return CompletableFuture.failedFuture(new ConnectException("Connection refused"));
+                    case 1:
+                        return new CompletableFuture<>();
+                    default:
+                        return CompletableFuture.completedFuture(ok());
+                }
+            }
+        };
+        CircuitBreaker breaker = CircuitBreaker.builder()
+            .failureThreshold(1)
+            .openDuration(Duration.ofMillis(50))
+            .build();
+        SmsAero client = SmsAero.builder("e@e.com", "key")
+            .transport(transport)
+            .gateUrls(List.of(GATE_A))
+            .circuitBreaker(breaker)
+            .deadline(Duration.ofMillis(100))
+            .build();
+
+        assertThrows(IOException.class, client::Balance);
+        Thread.sleep(80);
+        mode.set(1);
+        // The trial hangs and is cancelled by the deadline.
+        assertThrows(DeadlineExceededException.class, client::Balance);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state(GATE_A, "balance"));
+        // The exchange is cancelled just after the call fails.
+        Thread.sleep(50);
+
+        mode.set(2);
+        assertNotNull(client.Balance());
+        assertEquals(3, calls.get());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state(GATE_A, "balance"));
+    }
+
+    @Test
+    void openGateIsSkippedInFailover() throws Exception {
+        AtomicInteger callsToA = new AtomicInteger();
+        AtomicInteger callsToB = new AtomicInteger();
+        Transport transport = request -> {
+            if (request.url().contains("a.example")) {
+                callsToA.incrementAndGet();
+                throw new ConnectException("Connection refused");
+            }
+            callsToB.incrementAndGet();
+            return ok();
+        };
+        CircuitBreaker breaker = CircuitBreaker.builder().failureThreshold(1).build();
+        SmsAero client = SmsAero.builder("e@e.com", "key")
+            .transport(transport)
+            .gateUrls(List.of(GATE_A, GATE_B))
+            .gateSelector(GateSelector.builder().ejectAfterFailures(100).errorPenalty(0).build())
+            .circuitBreaker(breaker)
+            .build();
+
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(client.Balance());
+        }
+
+        assertEquals(1, callsToA.get());
+        assertEquals(5, callsToB.get());
+    }
+
+    @Test
+    void serverErrorsCountAsFailures() throws Exception {
+        CircuitBreaker breaker = CircuitBreaker.builder().failureThreshold(2).build();
+        Transport unavailable = request -> new Transport.Response(503,
+            "{\"success\":false,\"message\":\"Service unavailable\"}".getBytes(StandardCharsets.UTF_8), Map.of());
+        SmsAero client = client(breaker, unavailable, GATE_A);
+
+        assertThrows(IOException.class, client::Balance);
+        assertThrows(IOException.class, client::Balance);
+        assertThrows(CircuitOpenException.class, client::Balance);
+    }
+
+    @Test
+    void isOffByDefault() {
+        AtomicInteger calls = new AtomicInteger();
+        SmsAero client = SmsAero.builder("e@e.com", "key")
+            .transport(flaky(calls, new AtomicBoolean(true)))
+            .gateUrls(List.of(GATE_A))
+            .build();
+
+        for (int i = 0; i < 10; i++) {
+            assertThrows(IOException.class, client::Balance);
+        }
+        assertEquals(10, calls.get());
+    }
+
+    @Test
+    void builderRejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> CircuitBreaker.builder().failureThreshold(0));
+        assertThrows(IllegalArgumentException.class, () -> CircuitBreaker.builder().halfOpenCalls(0));
+        assertThrows(IllegalArgumentException.class, () -> CircuitBreaker.builder().openDuration(null));
+    }
+
+    private static SmsAero client(CircuitBreaker breaker, Transport transport, String gate) {
+        return SmsAero.builder("e@e.com", "key")
+            .transport(transport)
+            .gateUrls(List.of(gate))
+            .circuitBreaker(breaker)
+            .build();
+    }
+
+    private static Transport flaky(AtomicInteger calls, AtomicBoolean down) {
+        return request -> {
+            calls.incrementAndGet();
+            if (down.get()) {
+                throw new ConnectException("Connection refused");
+            }
+            return ok();
+        };
+    }
+
+    private static Transport.Response ok() {
+        return new Transport.Response(200, "{\"success\":true}".getBytes(StandardCharsets.UTF_8), Map.of());
+    }
+}
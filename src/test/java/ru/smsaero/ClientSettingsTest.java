@@ -0,0 +1,156 @@
+package ru.smsaero;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientSettingsTest {
+
+    @Test
+    void userAgentCarriesPomVersion() throws Exception {
+        String pom = Files.readString(Path.of("pom.xml"));
+        Matcher version = Pattern.compile("<artifactId>smsaero</artifactId>\\s*<version>([^<]+)</version>")
+            .matcher(pom);
+        assertTrue(version.find());
+        assertEquals(version.group(1), SmsAero.VERSION);
+
+        CapturingTransport transport = new CapturingTransport();
+        SmsAero.builder("e@e.com", "key").transport(transport).build().Balance();
+        SmsAero.builder("e@e.com", "key").transport(transport).userAgent("MyApp/1.0").build().Balance();
+
+        assertEquals("SAJavaClient/" + SmsAero.VERSION, transport.requests.get(0).headers().get("User-Agent"));
+        assertEquals("MyApp/1.0", transport.requests.get(1).headers().get("User-Agent"));
+    }
+
+    @Test
+    void gateUrlsAreValidatedAndNormalized() throws Exception {
+        try (StubGate gate = StubGate.start()) {
+            String url = gate.url();
+            SmsAero client = SmsAero.builder("e@e.com", "key")
+                .gateUrls(List.of(url.substring(0, url.length() - 1)))
+                .build();
+
+            assertEquals(337.03, client.typed().Balance().balance());
+        }
+        SmsAero.Builder builder = SmsAero.builder("e@e.com", "key");
+        assertThrows(IllegalArgumentException.class, () -> builder.gateUrls(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> builder.gateUrls(List.of(" ")));
+        assertThrows(IllegalArgumentException.class, () -> builder.gateUrls(List.of("gate.smsaero.ru/v2/")));
+        assertEquals(3, SmsAero.DEFAULT_GATE_URLS.size());
+    }
+
+    @Test
+    void deadlineFailsSlowCallAndCancelsIt() throws Exception {
+        try (StubGate gate = StubGate.start().latency(Duration.ofSeconds(2))) {
+            SmsAero client = gate.client(builder -> builder.deadline(Duration.ofMillis(200)));
+
+            long start = System.nanoTime();
+            DeadlineExceededException e = assertThrows(DeadlineExceededException.class,
+                () -> client.SendSms("70000000000", "Code 1234", "Sign"));
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertEquals("sms/send", e.getMethod());
+            assertTrue(elapsed < 1000, "took " + elapsed + " ms");
+        }
+    }
+
+    @Test
+    void perCallDeadlineOverridesClientDefault() throws Exception {
+        try (StubGate gate = StubGate.start().latency(Duration.ofMillis(300))) {
+            SmsAero client = gate.client(builder -> builder.deadline(Duration.ofMillis(100)));
+
+            assertThrows(DeadlineExceededException.class, client::Balance);
+            client.with(RequestOptions.builder().deadline(Duration.ofSeconds(5)).build()).Balance();
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> gate.client()
+                .async().with(RequestOptions.builder().deadline(Duration.ofMillis(50)).build()).Balance().get());
+            assertInstanceOf(DeadlineExceededException.class, e.getCause());
+        }
+    }
+
+    @Test
+    void readTimeoutMovesOnToNextGate() throws Exception {
+        try (StubGate slow = StubGate.start().latency(Duration.ofSeconds(2)); StubGate fast = StubGate.start()) {
+            SmsAero client = SmsAero.builder("e@e.com", "key")
+                .gateUrls(List.of(slow.url(), fast.url()))
+                .readTimeout(Duration.ofMillis(200))
+                .build();
+
+            long start = System.nanoTime();
+            assertEquals(337.03, client.typed().Balance().balance());
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertEquals(1, fast.requestCount());
+            assertTrue(elapsed < 1500, "took " + elapsed + " ms");
+        }
+    }
+
+    @Test
+    void attemptTimeoutIsCappedByDeadline() throws Exception {
+        CapturingTransport transport = new CapturingTransport();
+        SmsAero.builder("e@e.com", "key")
+            .transport(transport)
+            .readTimeout(Duration.ofSeconds(30))
+            .deadline(Duration.ofSeconds(2))
+            .build()
+            .Balance();
+
+        Duration timeout = transport.requests.get(0).timeout();
+        assertTrue(timeout.compareTo(Duration.ofSeconds(2)) <= 0 && timeout.compareTo(Duration.ofSeconds(1)) > 0,
+            timeout.toString());
+    }
+
+    @Test
+    void builderRejectsInvalidSettings() {
+        SmsAero.Builder builder = SmsAero.builder("e@e.com", "key");
+        assertThrows(IllegalArgumentException.class, () -> builder.connectTimeout(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> builder.readTimeout(null));
+        assertThrows(IllegalArgumentException.class, () -> builder.deadline(Duration.ofSeconds(-1)));
+        assertThrows(IllegalArgumentException.class, () -> builder.userAgent(""));
+        assertThrows(IllegalArgumentException.class, () -> RequestOptions.builder().deadline(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> SmsAero.builder("e@e.com", "key")
+            .transport(new UrlConnectionTransport())
+            .connectTimeout(Duration.ofSeconds(1))
+            .build());
+    }
+
+    @Test
+    void subMillisecondReadTimeoutIsNotInfinite() {
+        assertEquals(1, UrlConnectionTransport.timeoutMillis(Duration.ofNanos(1)));
+        assertEquals(2, UrlConnectionTransport.timeoutMillis(Duration.ofNanos(1_000_001)));
+        assertEquals(1500, UrlConnectionTransport.timeoutMillis(Duration.ofMillis(1500)));
+        assertEquals(Integer.MAX_VALUE, UrlConnectionTransport.timeoutMillis(Duration.ofDays(365)));
+        assertEquals(Integer.MAX_VALUE, UrlConnectionTransport.timeoutMillis(Duration.ofSeconds(Long.MAX_VALUE)));
+    }
+
+    /** Records requests and answers each with a balance. */
+    private static final class CapturingTransport implements Transport {
+        final List<Request> requests = new CopyOnWriteArrayList<>();
+
+        @Override
+        public Response post(Request request) {
+            requests.add(request);
+            byte[] body = "{\"success\":true,\"data\":{\"balance\":1}}".getBytes(StandardCharsets.UTF_8);
+            return new Response(200, body, Map.of());
+        }
+
+        @Override
+        public CompletableFuture<Response> postAsync(Request request) {
+            return CompletableFuture.completedFuture(post(request));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package ru.smsaero;
+
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress tests: many responses parsed at the same time must not interfere with each other.
+ */
+class ConcurrentRequestsTest {
+
+    private StubGate gate;
+    private SmsAero client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        gate = StubGate.start();
+        client = gate.client();
+        client.EnableTestMode();
+    }
+
+    @AfterEach
+    void tearDown() {
+        gate.close();
+    }
+
+    @Test
+    void parallelBlockingCallsGetTheirOwnResponses() throws Exception {
+        int threads = 32;
+        int callsPerThread = 50;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                results.add(pool.submit(() -> {
+                    startSignal.await();
+                    for (int i = 0; i < callsPerThread; i++) {
+                        String text = "Привет \"" + thread + "\" #" + i + " \\ " + "x".repeat(i);
+                        String number = "7900" + String.format("%07d", thread * callsPerThread + i);
+                        JSONObject data = (JSONObject) client.SendSms(number, text, "Sign").get("data");
+                        assertEquals(number, data.get("number"));
+                        assertEquals(text, data.get("text"));
+                    }
+                    return null;
+                }));
+            }
+            startSignal.countDown();
+            for (Future<Void> result : results) {
+                result.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(threads * callsPerThread, gate.requestCount());
+    }
+
+    @Test
+    void manyAsyncCallsInFlight() throws Exception {
+        int calls = 2_000;
+        List<CompletableFuture<JSONObject>> futures = new ArrayList<>(calls);
+        for (int i = 0; i < calls; i++) {
+            futures.add(client.async().SendSms("7901" + String.format("%07d", i), "text " + i, "Sign"));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(60, TimeUnit.SECONDS);
+        for (int i = 0; i < calls; i++) {
+            JSONObject data = (JSONObject) futures.get(i).get().get("data");
+            assertEquals("text " + i, data.get("text"));
+        }
+    }
+}
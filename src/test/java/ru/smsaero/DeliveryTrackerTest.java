@@ -0,0 +1,98 @@
+package ru.smsaero;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeliveryTrackerTest {
+
+    @Test
+    void pollsUntilFinalStatusWithBackoff() throws Exception {
+        try (StubGate gate = StubGate.start().delivery(Duration.ofMillis(300), SmsResult.STATUS_DELIVERED)) {
+            SmsAero client = gate.client();
+            List<SmsResult> finals = new CopyOnWriteArrayList<>();
+            try (DeliveryTracker tracker = DeliveryTracker.builder(client)
+                    .backoff(Duration.ofMillis(20), Duration.ofMillis(80))
+                    .onFinalStatus(finals::add)
+                    .build()) {
+                CompletableFuture<SmsResult> first = tracker.track(client.typed().SendSms("79000000001", "a", "S"));
+                CompletableFuture<SmsResult> second = tracker.track(client.typed().SendSms("79000000002", "b", "S"));
+
+                assertEquals(SmsResult.STATUS_DELIVERED, first.get(5, TimeUnit.SECONDS).status());
+                assertEquals(2, second.get(5, TimeUnit.SECONDS).id());
+                assertEquals(2, finals.size());
+                assertEquals(0, tracker.pending());
+                // 20 + 40 + 80 + 80 + ... ms: a handful of polls per id, not one per 20 ms.
+                int polls = gate.requestCount("sms/status");
+                assertTrue(polls >= 4 && polls <= 20, "polls " + polls);
+            }
+        }
+    }
+
+    @Test
+    void coalescesDuplicateIdsAndUsesTestStatusInTestMode() throws Exception {
+        try (StubGate gate = StubGate.start().delivery(Duration.ofMillis(100), SmsResult.STATUS_REJECTED)) {
+            SmsAero client = gate.client();
+            client.EnableTestMode();
+            try (DeliveryTracker tracker = DeliveryTracker.builder(client)
+                    .backoff(Duration.ofMillis(150), Duration.ofMillis(150))
+                    .build()) {
+                long id = client.typed().SendSms("79000000001", "a", "S").id();
+                CompletableFuture<SmsResult> first = tracker.track(id);
+                CompletableFuture<SmsResult> second = tracker.track(id);
+
+                assertEquals(1, tracker.pending());
+                assertEquals(SmsResult.STATUS_REJECTED, first.get(5, TimeUnit.SECONDS).status());
+                assertTrue(second.get(5, TimeUnit.SECONDS).isFinal());
+                assertEquals(1, gate.requestCount("sms/teststatus"));
+                assertEquals(0, gate.requestCount("sms/status"));
+            }
+        }
+    }
+
+    @Test
+    void givesUpAfterExpiryAndSkipsFinalResults() throws Exception {
+        try (StubGate gate = StubGate.start().delivery(Duration.ofHours(1), SmsResult.STATUS_DELIVERED)) {
+            SmsAero client = gate.client();
+            try (DeliveryTracker tracker = DeliveryTracker.builder(client)
+                    .backoff(Duration.ofMillis(10), Duration.ofMillis(20))
+                    .expireAfter(Duration.ofMillis(100))
+                    .build()) {
+                CompletableFuture<SmsResult> stuck = tracker.track(client.typed().SendSms("79000000001", "a", "S"));
+
+                ExecutionException e = assertThrows(ExecutionException.class, () -> stuck.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(DeadlineExceededException.class, e.getCause());
+                assertEquals(0, tracker.pending());
+
+                gate.delivery(Duration.ZERO, SmsResult.STATUS_DELIVERED);
+                SmsResult delivered = client.typed().SmsStatus(client.typed().SendSms("79000000002", "b", "S").id());
+                int polls = gate.requestCount("sms/status");
+                assertSame(delivered, tracker.track(delivered).get());
+                assertEquals(polls, gate.requestCount("sms/status"));
+            }
+        }
+    }
+
+    @Test
+    void closeCancelsPendingIds() throws Exception {
+        try (StubGate gate = StubGate.start()) {
+            DeliveryTracker tracker = DeliveryTracker.builder(gate.client()).build();
+            CompletableFuture<SmsResult> pending = tracker.track(42);
+
+            tracker.close();
+
+            assertTrue(pending.isCompletedExceptionally());
+            assertThrows(IllegalStateException.class, () -> tracker.track(43));
+            assertThrows(IllegalArgumentException.class, () -> DeliveryTracker.builder(null));
+            assertThrows(IllegalArgumentException.class, () -> DeliveryTracker.builder(gate.client())
+                .backoff(Duration.ofSeconds(2), Duration.ofSeconds(1)));
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package ru.smsaero;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GateSelectorTest {
+
+    @Test
+    void untriedGatesKeepConfiguredOrder() {
+        GateSelector selector = GateSelector.create();
+        List<String> gates = List.of("a", "b", "c");
+        assertArrayEquals(new String[] {"a", "b", "c"}, selector.order(gates));
+    }
+
+    @Test
+    void ejectedGatesAreOrderedByWhenTheyComeBack() throws Exception {
+        GateSelector selector = GateSelector.builder()
+            .ejectAfterFailures(1)
+            .ejectDuration(Duration.ofMinutes(1))
+            .build();
+        Function<String, CompletableFuture<Boolean>> neverAnswers = gate -> new CompletableFuture<>();
+
+        selector.onFailure("b", 0, neverAnswers);
+        Thread.sleep(5);
+        selector.onFailure("a", 0, neverAnswers);
+
+        assertArrayEquals(new String[] {"c", "b", "a"}, selector.order(List.of("a", "b", "c")));
+    }
+
+    @Test
+    void slowGateLosesTraffic() throws Exception {
+        try (StubGate slow = StubGate.start().latency(Duration.ofMillis(150)); StubGate fast = StubGate.start()) {
+            GateSelector selector = GateSelector.builder().initialLatency(Duration.ofMillis(50)).build();
+            SmsAero client = client(selector, slow.url(), fast.url());
+
+            for (int i = 0; i < 20; i++) {
+                client.Balance();
+            }
+
+            assertEquals(1, slow.requestCount());
+            assertEquals(19, fast.requestCount());
+            assertTrue(selector.health().get(slow.url()).latency().toMillis() > 50);
+        }
+    }
+
+    @Test
+    void unreachableGateIsEjectedAndSkipped() throws Exception {
+        try (StubGate up = StubGate.start()) {
+            String down = "http://127.0.0.1:" + closedPort() + "/v2/";
+            GateSelector selector = GateSelector.builder()
+                .ejectAfterFailures(1)
+                .ejectDuration(Duration.ofMinutes(1))
+                .build();
+            SmsAero client = client(selector, down, up.url());
+
+            for (int i = 0; i < 10; i++) {
+                client.Balance();
+            }
+
+            assertEquals(10, up.requestCount());
+            GateSelector.Health health = selector.health().get(down);
+            assertTrue(health.isEjected());
+            assertTrue(health.errorRate() > 0);
+            assertArrayEquals(new String[] {up.url(), down}, selector.order(List.of(down, up.url())));
+        }
+    }
+
+    @Test
+    void timedOutGateFailsOver() throws Exception {
+        try (StubGate stuck = StubGate.start().latency(Duration.ofMillis(500)); StubGate up = StubGate.start()) {
+            GateSelector selector = GateSelector.builder().ejectAfterFailures(1).build();
+            SmsAero client = client(selector, stuck.url(), up.url())
+                .with(RequestOptions.builder().timeout(Duration.ofMillis(100)).build());
+
+            assertNotNull(client.Balance());
+            assertNotNull(client.Balance());
+
+            assertEquals(1, stuck.requestCount());
+            assertEquals(2, up.requestCount());
+            assertTrue(selector.health().get(stuck.url()).isEjected());
+        }
+    }
+
+    @Test
+    void ejectedGateIsReadmittedAfterSuccessfulProbe() throws Exception {
+        try (StubGate flaky = StubGate.start().failWith(503);
+             StubGate backup = StubGate.start().latency(Duration.ofMillis(30))) {
+            GateSelector selector = GateSelector.builder()
+                .initialLatency(Duration.ZERO)
+                .ejectAfterFailures(1)
+                .ejectDuration(Duration.ofMillis(50))
+                .maxEjectDuration(Duration.ofMillis(100))
+                .build();
+            SmsAero client = client(selector, flaky.url(), backup.url());
+
+            assertThrows(IOException.class, client::Balance);
+            client.Balance();
+            assertEquals(1, backup.requestCount());
+
+            Thread.sleep(300);
+            assertTrue(selector.health().get(flaky.url()).isEjected(), "failed probes keep the gate ejected");
+            assertTrue(flaky.requestCount() > 1, "gate was not re-probed");
+
+            flaky.failWith(0);
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (selector.health().get(flaky.url()).isEjected() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertFalse(selector.health().get(flaky.url()).isEjected());
+
+            int before = flaky.requestCount();
+            client.Balance();
+            assertEquals(before + 1, flaky.requestCount());
+        }
+    }
+
+    @Test
+    void builderRejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> GateSelector.builder().alpha(0));
+        assertThrows(IllegalArgumentException.class, () -> GateSelector.builder().alpha(1.5));
+        assertThrows(IllegalArgumentException.class, () -> GateSelector.builder().ejectAfterFailures(0));
+        assertThrows(IllegalArgumentException.class, () -> GateSelector.builder().ejectDuration(null));
+        assertThrows(IllegalArgumentException.class,
+            () -> SmsAero.builder("e@e.com", "key").gateSelector(null));
+    }
+
+    private static SmsAero client(GateSelector selector, String... gates) {
+        return SmsAero.builder("e@e.com", "key")
+            .gateUrls(List.of(gates))
+            .gateSelector(selector)
+            .build();
+    }
+
+    private static int closedPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package ru.smsaero;
+
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HedgingTest {
+    private static final String GATE_A = "https://a.example/v2/";
+    private static final String GATE_B = "https://b.example/v2/";
+
+    @Test
+    void slowPrimaryIsHedgedAndCancelled() throws Exception {
+        ScriptedTransport transport = new ScriptedTransport();
+        transport.hangOn("a.example");
+        SmsAero client = client(transport, HedgingPolicy.builder().initialDelay(Duration.ofMillis(50)).build());
+
+        JSONObject response = client.async().SendSms("70000000000", "Code 1234", "Sign").get(5, TimeUnit.SECONDS);
+
+        assertEquals("b.example", ((JSONObject) response.get("data")).get("gate"));
+        assertEquals(2, transport.requests.size());
+        String key = transport.requests.get(0).headers().get("Idempotency-Key");
+        assertNotNull(key);
+        assertEquals(key, transport.requests.get(1).headers().get("Idempotency-Key"));
+        assertTrue(transport.exchanges.get(0).isCancelled(), "losing request was not cancelled");
+    }
+
+    @Test
+    void fastPrimaryIsNotHedged() throws Exception {
+        ScriptedTransport transport = new ScriptedTransport();
+        SmsAero client = client(transport, HedgingPolicy.builder().initialDelay(Duration.ofMillis(200)).build());
+
+        client.SendSms("70000000000", "Code 1234", "Sign");
+        Thread.sleep(300);
+
+        assertEquals(1, transport.requests.size());
+        assertTrue(transport.requests.get(0).url().startsWith(GATE_A));
+    }
+
+    @Test
+    void explicitIdempotencyKeyIsReused() throws Exception {
+        ScriptedTransport transport = new ScriptedTransport();
+        transport.hangOn("a.example");
+        SmsAero client = client(transport, HedgingPolicy.builder().initialDelay(Duration.ZERO).build())
+            .with(RequestOptions.builder().idempotencyKey("otp-42").build());
+
+        client.SendSms("70000000000", "Code 1234", "Sign");
+
+        assertEquals(2, transport.requests.size());
+        for (Transport.Request request : transport.requests) {
+            assertEquals("otp-42", request.headers().get("Idempotency-Key"));
+        }
+    }
+
+    @Test
+    void otherMethodsAreNotHedged() throws Exception {
+        ScriptedTransport transport = new ScriptedTransport();
+        transport.hangOn("a.example");
+        SmsAero client = client(transport, HedgingPolicy.builder().initialDelay(Duration.ZERO).build());
+
+        CompletableFuture<JSONObject> balance = client.async().Balance();
+        Thread.sleep(100);
+
+        assertFalse(balance.isDone());
+        assertEquals(1, transport.requests.size());
+        assertNull(transport.requests.get(0).headers().get("Idempotency-Key"));
+    }
+
+    @Test
+    void errorBeforeHedgeDelayFailsTheCall() {
+        Transport failing = request -> new Transport.Response(400,
+            "{\"success\":false,\"message\":\"Invalid number\"}".getBytes(StandardCharsets.UTF_8), Map.of());
+        SmsAero client = client(failing, HedgingPolicy.builder().initialDelay(Duration.ofSeconds(5)).build());
+
+        ExecutionException e = assertThrows(ExecutionException.class, () ->
+            client.async().SendSms("70000000000", "Code 1234", "Sign").get(1, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, e.getCause());
+        assertEquals("Invalid number", e.getCause().getMessage());
+    }
+
+    @Test
+    void delayFollowsObservedPercentile() {
+        HedgingPolicy policy = HedgingPolicy.builder()
+            .initialDelay(Duration.ofSeconds(1))
+            .minSamples(10)
+            .minDelay(Duration.ZERO)
+            .build();
+        assertEquals(Duration.ofSeconds(1), policy.delay("sms/send"));
+        assertNull(policy.delay("balance"));
+
+        for (int i = 1; i <= 100; i++) {
+            policy.recordLatency("sms/send", TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        long p95 = policy.delay("sms/send").toMillis();
+        assertTrue(p95 >= 95 && p95 <= 107, "p95 was " + p95 + " ms");
+    }
+
+    @Test
+    void builderRejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> HedgingPolicy.builder().percentile(0));
+        assertThrows(IllegalArgumentException.class, () -> HedgingPolicy.builder().methods());
+        assertThrows(IllegalArgumentException.class, () -> HedgingPolicy.builder().minSamples(0));
+        assertThrows(IllegalArgumentException.class, () -> HedgingPolicy.builder().initialDelay(null));
+    }
+
+    private static SmsAero client(Transport transport, HedgingPolicy policy) {
+        return SmsAero.builder("e@e.com", "key")
+            .transport(transport)
+            .gateUrls(List.of(GATE_A, GATE_B))
+            .hedging(policy)
+            .build();
+    }
+
+    /** Answers immediately with the gate host in {@code data.gate}, or never for hosts set to hang. */
+    private static final class ScriptedTransport implements Transport {
+        final List<Request> requests = new CopyOnWriteArrayList<>();
+        final List<CompletableFuture<Response>> exchanges = new CopyOnWriteArrayList<>();
+        private volatile String hangingHost = "";
+
+        void hangOn(String host) {
+            this.hangingHost = host;
+        }
+
+        @Override
+        public Response post(Request request) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<Response> postAsync(Request request) {
+            requests.add(request);
+            CompletableFuture<Response> exchange = new CompletableFuture<>();
+            exchanges.add(exchange);
+            String host = request.url().substring("https://".length(), request.url().indexOf("/v2/"));
+            if (!host.equals(hangingHost)) {
+                String body = "{\"success\":true,\"data\":{\"gate\":\"" + host + "\"}}";
+                exchange.complete(new Response(200, body.getBytes(StandardCharsets.UTF_8), Map.of()));
+            }
+            return exchange;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package ru.smsaero;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyIndexTest {
+
+    @Test
+    void concurrentAndRepeatedDuplicatesMakeOneRequest() throws Exception {
+        try (StubGate gate = StubGate.start().latency(Duration.ofMillis(100))) {
+            // A long window, so that the calls cannot straddle a window boundary.
+            IdempotencyIndex index = IdempotencyIndex.builder().window(Duration.ofDays(365)).build();
+            SmsAero client = gate.client(builder -> builder.idempotencyIndex(index));
+            List<CompletableFuture<SmsResult>> sends = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                sends.add(client.async().typed().SendSms("79000000001", "Your code is 1234", "SMS Aero"));
+            }
+            long id = sends.get(0).join().id();
+            for (CompletableFuture<SmsResult> send : sends) {
+                assertEquals(id, send.join().id());
+            }
+            assertEquals(id, client.typed().SendSms("79000000001", "Your code is 1234", "SMS Aero").id());
+            assertNotEquals(id, client.typed().SendSms("79000000001", "Your code is 5678", "SMS Aero").id());
+
+            assertEquals(2, gate.requestCount("sms/send"));
+            assertEquals(10, index.suppressed());
+            assertEquals(2, index.size());
+        }
+    }
+
+    @Test
+    void callerKeysCollapseCallsAndFailuresAreNotRemembered() throws Exception {
+        try (StubGate gate = StubGate.start().failWith(500)) {
+            SmsAero client = gate.client(builder -> builder.idempotencyIndex(IdempotencyIndex.create()));
+            SmsAero keyed = client.with(RequestOptions.builder().idempotencyKey("order-17").build());
+
+            assertThrows(Exception.class, () -> keyed.SendSms("79000000001", "a", "SMS Aero"));
+            gate.failWith(0);
+            long id = keyed.typed().SendSms("79000000001", "a", "SMS Aero").id();
+
+            assertEquals(id, keyed.typed().SendSms("79000000001", "b", "SMS Aero").id());
+            assertEquals(2, gate.requestCount("sms/send"));
+        }
+    }
+
+    @Test
+    void dropsExpiredAndOldestKeys() throws Exception {
+        try (StubGate gate = StubGate.start()) {
+            IdempotencyIndex index = IdempotencyIndex.builder().maxSize(2).ttl(Duration.ofMillis(200)).build();
+            SmsAero client = gate.client(builder -> builder.idempotencyIndex(index));
+            for (String text : List.of("a", "b", "c", "a")) {
+                client.SendSms("79000000001", text, "SMS Aero");
+            }
+            assertEquals(4, gate.requestCount("sms/send"));
+            assertEquals(2, index.size());
+
+            client.SendSms("79000000001", "c", "SMS Aero");
+            Thread.sleep(250);
+            client.SendSms("79000000001", "c", "SMS Aero");
+            assertEquals(5, gate.requestCount("sms/send"));
+            assertEquals(1, index.size());
+        }
+    }
+
+    @Test
+    void failoverKeepsTheKeyOfTheCall() throws Exception {
+        List<Transport.Request> requests = new CopyOnWriteArrayList<>();
+        Transport transport = request -> {
+            requests.add(request);
+            if (request.url().startsWith("https://first/")) {
+                throw new SocketTimeoutException("Read timed out");
+            }
+            return new Transport.Response(200,
+                "{\"success\":true,\"data\":{\"id\":42}}".getBytes(StandardCharsets.UTF_8), Map.of());
+        };
+        SmsAero client = SmsAero.builder("e@e.com", "key")
+            .transport(transport)
+            .gateUrls(List.of("https://first/v2/", "https://second/v2/"))
+            .retryPolicy(RetryPolicy.create())
+            .build();
+
+        client.SendSms("79000000001", "a", "SMS Aero");
+        client.SendSms("79000000001", "a", "SMS Aero");
+        client.Balance();
+
+        List<String> sendKeys = new ArrayList<>();
+        for (Transport.Request request : requests) {
+            if (request.url().endsWith("sms/send")) {
+                sendKeys.add(request.headers().get("Idempotency-Key"));
+            } else {
+                assertNull(request.headers().get("Idempotency-Key"));
+            }
+        }
+        assertTrue(requests.get(0).url().startsWith("https://first/"));
+        assertNotNull(sendKeys.get(0));
+        assertEquals(sendKeys.get(0), sendKeys.get(1));
+        assertEquals(2, sendKeys.stream().distinct().count());
+    }
+
+    @Test
+    void sendsCarryNoKeyUnlessAFeatureNeedsOne() throws Exception {
+        List<Transport.Request> requests = new CopyOnWriteArrayList<>();
+        Transport transport = request -> {
+            requests.add(request);
+            return new Transport.Response(200,
+                "{\"success\":true,\"data\":{\"id\":42}}".getBytes(StandardCharsets.UTF_8), Map.of());
+        };
+        SmsAero client = SmsAero.builder("e@e.com", "key").transport(transport).build();
+
+        client.SendSms("79000000001", "a", "SMS Aero");
+        client.with(RequestOptions.builder().idempotencyKey("order-17").build())
+            .SendSms("79000000001", "a", "SMS Aero");
+
+        assertNull(requests.get(0).headers().get("Idempotency-Key"));
+        assertEquals("order-17", requests.get(1).headers().get("Idempotency-Key"));
+    }
+
+    @Test
+    void rejectsSharingAndInvalidSettings() {
+        IdempotencyIndex index = IdempotencyIndex.create();
+        SmsAero.builder("e@e.com", "key").idempotencyIndex(index).build();
+
+        assertThrows(IllegalArgumentException.class,
+            () -> SmsAero.builder("e@e.com", "key").idempotencyIndex(index).build());
+        assertThrows(IllegalArgumentException.class, () -> IdempotencyIndex.builder().window(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> IdempotencyIndex.builder().maxSize(0));
+    }
+}
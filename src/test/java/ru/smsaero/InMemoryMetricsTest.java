@@ -0,0 +1,84 @@
+package ru.smsaero;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import javax.net.ssl.SSLHandshakeException;
+
+import org.json.simple.JSONObject;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryMetricsTest {
+
+    @Test
+    void recordsCallsExchangesAndErrors() throws Exception {
+        try (StubGate gate = StubGate.start().latency(Duration.ofMillis(20))) {
+            InMemoryMetrics metrics = InMemoryMetrics.create();
+            SmsAero client = gate.client(builder -> builder.metrics(metrics));
+            for (int i = 0; i < 5; i++) {
+                client.Balance();
+            }
+            gate.failNext(503, 1);
+            assertThrows(ServerErrorException.class, client::Balance);
+
+            assertEquals(5, metrics.successes("balance"));
+            assertEquals(Map.of("ServerErrorException", 1L), metrics.errors("balance"));
+            assertEquals(0, metrics.inFlight("balance"));
+            assertTrue(metrics.latency("balance", 0.5).toMillis() >= 20);
+            assertEquals(Map.of(gate.url(), 6L), metrics.gateExchanges());
+            assertTrue(metrics.bytesSent() > 0);
+            assertTrue(metrics.bytesReceived() > 0);
+            assertEquals(List.of("balance"), List.copyOf(metrics.methods()));
+        }
+    }
+
+    @Test
+    void countsCallsInFlight() throws Exception {
+        try (StubGate gate = StubGate.start().latency(Duration.ofMillis(200))) {
+            InMemoryMetrics metrics = InMemoryMetrics.create();
+            CompletableFuture<JSONObject> balance = gate.client(builder -> builder.metrics(metrics)).async().Balance();
+
+            assertEquals(1, metrics.inFlight("balance"));
+            balance.get();
+            assertEquals(0, metrics.inFlight("balance"));
+            assertEquals(1, metrics.successes("balance"));
+        }
+    }
+
+    @Test
+    void countsFailoversFallbacksAndRetries() throws Exception {
+        // Either gate order makes one failover and one plain HTTP fallback before the call fails.
+        Transport transport = request -> {
+            if (request.url().startsWith("https://second/")) {
+                throw new SSLHandshakeException("Handshake failed");
+            }
+            throw new SocketTimeoutException("Read timed out");
+        };
+        InMemoryMetrics metrics = InMemoryMetrics.create();
+        SmsAero client = SmsAero.builder("e@e.com", "key")
+            .transport(transport)
+            .gateUrls(List.of("https://first/v2/", "https://second/v2/"))
+            .metrics(metrics)
+            .build();
+        assertThrows(IOException.class, client::Balance);
+
+        assertEquals(1, metrics.failovers());
+        assertEquals(1, metrics.plainHttpFallbacks());
+        assertEquals(3, metrics.gateExchanges().values().stream().mapToLong(Long::longValue).sum());
+        assertEquals(List.of(1L), List.copyOf(metrics.errors("balance").values()));
+
+        try (StubGate gate = StubGate.start().failNext(503, 2)) {
+            RetryPolicy retries = RetryPolicy.builder().backoff(Duration.ofMillis(10), Duration.ofMillis(20)).build();
+            gate.client(builder -> builder.metrics(metrics).retryPolicy(retries)).Balance();
+            assertEquals(2, metrics.retries());
+            assertEquals(1, metrics.successes("balance"));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package ru.smsaero;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonReaderTest {
+
+    @Test
+    void readsSelectedFieldsAndSkipsTheRest() throws Exception {
+        JsonReader reader = reader("{\"skip\": {\"a\": [1, {\"b\": \"}\"}], \"c\": null}, \"id\": 42, "
+            + "\"tail\": [true, false, -1.5e3], \"name\": \"x\"}");
+        JsonReader.Names names = JsonReader.Names.of("id", "name");
+        long id = 0;
+        String name = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.selectName(names)) {
+                case 0:
+                    id = reader.nextLong();
+                    break;
+                case 1:
+                    name = reader.nextString();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        assertEquals(42, id);
+        assertEquals("x", name);
+        assertEquals(JsonReader.Token.END_DOCUMENT, reader.peek());
+    }
+
+    @Test
+    void decodesEscapesAndUnicode() throws Exception {
+        JsonReader reader = reader("[\"Привет\", \"a\\\"b\\\\c\\/d\\n\", \"\\u0041\\ud83d\\ude00\"]");
+        reader.beginArray();
+        assertTrue(reader.hasNext());
+        assertEquals("Привет", reader.nextString());
+        assertTrue(reader.hasNext());
+        assertEquals("a\"b\\c/d\n", reader.nextString());
+        assertTrue(reader.hasNext());
+        assertEquals("A😀", reader.nextString());
+        assertFalse(reader.hasNext());
+        reader.endArray();
+    }
+
+    @Test
+    void readsNumbersInAllForms() throws Exception {
+        JsonReader reader = reader("[5.49, \"1.00\", -0.5, 1e2, \"12\", null, \"\", 9223372036854775807, "
+            + "0.1, 123456789.123]");
+        reader.beginArray();
+        reader.hasNext();
+        assertEquals(5.49, reader.nextDouble());
+        reader.hasNext();
+        assertEquals(1.0, reader.nextDouble());
+        reader.hasNext();
+        assertEquals(-0.5, reader.nextDouble());
+        reader.hasNext();
+        assertEquals(100.0, reader.nextDouble());
+        reader.hasNext();
+        assertEquals(12, reader.nextInt());
+        reader.hasNext();
+        assertEquals(0, reader.nextLong());
+        reader.hasNext();
+        assertEquals(0, reader.nextLong());
+        reader.hasNext();
+        assertEquals(Long.MAX_VALUE, reader.nextLong());
+        reader.hasNext();
+        assertEquals(0.1, reader.nextDouble());
+        reader.hasNext();
+        assertEquals(123456789.123, reader.nextDouble());
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    void matchesEscapedNames() throws Exception {
+        JsonReader reader = reader("{\"i\\u0064\": 7}");
+        reader.beginObject();
+        reader.hasNext();
+        assertEquals(0, reader.selectName(JsonReader.Names.of("id")));
+        assertEquals(7, reader.nextLong());
+    }
+
+    @Test
+    void returnsRawTextOfAnyValue() throws Exception {
+        JsonReader reader = reader("{\"reason\": {\"number\": [\"invalid\"]}}");
+        reader.beginObject();
+        reader.hasNext();
+        reader.nextName();
+        assertEquals("{\"number\": [\"invalid\"]}", reader.nextRaw());
+    }
+
+    @Test
+    void readsTreeLikeJsonSimple() throws Exception {
+        String json = "{\"id\": 7, \"name\": \"Группа\", \"rate\": 1.5, \"big\": 1e2, \"ok\": true, "
+            + "\"none\": null, \"tags\": [\"a\", 2, {\"b\": false}]}";
+
+        Object tree = reader(json).nextTree();
+
+        assertEquals(new JSONParser().parse(json), tree);
+        assertInstanceOf(Long.class, ((JSONObject) tree).get("id"));
+        assertInstanceOf(Double.class, ((JSONObject) tree).get("big"));
+    }
+
+    @Test
+    void rejectsMalformedInput() {
+        assertThrows(ParseException.class, () -> reader("{\"id\": ").skipValue());
+        assertThrows(ParseException.class, () -> reader("\"unterminated").nextString());
+        assertThrows(ParseException.class, () -> reader("\"abc\"").nextLong());
+        assertThrows(ParseException.class, () -> reader("x").peek());
+    }
+
+    private static JsonReader reader(String json) {
+        return new JsonReader(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
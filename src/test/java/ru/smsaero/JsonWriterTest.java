@@ -0,0 +1,61 @@
+package ru.smsaero;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonWriterTest {
+
+    @Test
+    void writesFormAndParams() {
+        Map<String, Object> form = new LinkedHashMap<>();
+        form.put("number", "70000000000");
+        form.put("dateSend", 1719115820L);
+        form.put("flag", true);
+        form.put("none", null);
+
+        byte[] body = JsonWriter.write(form, Map.of("page", "2"));
+
+        assertEquals("{\"number\":\"70000000000\",\"dateSend\":1719115820,\"flag\":true,\"none\":null,\"page\":\"2\"}",
+            new String(body, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void escapesAndEncodesUtf8() throws Exception {
+        String text = "Привет \"мир\" \\ / \n\t\u0001 😀 €";
+        byte[] body = JsonWriter.write(Map.of("text", text), Map.of());
+
+        JSONObject json = (JSONObject) new JSONParser().parse(new String(body, StandardCharsets.UTF_8));
+        assertEquals(text, json.get("text"));
+    }
+
+    @Test
+    void paramsOverrideFormKeys() throws Exception {
+        byte[] body = JsonWriter.write(Map.of("page", "1", "a", "b"), Map.of("page", "5"));
+
+        JSONObject json = (JSONObject) new JSONParser().parse(new String(body, StandardCharsets.UTF_8));
+        assertEquals(2, json.size());
+        assertEquals("5", json.get("page"));
+    }
+
+    @Test
+    void writesEdgeValues() throws Exception {
+        Map<String, Object> form = new LinkedHashMap<>();
+        form.put("min", Long.MIN_VALUE);
+        form.put("neg", -42);
+        form.put("zero", 0L);
+        form.put("list", List.of("x", 1));
+
+        String body = new String(JsonWriter.write(form, Map.of()), StandardCharsets.UTF_8);
+
+        assertEquals("{\"min\":-9223372036854775808,\"neg\":-42,\"zero\":0,\"list\":[\"x\",1]}", body);
+        assertEquals("{}", new String(JsonWriter.write(null, Map.of()), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,142 @@
+package ru.smsaero;
+
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LookupCacheTest {
+
+    @Test
+    void repeatedLookupsAreAnsweredFromTheCache() throws Exception {
+        try (StubGate gate = StubGate.start().latency(Duration.ofMillis(50))) {
+            LookupCache cache = LookupCache.builder().build();
+            SmsAero client = gate.client(builder -> builder.lookupCache(cache));
+            List<CompletableFuture<HlrResult>> checks = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                checks.add(client.typed().async().HlrCheck("79000000001"));
+            }
+            long id = checks.get(0).join().id();
+            for (CompletableFuture<HlrResult> check : checks) {
+                assertEquals(id, check.join().id());
+            }
+            client.NumberOperator("79000000001");
+            JSONObject operator = client.NumberOperator("79000000001");
+            client.HlrCheck("79000000002");
+            client.HlrCheck("+79000000003");
+            client.HlrCheck("+79000000003");
+
+            assertEquals("MegaFon", ((JSONObject) operator.get("data")).get("operator"));
+            assertEquals(4, gate.requestCount("hlr/check"));
+            assertEquals(1, gate.requestCount("number/operator"));
+            assertEquals(5, cache.hits());
+            assertEquals(3, cache.misses());
+            assertEquals(3, cache.size());
+        }
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedAndExpiredEntries() throws Exception {
+        try (StubGate gate = StubGate.start()) {
+            LookupCache cache = LookupCache.builder()
+                .maxSize(16)
+                .ttl("hlr/check", Duration.ofMillis(100))
+                .build();
+            SmsAero client = gate.client(builder -> builder.lookupCache(cache));
+            for (int i = 0; i < 1000; i++) {
+                client.NumberOperator(Long.toString(79000000000L + i));
+            }
+            client.HlrCheck("79000000001");
+            client.HlrCheck("79000000001");
+            Thread.sleep(150);
+            client.HlrCheck("79000000001");
+
+            assertTrue(cache.size() <= 16);
+            assertTrue(cache.evictions() >= 1000 - 16);
+            assertEquals(2, gate.requestCount("hlr/check"));
+            client.NumberOperator("79000000999");
+            assertEquals(1000, gate.requestCount("number/operator"));
+            cache.invalidate("79000000999");
+            client.NumberOperator("79000000999");
+            assertEquals(1001, gate.requestCount("number/operator"));
+        }
+    }
+
+    @Test
+    void survivesRestartsWhenPersisted(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("lookups.bin");
+        try (StubGate gate = StubGate.start()) {
+            try (LookupCache cache = LookupCache.builder().persistTo(file).build()) {
+                SmsAero client = gate.client(builder -> builder.lookupCache(cache));
+                client.HlrCheck("79000000001");
+                client.NumberOperator("79000000002");
+            }
+            LookupCache restored = LookupCache.builder().persistTo(file).build();
+            SmsAero client = gate.client(builder -> builder.lookupCache(restored));
+            client.HlrCheck("79000000001");
+            client.NumberOperator("79000000002");
+
+            assertEquals(2, restored.size());
+            assertEquals(2, restored.hits());
+            assertEquals(1, gate.requestCount("hlr/check"));
+            assertEquals(1, gate.requestCount("number/operator"));
+        }
+
+        Files.write(file, new byte[] {1, 2, 3});
+        assertEquals(0, LookupCache.builder().persistTo(file).build().size());
+    }
+
+    @Test
+    void corruptFileStartsAnEmptyCache(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("lookups.bin");
+        long expiresAt = System.currentTimeMillis() + Duration.ofDays(1).toMillis();
+        for (int[] counts : new int[][] {{2, -1}, {-1, 2}, {2, Integer.MAX_VALUE}}) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeInt(0x534d4c43);
+                out.writeInt(1);
+                out.writeInt(counts[0]);
+                out.writeLong(1L << 56 | 79000000001L);
+                out.writeLong(expiresAt);
+                out.writeInt(2);
+                out.write(new byte[] {'{', '}'});
+                out.writeLong(1L << 56 | 79000000002L);
+                out.writeLong(expiresAt);
+                out.writeInt(counts[1]);
+            }
+            Files.write(file, bytes.toByteArray());
+
+            assertEquals(0, LookupCache.builder().persistTo(file).build().size());
+        }
+    }
+
+    @Test
+    void rejectsSharingAndOtherMethods() {
+        LookupCache cache = LookupCache.builder().build();
+        SmsAero.builder("e@e.com", "key").lookupCache(cache).build();
+
+        assertThrows(IllegalArgumentException.class,
+            () -> SmsAero.builder("e@e.com", "key").lookupCache(cache).build());
+        // A failed build leaves the other components free for the next client.
+        ResponseCache responses = ResponseCache.create();
+        IdempotencyIndex index = IdempotencyIndex.create();
+        assertThrows(IllegalArgumentException.class, () -> SmsAero.builder("e@e.com", "key")
+            .responseCache(responses).lookupCache(cache).idempotencyIndex(index).build());
+        SmsAero.builder("e@e.com", "key").responseCache(responses).idempotencyIndex(index).build();
+        assertThrows(IllegalArgumentException.class,
+            () -> LookupCache.builder().ttl("tariffs", Duration.ofMinutes(1)));
+        assertThrows(IllegalArgumentException.class, () -> LookupCache.builder().maxSize(0));
+        assertEquals(-1, LookupCache.parseNumber("7900000000000000"));
+        assertEquals(79000000001L, LookupCache.parseNumber("79000000001"));
+    }
+}
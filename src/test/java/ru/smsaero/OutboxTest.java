@@ -0,0 +1,181 @@
+package ru.smsaero;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboxTest {
+
+    @Test
+    void sendsEveryAppendedMessageAndDeletesCompletedSegments(@TempDir Path dir) throws Exception {
+        try (StubGate gate = StubGate.start()) {
+            List<Outbox.Result> results = new CopyOnWriteArrayList<>();
+            try (Outbox outbox = Outbox.builder(gate.client(), dir)
+                    .segmentSize(64 << 10)
+                    .onResult(results::add)
+                    .build()) {
+                CompletableFuture<Long> last = null;
+                for (int i = 0; i < 2000; i++) {
+                    last = outbox.append(SmsMessage.of(Long.toString(79000000000L + i), "text " + i, "SMS Aero"));
+                }
+                assertEquals(1999, last.get());
+                awaitSize(results, 2000);
+
+                assertEquals(0, outbox.pending());
+                assertTrue(results.stream().allMatch(Outbox.Result::isSuccess));
+                assertEquals(2000, results.stream().mapToLong(result -> result.sms().id()).distinct().count());
+                assertEquals(2000, gate.requestCount("sms/send"));
+                assertEquals(1, segmentCount(dir));
+            }
+            try (Outbox reopened = Outbox.builder(gate.client(), dir).build()) {
+                assertEquals(0, reopened.pending());
+                assertEquals(2000, reopened.append(SmsMessage.of("79000000000", "again", "SMS Aero")).get());
+            }
+        }
+    }
+
+    @Test
+    void resendsUncheckpointedMessagesAfterRestart(@TempDir Path dir) throws Exception {
+        try (StubGate gate = StubGate.start().latency(Duration.ofMillis(200))) {
+            SmsAero client = gate.client();
+            Outbox crashed = Outbox.builder(client, dir).build();
+            for (int i = 0; i < 5; i++) {
+                crashed.append(SmsMessage.of("7900000000" + i, "text", "SMS Aero")).get();
+            }
+            Thread.sleep(50);
+            // Closed while the sends are in flight: they reach the gate, their checkpoints do not reach the log.
+            crashed.close();
+            Thread.sleep(300);
+
+            List<Outbox.Result> results = new CopyOnWriteArrayList<>();
+            try (Outbox outbox = Outbox.builder(client, dir).onResult(results::add).build()) {
+                awaitSize(results, 5);
+                assertEquals(0, outbox.pending());
+            }
+
+            // The stub gate does not deduplicate by Idempotency-Key, so every message went out twice.
+            assertEquals(10, gate.requestCount("sms/send"));
+            assertEquals(10, client.typed().SmsListAll().stream().count());
+        }
+    }
+
+    @Test
+    void retriesFailuresAndGivesUp(@TempDir Path dir) throws Exception {
+        try (StubGate gate = StubGate.start().failWith(500)) {
+            BlacklistMirror blacklist = BlacklistMirror.create();
+            SmsAero client = gate.client(builder -> builder.blacklistMirror(blacklist));
+            gate.failWith(0);
+            client.BlackListAdd("79000000002");
+            gate.failWith(500);
+            List<Outbox.Result> results = new CopyOnWriteArrayList<>();
+            try (Outbox outbox = Outbox.builder(client, dir)
+                    .maxAttempts(3)
+                    .backoff(Duration.ofMillis(10), Duration.ofMillis(20))
+                    .onResult(results::add)
+                    .build()) {
+                outbox.append(SmsMessage.of("79000000001", "text", "SMS Aero"));
+                outbox.append(SmsMessage.of("79000000002", "text", "SMS Aero"));
+                awaitSize(results, 2);
+            }
+
+            assertEquals(3, gate.requestCount("sms/send"));
+            assertTrue(results.stream().noneMatch(Outbox.Result::isSuccess));
+            assertTrue(results.stream().anyMatch(result -> result.error() instanceof BlacklistedNumberException));
+        }
+    }
+
+    @Test
+    void recoversFromATornRecord(@TempDir Path dir) throws Exception {
+        try (StubGate gate = StubGate.start().failWith(500)) {
+            SmsAero client = gate.client();
+            Outbox.Builder builder = Outbox.builder(client, dir).backoff(Duration.ofHours(1), Duration.ofHours(1));
+            try (Outbox outbox = builder.build()) {
+                for (int i = 0; i < 3; i++) {
+                    outbox.append(SmsMessage.of("7900000000" + i, "text", "SMS Aero")).get();
+                }
+            }
+            Path segment;
+            try (Stream<Path> files = Files.list(dir)) {
+                segment = files.findFirst().orElseThrow();
+            }
+            byte[] bytes = Files.readAllBytes(segment);
+            int end = bytes.length;
+            while (bytes[end - 1] == 0) {
+                end--;
+            }
+            bytes[end - 1] ^= 1;
+            Files.write(segment, bytes);
+
+            try (Outbox outbox = builder.build()) {
+                assertEquals(2, outbox.pending());
+                outbox.append(SmsMessage.of("79000000009", "text", "SMS Aero")).get();
+            }
+            try (Outbox outbox = builder.build()) {
+                assertEquals(3, outbox.pending());
+            }
+        }
+    }
+
+    @Test
+    void refusesToDropMessagesAfterACorruptRecordInAnOlderSegment(@TempDir Path dir) throws Exception {
+        try (StubGate gate = StubGate.start().failWith(500)) {
+            SmsAero client = gate.client();
+            Outbox.Builder builder = Outbox.builder(client, dir)
+                .segmentSize(64 << 10)
+                .backoff(Duration.ofHours(1), Duration.ofHours(1));
+            String text = "x".repeat(2000);
+            try (Outbox outbox = builder.build()) {
+                for (int i = 0; i < 50; i++) {
+                    outbox.append(SmsMessage.of("79000000000", text, "SMS Aero")).get();
+                }
+            }
+            assertEquals(2, segmentCount(dir));
+            Path first;
+            try (Stream<Path> files = Files.list(dir)) {
+                first = files.sorted().findFirst().orElseThrow();
+            }
+            byte[] bytes = Files.readAllBytes(first);
+            bytes[1000] ^= 1;
+            Files.write(first, bytes);
+
+            IOException e = assertThrows(IOException.class, builder::build);
+            assertTrue(e.getMessage().contains(first.toString()), e.getMessage());
+        }
+    }
+
+    @Test
+    void rejectsInvalidSettingsAndAppendsAfterClose(@TempDir Path dir) throws Exception {
+        SmsAero client = SmsAero.builder("e@e.com", "key")
+            .gateUrls(List.of("http://127.0.0.1:1/v2/"))
+            .build();
+        assertThrows(IllegalArgumentException.class, () -> Outbox.builder(client, dir).segmentSize(1024));
+        assertThrows(IllegalArgumentException.class,
+            () -> Outbox.builder(client, dir).backoff(Duration.ofSeconds(2), Duration.ofSeconds(1)));
+        Outbox outbox = Outbox.builder(client, dir).build();
+        outbox.close();
+        assertThrows(IllegalStateException.class, () -> outbox.append(SmsMessage.of("79000000001", "a", "b")));
+    }
+
+    private static long segmentCount(Path dir) throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    private static void awaitSize(List<Outbox.Result> results, int size) throws InterruptedException {
+        for (int i = 0; i < 500 && results.size() < size; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(size, results.size());
+    }
+}
@@ -0,0 +1,168 @@
+package ru.smsaero;
+
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaginationTest {
+
+    @Test
+    void iteratesAllPagesLazily() throws Exception {
+        try (StubGate gate = StubGate.start().pageSize(2)) {
+            SmsAero client = gate.client();
+            for (int i = 0; i < 5; i++) {
+                client.SendSms("7900000000" + i, "Hello " + i, "Sign");
+            }
+
+            List<Long> ids = new ArrayList<>();
+            for (SmsResult sms : client.typed().SmsListAll().prefetch(0)) {
+                ids.add(sms.id());
+            }
+
+            assertEquals(List.of(1L, 2L, 3L, 4L, 5L), ids);
+            assertEquals(3, gate.requestCount("sms/list"));
+        }
+    }
+
+    @Test
+    void prefetchStaysWithinKnownPages() throws Exception {
+        try (StubGate gate = StubGate.start().pageSize(2)) {
+            SmsAero client = gate.client();
+            for (int i = 0; i < 5; i++) {
+                client.BlackListAdd("7900000000" + i);
+            }
+
+            Iterator<JSONObject> items =
+                client.typed().BlackListListAll().prefetch(Paginator.MAX_PREFETCH).iterator();
+            assertTrue(items.hasNext());
+            awaitRequests(gate, "blacklist/list", 3);
+            assertEquals("79000000000", items.next().get("number"));
+
+            try (Stream<JSONObject> stream = client.typed().BlackListListAll().stream()) {
+                assertEquals(5, stream.count());
+            }
+            Thread.sleep(50);
+            assertEquals(6, gate.requestCount("blacklist/list"));
+        }
+    }
+
+    @Test
+    void streamStopsFetchingWhenShortCircuited() throws Exception {
+        try (StubGate gate = StubGate.start().pageSize(2)) {
+            SmsAero client = gate.client();
+            for (int i = 0; i < 10; i++) {
+                client.ContactAdd("7900000000" + i);
+            }
+
+            List<String> numbers;
+            try (Stream<JSONObject> contacts = client.typed().ContactListAll().prefetch(0).stream()) {
+                numbers = contacts.limit(3).map(c -> (String) c.get("number")).collect(Collectors.toList());
+            }
+
+            assertEquals(List.of("79000000000", "79000000001", "79000000002"), numbers);
+            assertEquals(2, gate.requestCount("contact/list"));
+        }
+    }
+
+    @Test
+    void publisherHonoursDemand() throws Exception {
+        try (StubGate gate = StubGate.start().pageSize(2)) {
+            SmsAero client = gate.client();
+            for (int i = 0; i < 5; i++) {
+                client.GroupAdd("group" + i);
+            }
+            RecordingSubscriber subscriber = new RecordingSubscriber();
+
+            client.typed().GroupListAll().publisher().subscribe(subscriber);
+            subscriber.subscription.request(3);
+            awaitItems(subscriber, 3);
+            Thread.sleep(50);
+
+            assertEquals(3, subscriber.items.size());
+            assertFalse(subscriber.done.isDone());
+            subscriber.subscription.request(Long.MAX_VALUE);
+            subscriber.done.get(5, TimeUnit.SECONDS);
+            assertEquals(5, subscriber.items.size());
+            assertEquals("group4", subscriber.items.get(4).get("name"));
+        }
+    }
+
+    @Test
+    void failuresSurfaceFromIteratorAndPublisher() throws Exception {
+        try (StubGate gate = StubGate.start().failWith(400)) {
+            SmsAero client = gate.client();
+
+            assertThrows(UncheckedIOException.class, () -> client.typed().SignListAll().iterator().hasNext());
+
+            RecordingSubscriber subscriber = new RecordingSubscriber();
+            client.typed().ViberListAll().publisher().subscribe(subscriber);
+            subscriber.subscription.request(1);
+            Exception e = assertThrows(Exception.class, () -> subscriber.done.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IOException.class, e.getCause());
+            assertThrows(IllegalArgumentException.class, () -> client.typed().SmsListAll().prefetch(-1));
+        }
+    }
+
+    @Test
+    void fetchesOnlyTheFirstPageOfAnEmptyList() throws Exception {
+        try (StubGate gate = StubGate.start()) {
+            SmsAero client = gate.client();
+
+            assertFalse(client.typed().SmsListAll().iterator().hasNext());
+            assertEquals(1, gate.requestCount("sms/list"));
+        }
+    }
+
+    private static void awaitRequests(StubGate gate, String method, int count) throws InterruptedException {
+        for (int i = 0; i < 100 && gate.requestCount(method) < count; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, gate.requestCount(method));
+    }
+
+    private static void awaitItems(RecordingSubscriber subscriber, int count) throws InterruptedException {
+        for (int i = 0; i < 100 && subscriber.items.size() < count; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    /** Collects items and completes {@link #done} on completion or failure. */
+    private static final class RecordingSubscriber implements Flow.Subscriber<JSONObject> {
+        final List<JSONObject> items = new CopyOnWriteArrayList<>();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        volatile Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(JSONObject item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            done.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            done.complete(null);
+        }
+    }
+}
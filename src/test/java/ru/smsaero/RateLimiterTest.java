@@ -0,0 +1,114 @@
+package ru.smsaero;
+
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+
+    @Test
+    void burstIsAllowedThenLimited() {
+        RateLimiter limiter = RateLimiter.builder().limit("sms/send", 1, 3).build();
+        assertTrue(limiter.tryAcquire("sms/send"));
+        assertTrue(limiter.tryAcquire("sms/send"));
+        assertTrue(limiter.tryAcquire("sms/send"));
+        assertFalse(limiter.tryAcquire("sms/send"));
+    }
+
+    @Test
+    void methodsWithoutLimitUseDefaultBucketOrAreUnlimited() {
+        RateLimiter limited = RateLimiter.builder().defaultLimit(1, 1).build();
+        assertTrue(limited.tryAcquire("balance"));
+        assertFalse(limited.tryAcquire("tariffs"));
+
+        RateLimiter unlimited = RateLimiter.builder().limit("hlr/check", 1, 1).build();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(unlimited.tryAcquire("balance"));
+        }
+    }
+
+    @Test
+    void failFastRejectsWithoutNetworkIo() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        RateLimiter limiter = RateLimiter.builder().limit("hlr/check", 1, 2).build();
+        SmsAero client = SmsAero.builder("e@e.com", "key").transport(ok(calls)).rateLimiter(limiter).build();
+
+        client.HlrCheck("70000000000");
+        client.HlrCheck("70000000000");
+        RateLimitExceededException e = assertThrows(RateLimitExceededException.class, () ->
+            client.HlrCheck("70000000000"));
+
+        assertEquals("hlr/check", e.getMethod());
+        assertEquals(2, calls.get());
+        client.Balance();
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void waitingCallsAreSpacedOut() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        RateLimiter limiter = RateLimiter.builder()
+            .limit("sms/testsend", 20, 1)
+            .maxWait(Duration.ofSeconds(5))
+            .build();
+        SmsAero client = SmsAero.builder("e@e.com", "key").transport(ok(calls)).rateLimiter(limiter).build();
+        client.EnableTestMode();
+
+        long start = System.nanoTime();
+        List<CompletableFuture<JSONObject>> futures = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            futures.add(client.async().SendSms("70000000000", "text", "Sign"));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals(6, calls.get());
+        assertTrue(elapsedMs >= 200, "6 calls at 20/s took only " + elapsedMs + " ms");
+    }
+
+    @Test
+    void limiterIsSharedBetweenClients() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        RateLimiter limiter = RateLimiter.builder().defaultLimit(1, 1).build();
+        SmsAero first = SmsAero.builder("e@e.com", "key").transport(ok(calls)).rateLimiter(limiter).build();
+        SmsAero second = SmsAero.builder("e@e.com", "key").transport(ok(calls)).rateLimiter(limiter).build();
+
+        first.Balance();
+        assertThrows(RateLimitExceededException.class, second::Balance);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void gateTooManyRequestsIsTyped() {
+        Transport tooMany = request -> new Transport.Response(429, new byte[0], Map.of());
+        SmsAero client = new SmsAero("e@e.com", "key", tooMany);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> client.async().Balance().get());
+        assertInstanceOf(RateLimitExceededException.class, e.getCause());
+    }
+
+    @Test
+    void builderRejectsInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> RateLimiter.builder().defaultLimit(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> RateLimiter.builder().limit("sms/send", 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> RateLimiter.builder().maxWait(Duration.ofSeconds(-1)));
+    }
+
+    private static Transport ok(AtomicInteger calls) {
+        return request -> {
+            calls.incrementAndGet();
+            return new Transport.Response(200, "{\"success\":true}".getBytes(StandardCharsets.UTF_8), Map.of());
+        };
+    }
+}
@@ -0,0 +1,145 @@
+package ru.smsaero;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestListenerTest {
+
+    @Test
+    void reportsEveryPhaseOfACallInOrder() throws Exception {
+        try (StubGate gate = StubGate.start()) {
+            Recorder recorder = new Recorder();
+            SmsAero client = client(List.of(gate.url()), recorder, HttpClientTransport.create());
+            client.Balance();
+            client.Balance();
+
+            assertEquals(List.of("start balance", "gate " + gate.url(), "first byte", "response 200",
+                "parsed balance", "finish balance null"), recorder.names(0));
+            assertNotEquals(recorder.events.get(0).callId, recorder.events.get(6).callId);
+            for (int i = 1; i < 6; i++) {
+                assertEquals(recorder.events.get(0).callId, recorder.events.get(i).callId);
+                assertTrue(recorder.events.get(i).nanoTime >= recorder.events.get(i - 1).nanoTime);
+            }
+        }
+    }
+
+    @Test
+    void reportsConnectionsOfTransportsThatSeeThem() throws Exception {
+        try (StubGate gate = StubGate.start()) {
+            Recorder recorder = new Recorder();
+            client(List.of(gate.url()), recorder, new UrlConnectionTransport()).Balance();
+
+            assertEquals(List.of("start balance", "gate " + gate.url(), "connected", "first byte", "response 200",
+                "parsed balance", "finish balance null"), recorder.names(0));
+        }
+    }
+
+    @Test
+    void reportsFailoversUnderTheCallersCorrelationId() throws Exception {
+        try (StubGate gate = StubGate.start()) {
+            Recorder recorder = new Recorder();
+            String dead = "http://127.0.0.1:1/v2/";
+            client(List.of(dead, gate.url()), recorder, HttpClientTransport.create())
+                .with(RequestOptions.builder().correlationId("order-17").build())
+                .Balance();
+
+            List<String> names = recorder.names(0);
+            assertEquals(List.of("start balance", "gate " + dead, "failover " + dead, "gate " + gate.url()),
+                names.subList(0, 4));
+            assertEquals("finish balance null", names.get(names.size() - 1));
+            assertTrue(recorder.events.stream().allMatch(event -> event.callId.equals("order-17")));
+        }
+    }
+
+    @Test
+    void reportsRateLimitedResponses() throws Exception {
+        try (StubGate gate = StubGate.start().rateLimit(1)) {
+            Recorder recorder = new Recorder();
+            SmsAero client = client(List.of(gate.url()), recorder, HttpClientTransport.create());
+            client.Balance();
+            assertThrows(RateLimitExceededException.class, client::Balance);
+
+            List<String> names = recorder.names(1);
+            assertEquals(List.of("start balance", "gate " + gate.url(), "first byte", "response 429"),
+                names.subList(0, 4));
+            assertTrue(names.get(4).startsWith("finish balance ru.smsaero.RateLimitExceededException"));
+        }
+    }
+
+    private static SmsAero client(List<String> gateUrls, RequestListener listener, Transport transport) {
+        return SmsAero.builder("e@e.com", "key")
+            .transport(transport)
+            .gateUrls(gateUrls)
+            .listener(listener)
+            .build();
+    }
+
+    private static final class Event {
+        final String name;
+        final String callId;
+        final long nanoTime;
+
+        Event(String name, String callId, long nanoTime) {
+            this.name = name;
+            this.callId = callId;
+            this.nanoTime = nanoTime;
+        }
+    }
+
+    private static final class Recorder implements RequestListener {
+        final List<Event> events = new CopyOnWriteArrayList<>();
+
+        /** @return names of the events of the call that started {@code index}-th */
+        List<String> names(int index) {
+            String callId = events.stream().filter(event -> event.name.startsWith("start "))
+                .skip(index).findFirst().orElseThrow().callId;
+            return events.stream().filter(event -> event.callId.equals(callId))
+                .map(event -> event.name).collect(Collectors.toList());
+        }
+
+        @Override
+        public void onStart(String callId, String method, long nanoTime) {
+            events.add(new Event("start " + method, callId, nanoTime));
+        }
+
+        @Override
+        public void onGateChosen(String callId, String method, String gate, long nanoTime) {
+            events.add(new Event("gate " + gate, callId, nanoTime));
+        }
+
+        @Override
+        public void onConnected(String callId, String gate, long nanoTime) {
+            events.add(new Event("connected", callId, nanoTime));
+        }
+
+        @Override
+        public void onFirstByte(String callId, String gate, long nanoTime) {
+            events.add(new Event("first byte", callId, nanoTime));
+        }
+
+        @Override
+        public void onResponse(String callId, String gate, int statusCode, long nanoTime) {
+            events.add(new Event("response " + statusCode, callId, nanoTime));
+        }
+
+        @Override
+        public void onBodyParsed(String callId, String method, long nanoTime) {
+            events.add(new Event("parsed " + method, callId, nanoTime));
+        }
+
+        @Override
+        public void onFailover(String callId, String method, String gate, Throwable error, long nanoTime) {
+            events.add(new Event("failover " + gate, callId, nanoTime));
+        }
+
+        @Override
+        public void onFinish(String callId, String method, Throwable error, long nanoTime) {
+            events.add(new Event("finish " + method + " " + error, callId, nanoTime));
+        }
+    }
+}
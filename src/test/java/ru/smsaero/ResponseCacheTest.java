@@ -0,0 +1,137 @@
+package ru.smsaero;
+
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCacheTest {
+
+    @Test
+    void concurrentMissesShareOneRequest() throws Exception {
+        try (StubGate gate = StubGate.start().latency(Duration.ofMillis(100))) {
+            ResponseCache cache = ResponseCache.create();
+            SmsAero client = gate.client(builder -> builder.responseCache(cache));
+            List<CompletableFuture<JSONObject>> calls = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                calls.add(client.async().Tariffs());
+            }
+            for (CompletableFuture<JSONObject> call : calls) {
+                call.join();
+            }
+            JSONObject tariffs = client.Tariffs();
+            tariffs.clear();
+
+            assertEquals(1, gate.requestCount("tariffs"));
+            assertEquals(1, cache.misses());
+            assertEquals(10, cache.hits());
+            assertNotSame(calls.get(0).join(), calls.get(1).join());
+            assertEquals(true, client.Tariffs().get("success"));
+        }
+    }
+
+    @Test
+    void mutatingCallsInvalidateWhatTheyChange() throws Exception {
+        try (StubGate gate = StubGate.start()) {
+            ResponseCache cache = ResponseCache.create();
+            SmsAero client = gate.client(builder -> builder.responseCache(cache));
+
+            client.GroupList();
+            client.GroupAdd("friends");
+            JSONObject groups = (JSONObject) client.GroupList().get("data");
+            client.typed().Balance();
+            // Invalidates whatever the outcome: a failed call may still have changed the balance.
+            client.async().AddBalance(100, 1).handle((result, error) -> null).join();
+            client.typed().Balance();
+            client.typed().Balance();
+            client.with(RequestOptions.page(2)).GroupList();
+            client.with(RequestOptions.builder().param("name", "friends").build()).GroupList();
+
+            assertEquals("1", groups.get("totalCount"));
+            assertEquals(4, gate.requestCount("group/list"));
+            assertEquals(2, gate.requestCount("balance"));
+            cache.invalidate("balance");
+            client.typed().Balance();
+            assertEquals(3, gate.requestCount("balance"));
+        }
+    }
+
+    @Test
+    void sendsInvalidateTheBalance() throws Exception {
+        try (StubGate gate = StubGate.start()) {
+            SmsAero client = gate.client(builder -> builder
+                .responseCache(ResponseCache.create())
+                .idempotencyIndex(IdempotencyIndex.create())
+                .lookupCache(LookupCache.builder().build()));
+
+            client.typed().Balance();
+            client.SendSms("79000000001", "text", "SMS Aero");
+            client.typed().Balance();
+            client.HlrCheck("79000000001");
+            client.typed().Balance();
+            client.typed().Balance();
+
+            assertEquals(3, gate.requestCount("balance"));
+        }
+    }
+
+    @Test
+    void refreshesAheadOfExpiryInBackground() throws Exception {
+        try (StubGate gate = StubGate.start().balance(1)) {
+            ResponseCache cache = ResponseCache.builder()
+                .ttl("balance", Duration.ofMillis(400))
+                .refreshAhead(0.25)
+                .build();
+            SmsAero client = gate.client(builder -> builder.responseCache(cache));
+
+            assertEquals(1, client.typed().Balance().balance());
+            Thread.sleep(150);
+            gate.balance(2);
+            assertEquals(1, client.typed().Balance().balance());
+            for (int i = 0; i < 100 && gate.requestCount("balance") < 2; i++) {
+                Thread.sleep(5);
+            }
+            Thread.sleep(20);
+
+            assertEquals(2, client.typed().Balance().balance());
+            assertEquals(1, cache.refreshes());
+            assertEquals(1, cache.misses());
+            assertEquals(2, gate.requestCount("balance"));
+        }
+    }
+
+    @Test
+    void failuresAreNotCached() throws Exception {
+        try (StubGate gate = StubGate.start().failWith(400)) {
+            ResponseCache cache = ResponseCache.create();
+            SmsAero client = gate.client(builder -> builder.responseCache(cache));
+
+            assertThrows(IOException.class, client::Cards);
+            gate.failWith(0);
+            client.Cards();
+            client.Cards();
+
+            assertEquals(2, cache.misses());
+            assertEquals(1, cache.size());
+        }
+    }
+
+    @Test
+    void rejectsSharingAndCachingMutations() {
+        ResponseCache cache = ResponseCache.create();
+        SmsAero.builder("e@e.com", "key").responseCache(cache).build();
+
+        assertThrows(IllegalArgumentException.class,
+            () -> SmsAero.builder("e@e.com", "key").responseCache(cache).build());
+        assertThrows(IllegalArgumentException.class,
+            () -> ResponseCache.builder().ttl("group/add", Duration.ofMinutes(1)));
+        assertThrows(IllegalArgumentException.class, () -> ResponseCache.builder().refreshAhead(0));
+        assertFalse(ResponseCache.builder().ttl("tariffs", Duration.ZERO).build().covers("tariffs"));
+    }
+}
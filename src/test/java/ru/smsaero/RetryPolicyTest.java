@@ -0,0 +1,153 @@
+package ru.smsaero;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.simple.JSONObject;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryPolicyTest {
+    private static final RetryPolicy FAST = RetryPolicy.builder()
+        .backoff(Duration.ofMillis(10), Duration.ofMillis(20))
+        .build();
+
+    @Test
+    void retriesServerErrorsUntilTheGateRecovers() throws Exception {
+        try (StubGate gate = StubGate.start().failNext(503, 2)) {
+            SmsAero client = gate.client(builder -> builder.retryPolicy(FAST));
+            CompletableFuture<JSONObject> balance = client.async().Balance();
+            assertFalse(balance.isDone());
+
+            assertEquals(Boolean.TRUE, balance.get().get("success"));
+            assertEquals(3, gate.requestCount("balance"));
+        }
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() throws Exception {
+        try (StubGate gate = StubGate.start().failWith(503)) {
+            SmsAero client = gate.client(builder -> builder.retryPolicy(FAST));
+
+            ServerErrorException e = assertThrows(ServerErrorException.class, client::Balance);
+            assertEquals(503, e.getStatusCode());
+            assertEquals("Service unavailable", e.getMessage());
+            assertEquals(3, gate.requestCount("balance"));
+        }
+    }
+
+    @Test
+    void waitsAsLongAsTheGateAsks() throws Exception {
+        try (StubGate gate = StubGate.start().rateLimit(1)) {
+            RetryPolicy patient = RetryPolicy.builder()
+                .backoff(Duration.ofMillis(10), Duration.ofSeconds(2))
+                .build();
+            SmsAero client = gate.client(builder -> builder.retryPolicy(patient));
+            client.Balance();
+            long start = System.nanoTime();
+            client.Balance();
+
+            // The gate answers 429 with "Retry-After: 1".
+            assertTrue(System.nanoTime() - start >= Duration.ofMillis(950).toNanos());
+            assertEquals(3, gate.requestCount("balance"));
+        }
+    }
+
+    @Test
+    void capsTheGatesRetryAfterAtMaxDelay() {
+        long maxDelay = Duration.ofMillis(20).toNanos();
+        assertEquals(maxDelay, FAST.nextDelayNanos(0, Duration.ofHours(1)));
+        assertEquals(maxDelay, FAST.nextDelayNanos(0, Duration.ofSeconds(Long.MAX_VALUE)));
+        assertTrue(FAST.nextDelayNanos(0, Duration.ofMillis(15)) >= Duration.ofMillis(15).toNanos());
+    }
+
+    @Test
+    void stopsAtTheBudgetAndBeforeTheDeadline() throws Exception {
+        try (StubGate gate = StubGate.start().failWith(503)) {
+            RetryPolicy policy = RetryPolicy.builder()
+                .maxAttempts(100)
+                .backoff(Duration.ofMillis(50), Duration.ofMillis(50))
+                .budget(Duration.ofMillis(300))
+                .build();
+            long start = System.nanoTime();
+            assertThrows(ServerErrorException.class, gate.client(builder -> builder.retryPolicy(policy))::Balance);
+            assertTrue(System.nanoTime() - start < Duration.ofSeconds(1).toNanos());
+            int withinBudget = gate.requestCount("balance");
+            assertTrue(withinBudget > 1 && withinBudget <= 7, "requests: " + withinBudget);
+
+            SmsAero client = gate.client(builder -> builder
+                .deadline(Duration.ofMillis(300))
+                .retryPolicy(RetryPolicy.builder()
+                    .maxAttempts(100)
+                    .backoff(Duration.ofMillis(50), Duration.ofMillis(50))
+                    .build()));
+            // The call fails with the last error as soon as the next pause would end after the deadline, or with the
+            // deadline if a slow machine stretches the last attempt past it.
+            IOException e = assertThrows(IOException.class, client::Balance);
+            assertTrue(e instanceof ServerErrorException || e instanceof DeadlineExceededException, e.toString());
+            int beforeDeadline = gate.requestCount("balance") - withinBudget;
+            assertTrue(beforeDeadline > 1 && beforeDeadline <= 7, "requests: " + beforeDeadline);
+        }
+    }
+
+    @Test
+    void doesNotRetryOtherErrors() throws Exception {
+        try (StubGate gate = StubGate.start().failNext(400, 1)) {
+            SmsAero client = gate.client(builder -> builder.retryPolicy(FAST));
+            IOException e = assertThrows(IOException.class, client::Balance);
+            assertFalse(e instanceof ServerErrorException);
+            assertEquals(1, gate.requestCount("balance"));
+
+            gate.failNext(503, 1);
+            assertThrows(ServerErrorException.class, gate.client()::Balance);
+            assertEquals(2, gate.requestCount("balance"));
+        }
+    }
+
+    @Test
+    void retriesNetworkErrorsUnlessDisabled() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Transport transport = request -> {
+            if (calls.incrementAndGet() % 2 == 1) {
+                throw new SocketTimeoutException("Read timed out");
+            }
+            return new Transport.Response(200,
+                "{\"success\":true,\"data\":{\"balance\":1}}".getBytes(StandardCharsets.UTF_8), Map.of());
+        };
+        SmsAero.Builder builder = SmsAero.builder("e@e.com", "key")
+            .transport(transport)
+            .gateUrls(List.of("https://first/v2/"));
+
+        builder.retryPolicy(FAST).build().Balance();
+        assertEquals(2, calls.get());
+
+        SmsAero noRetry = builder.retryPolicy(RetryPolicy.builder().retryNetworkErrors(false).build()).build();
+        assertThrows(IOException.class, noRetry::Balance);
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> RetryPolicy.builder().maxAttempts(0));
+        assertThrows(IllegalArgumentException.class, () -> RetryPolicy.builder().budget(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class,
+            () -> RetryPolicy.builder().backoff(Duration.ofSeconds(2), Duration.ofSeconds(1)));
+        assertThrows(IllegalArgumentException.class, () -> RetryPolicy.builder().retryableStatuses(null));
+    }
+
+    @Test
+    void ignoresRepeatedStatuses() {
+        RetryPolicy policy = RetryPolicy.builder().retryableStatuses(503, 503, 429).build();
+        assertTrue(policy.retriesStatus(503));
+        assertTrue(policy.retriesStatus(429));
+        assertFalse(policy.retriesStatus(500));
+    }
+}
@@ -1,7 +1,20 @@
 package ru.smsaero;
 
+import org.json.simple.JSONObject;
 import org.junit.jupiter.api.Test;
 
+import javax.net.ssl.SSLHandshakeException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -34,6 +47,183 @@ class SmsAeroTest {
         assertFalse(client.IsTestModeActive());
     }
 
+    @Test
+    void constructorRejectsNullTransport() {
+        assertThrows(IllegalArgumentException.class, () ->
+            new SmsAero("email@example.com", "apiKey123", null));
+    }
+
+    @Test
+    void builderRejectsBlankApiKey() {
+        assertThrows(IllegalArgumentException.class, () ->
+            SmsAero.builder("email@example.com", " ").build());
+    }
+
+    @Test
+    void sendSmsGoesThroughTransport() throws Exception {
+        List<Transport.Request> requests = new ArrayList<>();
+        Transport transport = request -> {
+            requests.add(request);
+            return new Transport.Response(200,
+                "{\"success\":true,\"data\":{\"id\":42}}".getBytes(StandardCharsets.UTF_8), Map.of());
+        };
+        SmsAero client = SmsAero.builder("e@e.com", "key").transport(transport).build();
+        client.EnableTestMode();
+
+        JSONObject response = client.SendSms("70000000000", "text", "Sign");
+
+        assertEquals(42L, ((JSONObject) response.get("data")).get("id"));
+        assertEquals(1, requests.size());
+        Transport.Request request = requests.get(0);
+        assertEquals("https://gate.smsaero.ru/v2/sms/testsend", request.url());
+        assertTrue(request.headers().get("Authorization").startsWith("Basic "));
+        String body = new String(request.body(), StandardCharsets.UTF_8);
+        assertTrue(body.contains("\"number\":\"70000000000\""));
+    }
+
+    @Test
+    void unsuccessfulResponseBecomesIOException() {
+        Transport transport = request -> new Transport.Response(400,
+            "{\"success\":false,\"message\":\"Validation error\"}".getBytes(StandardCharsets.UTF_8), Map.of());
+        SmsAero client = new SmsAero("e@e.com", "key", transport);
+
+        IOException e = assertThrows(IOException.class, client::Balance);
+        assertEquals("Validation error", e.getMessage());
+    }
+
+    @Test
+    void asyncFailsOverToNextGate() throws Exception {
+        List<String> urls = Collections.synchronizedList(new ArrayList<>());
+        Transport transport = request -> {
+            urls.add(request.url());
+            if (request.url().contains("smsaero.ru")) {
+                throw new ConnectException("Connection refused");
+            }
+            return new Transport.Response(200,
+                "{\"success\":true,\"data\":{\"balance\":1.5}}".getBytes(StandardCharsets.UTF_8), Map.of());
+        };
+        SmsAero client = new SmsAero("e@e.com", "key", transport);
+
+        CompletableFuture<JSONObject> future = client.async().Balance();
+
+        assertEquals(1.5, ((JSONObject) future.get().get("data")).get("balance"));
+        assertEquals(List.of("https://gate.smsaero.ru/v2/balance", "https://gate.smsaero.org/v2/balance"), urls);
+    }
+
+    @Test
+    void sslErrorFallsBackToHttp() throws Exception {
+        List<String> urls = Collections.synchronizedList(new ArrayList<>());
+        Transport transport = request -> {
+            urls.add(request.url());
+            if (request.url().startsWith("https://")) {
+                throw new SSLHandshakeException("handshake failed");
+            }
+            return new Transport.Response(200, "{\"success\":true}".getBytes(StandardCharsets.UTF_8), Map.of());
+        };
+        SmsAero client = new SmsAero("e@e.com", "key", transport);
+
+        client.IsAuthorized();
+
+        assertEquals(List.of("https://gate.smsaero.ru/v2/auth", "http://gate.smsaero.ru/v2/auth"), urls);
+    }
+
+    @Test
+    void asyncReportsApiErrorWithoutFailover() {
+        List<String> urls = Collections.synchronizedList(new ArrayList<>());
+        Transport transport = request -> {
+            urls.add(request.url());
+            return new Transport.Response(400,
+                "{\"success\":false,\"message\":\"Bad number\"}".getBytes(StandardCharsets.UTF_8), Map.of());
+        };
+        SmsAero client = new SmsAero("e@e.com", "key", transport);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () ->
+            client.async().NumberOperator("70000000000").get());
+        assertInstanceOf(IOException.class, e.getCause());
+        assertEquals("Bad number", e.getCause().getMessage());
+        assertEquals(1, urls.size());
+    }
+
+    @Test
+    void asyncValidatesArgumentsImmediately() {
+        SmsAero client = new SmsAero("e@e.com", "key");
+        assertThrows(IllegalArgumentException.class, () ->
+            client.async().SendSms(null, "text", "Sign"));
+    }
+
+    // --- RequestOptions ---
+
+    @Test
+    void optionsAreAppliedToRequest() throws Exception {
+        List<Transport.Request> requests = new ArrayList<>();
+        SmsAero client = new SmsAero("e@e.com", "key", recording(requests));
+        RequestOptions options = RequestOptions.builder()
+            .page(3)
+            .param("fname", "First")
+            .timeout(Duration.ofSeconds(2))
+            .idempotencyKey("key-1")
+            .build();
+
+        client.with(options).ContactAdd("70000000000");
+        client.ContactAdd("70000000001");
+
+        Transport.Request request = requests.get(0);
+        assertEquals("https://gate.smsaero.ru/v2/contact/add?page=3", request.url());
+        assertTrue(new String(request.body(), StandardCharsets.UTF_8).contains("\"fname\":\"First\""));
+        assertEquals(Duration.ofSeconds(2), request.timeout());
+        assertEquals("key-1", request.headers().get("Idempotency-Key"));
+
+        Transport.Request plain = requests.get(1);
+        assertEquals("https://gate.smsaero.ru/v2/contact/add", plain.url());
+        assertNull(plain.timeout());
+        assertNull(plain.headers().get("Idempotency-Key"));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void legacyPageIsUsedOnceByCurrentThread() throws Exception {
+        List<Transport.Request> requests = new ArrayList<>();
+        SmsAero client = new SmsAero("e@e.com", "key", recording(requests));
+
+        client.SetPage("2");
+        client.SmsList();
+        client.SmsList();
+
+        assertEquals("https://gate.smsaero.ru/v2/sms/list?page=2", requests.get(0).url());
+        assertEquals("https://gate.smsaero.ru/v2/sms/list", requests.get(1).url());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void setPageRejectsNonNumericPage() {
+        SmsAero client = new SmsAero("e@e.com", "key");
+        assertThrows(IllegalArgumentException.class, () -> client.SetPage("abc"));
+        assertThrows(IllegalArgumentException.class, () -> client.SetPage("0"));
+    }
+
+    @Test
+    void viewSharesTestModeWithClient() {
+        SmsAero client = new SmsAero("e@e.com", "key");
+        SmsAero view = client.with(RequestOptions.page(2));
+        client.EnableTestMode();
+        assertTrue(view.IsTestModeActive());
+    }
+
+    @Test
+    void optionsRejectInvalidValues() {
+        assertThrows(IllegalArgumentException.class, () -> RequestOptions.page(0));
+        assertThrows(IllegalArgumentException.class, () -> RequestOptions.builder().param(" ", "v"));
+        assertThrows(IllegalArgumentException.class, () -> RequestOptions.builder().timeout(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> new SmsAero("e@e.com", "key").with(null));
+    }
+
+    private static Transport recording(List<Transport.Request> requests) {
+        return request -> {
+            requests.add(request);
+            return new Transport.Response(200, "{\"success\":true}".getBytes(StandardCharsets.UTF_8), Map.of());
+        };
+    }
+
     @Test
     void testModeToggle() {
         SmsAero client = new SmsAero("e@e.com", "key");
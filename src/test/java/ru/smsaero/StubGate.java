@@ -0,0 +1,816 @@
+package ru.smsaero;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+/**
+ * In-process fake of the SMS Aero gate for tests and load tests. Serves the {@code v2/} endpoints the client uses
+ * over plain HTTP on a random local port; point a client at {@link #url()}, or get one from {@link #client()}:
+ * <pre>{@code
+ * try (StubGate gate = StubGate.start().latency(Duration.ofMillis(20)).rateLimit(1000)) {
+ *     SmsAero client = SmsAero.builder(email, apiKey).gateUrls(List.of(gate.url())).build();
+ *     client.SendSms("70000000000", "Hello", "SMS Aero");
+ * }
+ * }</pre>
+ *
+ * <p>Messages, HLR requests, contacts, groups and blacklist entries are kept in memory, so status and list calls
+ * see what was sent before. Lists are paged like the real API. Latency, HTTP errors,
+ * TLS failures and a gate-side rate limit can be injected; settings can be changed while the gate is running.
+ *
+ * <p>Shipped in the {@code tests} jar ({@code <type>test-jar</type>}) for use in integration tests.
+ */
+public final class StubGate implements AutoCloseable {
+    static {
+        // Without TCP_NODELAY every keep-alive response waits for the client's delayed ACK.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    /** Default number of items per page of a list endpoint. */
+    public static final int DEFAULT_PAGE_SIZE = 20;
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final HttpClient CALLBACKS = HttpClient.newHttpClient();
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final Map<String, AtomicInteger> requestsByMethod = new ConcurrentHashMap<>();
+    private final Map<String, NavigableMap<Long, Record>> collections = new ConcurrentHashMap<>();
+    private volatile long latencyMinNanos;
+    private volatile long latencyMaxNanos;
+    private volatile int failureStatus;
+    private volatile double failureRate;
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private volatile int nextFailureStatus;
+    private volatile int pageSize = DEFAULT_PAGE_SIZE;
+    private volatile long deliveryDelayNanos;
+    private volatile int finalStatus = SmsResult.STATUS_DELIVERED;
+    private volatile double balance = 337.03;
+    private volatile TokenBucket rateLimit;
+    private volatile boolean closed;
+    private TlsFailingFront tlsFront;
+
+    private StubGate(int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "stub-gate-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/v2/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Starts a gate served by 16 threads.
+     *
+     * @return running gate
+     * @throws IOException if the server socket cannot be opened
+     */
+    public static StubGate start() throws IOException {
+        return start(16);
+    }
+
+    /**
+     * Starts a gate served by the given number of threads; raise it for load tests with injected latency.
+     *
+     * @param threads number of request handling threads
+     * @return running gate
+     * @throws IOException if the server socket cannot be opened
+     */
+    public static StubGate start(int threads) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        return new StubGate(threads);
+    }
+
+    /** @return base URL to use as a gate, e.g. {@code http://127.0.0.1:12345/v2/} */
+    public String url() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/v2/";
+    }
+
+    /**
+     * Creates a client whose only gate is this one.
+     *
+     * @return client with default settings
+     */
+    public SmsAero client() {
+        return client(builder -> builder);
+    }
+
+    /**
+     * Creates a client whose only gate is this one, with further settings applied to its builder:
+     * <pre>{@code
+     * SmsAero client = gate.client(builder -> builder.responseCache(cache));
+     * }</pre>
+     *
+     * @param settings applied to a builder already pointed at {@link #url()}
+     * @return client built from the customized builder
+     */
+    public SmsAero client(UnaryOperator<SmsAero.Builder> settings) {
+        return settings.apply(SmsAero.builder("e@e.com", "key").gateUrls(List.of(url()))).build();
+    }
+
+    /**
+     * Returns an {@code https://} URL of this gate. The TLS handshake on it fails at once and the plain HTTP retry
+     * on the same port is served, like a gate with a broken certificate chain.
+     *
+     * @return base URL whose TLS handshake fails
+     * @throws IOException if the extra server socket cannot be opened
+     */
+    public String httpsUrl() throws IOException {
+        synchronized (this) {
+            if (tlsFront == null) {
+                tlsFront = new TlsFailingFront(server.getAddress().getPort());
+            }
+        }
+        return "https://" + server.getAddress().getHostString() + ":" + tlsFront.port() + "/v2/";
+    }
+
+    /** @return number of requests received so far, including rejected ones */
+    public int requestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @param method API method, e.g. {@code "sms/send"}
+     * @return number of requests received so far for the method
+     */
+    public int requestCount(String method) {
+        AtomicInteger count = requestsByMethod.get(method);
+        return count != null ? count.get() : 0;
+    }
+
+    /** Delays every response by the given time, simulating a slow gate. */
+    public StubGate latency(Duration latency) {
+        return latency(latency, latency);
+    }
+
+    /** Delays every response by a uniformly random time between {@code min} and {@code max}. */
+    public StubGate latency(Duration min, Duration max) {
+        if (min.isNegative() || max.compareTo(min) < 0) {
+            throw new IllegalArgumentException("latency range is invalid");
+        }
+        this.latencyMinNanos = min.toNanos();
+        this.latencyMaxNanos = max.toNanos();
+        return this;
+    }
+
+    /** Answers every request with the given HTTP status (e.g. 503), or serves normally again with 0. */
+    public StubGate failWith(int status) {
+        return failWith(status, 1);
+    }
+
+    /** Answers the given fraction of requests (0 to 1) with the given HTTP status. */
+    public StubGate failWith(int status, double rate) {
+        if (!(rate >= 0 && rate <= 1)) {
+            throw new IllegalArgumentException("rate must be in [0, 1]");
+        }
+        this.failureStatus = status;
+        this.failureRate = status != 0 ? rate : 0;
+        return this;
+    }
+
+    /** Answers the next {@code count} requests with the given HTTP status, then serves normally again. */
+    public StubGate failNext(int status, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count cannot be negative");
+        }
+        this.nextFailureStatus = status;
+        failuresLeft.set(count);
+        return this;
+    }
+
+    /**
+     * Answers requests over the given rate with HTTP 429, like the real gate; 0 turns the limit off.
+     *
+     * @param requestsPerSecond sustained rate, also the burst size
+     */
+    public StubGate rateLimit(double requestsPerSecond) {
+        if (!(requestsPerSecond >= 0)) {
+            throw new IllegalArgumentException("requestsPerSecond cannot be negative");
+        }
+        this.rateLimit = requestsPerSecond > 0 ? new TokenBucket(requestsPerSecond) : null;
+        return this;
+    }
+
+    /** Sets the number of items per page of the list endpoints. */
+    public StubGate pageSize(int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * Makes sent messages reach {@code status} (one of {@code SmsResult.STATUS_*}) once {@code delay} has passed;
+     * until then {@code sms/status} reports them queued. By default messages are delivered at once. Messages sent
+     * with a {@code callbackUrl} get their final status posted there when it is reached, as JSON if
+     * {@code callbackFormat} is "json" and form-encoded otherwise.
+     */
+    public StubGate delivery(Duration delay, int status) {
+        if (delay.isNegative()) {
+            throw new IllegalArgumentException("delay cannot be negative");
+        }
+        this.deliveryDelayNanos = delay.toNanos();
+        this.finalStatus = status;
+        return this;
+    }
+
+    /** Sets the account balance returned by {@code balance}. */
+    public StubGate balance(double balance) {
+        this.balance = balance;
+        return this;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (this) {
+            if (tlsFront != null) {
+                tlsFront.close();
+            }
+        }
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            String method = exchange.getRequestURI().getPath().substring("/v2/".length());
+            requestsByMethod.computeIfAbsent(method, m -> new AtomicInteger()).incrementAndGet();
+            if (!sleep()) {
+                return;
+            }
+            TokenBucket limit = rateLimit;
+            if (limit != null && !limit.tryAcquire()) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respond(exchange, HTTP_TOO_MANY_REQUESTS, error("Too many requests"));
+                return;
+            }
+            if (failuresLeft.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+                respond(exchange, nextFailureStatus, error("Service unavailable"));
+                return;
+            }
+            int status = failureStatus;
+            double rate = failureRate;
+            if (status != 0 && (rate >= 1 || ThreadLocalRandom.current().nextDouble() < rate)) {
+                respond(exchange, status, error("Service unavailable"));
+                return;
+            }
+            JSONObject form;
+            try (InputStream in = exchange.getRequestBody()) {
+                String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                form = body.isEmpty() ? new JSONObject() : (JSONObject) new JSONParser().parse(body);
+            } catch (ParseException | ClassCastException e) {
+                respond(exchange, 400, error("Invalid JSON"));
+                return;
+            }
+            String query = exchange.getRequestURI().getQuery();
+            if (query != null && query.startsWith("page=")) {
+                form.putIfAbsent("page", query.substring("page=".length()));
+            }
+            JSONObject response;
+            try {
+                response = dispatch(method, form);
+            } catch (ValidationException e) {
+                respond(exchange, 400, error(e.getMessage()));
+                return;
+            }
+            respond(exchange, response != null ? 200 : 404, response != null ? response : error("Unknown method"));
+        }
+    }
+
+    private boolean sleep() {
+        long min = latencyMinNanos;
+        long max = latencyMaxNanos;
+        long nanos = max > min ? ThreadLocalRandom.current().nextLong(min, max + 1) : min;
+        if (nanos <= 0) {
+            return true;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private JSONObject dispatch(String method, JSONObject form) {
+        JSONObject data = new JSONObject();
+        switch (method) {
+            case "auth":
+                return success(null);
+            case "balance":
+                data.put("balance", balance);
+                return success(data);
+            case "balance/add":
+                require(form, "sum", "cardId");
+                data.put("sum", form.get("sum"));
+                return success(data);
+            case "cards":
+            case "viber/sign/list":
+                return success(new JSONArray());
+            case "tariffs":
+                JSONObject tariffs = new JSONObject();
+                tariffs.put("sms", 5.49);
+                tariffs.put("hlr", 0.2);
+                data.put("FREE SIGN", tariffs);
+                return success(data);
+            case "sign/list":
+                JSONObject sign = new JSONObject();
+                sign.put("id", 1L);
+                sign.put("name", "SMS Aero");
+                sign.put("status", 1L);
+                sign.put("extendStatus", "approve");
+                return success(page("sign/list", List.of(sign), form));
+            case "sms/send":
+            case "sms/testsend":
+                return success(send(form));
+            case "sms/status":
+            case "sms/teststatus":
+                return success(smsStatus(find("sms", form)));
+            case "sms/list":
+            case "sms/testlist":
+                return success(smsList(form));
+            case "number/operator":
+                require(form, "number");
+                data.put("number", form.get("number"));
+                data.put("operator", "MegaFon");
+                data.put("extendOperator", "MEGAFON");
+                return success(data);
+            case "hlr/check":
+                require(form, "number");
+                data.put("number", form.get("number"));
+                data.put("hlrStatus", 4L);
+                data.put("extendHlrStatus", "in work");
+                return success(store("hlr", data).json);
+            case "hlr/status":
+                JSONObject hlr = copy(find("hlr", form).json);
+                hlr.put("hlrStatus", 1L);
+                hlr.put("extendHlrStatus", "available");
+                return success(hlr);
+            case "telegram/send":
+            case "mobile-id/send":
+            case "viber/send":
+                require(form, "number");
+                data.put("number", form.get("number"));
+                data.put("status", 0L);
+                data.put("extendStatus", "queue");
+                data.put("cost", 1.0);
+                return success(store(method.substring(0, method.indexOf('/')), data).json);
+            case "telegram/status":
+            case "mobile-id/status":
+                Record record = find(method.substring(0, method.indexOf('/')), form);
+                JSONObject delivered = copy(record.json);
+                if (isDelivered(record)) {
+                    delivered.put("status", 1L);
+                    delivered.put("extendStatus", "delivered");
+                }
+                return success(delivered);
+            case "mobile-id/verify":
+                require(form, "id", "code");
+                find("mobile-id", form);
+                data.put("verified", true);
+                return success(data);
+            case "viber/list":
+                return success(page("viber/list", values("viber"), form));
+            case "viber/statistic":
+                require(form, "sendingId");
+                return success(new JSONObject());
+            case "contact/add":
+            case "group/add":
+            case "blacklist/add":
+                return success(add(method.substring(0, method.indexOf('/')), form));
+            case "contact/list":
+            case "group/list":
+            case "blacklist/list":
+                String collection = method.substring(0, method.indexOf('/'));
+                return success(page(method, filter(values(collection), form), form));
+            case "contact/delete":
+            case "group/delete":
+            case "blacklist/delete":
+                collection(method.substring(0, method.indexOf('/'))).remove(id(form));
+                return success(null);
+            case "contact/delete-all":
+            case "group/delete-all":
+                collection(method.substring(0, method.indexOf('/'))).clear();
+                return success(null);
+            default:
+                return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private JSONObject send(JSONObject form) {
+        require(form, "number", "text", "sign");
+        JSONObject data = new JSONObject();
+        long now = System.currentTimeMillis() / 1000;
+        data.put("from", form.get("sign"));
+        data.put("number", form.get("number"));
+        data.put("text", form.get("text"));
+        data.put("status", (long) SmsResult.STATUS_QUEUE);
+        data.put("extendStatus", "queue");
+        data.put("channel", "FREE SIGN");
+        data.put("cost", 5.49);
+        data.put("dateCreate", now);
+        data.put("dateSend", form.get("dateSend") != null ? form.get("dateSend") : now);
+        Record record = store("sms", data);
+        if (form.get("callbackUrl") != null) {
+            String url = form.get("callbackUrl").toString();
+            boolean json = "json".equals(form.get("callbackFormat"));
+            CompletableFuture.delayedExecutor(deliveryDelayNanos, TimeUnit.NANOSECONDS)
+                .execute(() -> postCallback(url, json, smsStatus(record)));
+        }
+        return record.json;
+    }
+
+    private void postCallback(String url, boolean json, JSONObject report) {
+        if (closed) {
+            return;
+        }
+        String body;
+        if (json) {
+            body = report.toJSONString();
+        } else {
+            StringBuilder form = new StringBuilder();
+            report.forEach((key, value) -> form.append(form.length() > 0 ? "&" : "")
+                .append(URLEncoder.encode(key.toString(), StandardCharsets.UTF_8)).append('=')
+                .append(URLEncoder.encode(String.valueOf(value), StandardCharsets.UTF_8)));
+            body = form.toString();
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+            .header("Content-Type", json ? "application/json" : "application/x-www-form-urlencoded")
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build();
+        CALLBACKS.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+    }
+
+    @SuppressWarnings("unchecked")
+    private JSONObject smsStatus(Record record) {
+        JSONObject data = copy(record.json);
+        if (isDelivered(record)) {
+            data.put("status", (long) finalStatus);
+            data.put("extendStatus", extendStatus(finalStatus));
+            data.put("dateAnswer", System.currentTimeMillis() / 1000);
+        }
+        return data;
+    }
+
+    private JSONObject smsList(JSONObject form) {
+        List<JSONObject> items = new ArrayList<>();
+        for (Record record : collection("sms").values()) {
+            if (matches(record.json, form, "number") && contains(record.json, form, "text")) {
+                items.add(smsStatus(record));
+            }
+        }
+        return page("sms/list", items, form);
+    }
+
+    private boolean isDelivered(Record record) {
+        return System.nanoTime() - record.createdNanos >= deliveryDelayNanos;
+    }
+
+    private static String extendStatus(int status) {
+        switch (status) {
+            case SmsResult.STATUS_DELIVERED:
+                return "delivery";
+            case SmsResult.STATUS_NOT_DELIVERED:
+                return "no delivery";
+            case SmsResult.STATUS_SENT:
+                return "smsc submit";
+            case SmsResult.STATUS_WAITING:
+                return "waiting";
+            case SmsResult.STATUS_REJECTED:
+                return "smsc reject";
+            case SmsResult.STATUS_MODERATION:
+                return "moderation";
+            default:
+                return "queue";
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private JSONObject add(String collection, JSONObject form) {
+        require(form, "group".equals(collection) ? "name" : "number");
+        JSONObject data = new JSONObject();
+        form.forEach((key, value) -> {
+            if (!"page".equals(key)) {
+                data.put(key, value);
+            }
+        });
+        return store(collection, data).json;
+    }
+
+    /**
+     * Builds a page of a list in the real API's shape: items under {@code "0"}, {@code "1"}, ..., plus
+     * {@code links} and {@code totalCount}.
+     */
+    @SuppressWarnings("unchecked")
+    private JSONObject page(String method, List<JSONObject> items, JSONObject form) {
+        int size = pageSize;
+        int page = Math.max(1, (int) number(form.get("page"), 1));
+        int last = Math.max(1, (items.size() + size - 1) / size);
+        JSONObject data = new JSONObject();
+        int from = Math.min(items.size(), (page - 1) * size);
+        int to = Math.min(items.size(), from + size);
+        for (int i = from; i < to; i++) {
+            data.put(String.valueOf(i - from), items.get(i));
+        }
+        JSONObject links = new JSONObject();
+        String base = "/v2/" + method + "?page=";
+        links.put("self", base + page);
+        links.put("first", base + 1);
+        links.put("last", base + last);
+        links.put("next", page < last ? base + (page + 1) : null);
+        data.put("links", links);
+        data.put("totalCount", String.valueOf(items.size()));
+        return data;
+    }
+
+    private static List<JSONObject> filter(List<JSONObject> items, JSONObject form) {
+        List<JSONObject> result = new ArrayList<>();
+        for (JSONObject item : items) {
+            if (matches(item, form, "number") && matches(item, form, "groupId")) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    private static boolean matches(JSONObject item, JSONObject form, String key) {
+        Object expected = form.get(key);
+        return expected == null || String.valueOf(expected).equals(String.valueOf(item.get(key)));
+    }
+
+    private static boolean contains(JSONObject item, JSONObject form, String key) {
+        Object expected = form.get(key);
+        return expected == null || String.valueOf(item.get(key)).contains(String.valueOf(expected));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Record store(String collection, JSONObject data) {
+        long id = ids.incrementAndGet();
+        data.put("id", id);
+        Record record = new Record(data);
+        collection(collection).put(id, record);
+        return record;
+    }
+
+    private Record find(String collection, JSONObject form) {
+        Record record = collection(collection).get(id(form));
+        if (record == null) {
+            throw new ValidationException("Not found");
+        }
+        return record;
+    }
+
+    private List<JSONObject> values(String collection) {
+        List<JSONObject> items = new ArrayList<>();
+        for (Record record : collection(collection).values()) {
+            items.add(record.json);
+        }
+        return items;
+    }
+
+    private NavigableMap<Long, Record> collection(String name) {
+        return collections.computeIfAbsent(name, n -> new ConcurrentSkipListMap<>());
+    }
+
+    private static long id(JSONObject form) {
+        require(form, "id");
+        long id = number(form.get("id"), -1);
+        if (id < 0) {
+            throw new ValidationException("Validation error: id");
+        }
+        return id;
+    }
+
+    private static long number(Object value, long defaultValue) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        try {
+            return value != null ? Long.parseLong(value.toString()) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static void require(JSONObject form, String... keys) {
+        for (String key : keys) {
+            Object value = form.get(key);
+            if (value == null || value.toString().isEmpty()) {
+                throw new ValidationException("Validation error: " + key);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONObject copy(JSONObject json) {
+        JSONObject copy = new JSONObject();
+        copy.putAll(json);
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONObject success(Object data) {
+        JSONObject json = new JSONObject();
+        json.put("success", true);
+        json.put("data", data);
+        json.put("message", null);
+        return json;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONObject error(String message) {
+        JSONObject json = new JSONObject();
+        json.put("success", false);
+        json.put("data", null);
+        json.put("message", message);
+        return json;
+    }
+
+    private static void respond(HttpExchange exchange, int status, JSONObject body) throws IOException {
+        byte[] bytes = body.toJSONString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /** A stored entity and when it was created. */
+    private static final class Record {
+        final JSONObject json;
+        final long createdNanos = System.nanoTime();
+
+        Record(JSONObject json) {
+            this.json = json;
+        }
+    }
+
+    /** Gate-side limit: a token bucket refilled continuously, with a burst of one second's worth. */
+    private static final class TokenBucket {
+        private final double ratePerNano;
+        private final double capacity;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        TokenBucket(double perSecond) {
+            this.ratePerNano = perSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = Math.max(1, perSecond);
+            this.tokens = capacity;
+        }
+
+        synchronized boolean tryAcquire() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * ratePerNano);
+            refilledAt = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+    }
+
+    /**
+     * Second port in front of the gate: a TLS ClientHello gets a plain-text answer, which fails the handshake,
+     * and any other connection is relayed to the gate as is.
+     */
+    private static final class TlsFailingFront implements AutoCloseable {
+        private static final int TLS_HANDSHAKE = 0x16;
+        private static final byte[] NOT_TLS = "HTTP/1.1 400 Bad Request\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+        private final ServerSocket socket;
+        private final int target;
+        private final ExecutorService relays = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "stub-gate-tls");
+            t.setDaemon(true);
+            return t;
+        });
+
+        TlsFailingFront(int target) throws IOException {
+            this.socket = new ServerSocket(0, 1024, InetAddress.getLoopbackAddress());
+            this.target = target;
+            relays.execute(this::accept);
+        }
+
+        int port() {
+            return socket.getLocalPort();
+        }
+
+        private void accept() {
+            while (!socket.isClosed()) {
+                try {
+                    Socket client = socket.accept();
+                    relays.execute(() -> serve(client));
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(Socket client) {
+            try (client) {
+                InputStream in = new BufferedInputStream(client.getInputStream());
+                in.mark(1);
+                int first = in.read();
+                if (first < 0) {
+                    return;
+                }
+                if (first == TLS_HANDSHAKE) {
+                    client.getOutputStream().write(NOT_TLS);
+                    return;
+                }
+                in.reset();
+                try (Socket upstream = new Socket(InetAddress.getLoopbackAddress(), target)) {
+                    client.setTcpNoDelay(true);
+                    upstream.setTcpNoDelay(true);
+                    relays.execute(() -> copy(upstream, client));
+                    copy(in, upstream);
+                }
+            } catch (IOException ignored) {
+                // Connection closed by either side.
+            }
+        }
+
+        private static void copy(Socket from, Socket to) {
+            try {
+                copy(from.getInputStream(), to);
+            } catch (IOException ignored) {
+                // Connection closed by either side.
+            }
+        }
+
+        private static void copy(InputStream from, Socket to) throws IOException {
+            byte[] buffer = new byte[8192];
+            OutputStream out = to.getOutputStream();
+            int n;
+            while ((n = from.read(buffer)) >= 0) {
+                out.write(buffer, 0, n);
+                out.flush();
+            }
+            to.shutdownOutput();
+        }
+
+        @Override
+        public void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Already closed.
+            }
+            relays.shutdownNow();
+        }
+    }
+
+    private static final class ValidationException extends RuntimeException {
+        ValidationException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package ru.smsaero;
+
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StubGateTest {
+
+    @Test
+    void sentMessagesAreDeliveredAndListedInPages() throws Exception {
+        try (StubGate gate = StubGate.start().pageSize(2)) {
+            SmsAero client = gate.client();
+            for (int i = 0; i < 5; i++) {
+                client.SendSms("7900000000" + i, "Hello " + i, "Sign");
+            }
+
+            SmsResult status = client.typed().SmsStatus(3);
+            PagedList<SmsResult> first = client.typed().SmsList();
+            PagedList<SmsResult> last = client.typed().with(RequestOptions.page(3)).SmsList();
+
+            assertEquals(SmsResult.STATUS_DELIVERED, status.status());
+            assertEquals("79000000002", status.number());
+            assertNotNull(status.dateAnswer());
+            assertEquals(5, first.totalCount());
+            assertEquals(2, first.items().size());
+            assertTrue(first.hasNextPage());
+            assertEquals(1, last.items().size());
+            assertEquals(5, last.items().get(0).id());
+            assertFalse(last.hasNextPage());
+        }
+    }
+
+    @Test
+    void deliveryCanBeDelayed() throws Exception {
+        try (StubGate gate = StubGate.start().delivery(Duration.ofMillis(200), SmsResult.STATUS_NOT_DELIVERED)) {
+            SmsAero client = gate.client();
+            long id = client.typed().SendSms("70000000000", "Hello", "Sign").id();
+
+            assertEquals(SmsResult.STATUS_QUEUE, client.typed().SmsStatus(id).status());
+            Thread.sleep(250);
+            assertEquals(SmsResult.STATUS_NOT_DELIVERED, client.typed().SmsStatus(id).status());
+        }
+    }
+
+    @Test
+    void servesOtherEndpoints() throws Exception {
+        try (StubGate gate = StubGate.start().balance(10.5)) {
+            SmsAero client = gate.client();
+
+            assertEquals(10.5, client.typed().Balance().balance());
+            long hlrId = client.typed().HlrCheck("79990000000").id();
+            assertEquals(HlrResult.STATUS_AVAILABLE, client.typed().HlrStatus(hlrId).hlrStatus());
+            assertEquals("MegaFon", data(client.NumberOperator("79990000000")).get("operator"));
+
+            client.BlackListAdd("79990000001");
+            client.BlackListAdd("79990000002");
+            assertEquals("2", data(client.BlackListList()).get("totalCount"));
+            assertEquals(true, client.IsAuthorized().get("success"));
+            assertEquals(1, gate.requestCount("hlr/check"));
+        }
+    }
+
+    @Test
+    void rejectsUnknownIdsAndInvalidForms() throws Exception {
+        try (StubGate gate = StubGate.start()) {
+            SmsAero client = gate.client();
+
+            IOException e = assertThrows(IOException.class, () -> client.typed().SmsStatus(42));
+            assertEquals("Not found", e.getMessage());
+        }
+    }
+
+    @Test
+    void tlsFailureFallsBackToPlainHttp() throws Exception {
+        try (StubGate gate = StubGate.start()) {
+            SmsAero client = SmsAero.builder("e@e.com", "key")
+                .gateUrls(List.of(gate.httpsUrl()))
+                .build();
+
+            assertEquals(1, client.typed().SendSms("70000000000", "Hello", "Sign").id());
+            assertEquals(1, gate.requestCount("sms/send"));
+        }
+    }
+
+    @Test
+    void injectedErrorsAndRateLimit() throws Exception {
+        try (StubGate gate = StubGate.start().rateLimit(3)) {
+            SmsAero client = gate.client();
+            List<CompletableFuture<JSONObject>> calls = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                calls.add(client.async().Balance());
+            }
+            int limited = 0;
+            for (CompletableFuture<JSONObject> call : calls) {
+                try {
+                    call.join();
+                } catch (RuntimeException e) {
+                    assertInstanceOf(RateLimitExceededException.class, e.getCause());
+                    limited++;
+                }
+            }
+            assertTrue(limited >= 6, "limited " + limited);
+
+            gate.rateLimit(0).failWith(503);
+            assertThrows(IOException.class, client::Balance);
+            gate.failWith(0);
+            assertEquals(337.03, client.typed().Balance().balance());
+        }
+    }
+
+    private static JSONObject data(JSONObject response) {
+        return (JSONObject) response.get("data");
+    }
+}
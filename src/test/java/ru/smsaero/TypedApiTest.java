@@ -0,0 +1,121 @@
+package ru.smsaero;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TypedApiTest {
+
+    @Test
+    void sendSmsAndBalanceAgainstStubGate() throws Exception {
+        try (StubGate gate = StubGate.start()) {
+            SmsAero client = SmsAero.builder("e@e.com", "key").gateUrls(List.of(gate.url())).build();
+            client.EnableTestMode();
+
+            SmsResult sms = client.typed().SendSms("70000000000", "Hello", "Sign");
+            BalanceResult balance = client.async().typed().Balance().get();
+
+            assertEquals(1, sms.id());
+            assertEquals("70000000000", sms.number());
+            assertEquals("Sign", sms.from());
+            assertEquals(SmsResult.STATUS_QUEUE, sms.status());
+            assertEquals("queue", sms.extendStatus());
+            assertEquals(5.49, sms.cost());
+            assertEquals(337.03, balance.balance());
+        }
+    }
+
+    @Test
+    void decodesStatusWithStringNumbersAndDates() throws Exception {
+        SmsAero client = client("{\"success\":true,\"data\":{\"id\":\"12345\",\"number\":\"79031234567\","
+            + "\"status\":1,\"extendStatus\":\"delivery\",\"cost\":\"1.00\",\"dateCreate\":1719115820,"
+            + "\"dateSend\":null,\"dateAnswer\":1719115825,\"extra\":{\"nested\":[1,2]}},\"message\":null}");
+
+        SmsResult sms = client.typed().SmsStatus(12345);
+
+        assertEquals(12345, sms.id());
+        assertEquals(SmsResult.STATUS_DELIVERED, sms.status());
+        assertEquals(1.0, sms.cost());
+        assertEquals(Instant.ofEpochSecond(1719115820), sms.dateCreate());
+        assertNull(sms.dateSend());
+        assertEquals(Instant.ofEpochSecond(1719115825), sms.dateAnswer());
+    }
+
+    @Test
+    void decodesPagedList() throws Exception {
+        SmsAero client = client("{\"success\":true,\"data\":{"
+            + "\"0\":{\"id\":1,\"number\":\"79031234567\",\"status\":1},"
+            + "\"1\":{\"id\":2,\"number\":\"79031234568\",\"status\":2},"
+            + "\"links\":{\"self\":\"/v2/sms/list?page=1\",\"next\":\"/v2/sms/list?page=2\"},"
+            + "\"totalCount\":\"138\"},\"message\":null}");
+
+        PagedList<SmsResult> page = client.typed().SmsList();
+
+        assertEquals(2, page.items().size());
+        assertEquals(2, page.items().get(1).id());
+        assertEquals(138, page.totalCount());
+        assertTrue(page.hasNextPage());
+    }
+
+    @Test
+    void lastPageHasNoNext() throws Exception {
+        SmsAero client = client("{\"success\":true,\"data\":{\"0\":{\"id\":1},"
+            + "\"links\":{\"self\":\"/v2/sms/list?page=3\",\"next\":null},\"totalCount\":1}}");
+
+        PagedList<SmsResult> page = client.typed().SmsList();
+
+        assertEquals(1, page.items().size());
+        assertFalse(page.hasNextPage());
+    }
+
+    @Test
+    void decodesHlr() throws Exception {
+        SmsAero client = client("{\"success\":true,\"data\":{\"id\":1,\"number\":\"79990000000\","
+            + "\"hlrStatus\":4,\"extendHlrStatus\":\"in work\"},\"message\":null}");
+
+        HlrResult hlr = client.typed().HlrCheck("79990000000");
+
+        assertEquals(1, hlr.id());
+        assertEquals(HlrResult.STATUS_IN_PROGRESS, hlr.hlrStatus());
+        assertEquals("in work", hlr.extendHlrStatus());
+    }
+
+    @Test
+    void apiErrorFailsWithMessage() {
+        SmsAero client = client("{\"data\":null,\"success\":false,\"message\":\"Insufficient balance\"}");
+        IOException e = assertThrows(IOException.class, () -> client.typed().Balance());
+        assertEquals("Insufficient balance", e.getMessage());
+
+        SmsAero withReason = client("{\"success\":false,\"reason\":{\"number\":[\"invalid\"]}}");
+        e = assertThrows(IOException.class, () -> withReason.typed().SendSms("70000000000", "Hi", "Sign"));
+        assertEquals("{\"number\":[\"invalid\"]}", e.getMessage());
+    }
+
+    @Test
+    void typedViewUsesOptions() throws Exception {
+        StringBuilder url = new StringBuilder();
+        Transport transport = request -> {
+            url.append(request.url());
+            return response("{\"success\":true,\"data\":{\"totalCount\":0}}");
+        };
+        SmsAero client = new SmsAero("e@e.com", "key", transport);
+
+        client.typed().with(RequestOptions.page(3)).SmsList();
+
+        assertTrue(url.toString().endsWith("sms/list?page=3"), url.toString());
+    }
+
+    private static SmsAero client(String body) {
+        return new SmsAero("e@e.com", "key", request -> response(body));
+    }
+
+    private static Transport.Response response(String body) {
+        return new Transport.Response(200, body.getBytes(StandardCharsets.UTF_8), Map.of());
+    }
+}